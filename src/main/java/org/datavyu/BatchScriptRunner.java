@@ -0,0 +1,343 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.controllers.OpenController;
+import org.datavyu.controllers.RubyRuntime;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs a Ruby script over many projects without the spreadsheet, e.g. a reliability check or an export over every
+ * project of a study:
+ *
+ * <pre>
+ * java -cp datavyu.jar org.datavyu.BatchScriptRunner [-threads N] [-report FILE] SCRIPT 'DIR/**&#47;*.opf'
+ * </pre>
+ *
+ * Each project is opened on its own and the script runs on it with $db and $pj set to it, and $batch_file to the path
+ * of the project file. Projects are processed in parallel, every worker thread has its own JRuby runtime with the
+ * Ruby API loaded so scripts don't share any state. The output and errors of the script for every project are
+ * collected into a report, in the order of the files. The script is responsible for saving the projects it changes.
+ */
+public final class BatchScriptRunner {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(BatchScriptRunner.class);
+
+    /** The characters that make a path element a pattern */
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    /** The pattern used for a directory */
+    private static final String DEFAULT_PATTERN = "**.opf";
+
+    /** The script to run */
+    private final File scriptFile;
+
+    /** The number of projects processed at the same time */
+    private final int threads;
+
+    /** The runtimes of the workers, terminated once all the projects are done */
+    private final List<RubyRuntime> runtimes = Collections.synchronizedList(new ArrayList<RubyRuntime>());
+
+    /** The runtime of each worker thread */
+    private final ThreadLocal<RubyRuntime> runtime = ThreadLocal.withInitial(() -> {
+        RubyRuntime newRuntime = new RubyRuntime();
+        runtimes.add(newRuntime);
+        return newRuntime;
+    });
+
+    /**
+     * The outcome of running the script on a project.
+     */
+    public static final class Result {
+
+        /** The project file */
+        public final File file;
+
+        /** What the script printed */
+        public final String output;
+
+        /** The error that stopped the script, null if it ran to the end */
+        public final String error;
+
+        /** The time taken to open the project and run the script, in milliseconds */
+        public final long milliseconds;
+
+        Result(final File file, final String output, final String error, final long milliseconds) {
+            this.file = file;
+            this.output = output;
+            this.error = error;
+            this.milliseconds = milliseconds;
+        }
+
+        /**
+         * @return True if the script ran to the end.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * @param scriptFile The script to run.
+     * @param threads    The number of projects processed at the same time.
+     */
+    public BatchScriptRunner(final File scriptFile, final int threads) {
+        this.scriptFile = scriptFile;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the script over projects.
+     *
+     * @param files The project files.
+     * @return The result for each file, in the order of the files.
+     * @throws InterruptedException If interrupted while waiting for the projects.
+     */
+    public List<Result> run(final List<File> files) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "Datavyu batch worker " + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (File file : files) {
+                futures.add(workers.submit(() -> runOn(file)));
+            }
+            List<Result> results = new ArrayList<Result>();
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // Errors of the runtime itself, e.g. out of memory.
+                    results.add(new Result(files.get(i), "", String.valueOf(e.getCause()), 0));
+                }
+            }
+            return results;
+        } finally {
+            workers.shutdownNow();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+            synchronized (runtimes) {
+                for (RubyRuntime r : runtimes) {
+                    r.terminate();
+                }
+                runtimes.clear();
+            }
+        }
+    }
+
+    /**
+     * Opens a project and runs the script on it, on a worker thread.
+     *
+     * @param file The project file.
+     * @return The result of the script.
+     */
+    private Result runOn(final File file) {
+        long start = System.currentTimeMillis();
+        StringWriter output = new StringWriter();
+        String error = null;
+        try {
+            OpenController openController = new OpenController();
+            if (file.getName().endsWith(".csv")) {
+                openController.openDataStore(file);
+            } else {
+                openController.openProject(file);
+            }
+            if (openController.getDataStore() == null) {
+                throw new IOException("Unable to open " + file);
+            }
+
+            RubyRuntime rubyRuntime = runtime.get();
+            rubyRuntime.setGlobal("batch_file", file.getPath());
+            rubyRuntime.runScript(scriptFile, openController.getDataStore(), openController.getProject(),
+                    output, output);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Script failed on " + file + ". Error: ", e);
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        return new Result(file, output.toString(), error, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Finds the files matching a glob pattern, e.g. 'study/**&#47;*.opf'. A directory stands for all the project
+     * files below it and a plain file for itself.
+     *
+     * @param glob The pattern, relative to the working directory unless absolute.
+     * @return The matching files, sorted by path.
+     * @throws IOException If the directories can't be read.
+     */
+    public static List<File> findFiles(final String glob) throws IOException {
+        String separators = File.separatorChar == '\\' ? "/\\" : "/";
+        int firstGlob = -1;
+        for (int i = 0; i < glob.length() && firstGlob < 0; i++) {
+            if (GLOB_CHARACTERS.indexOf(glob.charAt(i)) >= 0) {
+                firstGlob = i;
+            }
+        }
+
+        Path base;
+        String pattern;
+        if (firstGlob < 0) {
+            base = Paths.get(glob);
+            if (!Files.isDirectory(base)) {
+                return Files.exists(base) ? Collections.singletonList(base.toFile()) : Collections.<File>emptyList();
+            }
+            pattern = DEFAULT_PATTERN;
+        } else {
+            // The base is the directory before the first element with a pattern.
+            int split = -1;
+            for (int i = firstGlob - 1; i >= 0 && split < 0; i--) {
+                if (separators.indexOf(glob.charAt(i)) >= 0) {
+                    split = i;
+                }
+            }
+            base = Paths.get(split < 0 ? "." : (split == 0 ? glob.substring(0, 1) : glob.substring(0, split)));
+            pattern = glob.substring(split + 1).replace('\\', '/');
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        final Path root = base;
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(root.relativize(p)))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Writes the report of a batch.
+     *
+     * @param results The results of the batch.
+     * @param writer  Where to write the report.
+     * @throws IOException If the report can't be written.
+     */
+    public static void writeReport(final List<Result> results, final Writer writer) throws IOException {
+        int failed = 0;
+        long milliseconds = 0;
+        for (Result result : results) {
+            writer.write("==== " + result.file.getPath() + ": " + (result.isSuccess() ? "OK" : "FAILED")
+                    + " (" + result.milliseconds + " ms)\n");
+            writer.write(result.output);
+            if (!result.output.isEmpty() && !result.output.endsWith("\n")) {
+                writer.write("\n");
+            }
+            if (!result.isSuccess()) {
+                writer.write("**** " + result.error + "\n");
+                failed++;
+            }
+            milliseconds += result.milliseconds;
+        }
+        writer.write("---- " + (results.size() - failed) + " succeeded, " + failed + " failed, "
+                + results.size() + " files, " + milliseconds + " ms of processing\n");
+        writer.flush();
+    }
+
+    /**
+     * Prints how to use the runner.
+     */
+    private static void printUsage() {
+        System.err.println("Usage: " + BatchScriptRunner.class.getName()
+                + " [-threads N] [-report FILE] SCRIPT FILES");
+        System.err.println("  FILES is a project file, a directory, or a pattern such as 'study/**/*.opf'.");
+    }
+
+    /**
+     * Runs a script over projects from the command line. Exits with 0 if the script ran to the end on every project,
+     * 1 if it failed on some, and 2 if the arguments are wrong.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        File reportFile = null;
+        List<String> operands = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-report")) {
+                    reportFile = new File(args[++i]);
+                } else {
+                    operands.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            operands.clear();
+        }
+        if (operands.size() != 2 || threads < 1) {
+            printUsage();
+            System.exit(2);
+        }
+
+        File scriptFile = new File(operands.get(0));
+        if (!scriptFile.isFile()) {
+            System.err.println("Script not found: " + scriptFile);
+            System.exit(2);
+        }
+        List<File> files = findFiles(operands.get(1));
+        if (files.isEmpty()) {
+            System.err.println("No files match " + operands.get(1));
+            System.exit(2);
+        }
+
+        long start = System.currentTimeMillis();
+        List<Result> results = new BatchScriptRunner(scriptFile, Math.min(threads, files.size())).run(files);
+        logger.info("Ran " + scriptFile + " on " + files.size() + " files in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        Writer report = reportFile == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8);
+        try {
+            writeReport(results, report);
+        } finally {
+            if (reportFile != null) {
+                report.close();
+            }
+        }
+
+        boolean success = true;
+        for (Result result : results) {
+            success &= result.isSuccess();
+        }
+        System.exit(success ? 0 : 1);
+    }
+}
@@ -19,6 +19,7 @@ import com.brsanthu.googleanalytics.GoogleAnalytics;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.datavyu.controllers.RubyRuntime;
 import org.datavyu.controllers.project.ProjectController;
 import org.datavyu.models.db.TitleNotifier;
 import org.datavyu.models.db.UserWarningException;
@@ -76,7 +77,8 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
     /** The project controller */
     private static ProjectController projectController;
 
-    private static GoogleAnalytics ga;
+    /** Set by the analytics stage of the start-up if data is shared */
+    private static volatile GoogleAnalytics ga;
 
     // Load native libraries
     static {
@@ -118,6 +120,9 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
     /** File path from the command line */
     private String commandLineFile;
 
+    /** The stages of the start-up, started in initialize */
+    private StartupStages stages;
+
 
     /**
      * @return The platform that Datavyu is running on.
@@ -273,8 +278,10 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
                             return true;
 
                         case 'W':
-                            if(safeQuit(getView().getTabbedPane().getSelectedComponent())) {
-                                getView().getTabbedPane().remove(getView().getTabbedPane().getSelectedComponent());
+                            Component tab = getView().getTabbedPane().getSelectedComponent();
+                            if(safeQuit(tab)) {
+                                ((SpreadSheetPanel) tab).getProjectController().stopJournal(true);
+                                getView().getTabbedPane().remove(tab);
                             }
                             if(getView().getTabbedPane().getTabCount() == 0) {
                                 Datavyu.getApplication().exit();
@@ -836,14 +843,25 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
             commandLineFile = args[0];
         }
 
-        try {
-            // Check for updates
-            if (DatavyuVersion.isUpdateAvailable() && !DatavyuVersion.isIgnoreVersion()) {
-                Datavyu.getApplication().show(new UpdateVersion(Datavyu.getApplication().getMainFrame(), true));
+        // Start what the spreadsheet doesn't depend on in the background, the user interface is built meanwhile.
+        stages = new StartupStages();
+        stages.start("fonts", DefaultFonts::getCellFont);
+        stages.start("configuration", ConfigProperties::getInstance);
+        stages.start("plugins", PluginManager::getInstance);
+        // Load the Ruby API so that the first script doesn't wait for it.
+        stages.start("ruby", RubyRuntime::getShared);
+        stages.start("update check", () -> {
+            try {
+                if (DatavyuVersion.isUpdateAvailable() && !DatavyuVersion.isIgnoreVersion()) {
+                    // Runs after startup, once the main frame is shown.
+                    SwingUtilities.invokeLater(() -> show(new UpdateVersion(getMainFrame(), true)));
+                    return true;
+                }
+            } catch (ExceptionInInitializerError e) {
+                logger.error("Cannot reach Datavyu servers " + e.getMessage());
             }
-        } catch (ExceptionInInitializerError e) {
-            logger.error("Cannot reach Datavyu servers " + e.getMessage());
-        }
+            return false;
+        });
     }
 
     /**
@@ -852,89 +870,109 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
     @Override
     protected void startup() {
 
-        // Make view the new view so we can keep track of it for hot keys
-        datavyuView = new DatavyuView(this);
-        show(datavyuView);
-        datavyuView.getFileSplitPane().setDividerLocation(0.75);
+        // The view is laid out with the fonts and colors of the configuration.
+        stages.await("configuration");
 
-        // BugzID:435 - Correct size if a small size is detected
-        int width = (int) getMainFrame().getSize().getWidth();
-        int height = (int) getMainFrame().getSize().getHeight();
+        stages.run("main frame", () -> {
+            // Make view the new view so we can keep track of it for hot keys
+            datavyuView = new DatavyuView(this);
+            show(datavyuView);
+            datavyuView.getFileSplitPane().setDividerLocation(0.75);
 
-        if ((width < INIT_MIN_X) || (height < INIT_MIN_Y)) {
-            int x = Math.max(width, INIT_MIN_X);
-            int y = Math.max(height, INIT_MIN_Y);
-            getMainFrame().setSize(x, y);
-        }
+            // BugzID:435 - Correct size if a small size is detected
+            int width = (int) getMainFrame().getSize().getWidth();
+            int height = (int) getMainFrame().getSize().getHeight();
 
-        addExitListener(new ExitListener() {
-            @Override
-            public boolean canExit(EventObject eventObject) {
-                return safeQuit();
+            if ((width < INIT_MIN_X) || (height < INIT_MIN_Y)) {
+                int x = Math.max(width, INIT_MIN_X);
+                int y = Math.max(height, INIT_MIN_Y);
+                getMainFrame().setSize(x, y);
             }
 
-            @Override
-            public void willExit(EventObject eventObject) { /* nothing to do here */ }
+            addExitListener(new ExitListener() {
+                @Override
+                public boolean canExit(EventObject eventObject) {
+                    return safeQuit();
+                }
+
+                @Override
+                public void willExit(EventObject eventObject) { /* nothing to do here */ }
+            });
         });
 
-        // Create video controller.
-        projectController = new ProjectController();
-        videoController = datavyuView.getSpreadsheetPanel().getVideoController();
+        stages.run("video controller", () -> {
+            // Create video controller.
+            projectController = new ProjectController();
+            videoController = datavyuView.getSpreadsheetPanel().getVideoController();
 
-        final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-        int x = getView().getFrame().getX();
+            final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+            int x = getView().getFrame().getX();
 
-        // don't let the data viewer fall below the bottom of the primary
-        // screen, but also don't let it creep up above the screen either
-        int y = getView().getFrame().getY() + getView().getFrame().getHeight();
-        y = (int) Math.max(Math.min(y, screenSize.getHeight() - videoController.getHeight()), 0);
-        videoController.setLocation(x, y);
-        show(videoController);
-        datavyuView.checkForAutosavedFile();
-        datavyuView.checkFirstStart();
+            // don't let the data viewer fall below the bottom of the primary
+            // screen, but also don't let it creep up above the screen either
+            int y = getView().getFrame().getY() + getView().getFrame().getHeight();
+            y = (int) Math.max(Math.min(y, screenSize.getHeight() - videoController.getHeight()), 0);
+            videoController.setLocation(x, y);
+            show(videoController);
+        });
+
+        stages.run("autosave check", () -> {
+            datavyuView.checkForAutosavedFile();
+            datavyuView.checkFirstStart();
+        });
 
         // The DB we create by default doesn't really have any unsaved changes.
         projectController.getDataStore().markAsUnchanged();
         ready();
 
         if (ConfigProperties.getInstance().getShareData()) {
-
-            ga = GoogleAnalytics.builder()
-                .withTrackingId("UA-129130876-3")
-                .build();
-
-            ResourceMap resourceMap = Application.getInstance(Datavyu.class).getContext()
-                .getResourceMap(Build.class);
-
-            logger.debug("Application Name: Datavyu"
-                + " ,Application Version: " + resourceMap.getString("Application.version")
-                + " ,OS Name: " + System.getProperty("os.name")
-                + " ,OS Version: " + System.getProperty("os.version")
-                + " ,Java Version: " + System.getProperty("java.version"));
-
-            ga.screenView()
-                .applicationName("datavyu")
-                .applicationVersion(resourceMap.getString("Application.version"))
-                .send();
-
-            ga.event()
-                .eventCategory("os")
-                .eventAction("name")
-                .eventLabel(System.getProperty("os.name"))
-                .send();
-
-            ga.event()
-                .eventCategory("os")
-                .eventAction("version")
-                .eventLabel(System.getProperty("os.version"))
-                .send();
-
-            ga.event()
-                .eventCategory("java")
-                .eventAction("version")
-                .eventLabel(System.getProperty("java.version"))
-                .send();
+            stages.start("analytics", () -> {
+                startAnalytics();
+                return null;
+            });
         }
+        stages.finish();
+    }
+
+    /**
+     * Reports the versions of Datavyu, the OS and Java, run in the background as it goes over the network.
+     */
+    private void startAnalytics() {
+        GoogleAnalytics analytics = GoogleAnalytics.builder()
+            .withTrackingId("UA-129130876-3")
+            .build();
+
+        ResourceMap resourceMap = getContext().getResourceMap(Build.class);
+
+        logger.debug("Application Name: Datavyu"
+            + " ,Application Version: " + resourceMap.getString("Application.version")
+            + " ,OS Name: " + System.getProperty("os.name")
+            + " ,OS Version: " + System.getProperty("os.version")
+            + " ,Java Version: " + System.getProperty("java.version"));
+
+        analytics.screenView()
+            .applicationName("datavyu")
+            .applicationVersion(resourceMap.getString("Application.version"))
+            .send();
+
+        analytics.event()
+            .eventCategory("os")
+            .eventAction("name")
+            .eventLabel(System.getProperty("os.name"))
+            .send();
+
+        analytics.event()
+            .eventCategory("os")
+            .eventAction("version")
+            .eventLabel(System.getProperty("os.version"))
+            .send();
+
+        analytics.event()
+            .eventCategory("java")
+            .eventAction("version")
+            .eventLabel(System.getProperty("java.version"))
+            .send();
+        ga = analytics;
     }
 
     @Override
@@ -951,11 +989,18 @@ public final class Datavyu extends SingleFrameApplication implements KeyEventDis
      */
     @Override
     public void shutdown() {
+        // Changes have been saved or discarded by now, the journals are no longer needed.
+        for (Component tab : getView().getTabbedPane().getComponents()) {
+            if (tab instanceof SpreadSheetPanel) {
+                ((SpreadSheetPanel) tab).getProjectController().stopJournal(true);
+            }
+        }
+
         if (getPlatform() == Platform.MAC && osxPressAndHoldEnabled) {
             MacOS.setOSXPressAndHoldValue(true);
         }
 
-        if (ConfigProperties.getInstance().getShareData()) {
+        if (ConfigProperties.getInstance().getShareData() && ga != null) {
             for (StreamViewer streamViewer :getVideoController().getStreamViewers()) {
                 String videoFormat = FilenameUtils.getExtension(streamViewer.getSourceFile().getName());
                 String pluginName = PluginManager.getInstance()
@@ -0,0 +1,193 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * The stages of the start-up of Datavyu. Stages that don't depend on each other, e.g. loading the plugins and the
+ * Ruby API, are started on background threads, stages that build the user interface run on the calling thread and
+ * wait for the background stages they need. Every stage is timed and the times are logged once all stages are done.
+ */
+final class StartupStages {
+
+    /** The logger for this class */
+    private static Logger logger = LogManager.getLogger(StartupStages.class);
+
+    /** The time the start-up began */
+    private final long startTime = System.currentTimeMillis();
+
+    /** Runs the background stages */
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private int count = 0;
+
+        @Override
+        public synchronized Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "Datavyu startup " + (++count));
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** The background stages by name, in the order they were started */
+    private final Map<String, Future<?>> background = new LinkedHashMap<String, Future<?>>();
+
+    /** The stages that are done, in the order they finished */
+    private final List<Time> times = new ArrayList<Time>();
+
+    /**
+     * The time a stage took.
+     */
+    private static final class Time {
+
+        /** The name of the stage */
+        final String name;
+
+        /** The thread the stage ran on */
+        final String thread;
+
+        /** The milliseconds from the start-up until the stage began */
+        final long begin;
+
+        /** The milliseconds from the start-up until the stage was done */
+        final long end;
+
+        Time(final String name, final String thread, final long begin, final long end) {
+            this.name = name;
+            this.thread = thread;
+            this.begin = begin;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Starts a stage on a background thread.
+     *
+     * @param name  The name of the stage.
+     * @param stage The stage.
+     * @param <T>   The type of the result of the stage.
+     * @return The result of the stage.
+     */
+    synchronized <T> Future<T> start(final String name, final Callable<T> stage) {
+        Future<T> future = executor.submit(() -> timed(name, stage));
+        background.put(name, future);
+        return future;
+    }
+
+    /**
+     * Runs a stage on the calling thread.
+     *
+     * @param name  The name of the stage.
+     * @param stage The stage.
+     */
+    void run(final String name, final Runnable stage) {
+        try {
+            timed(name, () -> {
+                stage.run();
+                return null;
+            });
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Exception e) {
+            // Runnables only throw unchecked exceptions.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits for a background stage. Its failure is logged, it is up to the following stages to cope without its
+     * result.
+     *
+     * @param name The name of the stage.
+     * @param <T>  The type of the result of the stage.
+     * @return The result of the stage or null if it failed or was not started.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T await(final String name) {
+        Future<?> future;
+        synchronized (this) {
+            future = background.get(name);
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            return (T) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.error("Startup stage " + name + " failed. Error: ", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Logs the times of the stages once the background stages are done. No stage can be started afterwards.
+     */
+    void finish() {
+        final List<String> names;
+        synchronized (this) {
+            names = new ArrayList<String>(background.keySet());
+        }
+        executor.execute(() -> {
+            for (String name : names) {
+                await(name);
+            }
+            logger.info(getReport());
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * @return The time of every stage that is done, in the order they finished, and the total time.
+     */
+    synchronized String getReport() {
+        StringBuilder sb = new StringBuilder("Started Datavyu in ");
+        long total = 0;
+        for (Time time : times) {
+            total = Math.max(total, time.end);
+        }
+        sb.append(total).append(" ms");
+        for (Time time : times) {
+            sb.append(String.format("%n  %-20s %6d ms (%d - %d ms on %s)", time.name, time.end - time.begin,
+                    time.begin, time.end, time.thread));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs a stage and keeps its time.
+     */
+    private <T> T timed(final String name, final Callable<T> stage) throws Exception {
+        long begin = System.currentTimeMillis() - startTime;
+        try {
+            return stage.call();
+        } finally {
+            long end = System.currentTimeMillis() - startTime;
+            synchronized (this) {
+                times.add(new Time(name, Thread.currentThread().getName(), begin, end));
+            }
+            logger.debug("Startup stage " + name + " done in " + (end - begin) + " ms");
+        }
+    }
+}
@@ -19,7 +19,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
 import org.datavyu.controllers.project.ProjectController;
-import org.datavyu.models.db.UserWarningException;
 import org.datavyu.util.FileFilters.OpfFilter;
 import org.datavyu.util.FileFilters.ShapaFilter;
 
@@ -28,11 +27,24 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Periodically saves the open project to a temporary file.
+ *
+ * The timer fires on the Event Dispatch Thread, where only a snapshot of the project is taken. The snapshot is written
+ * to disk on a background thread and then renamed over the previous autosave file, so an autosave file is always
+ * complete. A project that journals its changes (see {@link ChangeJournalFile}) only needs its journal forced to
+ * disk. A tick is skipped while the previous autosave is still being written.
+ */
 public class AutoSaveController implements ActionListener {
 
     /** Logger for this class */
-    private static Logger logger = LogManager.getLogger(DeleteColumnController.class);
+    private static Logger logger = LogManager.getLogger(AutoSaveController.class);
 
     /** Timer for this class */
     private static Timer timer;
@@ -40,6 +52,16 @@ public class AutoSaveController implements ActionListener {
     /** File to auto save */
     private static File file;
 
+    /** Thread that writes the autosave files */
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Datavyu autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** True while an autosave is being written */
+    private static final AtomicBoolean saving = new AtomicBoolean(false);
+
     private AutoSaveController() {}
 
     public static void setInterval(int interval) {
@@ -67,44 +89,121 @@ public class AutoSaveController implements ActionListener {
 
     @Override
     public void actionPerformed(ActionEvent evt) {
-        String baseName;
-        String ext;
+        if (!saving.compareAndSet(false, true)) {
+            logger.info("Previous autosave still running, skipping this one.");
+            return;
+        }
+
         try {
-            if (file != null) {
-                file.delete();
-            }
             ProjectController projController = Datavyu.getProjectController();
-            SaveController saveController = new SaveController();
-            if (projController.isNewProject() || (projController.getProjectName() == null)) {
-                baseName = "~noname_";
-                ext = ".opf";
-                file = File.createTempFile(baseName, ext);
-                saveController.saveProject(file, projController.getProject(),
-                        projController.getDataStore(), false);
+            long start = System.currentTimeMillis();
+            ChangeJournalFile journal = projController.getJournal();
+            if (journal != null) {
+                // The journal holds every change since the project was saved, it just has to reach the disk.
+                syncInBackground(journal, start);
+            } else if (projController.isNewProject() || (projController.getProjectName() == null)) {
+                File target = getAutoSaveFile("~noname_", ".opf");
+                ProjectSnapshot snapshot = ProjectSnapshot.of(projController.getProject(),
+                        projController.getDataStore());
+                writeInBackground(target, start, temp -> new SaveController().saveProject(temp, snapshot));
             } else {
                 if ((projController.getLastSaveOption() instanceof ShapaFilter)
                         || (projController.getLastSaveOption()
                         instanceof OpfFilter)) {
-                    baseName = "~" + projController.getProjectName() + "_";
-                    ext = ".opf";
-                    file = File.createTempFile(baseName, ext);
-                    saveController.saveProject(file, projController.getProject(),
-                            projController.getDataStore(), false);
+                    File target = getAutoSaveFile("~" + projController.getProjectName() + "_", ".opf");
+                    ProjectSnapshot snapshot = ProjectSnapshot.of(projController.getProject(),
+                            projController.getDataStore());
+                    writeInBackground(target, start, temp -> new SaveController().saveProject(temp, snapshot));
                     // Save content just as a database.
                 } else {
                     String filename = "~" + projController.getDatabaseFileName();
-                    baseName = FilenameUtils.getBaseName(filename) + "_";
-                    ext = "." + FilenameUtils.getExtension(filename);
-                    file = File.createTempFile(baseName, ext);
-                    saveController.saveDataStore(file, projController.getDataStore(), false);
+                    File target = getAutoSaveFile(FilenameUtils.getBaseName(filename) + "_",
+                            "." + FilenameUtils.getExtension(filename));
+                    DataStoreSnapshot snapshot = DataStoreSnapshot.of(projController.getDataStore());
+                    writeInBackground(target, start, temp -> new SaveController().saveDataStore(temp, snapshot));
                 }
             }
-        } catch (UserWarningException lee) {
-            logger.error("UserWarningException: Unable to autosave.", lee);
         } catch (IOException ioe) {
+            saving.set(false);
             logger.error("IOException: Unable to autosave.", ioe);
-        } finally {
-            file.deleteOnExit();
+        } catch (RuntimeException re) {
+            saving.set(false);
+            throw re;
         }
     }
+
+    /**
+     * Gets the file to autosave to, keeping the current one while the name of the project stays the same.
+     *
+     * @param baseName The prefix of the autosave file name.
+     * @param ext The extension of the autosave file.
+     * @return The file to autosave to.
+     * @throws IOException If unable to create a new autosave file.
+     */
+    private static File getAutoSaveFile(final String baseName, final String ext) throws IOException {
+        if (file != null && file.getName().startsWith(baseName) && file.getName().endsWith(ext)) {
+            return file;
+        }
+        if (file != null) {
+            file.delete();
+        }
+        file = File.createTempFile(baseName, ext);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Writes an autosave to a temporary file on the writer thread and then moves it into place.
+     *
+     * @param target The autosave file.
+     * @param start The time the snapshot was started, in milliseconds.
+     * @param save Writes the snapshot to the given file.
+     */
+    private static void writeInBackground(final File target, final long start, final SnapshotWriter save) {
+        long snapshotTime = System.currentTimeMillis() - start;
+        writer.execute(() -> {
+            File temp = new File(target.getPath() + ".tmp");
+            temp.deleteOnExit();
+            try {
+                save.write(temp);
+                long bytes = temp.length();
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logger.info("Autosaved " + bytes + " bytes to '" + target.getAbsolutePath() + "' in "
+                        + (System.currentTimeMillis() - start) + " ms (snapshot " + snapshotTime + " ms).");
+            } catch (IOException ioe) {
+                logger.error("IOException: Unable to autosave.", ioe);
+                temp.delete();
+            } finally {
+                saving.set(false);
+            }
+        });
+    }
+
+    /**
+     * Forces the journal of the project to disk on the writer thread.
+     *
+     * @param journal The journal of the project.
+     * @param start The time the autosave started, in milliseconds.
+     */
+    private static void syncInBackground(final ChangeJournalFile journal, final long start) {
+        writer.execute(() -> {
+            try {
+                journal.sync();
+                logger.info("Autosaved " + journal.getRecordCount() + " journaled changes in "
+                        + (System.currentTimeMillis() - start) + " ms.");
+            } catch (IOException ioe) {
+                logger.error("IOException: Unable to autosave.", ioe);
+            } finally {
+                saving.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot to a file.
+     */
+    private interface SnapshotWriter {
+        void write(File file) throws IOException;
+    }
 }
@@ -0,0 +1,174 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass tokenizer for the cell lines of a matrix variable in a CSV data store, e.g.
+ * <pre>00:00:01:000,00:00:02:500,(foo,bar\,baz,)</pre>
+ *
+ * The onset and offset are parsed straight to milliseconds and the arguments are split on structural commas while
+ * the escapes are removed. A backslash at the end of a line stands for a newline and the argument continues on the
+ * next line of the reader. The enclosing parentheses of the arguments are removed.
+ *
+ * The tokenizer reuses its buffers from one line to the next, the values of a line are only valid until the next
+ * call to {@link #tokenize(String)}.
+ */
+final class CellLineTokenizer {
+
+    /** The reader to pull continuation lines from. */
+    private final BufferedReader reader;
+
+    /** Buffer for the argument being tokenized. */
+    private final StringBuilder token = new StringBuilder();
+
+    /** The arguments of the last tokenized line. */
+    private final List<String> values = new ArrayList<>();
+
+    /** The onset of the last tokenized line in milliseconds. */
+    private long onset;
+
+    /** The offset of the last tokenized line in milliseconds. */
+    private long offset;
+
+    /**
+     * Constructor.
+     *
+     * @param reader The reader to pull continuation lines from.
+     */
+    CellLineTokenizer(final BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Tokenizes a cell line, reading continuation lines from the reader as needed.
+     *
+     * @param line The line to tokenize.
+     * @throws IOException If unable to read a continuation line.
+     * @throws NumberFormatException If the onset or the offset is not a timestamp.
+     */
+    void tokenize(final String line) throws IOException {
+        int onsetEnd = line.indexOf(',');
+        int offsetEnd = onsetEnd < 0 ? -1 : line.indexOf(',', onsetEnd + 1);
+        if (offsetEnd < 0) {
+            throw new NumberFormatException("Missing onset or offset in line: " + line);
+        }
+        onset = parseTimestamp(line, 0, onsetEnd);
+        offset = parseTimestamp(line, onsetEnd + 1, offsetEnd);
+
+        values.clear();
+        token.setLength(0);
+        String current = line;
+        int i = offsetEnd + 1;
+        while (i < current.length()) {
+            char c = current.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == current.length()) {
+                    // Escaped newline, the argument continues on the next line.
+                    token.append('\n');
+                    current = String.valueOf(reader.readLine());
+                    i = 0;
+                    continue;
+                }
+                token.append(current.charAt(i + 1));
+                i += 2;
+            } else if (c == ',') {
+                values.add(token.toString());
+                token.setLength(0);
+                i++;
+            } else {
+                token.append(c);
+                i++;
+            }
+        }
+        values.add(token.toString());
+
+        // Strip the parentheses around the arguments.
+        String first = values.get(0);
+        values.set(0, first.substring(Math.min(1, first.length())));
+        int last = values.size() - 1;
+        String end = values.get(last);
+        values.set(last, end.substring(0, Math.max(0, end.length() - 1)));
+    }
+
+    /**
+     * @return The onset of the last tokenized line in milliseconds.
+     */
+    long getOnset() {
+        return onset;
+    }
+
+    /**
+     * @return The offset of the last tokenized line in milliseconds.
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The arguments of the last tokenized line, without escapes and parentheses.
+     */
+    List<String> getValues() {
+        return values;
+    }
+
+    /**
+     * Parses a timestamp of the form HH:MM:SS:mmm, or a plain number of milliseconds, without creating substrings.
+     * Like {@link Long#parseLong(String)} on each part, every part may start with a sign.
+     *
+     * @param text  The text containing the timestamp.
+     * @param start The index of the first character of the timestamp.
+     * @param end   The index after the last character of the timestamp.
+     * @return The timestamp in milliseconds.
+     * @throws NumberFormatException If the text is not a timestamp.
+     */
+    static long parseTimestamp(final CharSequence text, final int start, final int end) {
+        // Separators seen so far, the total of the parts before the last separator and the current part with its sign.
+        int count = 0;
+        long total = 0;
+        long value = 0;
+        int sign = 1;
+        boolean signed = false;
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if ((c == '-' || c == '+') && !digits && !signed) {
+                sign = c == '-' ? -1 : 1;
+                signed = true;
+            } else if (c == ':' && digits && count < 3) {
+                // Hours and minutes are in units of 60 of the next part, seconds in units of 1000 milliseconds.
+                total = (total + sign * value) * (count < 2 ? 60 : 1000);
+                count++;
+                value = 0;
+                sign = 1;
+                signed = false;
+                digits = false;
+            } else {
+                throw new NumberFormatException("Invalid timestamp: " + text.subSequence(start, end));
+            }
+        }
+        if (!digits || (count != 0 && count != 3)) {
+            throw new NumberFormatException("Invalid timestamp: " + text.subSequence(start, end));
+        }
+        return total + sign * value;
+    }
+}
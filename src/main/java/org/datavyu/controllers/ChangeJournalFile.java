@@ -0,0 +1,560 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.models.db.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the changes made to a data store since its project file was last saved.
+ *
+ * The journal is a sidecar file next to the project file (e.g. 'study.opf.journal'). Every change is appended as one
+ * line of tab separated fields. The records are handed to the operating system shortly after they are written, in one
+ * go for all the changes made in the meantime, so that a script changing many cells doesn't make as many writes, and
+ * the changes survive a crash of Datavyu but for the last fraction of a second. Saving the project compacts the journal into the project file and empties it. Opening a project that has a
+ * non empty journal means Datavyu did not exit cleanly, and the journal is replayed on top of the project file.
+ *
+ * Cells are identified by the name of their variable and a key that does not change when cells are re-sorted. The cells
+ * of the project file are keyed by their position in the variable when the journal is opened, which is the order cells
+ * are saved and loaded in; cells created later are keyed in their CELL_ADD record.
+ */
+public final class ChangeJournalFile implements ChangeJournal, Closeable {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(ChangeJournalFile.class);
+
+    /** The identifier for the version of the journal format */
+    private static final String HEADER = "#journal 2";
+
+    /** The extension appended to the name of the project file */
+    private static final String EXTENSION = ".journal";
+
+    private static final String VARIABLE_ADD = "VAR_ADD";
+    private static final String VARIABLE_REMOVE = "VAR_REMOVE";
+    private static final String VARIABLE_RENAME = "VAR_RENAME";
+    private static final String ARGUMENT_ADD = "ARG_ADD";
+    private static final String ARGUMENT_MOVE = "ARG_MOVE";
+    private static final String ARGUMENT_RENAME = "ARG_RENAME";
+    private static final String ARGUMENT_REMOVE = "ARG_REMOVE";
+    private static final String CELL_ADD = "CELL_ADD";
+    private static final String CELL_REMOVE = "CELL_REMOVE";
+    private static final String CELL_TIMES = "TIMES";
+    private static final String CELL_VALUE = "VALUE";
+
+    /** Marks the values of a matrix cell in a CELL_ADD record */
+    private static final String MATRIX = "M";
+
+    /** Marks the value of a text or nominal cell in a CELL_ADD record */
+    private static final String SINGLE = "S";
+
+    /** Time in milliseconds the records are kept in memory before they are handed to the operating system */
+    private static final long FLUSH_DELAY = 250L;
+
+    /** Thread that hands the records of the journals to the operating system */
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Datavyu journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Prefix of the keys of the cells created after the project file was saved */
+    private static final String NEW_KEY_PREFIX = "n";
+
+    /** The journal file */
+    private final File file;
+
+    /** The data store the changes are made to */
+    private final DataStore dataStore;
+
+    /** The stream to the journal file */
+    private final FileOutputStream fileStream;
+
+    /** The writer for the records */
+    private final Writer writer;
+
+    /** The number of records written since the journal was emptied */
+    private int recordCount;
+
+    /** True once writing has failed, the journal is then no longer written */
+    private boolean failed;
+
+    /** True while records are waiting to be handed to the operating system */
+    private boolean flushPending;
+
+    /** True once the journal is closed */
+    private boolean closed;
+
+    /** The keys of the cells in the records */
+    private final Map<Cell, String> keys = new IdentityHashMap<Cell, String>();
+
+    /** The number of keys given to new cells */
+    private long newKeyCount;
+
+    /**
+     * Opens the journal of a project file.
+     *
+     * @param projectFile The project file.
+     * @param dataStore The data store as saved in or loaded from the project file.
+     * @param keepRecords True to keep the existing records, see {@link #replay()}; false to empty the journal.
+     * @throws IOException If unable to open the journal file.
+     */
+    public ChangeJournalFile(final File projectFile, final DataStore dataStore, final boolean keepRecords)
+            throws IOException {
+        file = journalFor(projectFile);
+        this.dataStore = dataStore;
+        for (Variable variable : dataStore.getAllVariables()) {
+            List<Cell> cells = variable.getCells();
+            for (int i = 0; i < cells.size(); i++) {
+                keys.put(cells.get(i), String.valueOf(i));
+            }
+        }
+
+        boolean append = keepRecords && HEADER.equals(readHeader(file));
+        fileStream = new FileOutputStream(file, append);
+        writer = new BufferedWriter(new OutputStreamWriter(fileStream, StandardCharsets.UTF_8));
+        if (!append) {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    /**
+     * @param projectFile The project file.
+     * @return The journal file of the project file.
+     */
+    public static File journalFor(final File projectFile) {
+        return new File(projectFile.getParentFile(), projectFile.getName() + EXTENSION);
+    }
+
+    /**
+     * @param journal The journal file.
+     * @return The first line of the journal, null if it is empty or does not exist.
+     * @throws IOException If unable to read the journal file.
+     */
+    private static String readHeader(final File journal) throws IOException {
+        if (!journal.isFile() || journal.length() == 0) {
+            return null;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal),
+                StandardCharsets.UTF_8));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return The number of records written since the journal was opened or emptied.
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Forces the records written so far to disk.
+     *
+     * @throws IOException If unable to write to the journal file.
+     */
+    public synchronized void sync() throws IOException {
+        writer.flush();
+        fileStream.getFD().sync();
+    }
+
+    /**
+     * Closes the journal, keeping its records.
+     *
+     * @throws IOException If unable to close the journal file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        writer.close();
+    }
+
+    /**
+     * Closes and deletes the journal, discarding its records.
+     */
+    public synchronized void discard() {
+        closed = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Unable to close journal. Error: ", e);
+        }
+        if (!file.delete() && file.exists()) {
+            logger.error("Unable to delete journal '" + file.getAbsolutePath() + "'.");
+        }
+    }
+
+    @Override
+    public void variableAdded(final Variable variable) {
+        Argument root = variable.getRootNode();
+        List<String> fields = new ArrayList<String>();
+        fields.add(VARIABLE_ADD);
+        fields.add(variable.getName());
+        fields.add(root.type.name());
+        if (root.type == Argument.Type.MATRIX) {
+            for (Argument argument : root.childArguments) {
+                fields.add(argument.name);
+                fields.add(argument.type.name());
+            }
+        }
+        write(fields.toArray(new String[fields.size()]));
+
+        // A variable that is added back (undo) comes with its cells.
+        for (Cell cell : variable.getCells()) {
+            cellAdded(variable, cell);
+        }
+    }
+
+    @Override
+    public synchronized void variableRemoved(final Variable variable) {
+        for (Cell cell : variable.getCells()) {
+            keys.remove(cell);
+        }
+        write(VARIABLE_REMOVE, variable.getName());
+    }
+
+    @Override
+    public void variableRenamed(final String oldName, final String newName) {
+        write(VARIABLE_RENAME, oldName, newName);
+    }
+
+    @Override
+    public void argumentAdded(final Variable variable, final Argument argument) {
+        write(ARGUMENT_ADD, variable.getName(), argument.name, argument.type.name());
+    }
+
+    @Override
+    public void argumentMoved(final Variable variable, final int oldIndex, final int newIndex) {
+        write(ARGUMENT_MOVE, variable.getName(), String.valueOf(oldIndex), String.valueOf(newIndex));
+    }
+
+    @Override
+    public void argumentRenamed(final Variable variable, final int index, final String oldName, final String newName) {
+        write(ARGUMENT_RENAME, variable.getName(), String.valueOf(index), newName);
+    }
+
+    @Override
+    public void argumentRemoved(final Variable variable, final String name) {
+        write(ARGUMENT_REMOVE, variable.getName(), name);
+    }
+
+    @Override
+    public synchronized void cellAdded(final Variable variable, final Cell cell) {
+        String key = NEW_KEY_PREFIX + (++newKeyCount);
+        keys.put(cell, key);
+        List<String> fields = new ArrayList<String>();
+        fields.add(CELL_ADD);
+        fields.add(variable.getName());
+        fields.add(key);
+        fields.add(String.valueOf(cell.getOnset()));
+        fields.add(String.valueOf(cell.getOffset()));
+        CellValue value = cell.getCellValue();
+        if (value instanceof MatrixCellValue) {
+            fields.add(MATRIX);
+            for (CellValue argument : ((MatrixCellValue) value).getArguments()) {
+                fields.add(argument.toString());
+            }
+        } else {
+            fields.add(SINGLE);
+            fields.add(value.toString());
+        }
+        write(fields.toArray(new String[fields.size()]));
+    }
+
+    @Override
+    public synchronized void cellRemoved(final Variable variable, final Cell cell) {
+        String key = keys.remove(cell);
+        if (key != null) {
+            write(CELL_REMOVE, variable.getName(), key);
+        }
+    }
+
+    @Override
+    public synchronized void cellTimesChanged(final Cell cell) {
+        String key = keys.get(cell);
+        if (key != null) {
+            write(CELL_TIMES, cell.getVariable().getName(), key,
+                    String.valueOf(cell.getOnset()), String.valueOf(cell.getOffset()));
+        }
+    }
+
+    @Override
+    public synchronized void cellValueChanged(final Cell cell, final int argumentIndex, final String value) {
+        String key = keys.get(cell);
+        if (key != null) {
+            write(CELL_VALUE, cell.getVariable().getName(), key, String.valueOf(argumentIndex), value);
+        }
+    }
+
+    /**
+     * Appends a record to the journal.
+     *
+     * @param fields The fields of the record.
+     */
+    private synchronized void write(final String... fields) {
+        if (failed) {
+            return;
+        }
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    writer.write('\t');
+                }
+                writer.write(escape(fields[i]));
+            }
+            writer.write('\n');
+            recordCount++;
+            if (!flushPending) {
+                flushPending = true;
+                flusher.schedule(this::flush, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Unable to write to journal '" + file.getAbsolutePath() + "'. Error: ", e);
+        }
+    }
+
+    /**
+     * Hands the records written since the last flush to the operating system.
+     */
+    private synchronized void flush() {
+        flushPending = false;
+        if (closed || failed) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Unable to write to journal '" + file.getAbsolutePath() + "'. Error: ", e);
+        }
+    }
+
+    /**
+     * Replays the records kept when the journal was opened on top of the data store it was opened with, i.e. the data
+     * store loaded from the project file. The journal must not be set on the data store yet; once it is, the changes
+     * are appended to the replayed records.
+     *
+     * @return The number of changes replayed, 0 if the project has no journal.
+     * @throws IOException If unable to read the journal file.
+     */
+    public synchronized int replay() throws IOException {
+        writer.flush();
+        if (!HEADER.equals(readHeader(file))) {
+            return 0;
+        }
+
+        // The cells by variable and key, for the cells of the project file and those created by the records.
+        Map<Variable, Map<String, Cell>> cells = new IdentityHashMap<Variable, Map<String, Cell>>();
+        for (Map.Entry<Cell, String> entry : keys.entrySet()) {
+            cellsOf(cells, entry.getKey().getVariable()).put(entry.getValue(), entry.getKey());
+        }
+
+        logger.info("Replaying journal '" + file.getAbsolutePath() + "'.");
+        int replayed = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8));
+        try {
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                try {
+                    if (replay(split(line), cells)) {
+                        replayed++;
+                    } else {
+                        logger.error("Unable to replay journal record: " + line);
+                    }
+                } catch (RuntimeException | UserWarningException e) {
+                    logger.error("Unable to replay journal record: " + line + ". Error: ", e);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        logger.info("Replayed " + replayed + " changes.");
+        return replayed;
+    }
+
+    /**
+     * @param cells The cells by variable and key.
+     * @param variable The variable.
+     * @return The cells of the variable by key.
+     */
+    private static Map<String, Cell> cellsOf(final Map<Variable, Map<String, Cell>> cells, final Variable variable) {
+        Map<String, Cell> result = cells.get(variable);
+        if (result == null) {
+            result = new HashMap<String, Cell>();
+            cells.put(variable, result);
+        }
+        return result;
+    }
+
+    /**
+     * Applies a single record to the data store.
+     *
+     * @param fields The fields of the record.
+     * @param cells The cells by variable and key, updated for the cells created and removed.
+     * @return True if the record was applied, false if it does not match the data store.
+     * @throws UserWarningException If unable to add or rename a variable.
+     */
+    private boolean replay(final String[] fields, final Map<Variable, Map<String, Cell>> cells)
+            throws UserWarningException {
+        String op = fields[0];
+        if (VARIABLE_ADD.equals(op)) {
+            Variable variable = dataStore.createVariable(fields[1], Argument.Type.valueOf(fields[2]), true);
+            if (variable.getRootNode().type == Argument.Type.MATRIX) {
+                for (Argument argument : new ArrayList<Argument>(variable.getRootNode().childArguments)) {
+                    variable.removeArgument(argument.name);
+                }
+                for (int i = 3; i + 1 < fields.length; i += 2) {
+                    variable.addArgument(Argument.Type.valueOf(fields[i + 1])).name = fields[i];
+                }
+            }
+            return true;
+        }
+
+        Variable variable = dataStore.getVariable(fields[1]);
+        if (variable == null) {
+            return false;
+        }
+        if (VARIABLE_REMOVE.equals(op)) {
+            for (Cell cell : variable.getCells()) {
+                keys.remove(cell);
+            }
+            cells.remove(variable);
+            dataStore.removeVariable(variable);
+        } else if (VARIABLE_RENAME.equals(op)) {
+            variable.setName(fields[2], true);
+        } else if (ARGUMENT_ADD.equals(op)) {
+            variable.addArgument(Argument.Type.valueOf(fields[3])).name = fields[2];
+        } else if (ARGUMENT_MOVE.equals(op)) {
+            variable.moveArgument(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+        } else if (ARGUMENT_RENAME.equals(op)) {
+            Argument root = variable.getRootNode();
+            root.childArguments.get(Integer.parseInt(fields[2])).name = fields[3];
+            variable.setRootNode(root);
+        } else if (ARGUMENT_REMOVE.equals(op)) {
+            variable.removeArgument(fields[2]);
+        } else if (CELL_ADD.equals(op)) {
+            Cell cell = variable.createCell();
+            String key = fields[2];
+            keys.put(cell, key);
+            cellsOf(cells, variable).put(key, cell);
+            if (key.startsWith(NEW_KEY_PREFIX)) {
+                newKeyCount = Math.max(newKeyCount, Long.parseLong(key.substring(NEW_KEY_PREFIX.length())));
+            }
+            cell.setOnset(Long.parseLong(fields[3]));
+            cell.setOffset(Long.parseLong(fields[4]));
+            if (MATRIX.equals(fields[5])) {
+                List<CellValue> arguments = ((MatrixCellValue) cell.getCellValue()).getArguments();
+                for (int i = 6; i < fields.length && i - 6 < arguments.size(); i++) {
+                    arguments.get(i - 6).set(fields[i]);
+                }
+            } else {
+                cell.getCellValue().set(fields[6]);
+            }
+        } else {
+            Cell cell = cellsOf(cells, variable).get(fields[2]);
+            if (cell == null) {
+                return false;
+            }
+            if (CELL_REMOVE.equals(op)) {
+                keys.remove(cell);
+                cells.get(variable).remove(fields[2]);
+                variable.removeCell(cell);
+            } else if (CELL_TIMES.equals(op)) {
+                cell.setOnset(Long.parseLong(fields[3]));
+                cell.setOffset(Long.parseLong(fields[4]));
+            } else if (CELL_VALUE.equals(op)) {
+                int argumentIndex = Integer.parseInt(fields[3]);
+                if (argumentIndex < 0) {
+                    cell.getCellValue().set(fields[4]);
+                } else {
+                    ((MatrixCellValue) cell.getCellValue()).getArguments().get(argumentIndex).set(fields[4]);
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Escapes the field separators and line breaks in a field.
+     */
+    private static String escape(final String field) {
+        if (field == null) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Splits a record into its unescaped fields.
+     */
+    private static String[] split(final String line) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                field.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and primitives of the binary columnar data store format, stored in project archives next to the CSV
+ * data store.
+ *
+ * <pre>
+ * data store := MAGIC VERSION varint(#variables) variable*
+ * variable   := string(name) string(type) boolean(hidden) varint(#arguments) (string(name) string(type))*
+ *               varint(#cells) column(onsets) column(offsets) varint(#value columns) values*
+ * column     := varlong(zigzag(first)) varlong(zigzag(delta))*
+ * values     := varint(#dictionary) string* varint(dictionary index)*
+ * </pre>
+ *
+ * Onsets and offsets are delta encoded from one cell to the next. Every argument of a matrix variable, or the single
+ * value of a text or nominal variable, is a column of indices into a dictionary of the distinct values of the
+ * column.
+ *
+ * Projects can also be saved with every variable in its own zip entry, so that the variables are encoded and decoded
+ * in parallel:
+ *
+ * <pre>
+ * variables entry := MAGIC VERSION varint(#variables)
+ * variable entry  := deflate(variable)
+ * </pre>
+ *
+ * The variable entries are compressed by the writer rather than by the zip stream, and stored as is in the archive.
+ */
+final class ColumnarFormat {
+
+    /** The name of the zip entry holding the columnar data store in a project archive */
+    static final String ENTRY = "db-columnar";
+
+    /** The name of the zip entry listing the variables saved one per entry, see {@link #variableEntry(int)} */
+    static final String VARIABLES_ENTRY = "db-variables";
+
+    /** Identifies a columnar data store */
+    static final int MAGIC = 0x4456434f; // "DVCO"
+
+    /** The version of the format written */
+    static final int VERSION = 1;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * @param index The index of a variable in the data store.
+     * @return The name of the zip entry holding the variable.
+     */
+    static String variableEntry(final int index) {
+        return VARIABLES_ENTRY + "/" + index;
+    }
+
+    static void writeVarLong(final DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number.");
+    }
+
+    static void writeVarInt(final DataOutput out, final int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static int readVarInt(final DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Number out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Writes a column of longs, each as the zigzag encoded difference with the previous one.
+     */
+    static void writeDeltas(final DataOutput out, final long[] values) throws IOException {
+        long previous = 0;
+        for (long value : values) {
+            long delta = value - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            previous = value;
+        }
+    }
+
+    static long[] readDeltas(final DataInput in, final int count) throws IOException {
+        long[] values = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = readVarLong(in);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    /**
+     * Writes a string as UTF-8, unlike {@link DataOutput#writeUTF(String)} there is no limit on the length.
+     */
+    static void writeString(final DataOutput out, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
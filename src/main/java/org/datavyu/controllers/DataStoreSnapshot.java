@@ -0,0 +1,136 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of the content of a data store that can be serialized away from the Event Dispatch Thread.
+ *
+ * Taking a snapshot only copies the onsets, offsets and the (immutable) value strings of the cells; all the
+ * formatting and escaping is left to the code that writes the snapshot.
+ */
+final class DataStoreSnapshot {
+
+    /** The variables of the data store, in order. */
+    final List<VariableSnapshot> variables;
+
+    private DataStoreSnapshot(final List<VariableSnapshot> variables) {
+        this.variables = Collections.unmodifiableList(variables);
+    }
+
+    /**
+     * Takes a snapshot of a data store. Must be called on the thread that modifies the data store, i.e. the EDT.
+     *
+     * @param dataStore The data store to copy.
+     * @return The snapshot of the data store.
+     */
+    static DataStoreSnapshot of(final DataStore dataStore) {
+        List<VariableSnapshot> variables = new ArrayList<VariableSnapshot>();
+        for (Variable variable : dataStore.getAllVariables()) {
+            variables.add(new VariableSnapshot(variable));
+        }
+        return new DataStoreSnapshot(variables);
+    }
+
+    /**
+     * Copy of a variable and its cells.
+     */
+    static final class VariableSnapshot {
+
+        final String name;
+        final Argument.Type type;
+        final boolean hidden;
+
+        /** Names of the arguments of a matrix variable, empty for other variables. */
+        final String[] argumentNames;
+
+        /** Types of the arguments of a matrix variable, empty for other variables. */
+        final Argument.Type[] argumentTypes;
+
+        /** Onsets of the cells in milliseconds. */
+        final long[] onsets;
+
+        /** Offsets of the cells in milliseconds. */
+        final long[] offsets;
+
+        /** Whether the value of each cell is a matrix, i.e. is enclosed in parentheses. */
+        final boolean[] matrix;
+
+        /** The unescaped values of each cell, one per argument for matrix values. */
+        final String[][] values;
+
+        /**
+         * Copy of a variable read back from a saved data store.
+         */
+        VariableSnapshot(final String name, final Argument.Type type, final boolean hidden,
+                         final String[] argumentNames, final Argument.Type[] argumentTypes,
+                         final long[] onsets, final long[] offsets, final boolean[] matrix, final String[][] values) {
+            this.name = name;
+            this.type = type;
+            this.hidden = hidden;
+            this.argumentNames = argumentNames;
+            this.argumentTypes = argumentTypes;
+            this.onsets = onsets;
+            this.offsets = offsets;
+            this.matrix = matrix;
+            this.values = values;
+        }
+
+        private VariableSnapshot(final Variable variable) {
+            name = variable.getName();
+            type = variable.getRootNode().type;
+            hidden = variable.isHidden();
+
+            List<Argument> arguments = type == Argument.Type.MATRIX
+                    ? variable.getRootNode().childArguments : Collections.<Argument>emptyList();
+            argumentNames = new String[arguments.size()];
+            argumentTypes = new Argument.Type[arguments.size()];
+            for (int i = 0; i < arguments.size(); i++) {
+                argumentNames[i] = arguments.get(i).name;
+                argumentTypes[i] = arguments.get(i).type;
+            }
+
+            List<Cell> cells = variable.getCells();
+            int n = cells.size();
+            onsets = new long[n];
+            offsets = new long[n];
+            matrix = new boolean[n];
+            values = new String[n][];
+            for (int i = 0; i < n; i++) {
+                Cell cell = cells.get(i);
+                onsets[i] = cell.getOnset();
+                offsets[i] = cell.getOffset();
+
+                CellValue value = cell.getCellValue();
+                if (value instanceof MatrixCellValue) {
+                    List<CellValue> cellArguments = ((MatrixCellValue) value).getArguments();
+                    String[] cellValues = new String[cellArguments.size()];
+                    for (int j = 0; j < cellValues.length; j++) {
+                        cellValues[j] = cellArguments.get(j).toString();
+                    }
+                    matrix[i] = true;
+                    values[i] = cellValues;
+                } else {
+                    values[i] = new String[]{value.toString()};
+                }
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
 import org.datavyu.Datavyu.Platform;
 import org.datavyu.models.db.*;
+import org.datavyu.util.ConfigProperties;
 import org.datavyu.util.MacOS;
 import org.datavyu.util.StringUtils;
 import org.datavyu.util.WindowsOS;
@@ -48,7 +49,7 @@ public final class ExportDatabaseFileController {
     private static Logger logger = LogManager.getLogger(ExportDatabaseFileController.class);
 
     /**
-     * Saves the database to the specified destination in a CSV format.
+     * Saves the database to the specified destination in a CSV format, with one row per frame of the video.
      *
      * @param outFile The path of the file to use when writing to disk.
      * @param dataStore The data store to save as a CSV file.
@@ -56,175 +57,43 @@ public final class ExportDatabaseFileController {
      *                              disk (usually because of permissions errors).
      */
     public void exportByFrame(final String outFile, final DataStore dataStore) throws UserWarningException {
-        try {
-            FileOutputStream fos = new FileOutputStream(outFile);
-            PrintStream ps = new PrintStream(fos);
-
-            List<Variable> variables = dataStore.getAllVariables();
-
-            ArrayList<List<Cell>> cellCache = new ArrayList<>();
-            int[] currentIndex = new int[variables.size()];
-
-            // Get all of the cells from the DB and store them locally
-            for (Variable v : variables) {
-                cellCache.add(v.getCellsTemporally());
-            }
-
-            // Get first and last time point by sweeping over the cells
-            long firstTime = Long.MAX_VALUE;
-            long lastTime = 0;
-
-            for (int i = 0; i < variables.size(); i++) {
-                List<Cell> cells = cellCache.get(i);
-                if (cells.isEmpty()) {
-                    continue;
-                }
-                if (cells.get(0).getOnset() < firstTime) {
-                    firstTime = cells.get(0).getOnset();
-                }
-                if (cells.get(0).getOffset() < firstTime) {
-                    firstTime = cells.get(0).getOffset();
-                }
-
-                if (cells.get(cells.size() - 1).getOnset() > lastTime) {
-                    lastTime = cells.get(cells.size() - 1).getOnset();
-                }
-                if (cells.get(cells.size() - 1).getOffset() > lastTime) {
-                    lastTime = cells.get(cells.size() - 1).getOffset();
-                }
-            }
-
-            // Now that we have the first and last time, we loop over it using
-            // playback model's frameRate as step size. Fallback is 30.0
-            double frameRate;
-            try{
-                frameRate = Datavyu.getVideoController().getFrameRateController().getFrameRate();
-                if (frameRate <= 1.0) {
-                    throw new IllegalArgumentException("Invalid frame rate");
-                }
-            } catch(IllegalArgumentException e) {
-                frameRate = 30.0;
-                String defaultOption = "Cancel";
-                String alternativeOption = "OK";
-                String[] options = Datavyu.getPlatform() == Platform.MAC ? MacOS
-                    .getOptions(defaultOption, alternativeOption) :
-                    WindowsOS.getOptions(defaultOption, alternativeOption);
-                int selectedOption = JOptionPane.showOptionDialog(Datavyu.getView().getComponent(),
-                    "Unable to get frame rate. Would you like to export with a 30 frame per second?",
-                    e.getMessage(),
-                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE,
-                    null, options, defaultOption);
-                boolean confirmation = (Datavyu.getPlatform() == Platform.MAC) ? (selectedOption == 1) : (selectedOption == 0);
-                if (!confirmation) { return; }
-                logger.error("Unable to get frame rate. Assuming value: " + frameRate);
-            }
-            long current_time = firstTime;
-
-            // Print header
-            String header = "nFrame,time,";
-            for (Variable v : variables) {
-
-                header += v.getName() + ".ordinal";
-                header += "," + v.getName() + ".onset";
-                header += "," + v.getName() + ".offset";
+        double frameRate = getExportFrameRate();
+        if (frameRate > 0) {
+            exportByFrame(outFile, new FrameExporter(dataStore), frameRate, null);
+        }
+    }
 
-                // Test if the variable is a matrix. If it is, then we have to print out all of its arguments.
-                if (v.getRootNode().type == Argument.Type.MATRIX) {
-                    for (Argument a : v.getRootNode().childArguments) {
-                        header += "," + v.getName() + "." + a.name;
-                    }
-                } else {
-                    header += "," + v.getName() + ".value";
-                }
-                header += ',';
+    /**
+     * Saves a copy of the database to the specified destination in a CSV format, with one row per frame of the
+     * video. Only reads the copy made by the exporter, so can be called away from the EDT. The frames are rendered in
+     * parallel on machines with several cores, unless turned off in the configuration.
+     *
+     * @param outFile   The path of the file to use when writing to disk.
+     * @param exporter  The copy of the data store to save as a CSV file.
+     * @param frameRate The number of frames per second.
+     * @param progress  Receives the progress of the export and can cancel it, may be null.
+     * @return False if the export was cancelled, in which case the file is deleted, true otherwise.
+     * @throws UserWarningException When unable to save the database as a CSV to
+     *                              disk (usually because of permissions errors).
+     */
+    public boolean exportByFrame(final String outFile, final FrameExporter exporter, final double frameRate,
+                                 final FrameExporter.Progress progress) throws UserWarningException {
+        try {
+            boolean completed;
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile)), 1 << 16);
+            try {
+                boolean parallel = ConfigProperties.getInstance().getParallelFrameExport()
+                        && Runtime.getRuntime().availableProcessors() > 1;
+                completed = parallel
+                        ? exporter.writeParallel(out, frameRate, progress)
+                        : exporter.write(out, frameRate, progress);
+            } finally {
+                out.close();
             }
-            header = header.trim();
-
-            // Write header
-            ps.println(header);
-
-            int nFrame = 1;
-            while (current_time <= lastTime + 1000.0 / frameRate) {
-                // Update the currentIndex list
-                for (int i = 0; i < variables.size(); i++) {
-                    if (!cellCache.get(i).isEmpty()) {
-                        Cell c = cellCache.get(i).get(currentIndex[i]);
-                        if (current_time > c.getOffset()) {
-
-                            for (int j = currentIndex[i]; j < cellCache.get(i).size(); j++) {
-                                Cell nextCell = cellCache.get(i).get(j);
-                                if (current_time >= nextCell.getOnset()) {
-                                    currentIndex[i] = j;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                // Now print each frame as we loop through it
-                String row = Integer.toString(nFrame) + "," + Long.toString(current_time) + ",";
-                for (int i = 0; i < variables.size(); i++) {
-                    if (!cellCache.get(i).isEmpty()) {
-
-                        Cell cell = cellCache.get(i).get(currentIndex[i]);
-
-                        if ((cell.getOnset() <= current_time && cell.getOffset() >= current_time) ||
-                                (Math.abs(cell.getOffset() - cell.getOnset()) < 1000.0 / frameRate &&
-                                        cell.getOnset() > current_time - 1000.0 / frameRate + 1 &&
-                                        current_time >= cell.getOnset() &&
-                                        cell.getOnset() < current_time + 1000.0 / frameRate - 1)) {
-
-                            CellValue cellValue = cell.getCellValue();
-
-                            // Print ordinal, onset, offset
-                            row += Integer.toString(currentIndex[i] + 1) + "," +
-                                    Long.toString(cell.getOnset()) + "," +
-                                    Long.toString(cell.getOffset());
-
-
-                            if (cellValue instanceof MatrixCellValue) {
-                                // Then this is a matrix cellValue, get the sub arguments
-                                MatrixCellValue mv = (MatrixCellValue) cellValue;
-                                for (CellValue v : mv.getArguments()) {
-                                    // Loop over each cellValue and print it with a comma separator
-                                    row += "," + StringUtils.escapeCSVQuotes(v.toString());
-                                }
-                            } else {
-                                // Otherwise just print the single argument
-                                row += "," + StringUtils.escapeCSVQuotes(cell.getCellValue().toString());
-                            }
-                            row += ",";
-
-                        } else {
-                            // Figure out what to print if we don't have a cell here
-                            CellValue cellValue = cell.getCellValue();
-
-                            // Print ordinal, onset, offset
-                            row += ",,";
-
-
-                            if (cellValue instanceof MatrixCellValue) {
-                                // Then this is a matrix cellValue, get the sub arguments
-                                MatrixCellValue mv = (MatrixCellValue) cellValue;
-                                for (CellValue v : mv.getArguments()) {
-                                    // Loop over each cellValue and print it with a comma separator
-                                    row += ",";
-                                }
-                            } else {
-                                // Otherwise just print the single argument
-                                row += ",";
-                            }
-                            row += ",";
-                        }
-                    }
-
-                }
-                ps.println(row);
-                current_time += 1000.0 / frameRate;
-                ++nFrame;
+            if (!completed) {
+                new File(outFile).delete();
             }
-
-            fos.close();
+            return completed;
         } catch (IOException ie) {
             logger.error("Export failed. Error: ", ie);
             ResourceMap rMap = Application.getInstance(Datavyu.class).getContext().getResourceMap(Datavyu.class);
@@ -232,6 +101,37 @@ public final class ExportDatabaseFileController {
         }
     }
 
+    /**
+     * Gets the frame rate of the video to export by frame, falling back to 30 frames per second once the user agreed.
+     *
+     * @return The number of frames per second, or 0 if the user cancelled the export.
+     */
+    public double getExportFrameRate() {
+        double frameRate;
+        try{
+            frameRate = Datavyu.getVideoController().getFrameRateController().getFrameRate();
+            if (frameRate <= 1.0) {
+                throw new IllegalArgumentException("Invalid frame rate");
+            }
+        } catch(IllegalArgumentException e) {
+            frameRate = 30.0;
+            String defaultOption = "Cancel";
+            String alternativeOption = "OK";
+            String[] options = Datavyu.getPlatform() == Platform.MAC ? MacOS
+                .getOptions(defaultOption, alternativeOption) :
+                WindowsOS.getOptions(defaultOption, alternativeOption);
+            int selectedOption = JOptionPane.showOptionDialog(Datavyu.getView().getComponent(),
+                "Unable to get frame rate. Would you like to export with a 30 frame per second?",
+                e.getMessage(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE,
+                null, options, defaultOption);
+            boolean confirmation = (Datavyu.getPlatform() == Platform.MAC) ? (selectedOption == 1) : (selectedOption == 0);
+            if (!confirmation) { return 0; }
+            logger.error("Unable to get frame rate. Assuming value: " + frameRate);
+        }
+        return frameRate;
+    }
+
     public void exportAsCells(final String outFile, final DataStore ds)
             throws UserWarningException {
         try {
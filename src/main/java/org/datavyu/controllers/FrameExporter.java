@@ -0,0 +1,386 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.*;
+import org.datavyu.util.StringUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Writes a data store as CSV with one row per video frame, giving for each variable the cell covering the frame.
+ *
+ * Creating the exporter copies the cells of the data store, already formatted as CSV, so it must be done on the thread
+ * that modifies the data store (the EDT). Writing the rows only reads that copy and can then be done on any thread.
+ */
+public final class FrameExporter {
+
+    /**
+     * Receives the progress of an export.
+     */
+    public interface Progress {
+
+        /**
+         * @param frames    The number of frames written so far.
+         * @param numFrames The total number of frames to write.
+         * @return True to cancel the export.
+         */
+        boolean update(long frames, long numFrames);
+    }
+
+    /** Number of frames rendered at once, and written between two progress updates */
+    private static final int CHUNK_FRAMES = 1000;
+
+    private static final String NEW_LINE = System.lineSeparator();
+
+    /** The header row */
+    private final String header;
+
+    /** The cells of each variable, in temporal order */
+    private final Column[] columns;
+
+    /** The earliest onset or offset of the data store */
+    private final long firstTime;
+
+    /** The latest onset or offset of the data store */
+    private final long lastTime;
+
+    /**
+     * Creates an exporter with a copy of the cells of a data store.
+     *
+     * @param dataStore The data store to export.
+     */
+    public FrameExporter(final DataStore dataStore) {
+        List<Variable> variables = dataStore.getAllVariables();
+        StringBuilder headerSB = new StringBuilder("nFrame,time,");
+        columns = new Column[variables.size()];
+        long first = Long.MAX_VALUE;
+        long last = 0;
+
+        for (int i = 0; i < columns.length; i++) {
+            Variable v = variables.get(i);
+            headerSB.append(v.getName()).append(".ordinal,");
+            headerSB.append(v.getName()).append(".onset,");
+            headerSB.append(v.getName()).append(".offset");
+
+            // Matrix variables have a column for each of their arguments.
+            int numValues = 1;
+            if (v.getRootNode().type == Argument.Type.MATRIX) {
+                numValues = v.getRootNode().childArguments.size();
+                for (Argument a : v.getRootNode().childArguments) {
+                    headerSB.append(',').append(v.getName()).append('.').append(a.name);
+                }
+            } else {
+                headerSB.append(',').append(v.getName()).append(".value");
+            }
+            headerSB.append(',');
+
+            columns[i] = new Column(v.getCellsTemporally(), numValues);
+            int n = columns[i].onsets.length;
+            if (n > 0) {
+                first = Math.min(first, Math.min(columns[i].onsets[0], columns[i].offsets[0]));
+                last = Math.max(last, Math.max(columns[i].onsets[n - 1], columns[i].offsets[n - 1]));
+            }
+        }
+
+        header = headerSB.toString();
+        firstTime = first;
+        lastTime = last;
+    }
+
+    /**
+     * @param frameRate The number of frames per second.
+     * @return The number of rows, besides the header, written at that frame rate.
+     */
+    public long getNumFrames(final double frameRate) {
+        return getFrameTimes(frameRate).length;
+    }
+
+    /**
+     * @param frameRate The number of frames per second.
+     * @return The time of every frame in milliseconds, rounded down one frame after the other as they always were.
+     */
+    private long[] getFrameTimes(final double frameRate) {
+        double frameDuration = 1000.0 / frameRate;
+        int numFrames = 0;
+        for (long time = firstTime; time <= lastTime + frameDuration; time += frameDuration) {
+            numFrames++;
+        }
+        long[] frameTimes = new long[numFrames];
+        long time = firstTime;
+        for (int k = 0; k < numFrames; k++) {
+            frameTimes[k] = time;
+            time += frameDuration;
+        }
+        return frameTimes;
+    }
+
+    /**
+     * Writes the rows of the export. The writer is neither flushed nor closed.
+     *
+     * @param out       The writer to write the rows to.
+     * @param frameRate The number of frames per second.
+     * @param progress  Receives the progress of the export, may be null.
+     * @return False if the export was cancelled, true otherwise.
+     * @throws IOException If unable to write the rows.
+     */
+    public boolean write(final Writer out, final double frameRate, final Progress progress) throws IOException {
+        final double frameDuration = 1000.0 / frameRate;
+        final long[] frameTimes = getFrameTimes(frameRate);
+        final int[] cursors = new int[columns.length];
+        final StringBuilder rows = new StringBuilder();
+        char[] buffer = new char[0];
+
+        out.write(header);
+        out.write(NEW_LINE);
+
+        for (int from = 0; from < frameTimes.length; from += CHUNK_FRAMES) {
+            int to = Math.min(from + CHUNK_FRAMES, frameTimes.length);
+            rows.setLength(0);
+            appendRows(rows, frameTimes, from, to, cursors, frameDuration);
+
+            if (buffer.length < rows.length()) {
+                buffer = new char[rows.capacity()];
+            }
+            rows.getChars(0, rows.length(), buffer, 0);
+            out.write(buffer, 0, rows.length());
+
+            if (to < frameTimes.length && progress != null && progress.update(to, frameTimes.length)) {
+                return false;
+            }
+        }
+
+        if (progress != null) {
+            progress.update(frameTimes.length, frameTimes.length);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the same rows as {@link #write(Writer, double, Progress)}, rendering chunks of frames on the common
+     * fork-join pool. Each chunk starts from the cursors the sequential export would have at its first frame, found
+     * without going through the frames before it, and the chunks are written in order.
+     *
+     * @param out       The writer to write the rows to.
+     * @param frameRate The number of frames per second.
+     * @param progress  Receives the progress of the export, may be null.
+     * @return False if the export was cancelled, true otherwise.
+     * @throws IOException If unable to write the rows.
+     */
+    public boolean writeParallel(final Writer out, final double frameRate, final Progress progress)
+            throws IOException {
+        final double frameDuration = 1000.0 / frameRate;
+        final long[] frameTimes = getFrameTimes(frameRate);
+        final int numChunks = (frameTimes.length + CHUNK_FRAMES - 1) / CHUNK_FRAMES;
+        final int[][] chunkCursors = new int[columns.length][];
+        IntStream.range(0, columns.length).parallel()
+                .forEach(i -> chunkCursors[i] = columns[i].getChunkCursors(frameTimes, numChunks));
+
+        out.write(header);
+        out.write(NEW_LINE);
+
+        // Only render a few chunks ahead of the writer, so the memory used does not grow with the export.
+        int batchSize = 2 * Runtime.getRuntime().availableProcessors();
+        for (int first = 0; first < numChunks; first += batchSize) {
+            List<String> chunks = IntStream.range(first, Math.min(first + batchSize, numChunks)).parallel()
+                    .mapToObj(chunk -> renderChunk(frameTimes, chunk, chunkCursors, frameDuration))
+                    .collect(Collectors.toList());
+            for (String rows : chunks) {
+                out.write(rows);
+            }
+
+            int to = (int) Math.min((long) (first + batchSize) * CHUNK_FRAMES, frameTimes.length);
+            if (to < frameTimes.length && progress != null && progress.update(to, frameTimes.length)) {
+                return false;
+            }
+        }
+
+        if (progress != null) {
+            progress.update(frameTimes.length, frameTimes.length);
+        }
+        return true;
+    }
+
+    private String renderChunk(final long[] frameTimes, final int chunk, final int[][] chunkCursors,
+                               final double frameDuration) {
+        int[] cursors = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            cursors[i] = chunkCursors[i][chunk];
+        }
+        int from = chunk * CHUNK_FRAMES;
+        int to = Math.min(from + CHUNK_FRAMES, frameTimes.length);
+        StringBuilder rows = new StringBuilder();
+        appendRows(rows, frameTimes, from, to, cursors, frameDuration);
+        return rows.toString();
+    }
+
+    /**
+     * Appends the rows of a range of frames.
+     *
+     * @param rows          The rows to append to.
+     * @param frameTimes    The time of every frame.
+     * @param from          The first frame, inclusive.
+     * @param to            The last frame, exclusive.
+     * @param cursors       The current cell of every variable, moved forward to the last frame.
+     * @param frameDuration The duration of a frame in milliseconds.
+     */
+    private void appendRows(final StringBuilder rows, final long[] frameTimes, final int from, final int to,
+                            final int[] cursors, final double frameDuration) {
+        for (int k = from; k < to; k++) {
+            long time = frameTimes[k];
+            rows.append(k + 1).append(',').append(time).append(',');
+            for (int i = 0; i < columns.length; i++) {
+                Column column = columns[i];
+                int current = column.advance(cursors[i], time);
+                cursors[i] = current;
+                rows.append(column.covers(current, time, frameDuration) ? column.values[current] : column.blank);
+            }
+            rows.append(NEW_LINE);
+        }
+    }
+
+    /**
+     * The cells of a variable, in temporal order.
+     */
+    private static final class Column {
+
+        /** Onsets of the cells in milliseconds */
+        final long[] onsets;
+
+        /** Offsets of the cells in milliseconds */
+        final long[] offsets;
+
+        /** The ordinal, onset, offset and escaped values of each cell, as written in a row */
+        final String[] values;
+
+        /** What is written in a row for a frame not covered by any cell */
+        final String blank;
+
+        Column(final List<Cell> cells, final int numValues) {
+            int n = cells.size();
+            onsets = new long[n];
+            offsets = new long[n];
+            values = new String[n];
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                Cell cell = cells.get(i);
+                onsets[i] = cell.getOnset();
+                offsets[i] = cell.getOffset();
+
+                sb.setLength(0);
+                sb.append(i + 1).append(',').append(onsets[i]).append(',').append(offsets[i]);
+                CellValue cellValue = cell.getCellValue();
+                if (cellValue instanceof MatrixCellValue) {
+                    MatrixCellValue mv = (MatrixCellValue) cellValue;
+                    for (int j = 0; j < mv.getNumArguments(); j++) {
+                        sb.append(',').append(StringUtils.escapeCSVQuotes(mv.getArgumentValue(j).toString()));
+                    }
+                } else {
+                    sb.append(',').append(StringUtils.escapeCSVQuotes(cellValue.toString()));
+                }
+                sb.append(',');
+                values[i] = sb.toString();
+            }
+
+            // Empty ordinal, onset and offset, then empty values.
+            sb.setLength(0);
+            sb.append(",,");
+            for (int j = 0; j < numValues; j++) {
+                sb.append(',');
+            }
+            sb.append(',');
+            blank = sb.toString();
+        }
+
+        /**
+         * Moves the cursor of the column forward to the last cell starting at or before the given time, if the time is
+         * past the end of the current cell. Times only increase from one frame to the next, so the cursor never moves
+         * back.
+         *
+         * @param current The current cell.
+         * @param time    The time of the frame.
+         * @return The cell to use for the frame.
+         */
+        int advance(int current, final long time) {
+            if (current < onsets.length && time > offsets[current]) {
+                while (current + 1 < onsets.length && onsets[current + 1] <= time) {
+                    current++;
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Finds the cursor of the column at the start of every chunk of frames, as left by the frames before it. The
+         * cursor only moves at a frame past the end of the current cell and at or after the onset of the next one,
+         * so those frames are looked up directly and every other frame is skipped.
+         *
+         * @param frameTimes The time of every frame.
+         * @param numChunks  The number of chunks of frames.
+         * @return The cursor at the first frame of every chunk, before that frame moves it.
+         */
+        int[] getChunkCursors(final long[] frameTimes, final int numChunks) {
+            int[] chunkCursors = new int[numChunks];
+            int current = 0;
+            int frame = 0;
+            int chunk = 0;
+            while (chunk < numChunks) {
+                // The next frame that moves the cursor, if any.
+                int move = frameTimes.length;
+                if (current + 1 < onsets.length) {
+                    long moveTime = Math.max(offsets[current] + 1, onsets[current + 1]);
+                    move = Arrays.binarySearch(frameTimes, frame, frameTimes.length, moveTime);
+                    if (move < 0) {
+                        move = -move - 1;
+                    }
+                }
+
+                while (chunk < numChunks && (long) chunk * CHUNK_FRAMES <= move) {
+                    chunkCursors[chunk++] = current;
+                }
+                if (move < frameTimes.length) {
+                    current = advance(current, frameTimes[move]);
+                    frame = move + 1;
+                }
+            }
+            return chunkCursors;
+        }
+
+        /**
+         * @param current       The cell to use for the frame.
+         * @param time          The time of the frame.
+         * @param frameDuration The duration of a frame in milliseconds.
+         * @return True if the cell covers the frame, including cells shorter than a frame that start within it.
+         */
+        boolean covers(final int current, final long time, final double frameDuration) {
+            if (current >= onsets.length) {
+                return false;
+            }
+            long onset = onsets[current];
+            long offset = offsets[current];
+            return (onset <= time && offset >= time)
+                    || (Math.abs(offset - onset) < frameDuration
+                    && onset > time - frameDuration + 1
+                    && time >= onset
+                    && onset < time + frameDuration - 1);
+        }
+    }
+}
@@ -17,10 +17,12 @@ package org.datavyu.controllers;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.models.db.DataStore;
+import org.datavyu.models.db.UserWarningException;
 import org.datavyu.models.project.Project;
 import org.datavyu.models.project.ViewerSetting;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -123,8 +125,26 @@ public final class OpenController {
                 zippedDataStore = zipFile.getEntry(arch + File.separator + "db");
             }
 
-            OpenDataStoreFileController odc = new OpenDataStoreFileController();
-            dataStore = odc.openAsCsv(zipFile.getInputStream(zippedDataStore));
+            // Prefer the columnar data store, saved alongside the CSV one by newer versions, either one entry per
+            // variable or as a single entry.
+            ZipEntry zippedVariables = zipFile.getEntry(ColumnarFormat.VARIABLES_ENTRY);
+            ZipEntry zippedColumns = zipFile.getEntry(ColumnarFormat.ENTRY);
+            if (zippedVariables != null || zippedColumns != null) {
+                try {
+                    OpenDataStoreFileController odc = new OpenDataStoreFileController();
+                    dataStore = zippedVariables != null
+                            ? odc.openAsColumnarEntries(zipFile)
+                            : odc.openAsColumnar(zipFile.getInputStream(zippedColumns));
+                } catch (IOException | UserWarningException | RuntimeException e) {
+                    logger.error("Unable to open columnar data store, reading the CSV one. Error: ", e);
+                    dataStore = null;
+                }
+            }
+
+            if (dataStore == null) {
+                OpenDataStoreFileController odc = new OpenDataStoreFileController();
+                dataStore = odc.openAsCsv(zipFile.getInputStream(zippedDataStore));
+            }
 
             // BugzID:1806
             for (ViewerSetting vs : project.getViewerSettings()) {
@@ -28,7 +28,13 @@ import org.datavyu.views.discrete.SpreadSheetPanel;
 import javax.swing.*;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static java.lang.Math.min;
 
@@ -423,6 +429,181 @@ public final class OpenDataStoreFileController {
         }
     }
 
+    /**
+     * Reads a data store in the binary columnar format described in {@link ColumnarFormat}. The caller is responsible
+     * for managing the input stream.
+     *
+     * @param inputStream The input stream used to deserialize the data store
+     * @return The populated data store
+     * @throws IOException If the stream is not a columnar data store or unable to read from it
+     * @throws UserWarningException If unable to create a variable
+     */
+    protected DataStore openAsColumnar(final InputStream inputStream) throws IOException, UserWarningException {
+        logger.info("Open columnar data store from input stream");
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        readColumnarHeader(in);
+
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        dataStore.setTitleNotifier(Datavyu.getApplication());
+
+        int numVariables = ColumnarFormat.readVarInt(in);
+        for (int v = 0; v < numVariables; v++) {
+            addColumnarVariable(dataStore, readColumnarVariable(in));
+        }
+
+        return dataStore;
+    }
+
+    /**
+     * Reads a data store saved with every variable in its own zip entry, as described in {@link ColumnarFormat}. The
+     * variables are decoded in parallel and the data store is assembled once they are all decoded.
+     *
+     * @param zipFile The project archive, the caller is responsible for closing it
+     * @return The populated data store
+     * @throws IOException If the archive does not hold a columnar data store or unable to read from it
+     * @throws UserWarningException If unable to create a variable
+     */
+    protected DataStore openAsColumnarEntries(final ZipFile zipFile) throws IOException, UserWarningException {
+        logger.info("Open columnar data store from the variable entries of " + zipFile.getName());
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(openEntry(zipFile,
+                ColumnarFormat.VARIABLES_ENTRY)));
+        int numVariables;
+        try {
+            readColumnarHeader(in);
+            numVariables = ColumnarFormat.readVarInt(in);
+        } finally {
+            in.close();
+        }
+
+        List<DataStoreSnapshot.VariableSnapshot> variables;
+        try {
+            // Variables are independent, they are decoded on the common fork-join pool.
+            variables = IntStream.range(0, numVariables).parallel()
+                    .mapToObj(v -> decodeColumnarVariable(zipFile, v))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        DataStore dataStore = DataStoreFactory.newDataStore();
+        dataStore.setTitleNotifier(Datavyu.getApplication());
+        for (DataStoreSnapshot.VariableSnapshot variable : variables) {
+            addColumnarVariable(dataStore, variable);
+        }
+
+        return dataStore;
+    }
+
+    private static InputStream openEntry(final ZipFile zipFile, final String name) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            throw new IOException("Missing entry " + name + " in " + zipFile.getName());
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    private static DataStoreSnapshot.VariableSnapshot decodeColumnarVariable(final ZipFile zipFile, final int index) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                openEntry(zipFile, ColumnarFormat.variableEntry(index)))))) {
+            return readColumnarVariable(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readColumnarHeader(final DataInput in) throws IOException {
+        if (in.readInt() != ColumnarFormat.MAGIC) {
+            throw new IOException("Not a columnar data store.");
+        }
+        int version = in.readInt();
+        if (version != ColumnarFormat.VERSION) {
+            throw new IOException("Unsupported columnar data store version: " + version);
+        }
+    }
+
+    private static DataStoreSnapshot.VariableSnapshot readColumnarVariable(final DataInput in) throws IOException {
+        String varName = ColumnarFormat.readString(in);
+        Argument.Type variableType = Argument.Type.valueOf(ColumnarFormat.readString(in));
+        boolean hidden = in.readBoolean();
+
+        int numArguments = ColumnarFormat.readVarInt(in);
+        String[] argumentNames = new String[numArguments];
+        Argument.Type[] argumentTypes = new Argument.Type[numArguments];
+        for (int i = 0; i < numArguments; i++) {
+            argumentNames[i] = ColumnarFormat.readString(in);
+            argumentTypes[i] = Argument.Type.valueOf(ColumnarFormat.readString(in));
+        }
+
+        int numCells = ColumnarFormat.readVarInt(in);
+        long[] onsets = ColumnarFormat.readDeltas(in, numCells);
+        long[] offsets = ColumnarFormat.readDeltas(in, numCells);
+
+        int numColumns = ColumnarFormat.readVarInt(in);
+        boolean[] matrix = new boolean[numCells];
+        String[][] values = new String[numCells][numColumns];
+        Arrays.fill(matrix, variableType == Argument.Type.MATRIX);
+        for (int column = 0; column < numColumns; column++) {
+            String[] dictionary = new String[ColumnarFormat.readVarInt(in)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = ColumnarFormat.readString(in);
+            }
+            for (int i = 0; i < numCells; i++) {
+                values[i][column] = dictionary[ColumnarFormat.readVarInt(in)];
+            }
+        }
+
+        return new DataStoreSnapshot.VariableSnapshot(varName, variableType, hidden, argumentNames, argumentTypes,
+                onsets, offsets, matrix, values);
+    }
+
+    /**
+     * Adds a variable read from a columnar data store, with all its cells, to a data store.
+     *
+     * @param dataStore The data store being opened
+     * @param variable The variable as read from the columnar data store
+     * @throws UserWarningException If unable to create the variable
+     */
+    private void addColumnarVariable(final DataStore dataStore, final DataStoreSnapshot.VariableSnapshot variable)
+            throws UserWarningException {
+        Variable newVar = dataStore.createVariable(variable.name, variable.type, true);
+        newVar.setHidden(variable.hidden);
+        newVar.setOrderIndex(numVariablesParsed);
+        numVariablesParsed++;
+
+        if (variable.type == Argument.Type.MATRIX) {
+            Argument newArg = newVar.getRootNode();
+            newArg.clearChildArguments();
+            for (String argName : variable.argumentNames) {
+                // Like the CSV format, codes are always loaded as nominal arguments.
+                newArg.childArguments.add(new Argument(argName, Argument.Type.NOMINAL));
+            }
+            newVar.setRootNode(newArg);
+        }
+
+        int numCells = variable.onsets.length;
+        List<Cell> newCells = new ArrayList<Cell>(numCells);
+        for (int i = 0; i < numCells; i++) {
+            Cell newCell = newVar.createDetachedCell();
+            newCell.setOnset(variable.onsets[i]);
+            newCell.setOffset(variable.offsets[i]);
+            CellValue cellValue = newCell.getCellValue();
+            String[] values = variable.values[i];
+            if (variable.matrix[i]) {
+                List<CellValue> arguments = ((MatrixCellValue) cellValue).getArguments();
+                for (int column = 0; column < values.length; column++) {
+                    arguments.get(column).set(values[column]);
+                }
+            } else {
+                cellValue.set(values[0]);
+            }
+            newCells.add(newCell);
+        }
+
+        newVar.addCells(newCells);
+    }
+
     /**
      * Strip escape characters from a line of text
      *
@@ -475,11 +656,11 @@ public final class OpenDataStoreFileController {
     /**
      * Method to create data values for the formal arguments of a vocab element
      *
-     * @param tokens The array of string tokens
-     * @param startIndex The start index
+     * @param tokens The argument tokens, in the order of the formal arguments
+     * @param destPattern The matrix template of the variable
      * @param destValue The destination value that we are populating
      */
-    private void parseFormalArgs(final String[] tokens, final int startIndex, final Argument destPattern,
+    private void parseFormalArgs(final List<String> tokens, final Argument destPattern,
                                  final MatrixCellValue destValue) {
 
         // Check to see if the list of tokens we have here is correct.
@@ -488,30 +669,27 @@ public final class OpenDataStoreFileController {
 
         List<CellValue> args = destValue.getArguments();
 
-        int endIndex = tokens.length;
+        int endIndex = tokens.size();
         boolean parseError = false;
-        if (args.size() != tokens.length - startIndex) {
+        if (args.size() != tokens.size()) {
             // We have a problem. Arguments are of different length.
             // Get as much from the string as we can.
 
             parseError = true; // TODO: Do something with this: warning, user warning exception?
-            endIndex = min(tokens.length, destValue.getArguments().size() + startIndex);
+            endIndex = min(tokens.size(), args.size());
         }
 
-        for (int tokenIndex = startIndex; tokenIndex < endIndex; tokenIndex++) {
-            int argIndex = tokenIndex - startIndex;
+        for (int argIndex = 0; argIndex < endIndex; argIndex++) {
             Argument fa = destPattern.childArguments.get(argIndex);
-            boolean emptyArg = false;
+            String token = tokens.get(argIndex);
 
             // If the field doesn't contain anything or matches the FargName
             // we consider the argument to be 'empty'. 
-            if ((tokens[tokenIndex].length() == 0) || tokens[tokenIndex].equals("<" + fa.name + ">")) {
-                emptyArg = true;
-                tokens[tokenIndex] = ""; //set <placeholder> to empty string. 
+            if ((token.length() == 0) || token.equals("<" + fa.name + ">")) {
+                token = ""; //set <placeholder> to empty string. 
             }
 
-            tokens[tokenIndex] = tokens[tokenIndex].trim(); //is this desirable?
-            destValue.getArguments().get(argIndex).set(tokens[tokenIndex]);
+            args.get(argIndex).set(token.trim()); //is trimming desirable?
         }
     }
 
@@ -530,54 +708,27 @@ public final class OpenDataStoreFileController {
 
         // TODO: Check if we need the argument possibly for proper error reporting
         String line = csvReader.readLine();
+        CellLineTokenizer tokenizer = new CellLineTokenizer(csvReader);
+        List<Cell> newCells = new ArrayList<Cell>();
 
         while ((line != null) && isCell(line)) {
+            tokenizer.tokenize(line);
 
-            ArrayList tokensList = new ArrayList<String>();
-            String[] onsetOffsetVals = line.split(",", 3);
-            tokensList.add(onsetOffsetVals[0]); //onset
-            tokensList.add(onsetOffsetVals[1]); //offset
-
-            String valuesStr = onsetOffsetVals[2];
-            StringBuilder sb = new StringBuilder();
-
-            for (int i = 0; i < valuesStr.length(); i++) {
-                char cur = valuesStr.charAt(i);
-                if (cur == '\\') {
-                    if (i + 1 == valuesStr.length()) //newline
-                    {
-                        sb.append('\n');
-                        valuesStr += csvReader.readLine();
-                    } else //stuff following escape backslash
-                    {
-                        i++;
-                        sb.append(valuesStr.charAt(i));
-                    }
-                } else if (cur == ',') //structural comma
-                {
-                    tokensList.add(sb.toString());
-                    sb = new StringBuilder();
-                } else sb.append(cur); //ordinary char
-            }
-            tokensList.add(sb.toString());
-
-            String[] tokens = (String[]) tokensList.toArray(new String[tokensList.size()]);
-
-            Cell newCell = variable.createCell();
             // Set the onset and offset from tokens in the line.
-            newCell.setOnset(tokens[DATA_ONSET]);
-            newCell.setOffset(tokens[DATA_OFFSET]);
+            Cell newCell = variable.createDetachedCell();
+            newCell.setOnset(tokenizer.getOnset());
+            newCell.setOffset(tokenizer.getOffset());
 
-            // Strip the first and last chars - presumably parens
-            tokens[DATA_INDEX] = tokens[DATA_INDEX].substring(1, tokens[DATA_INDEX].length());
-            int end = tokens.length - 1;
-            tokens[end] = tokens[end].substring(0, tokens[end].length() - 1);
+            parseFormalArgs(tokenizer.getValues(), variable.getRootNode(), (MatrixCellValue) newCell.getCellValue());
+            newCells.add(newCell);
 
-            parseFormalArgs(tokens, DATA_INDEX, variable.getRootNode(), (MatrixCellValue) newCell.getCellValue());
             // Get the next line in the file for reading.
             line = csvReader.readLine();
         }
 
+        // Insert the whole block at once rather than copying the cell list for every line.
+        variable.addCells(newCells);
+
         return line;
     }
 
@@ -613,6 +764,7 @@ public final class OpenDataStoreFileController {
 
         boolean hasParseError = false;
         int nError = 0;
+        List<Cell> newCells = new ArrayList<Cell>();
 
         while ((line != null) && Character.isDigit(line.charAt(0))) {
 
@@ -638,7 +790,8 @@ public final class OpenDataStoreFileController {
                     tokens[tokens.length - 1] = content + '\n' + line;
                 }
 
-                Cell newCell = variable.createCell();
+                Cell newCell = variable.createDetachedCell();
+                newCells.add(newCell);
 
                 // Set the onset and offset from tokens in the line
                 newCell.setOnset(tokens[DATA_ONSET]);
@@ -665,6 +818,8 @@ public final class OpenDataStoreFileController {
             }
         }
 
+        variable.addCells(newCells);
+
         if (hasParseError) {
             JOptionPane.showMessageDialog(null,
                     "Error reading file. " + String.valueOf(nError) + " cells could not be read.\n" +
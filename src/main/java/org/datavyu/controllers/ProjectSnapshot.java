@@ -0,0 +1,72 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.project.Project;
+import org.datavyu.models.project.ViewerSetting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of a project and its data store, ready to be written to a project file from any thread.
+ *
+ * The project description and viewer settings are small and are serialized while taking the snapshot; the data store
+ * is copied with a {@link DataStoreSnapshot}.
+ */
+final class ProjectSnapshot {
+
+    /** The serialized project description. */
+    final byte[] project;
+
+    /** The serialized viewer settings by settings identifier, in order. */
+    final Map<String, byte[]> viewerSettings;
+
+    /** The snapshot of the data store. */
+    final DataStoreSnapshot dataStore;
+
+    private ProjectSnapshot(final byte[] project, final Map<String, byte[]> viewerSettings,
+                            final DataStoreSnapshot dataStore) {
+        this.project = project;
+        this.viewerSettings = Collections.unmodifiableMap(viewerSettings);
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Takes a snapshot of a project. Must be called on the thread that modifies the project, i.e. the EDT.
+     *
+     * @param project The project to copy.
+     * @param dataStore The data store of the project.
+     * @return The snapshot of the project.
+     * @throws IOException If unable to serialize the viewer settings.
+     */
+    static ProjectSnapshot of(final Project project, final DataStore dataStore) throws IOException {
+        ByteArrayOutputStream projectBytes = new ByteArrayOutputStream();
+        new SaveProjectFileController().save(projectBytes, project);
+
+        Map<String, byte[]> viewerSettings = new LinkedHashMap<String, byte[]>();
+        for (ViewerSetting vs : project.getViewerSettings()) {
+            ByteArrayOutputStream settingsBytes = new ByteArrayOutputStream();
+            vs.writeSettings(settingsBytes);
+            viewerSettings.put(vs.getSettingsId(), settingsBytes.toByteArray());
+        }
+
+        return new ProjectSnapshot(projectBytes.toByteArray(), viewerSettings, DataStoreSnapshot.of(dataStore));
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.models.db.*;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands the data store to R scripts and back, through a binary file read and written with R's readBin and writeBin.
+ *
+ * Every variable becomes a data frame in the list 'db', named after the variable, with the columns
+ * ordinal, onset, offset and one column per code ('arg' for text and nominal variables). The file holds the columns
+ * one after the other: times as little endian doubles and codes as NUL terminated UTF-8 strings, so R reads each
+ * column with a single call. The R code reading the file is generated along with it. Code columns are converted the
+ * way read.csv would, numbers become numeric columns.
+ *
+ * Scripts may change the data frames for their own analysis, so only the data frames the script passes to
+ * set_column(name) and the data frames it adds are written back in the same way and applied to the data store: rows
+ * update the cell with their ordinal, rows without a valid ordinal become new cells, and data frames that don't match
+ * a variable become new variables. Cells are never removed, a missing row leaves its cell as it is. Only the values
+ * that differ from what was handed to R are written back, so converting codes to numbers doesn't change the cells the
+ * script did not touch.
+ */
+final class RDataFile {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(RDataFile.class);
+
+    /** Value written back for a code the script did not change, a character never found in a cell */
+    private static final String UNCHANGED = "\u0001";
+
+    /** Name of the code column of text and nominal variables */
+    private static final String SINGLE_CODE = "arg";
+
+    /** R functions used by the generated code */
+    private static final String R_FUNCTIONS = ""
+            + ".dv_codes <- function(con, n) {\n"
+            + "  x <- readBin(con, \"character\", n)\n"
+            + "  Encoding(x) <- \"UTF-8\"\n"
+            + "  type.convert(x, as.is = TRUE)\n"
+            + "}\n"
+            + ".dv_times <- function(con, n) readBin(con, \"double\", n, size = 8, endian = \"little\")\n"
+            + ".dv_frame <- function(con, n, names) {\n"
+            + "  columns <- list(seq_len(n), .dv_times(con, n), .dv_times(con, n))\n"
+            + "  for (i in seq_along(names)) columns[[3 + i]] <- .dv_codes(con, n)\n"
+            + "  names(columns) <- c(\"ordinal\", \"onset\", \"offset\", names)\n"
+            + "  data.frame(columns, stringsAsFactors = FALSE)\n"
+            + "}\n"
+            + "set_column <- function(name) {\n"
+            + "  .dv_save <<- union(.dv_save, name)\n"
+            + "  invisible(NULL)\n"
+            + "}\n";
+
+    /** R code writing back the data frames the script changed, to the file named by .dv_out */
+    private static final String R_WRITE_BACK = ""
+            + ".dv_same <- function(new, old, n) {\n"
+            + "  if (is.null(old)) return(rep(FALSE, n))\n"
+            + "  a <- as.character(new)\n"
+            + "  b <- as.character(old)\n"
+            + "  (is.na(a) & is.na(b)) | (!is.na(a) & !is.na(b) & a == b)\n"
+            + "}\n"
+            + ".dv_number <- function(df, column, n) {\n"
+            + "  if (is.null(df[[column]])) rep(NA_real_, n) else as.numeric(df[[column]])\n"
+            + "}\n"
+            + ".dv_con <- file(.dv_out, \"wb\")\n"
+            + "for (.dv_name in names(db)) {\n"
+            + "  .dv_df <- db[[.dv_name]]\n"
+            + "  .dv_old <- .dv_db[[.dv_name]]\n"
+            + "  if (!is.data.frame(.dv_df) || (!is.null(.dv_old) && !(.dv_name %in% .dv_save))"
+            + " || identical(.dv_df, .dv_old)) next\n"
+            + "  .dv_n <- nrow(.dv_df)\n"
+            + "  .dv_aligned <- !is.null(.dv_old) && nrow(.dv_old) == .dv_n"
+            + " && identical(.dv_df$ordinal, .dv_old$ordinal)\n"
+            + "  .dv_names <- setdiff(names(.dv_df), c(\"ordinal\", \"onset\", \"offset\"))\n"
+            + "  writeBin(enc2utf8(c(.dv_name, .dv_names, \"\")), .dv_con)\n"
+            + "  writeBin(as.integer(.dv_n), .dv_con, size = 4, endian = \"little\")\n"
+            + "  for (.dv_column in c(\"ordinal\", \"onset\", \"offset\")) {\n"
+            + "    writeBin(.dv_number(.dv_df, .dv_column, .dv_n), .dv_con, size = 8, endian = \"little\")\n"
+            + "  }\n"
+            + "  for (.dv_column in .dv_names) {\n"
+            + "    .dv_x <- as.character(.dv_df[[.dv_column]])\n"
+            + "    .dv_x[is.na(.dv_x)] <- \"\"\n"
+            + "    if (.dv_aligned) .dv_x[.dv_same(.dv_df[[.dv_column]], .dv_old[[.dv_column]], .dv_n)] <- \"\\001\"\n"
+            + "    writeBin(enc2utf8(.dv_x), .dv_con)\n"
+            + "  }\n"
+            + "}\n"
+            + "close(.dv_con)\n";
+
+    private RDataFile() {}
+
+    /**
+     * Writes a data store for R.
+     *
+     * @param dataStore The data store.
+     * @param dataFile  The file to write.
+     * @return The R code reading the file into the list 'db'.
+     * @throws IOException If the file can't be written.
+     */
+    static String write(final DataStore dataStore, final File dataFile) throws IOException {
+        StringBuilder code = new StringBuilder(R_FUNCTIONS);
+        code.append("db <- list()\n");
+        code.append(".dv_save <- character()\n");
+        code.append(".dv_con <- file(").append(quote(dataFile.getAbsolutePath())).append(", \"rb\")\n");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(dataFile), 1 << 16))) {
+            for (Variable variable : dataStore.getAllVariables()) {
+                ColumnSnapshot snapshot = ColumnSnapshot.of(variable);
+                List<String> names = getCodeNames(variable);
+                int n = snapshot.size();
+
+                writeTimes(out, snapshot.getOnsets());
+                writeTimes(out, snapshot.getOffsets());
+                for (int j = 0; j < names.size(); j++) {
+                    for (String[] values : snapshot.getValues()) {
+                        out.write(values[j].getBytes(StandardCharsets.UTF_8));
+                        out.write(0);
+                    }
+                }
+
+                code.append("db[[").append(quote(variable.getName())).append("]] <- .dv_frame(.dv_con, ")
+                        .append(n).append("L, c(");
+                for (int j = 0; j < names.size(); j++) {
+                    code.append(j == 0 ? "" : ", ").append(quote(names.get(j)));
+                }
+                code.append("))\n");
+            }
+        }
+        code.append("close(.dv_con)\n");
+        // The data frames as handed to R, copied by R only if the script changes them.
+        code.append(".dv_db <- db\n");
+        return code.toString();
+    }
+
+    /**
+     * @param backFile The file the data frames changed by the script are written to.
+     * @return The R code, run after the script, writing the changed data frames to the file.
+     */
+    static String getWriteBackCode(final File backFile) {
+        return ".dv_out <- " + quote(backFile.getAbsolutePath()) + "\n" + R_WRITE_BACK;
+    }
+
+    /**
+     * Applies the data frames written back by R to a data store.
+     *
+     * @param backFile  The file written by the code of {@link #getWriteBackCode(File)}.
+     * @param dataStore The data store.
+     * @return The number of variables updated or created.
+     * @throws IOException If the file can't be read or is truncated.
+     */
+    static int read(final File backFile, final DataStore dataStore) throws IOException {
+        if (!backFile.exists()) {
+            return 0;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(backFile.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        int updated = 0;
+        try {
+            while (in.hasRemaining()) {
+                String name = readString(in);
+                List<String> names = new ArrayList<String>();
+                for (String column = readString(in); !column.isEmpty(); column = readString(in)) {
+                    names.add(column);
+                }
+                int n = in.getInt();
+                double[] ordinals = readTimes(in, n);
+                double[] onsets = readTimes(in, n);
+                double[] offsets = readTimes(in, n);
+                String[][] values = new String[n][names.size()];
+                for (int j = 0; j < names.size(); j++) {
+                    for (int i = 0; i < n; i++) {
+                        String value = readString(in);
+                        values[i][j] = value.equals(UNCHANGED) ? null : value;
+                    }
+                }
+
+                try {
+                    apply(dataStore, name, names, ordinals, onsets, offsets, values);
+                    updated++;
+                } catch (UserWarningException e) {
+                    logger.error("Unable to update variable " + name + " from R. Error: ", e);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated data from R in " + backFile);
+        }
+        return updated;
+    }
+
+    /**
+     * Applies a data frame to the variable with the same name, creating the variable if needed. A row repeating the
+     * ordinal of an earlier row becomes a new cell; the cells without a row are left as they are.
+     */
+    private static void apply(final DataStore dataStore, final String name, final List<String> names,
+                              final double[] ordinals, final double[] onsets, final double[] offsets,
+                              final String[][] values) throws UserWarningException {
+        Variable variable = dataStore.getVariable(name);
+
+        String[][] cellValues = values;
+        List<String> codeNames = names;
+        if (variable == null) {
+            boolean single = names.size() == 1 && names.get(0).equals(SINGLE_CODE);
+            variable = dataStore.createVariable(name, single ? Argument.Type.TEXT : Argument.Type.MATRIX);
+            if (!single) {
+                Argument root = variable.getRootNode();
+                for (int j = 0; j < names.size(); j++) {
+                    Argument argument = j < root.childArguments.size() ? root.childArguments.get(j)
+                            : variable.addArgument(Argument.Type.NOMINAL);
+                    argument.name = names.get(j);
+                }
+                variable.setRootNode(root);
+            }
+        } else if (variable.getRootNode().type != Argument.Type.MATRIX) {
+            // The value of a text or nominal cell is its only code.
+            int index = names.indexOf(SINGLE_CODE);
+            cellValues = new String[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                cellValues[i] = new String[]{index < 0 ? null : values[i][index]};
+            }
+            codeNames = new ArrayList<String>();
+            codeNames.add(SINGLE_CODE);
+        }
+
+        ColumnSnapshot snapshot = ColumnSnapshot.of(variable);
+        Cell[] cells = new Cell[ordinals.length];
+        long[] cellOnsets = new long[ordinals.length];
+        long[] cellOffsets = new long[ordinals.length];
+        boolean[] matched = new boolean[snapshot.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            double ordinal = ordinals[i];
+            if (ordinal >= 1 && ordinal <= snapshot.size() && ordinal == Math.rint(ordinal)
+                    && !matched[(int) ordinal - 1]) {
+                cells[i] = snapshot.getCells()[(int) ordinal - 1];
+                matched[(int) ordinal - 1] = true;
+            }
+            cellOnsets[i] = toTime(onsets[i], cells[i] == null ? 0 : cells[i].getOnset());
+            cellOffsets[i] = toTime(offsets[i], cells[i] == null ? 0 : cells[i].getOffset());
+        }
+        ColumnSnapshot.apply(variable, cells, cellOnsets, cellOffsets,
+                codeNames.toArray(new String[codeNames.size()]), cellValues);
+    }
+
+    /**
+     * @param time    A time from R in milliseconds, NaN if missing.
+     * @param current The time to keep if the time from R is missing.
+     * @return The time in milliseconds.
+     */
+    private static long toTime(final double time, final long current) {
+        return Double.isNaN(time) ? current : Math.round(time);
+    }
+
+    /**
+     * @param variable A variable.
+     * @return The names of the code columns of the variable.
+     */
+    private static List<String> getCodeNames(final Variable variable) {
+        List<String> names = new ArrayList<String>();
+        if (variable.getRootNode().type == Argument.Type.MATRIX) {
+            for (Argument argument : variable.getRootNode().childArguments) {
+                names.add(argument.name);
+            }
+        } else {
+            names.add(SINGLE_CODE);
+        }
+        return names;
+    }
+
+    private static void writeTimes(final DataOutputStream out, final long[] times) throws IOException {
+        for (long time : times) {
+            out.writeLong(Long.reverseBytes(Double.doubleToLongBits(time)));
+        }
+    }
+
+    private static double[] readTimes(final ByteBuffer in, final int n) {
+        double[] times = new double[n];
+        for (int i = 0; i < n; i++) {
+            times[i] = in.getDouble();
+        }
+        return times;
+    }
+
+    private static String readString(final ByteBuffer in) {
+        int start = in.position();
+        while (in.get() != 0) {
+            // Up to the terminating NUL.
+        }
+        return new String(in.array(), start, in.position() - start - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param s A string.
+     * @return The string as an R string literal.
+     */
+    static String quote(final String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
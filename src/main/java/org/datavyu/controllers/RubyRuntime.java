@@ -0,0 +1,236 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.Datavyu;
+import org.datavyu.models.db.DataStore;
+import org.datavyu.models.project.Project;
+import org.jruby.embed.EmbedEvalUnit;
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.LocalVariableBehavior;
+import org.jruby.embed.ScriptingContainer;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A JRuby runtime with the Datavyu Ruby API already loaded, kept between script runs.
+ *
+ * Creating a runtime and loading Datavyu_API.rb takes seconds, and the JIT only gets to compile the API after it has
+ * run a few times, so the runtime used from the spreadsheet is created once, in the background at startup, and shared
+ * by all the scripts. Every script still starts from a clean slate: its body is run as the body of a new block so its
+ * local variables start undefined on each run, and $db, $pj and $sp are set again to the project the script runs
+ * on. The parsed scripts are kept per file and parsed again when the file changes.
+ *
+ * A runtime runs one script at a time, a runtime per thread is needed to run scripts concurrently.
+ */
+public final class RubyRuntime {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(RubyRuntime.class);
+
+    /** The Ruby API loaded by every runtime */
+    private static final String API_FILE = "Datavyu_API.rb";
+
+    /** File name given to the scripts, which the error messages point to */
+    static final String SCRIPT_FILE_NAME = "<script>";
+
+    /** The runtime shared by the scripts run from the spreadsheet, null until the warm up is started */
+    private static FutureTask<RubyRuntime> shared;
+
+    /** The JRuby runtime */
+    private final ScriptingContainer container;
+
+    /** The parsed scripts, by canonical path */
+    private final Map<String, ParsedScript> scripts = new HashMap<String, ParsedScript>();
+
+    /**
+     * A script parsed by the runtime.
+     */
+    private static final class ParsedScript {
+
+        /** The time the file was last modified when it was parsed */
+        final long lastModified;
+
+        /** The length of the file when it was parsed */
+        final long length;
+
+        /** The parsed script */
+        final EmbedEvalUnit unit;
+
+        ParsedScript(final long lastModified, final long length, final EmbedEvalUnit unit) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Creates a new runtime and loads the Ruby API into it, which takes a few seconds.
+     */
+    public RubyRuntime() {
+        long start = System.currentTimeMillis();
+        container = new ScriptingContainer(LocalContextScope.SINGLETHREAD, LocalVariableBehavior.TRANSIENT);
+        container.runScriptlet("load '" + API_FILE + "'");
+        logger.info("Loaded the Ruby API in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Starts creating the shared runtime in the background, unless it is already started.
+     */
+    public static synchronized void warmUp() {
+        if (shared == null) {
+            shared = new FutureTask<RubyRuntime>(RubyRuntime::new);
+            Thread thread = new Thread(shared, "Datavyu Ruby warm up");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Gets the runtime shared by the scripts run from the spreadsheet, waiting for it to be warmed up.
+     *
+     * @return The shared runtime.
+     * @throws IOException If the runtime could not be created.
+     */
+    public static RubyRuntime getShared() throws IOException {
+        FutureTask<RubyRuntime> task;
+        synchronized (RubyRuntime.class) {
+            warmUp();
+            task = shared;
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading the Ruby API");
+        } catch (ExecutionException e) {
+            synchronized (RubyRuntime.class) {
+                // Try again on the next script rather than keeping the failure around.
+                if (shared == task) {
+                    shared = null;
+                }
+            }
+            throw new IOException("Unable to load the Ruby API", e.getCause());
+        }
+    }
+
+    /**
+     * Runs a script.
+     *
+     * @param scriptFile  The script to run.
+     * @param dataStore   The data store the script runs on, which becomes $db.
+     * @param project     The project of the data store, which becomes $pj.
+     * @param writer      Where the output of the script goes.
+     * @param errorWriter Where the errors of the script go.
+     * @throws IOException If the script can't be read.
+     * @throws org.jruby.embed.ParseFailedException If the script is not valid Ruby.
+     * @throws org.jruby.embed.EvalFailedException If the script raised an error.
+     */
+    public synchronized void runScript(final File scriptFile, final DataStore dataStore, final Project project,
+                                       final Writer writer, final Writer errorWriter) throws IOException {
+        container.setWriter(writer);
+        container.setErrorWriter(errorWriter);
+        container.put("$db", dataStore);
+        container.put("$pj", project);
+        container.put("$sp", Datavyu.getView());
+        container.put("$debug", false);
+        container.put("path", System.getProperty("user.dir") + File.separator);
+        getParsedScript(scriptFile).unit.run();
+        writer.flush();
+        errorWriter.flush();
+    }
+
+    /**
+     * Tears down the runtime, it can't run scripts anymore.
+     */
+    public synchronized void terminate() {
+        scripts.clear();
+        container.terminate();
+    }
+
+    /**
+     * Sets a global variable for the next scripts.
+     *
+     * @param name  The name of the variable, without the leading '$'.
+     * @param value The value of the variable.
+     */
+    public synchronized void setGlobal(final String name, final Object value) {
+        container.put("$" + name, value);
+    }
+
+    /**
+     * @param scriptFile The script.
+     * @return The parsed script, parsed again only if the file changed since it was last parsed.
+     * @throws IOException If the script can't be read.
+     */
+    private ParsedScript getParsedScript(final File scriptFile) throws IOException {
+        String key = scriptFile.getCanonicalPath();
+        long lastModified = scriptFile.lastModified();
+        long length = scriptFile.length();
+        ParsedScript script = scripts.get(key);
+        if (script == null || script.lastModified != lastModified || script.length != length) {
+            // Line -1 for the line opening the block, so that the lines of the errors are the lines of the file.
+            EmbedEvalUnit unit = container.parse(new StringReader(wrapInBlock(readScript(scriptFile))),
+                    SCRIPT_FILE_NAME, -1);
+            script = new ParsedScript(lastModified, length, unit);
+            scripts.put(key, script);
+        }
+        return script;
+    }
+
+    /**
+     * Makes the body of a script the body of a block called right away, so that each run of the parsed script gets
+     * its own local variables. Methods, classes and constants are still defined at the top level.
+     *
+     * @param source The source of the script.
+     * @return The source to parse.
+     */
+    static String wrapInBlock(final String source) {
+        String body = source;
+        String end = "";
+        int dataIndex = source.startsWith("__END__\n") ? 0 : source.indexOf("\n__END__\n");
+        if (dataIndex >= 0) {
+            // Everything after __END__ is data, the block has to close before it.
+            body = source.substring(0, dataIndex);
+            end = source.substring(dataIndex);
+        }
+        return "lambda do\n" + body + "\nend.call\n" + end;
+    }
+
+    /**
+     * Reads a script, with '\n' line endings.
+     *
+     * @param scriptFile The script.
+     * @return The source of the script.
+     * @throws IOException If the script can't be read.
+     */
+    private static String readScript(final File scriptFile) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new FileReader(scriptFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+                sb.append('\n'); //newlines in string are always '\n', never '\r'. Bug 193
+            }
+        }
+        return sb.toString();
+    }
+}
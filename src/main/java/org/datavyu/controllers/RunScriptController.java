@@ -19,15 +19,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
 import org.datavyu.FileHistory;
+import org.datavyu.controllers.project.ProjectController;
 import org.datavyu.models.db.*;
 import org.datavyu.util.FileFilters.RbFilter;
 import org.datavyu.views.ConsoleV;
 import org.datavyu.views.DatavyuFileChooser;
-import org.jruby.embed.AttributeName;
+import org.jruby.embed.EvalFailedException;
+import org.jruby.embed.ParseFailedException;
 import com.github.rcaller.rstuff.RCaller;
 import com.github.rcaller.rstuff.RCode;
 
-import javax.script.*;
 import javax.swing.*;
 import java.io.*;
 import java.util.*;
@@ -148,21 +149,12 @@ public final class RunScriptController extends SwingWorker<Object, String> {
     private static boolean rubyScriptIsRunning = false;
 
     private void runRubyScript(File scriptFile) {
-        // The scripting engine factory that we use with Datavyu
-
         if (rubyScriptIsRunning) {
             JOptionPane.showMessageDialog(null, "A script is running. One script at a time!");
             return;
         }
         rubyScriptIsRunning = true;
         outString = new StringBuilder("");
-        // init script engine
-        System.setProperty("org.jruby.embed.localvariable.behavior", "transient");
-        ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
-        ScriptEngineFactory scriptEngineFactory = scriptEngineManager.getEngineByName("jruby").getFactory();
-        ScriptEngine rubyEngine = scriptEngineFactory.getScriptEngine();
-        ScriptContext rubyContext = new SimpleScriptContext();
-//        rubyContext.setAttribute("db", Datavyu.getProjectController().getDataStore(), ScriptContext.ENGINE_SCOPE);
 
         try {
             try {
@@ -172,37 +164,33 @@ public final class RunScriptController extends SwingWorker<Object, String> {
 
                 consoleWriter.flush();
 
-                // Place reference to various Datavyu functionality.
-
                 logger.info("Project controller uses data store: " + Datavyu.getProjectController().getDataStore());
-                String path = System.getProperty("user.dir") + File.separator;
-                
-                rubyEngine.put("path", path);
-
-                FileReader scriptReader = new FileReader(scriptFile);
-                LineNumberReader lineReader = new LineNumberReader(
-                        fileReaderIntoStringReader(scriptReader));
-
-                rubyEngine.setContext(rubyContext);
-                rubyEngine.getContext().setWriter(consoleWriter);
-                rubyEngine.getContext().setErrorWriter(consoleWriter);
-                rubyEngine.getContext().setAttribute(AttributeName.TERMINATION.toString(), true,
-                        ScriptContext.ENGINE_SCOPE);
-                rubyEngine.getContext().setAttribute(AttributeName.CLEAR_VARAIBLES.toString(), true,
-                        ScriptContext.ENGINE_SCOPE);
-                try{
-                    rubyEngine.eval("load 'Datavyu_API.rb'\n");
-                    rubyEngine.eval(lineReader);
+
+                RubyRuntime rubyRuntime;
+                try {
+                    // Waits for the runtime if it is still being warmed up.
+                    rubyRuntime = RubyRuntime.getShared();
+                } catch (IOException e) {
+                    consoleWriter.close();
+                    consoleWriterAfter.write("\n\n***** SCRIPT ERROR *****\n");
+                    consoleWriterAfter.write(e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""));
+                    consoleWriterAfter.write("\n*************************\n");
+                    consoleWriterAfter.flush();
+                    logger.error("Unable to load the Ruby API: ", e);
+                    return;
+                }
+
+                try {
+                    ProjectController projectController = Datavyu.getProjectController();
+                    rubyRuntime.runScript(scriptFile, projectController.getDataStore(),
+                            projectController.getProject(), consoleWriter, consoleWriter);
                     consoleWriter.close();
 
                     consoleWriterAfter.write("\nScript has finished running.");
                     consoleWriterAfter.flush();
                     consoleWriterAfter.close();
-                    lineReader.close();
                 }
-                catch (ScriptException e) {
-                    //unfortunately the above seems to always be final line not line of error. still, no noticeable
-                    // performance difference, so im leaving the LineNumberReader wrap
+                catch (ParseFailedException | EvalFailedException e) {
                     String msg = makeFriendlyRubyErrorMsg(outString.toString(), e);
                     consoleWriter.flush();
                     consoleWriter.close();
@@ -212,9 +200,6 @@ public final class RunScriptController extends SwingWorker<Object, String> {
                     consoleWriterAfter.flush();
                     logger.error("Unable to execute script: ", e);
                 }
-                finally {
-                    lineReader.close();
-                }
             } catch (FileNotFoundException e) {
                 consoleWriter.close();
                 consoleWriterAfter.write("File not found: " + e.getMessage());;
@@ -229,27 +214,10 @@ public final class RunScriptController extends SwingWorker<Object, String> {
         }
         Datavyu.getView().getSpreadsheetPanel().redrawCells();
     }
-    
-    private StringReader fileReaderIntoStringReader(FileReader fr) throws IOException
-    {
-        BufferedReader br = new BufferedReader(fr);
-        StringBuilder sb = new StringBuilder("");
-        
-        String cur = br.readLine();
-        while(cur != null)
-        {
-            sb.append(cur);
-            sb.append('\n'); //newlines in string are always '\n', never '\r'. Bug 193
-            cur = br.readLine();
-        }
-        br.close();
-        fr.close();
-        return new StringReader(sb.toString());
-    }
 
-    private String makeFriendlyRubyErrorMsg(String out, ScriptException e) {
+    private String makeFriendlyRubyErrorMsg(String out, RuntimeException e) {
         try {
-            if (out.lastIndexOf("<script>") == -1) return e.getMessage();
+            if (out.lastIndexOf(RubyRuntime.SCRIPT_FILE_NAME) == -1) return e.getMessage();
             String s = "";
             //s should begin with ruby-relevant error portion, NOT full java stack
             //which would be of little interest to the user and only obscures what matters
@@ -264,7 +232,7 @@ public final class RunScriptController extends SwingWorker<Object, String> {
             StringTokenizer outputTokenizer = new StringTokenizer(out, "\n");
             while (outputTokenizer.hasMoreTokens()) {
                 String curLine = outputTokenizer.nextToken();
-                int scriptTagIndex = curLine.lastIndexOf("<script>:");
+                int scriptTagIndex = curLine.lastIndexOf(RubyRuntime.SCRIPT_FILE_NAME + ":");
                 if (scriptTagIndex != -1) {
                     int errorLine = Integer.parseInt(curLine.substring(scriptTagIndex).replaceAll("[^0-9]", ""));
                     LineNumberReader scriptLNR = new LineNumberReader(new FileReader(scriptFile));
@@ -289,109 +257,61 @@ public final class RunScriptController extends SwingWorker<Object, String> {
 
         caller.redirectROutputToStream(sIn);
 
-        // Initialize our code buffer and database string representation
+        // Initialize our code buffer and hand the database to R in a list called db
         RCode code = RCode.create();
-        HashMap db = convertDbToColStrings();
-        HashMap<String, File> tempFiles = new HashMap<>();
-
-        // Write the database out to temporary files
-        Iterator it = db.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry) it.next();
-
-            // Now write this out to a temporary file
-            File outfile = new File(System.getProperty("java.io.tmpdir"), (String) pairs.getKey());
-            try {
-                BufferedWriter output = new BufferedWriter(new FileWriter(outfile));
-                output.write((String) pairs.getValue());
-                output.close();
-                tempFiles.put((String) pairs.getKey(), outfile);
-            } catch (IOException e) {
-                logger.error("Writing output to temporary files failed. Error: ", e);
-            }
-            it.remove(); // avoids a ConcurrentModificationException
-        }
-
-        // Create the R code to read in the temporary db files into a structure
-        // called db
-        code.addRCode("db <- list()");
+        File dataFile = null;
+        File backFile = null;
         try {
-            // Load each of the temporary files created above into R
-            it = tempFiles.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry pairs = (Map.Entry) it.next();
-
-                String load = "db[[\"" + ((String) pairs.getKey()).toLowerCase() + "\"]] <- read.csv(\""
-                        + ((File) pairs.getValue()).getPath() + "\",header=TRUE, sep=',')";
-                code.addRCode(load);
-
-                it.remove(); // avoids a ConcurrentModificationException
-            }
-        } catch (Exception e) {
-            logger.error("Loading of temporary files failed. Error: ", e);
+            dataFile = File.createTempFile("datavyu", ".rdata");
+            backFile = File.createTempFile("datavyu", ".rdata");
+            backFile.delete();
+            long start = System.currentTimeMillis();
+            code.addRCode(RDataFile.write(Datavyu.getProjectController().getDataStore(), dataFile));
+            logger.info("Wrote the database for R in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IOException e) {
+            logger.error("Writing the database for R failed. Error: ", e);
         }
 
         // Set up plotting. If something gets plotted, display it. Otherwise, just run the code.
         try {
             File plt = code.startPlot();
             code.R_source(scriptFile.getPath());
+            if (backFile != null) {
+                code.addRCode(RDataFile.getWriteBackCode(backFile));
+            }
             caller.setRCode(code);
             caller.runOnly();
             code.endPlot();
             if (plt.length() > 0) {
                 code.showPlot(plt);
             }
+            if (backFile != null) {
+                updateDbFromR(backFile);
+            }
         } catch (Exception e) {
             logger.error("Failed when plotting. Error: ", e);
+        } finally {
+            if (dataFile != null) {
+                dataFile.delete();
+            }
+            if (backFile != null) {
+                backFile.delete();
+            }
         }
     }
 
-    private void updateDbFromR() {
-        // TODO: Fill in the code here
-    }
-
     /**
-     * Convert the Datavyu database to a csv file per column.
-     * This allows for easy reading into R.
+     * Applies the data frames the R script passed to set_column or added in db to the database.
+     *
+     * @param backFile The file the data frames were written to by R.
+     * @throws IOException If the file can't be read.
      */
-    private HashMap<String, String> convertDbToColStrings() {
-        // TODO: Use StringBuilder here
-        DataStore db = Datavyu.getProjectController().getDataStore();
-        HashMap<String, String> str_db = new HashMap<>();
-
-        String str_var;
-        for (Variable v : db.getAllVariables()) {
-            str_var = "ordinal,onset,offset";
-            if (v.getRootNode().type == Argument.Type.MATRIX) {
-                for (Argument a : v.getRootNode().childArguments) {
-                    str_var += "," + a.name;
-                }
-            } else {
-                str_var += ",arg";
-            }
-            str_var += "\n";
-            for (int i = 0; i < v.getCellsTemporally().size(); i++) {
-                Cell c = v.getCellsTemporally().get(i);
-
-                String row = String.format("%d,%d,%d", i + 1, c.getOnset(), c.getOffset());
-                if (v.getRootNode().type == Argument.Type.MATRIX) {
-                    for (CellValue val : ((MatrixCellValue) c.getCellValue()).getArguments()) {
-                        row += ",";
-                        if (!val.isEmpty())
-                            row += val.toString();
-                    }
-                } else {
-                    row += ",";
-                    if (!c.getCellValue().isEmpty()) {
-                        row += c.getCellValue().toString();
-                    }
-                }
-                str_var += row + "\n";
-            }
-            str_db.put(v.getName(), str_var);
+    private void updateDbFromR(final File backFile) throws IOException {
+        int updated = RDataFile.read(backFile, Datavyu.getProjectController().getDataStore());
+        if (updated > 0) {
+            logger.info("Updated " + updated + " variables from R");
+            Datavyu.getView().getSpreadsheetPanel().redrawCells();
         }
-
-        return str_db;
     }
 
     @Override
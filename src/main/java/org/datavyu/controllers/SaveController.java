@@ -21,13 +21,19 @@ import org.datavyu.FileHistory;
 import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.UserWarningException;
 import org.datavyu.models.project.Project;
-import org.datavyu.models.project.ViewerSetting;
+import org.datavyu.util.ConfigProperties;
 import org.jdesktop.application.Application;
 import org.jdesktop.application.ResourceMap;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -100,29 +106,7 @@ public final class SaveController {
             logger.info("Save project.");
 
             FileOutputStream fos = new FileOutputStream(projectFile);
-            ZipOutputStream zos = new ZipOutputStream(fos);
-
-            ZipEntry projectEntry = new ZipEntry("project");
-            zos.putNextEntry(projectEntry);
-            new SaveProjectFileController().save(zos, project);
-            zos.closeEntry();
-
-            ZipEntry dbEntry = new ZipEntry("db");
-            zos.putNextEntry(dbEntry);
-            new SaveDataStoreFileController().saveAsCsv(zos, dataStore);
-            zos.closeEntry();
-
-            // BugzID:1806
-            for (ViewerSetting vs : project.getViewerSettings()) {
-                ZipEntry vsEntry = new ZipEntry(vs.getSettingsId());
-                zos.putNextEntry(vsEntry);
-                vs.writeSettings(zos);
-            }
-
-            zos.finish();
-            zos.close();
-
-            fos.flush();
+            writeProject(fos, ProjectSnapshot.of(project, dataStore));
             fos.close();
 
             if (remember) {
@@ -135,4 +119,116 @@ public final class SaveController {
             throw new UserWarningException(rMap.getString("UnableToSave.message", projectFile), e);
         }
     }
+
+    /**
+     * Saves a snapshot of a project to disk. Unlike the other save methods this can be called from any thread.
+     *
+     * @param projectFile The destination to save the project too
+     * @param snapshot The snapshot of the project and its data store
+     * @throws IOException If unable to write the project file
+     */
+    void saveProject(final File projectFile, final ProjectSnapshot snapshot) throws IOException {
+        FileOutputStream fos = new FileOutputStream(projectFile);
+        try {
+            writeProject(fos, snapshot);
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Saves a snapshot of a data store to disk. Unlike the other save methods this can be called from any thread.
+     *
+     * @param databaseFile The destination to save the data store too, only CSV files are supported
+     * @param snapshot The snapshot of the data store
+     * @throws IOException If unable to write the data store file
+     */
+    void saveDataStore(final File databaseFile, final DataStoreSnapshot snapshot) throws IOException {
+        FileOutputStream fos = new FileOutputStream(databaseFile);
+        try {
+            new SaveDataStoreFileController().saveAsCsv(fos, snapshot);
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Writes the project file content, the caller is responsible for closing the output stream.
+     *
+     * @param outStream The stream to write the zipped project to
+     * @param snapshot The snapshot of the project and its data store
+     * @throws IOException If unable to write to the stream
+     */
+    private void writeProject(final OutputStream outStream, final ProjectSnapshot snapshot) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(outStream));
+
+        ZipEntry projectEntry = new ZipEntry("project");
+        zos.putNextEntry(projectEntry);
+        zos.write(snapshot.project);
+        zos.closeEntry();
+
+        ZipEntry dbEntry = new ZipEntry("db");
+        zos.putNextEntry(dbEntry);
+        new SaveDataStoreFileController().saveAsCsv(zos, snapshot.dataStore);
+        zos.closeEntry();
+
+        // Readers that know the columnar entries load them in preference to the CSV one.
+        if (SaveDataStoreFileController.canSaveAsColumnar(snapshot.dataStore)) {
+            if (ConfigProperties.getInstance().getSplitArchiveByVariable()) {
+                writeVariableEntries(zos, snapshot.dataStore);
+            } else {
+                zos.putNextEntry(new ZipEntry(ColumnarFormat.ENTRY));
+                new SaveDataStoreFileController().saveAsColumnar(zos, snapshot.dataStore);
+                zos.closeEntry();
+            }
+        }
+
+        // BugzID:1806
+        for (Map.Entry<String, byte[]> vs : snapshot.viewerSettings.entrySet()) {
+            ZipEntry vsEntry = new ZipEntry(vs.getKey());
+            zos.putNextEntry(vsEntry);
+            zos.write(vs.getValue());
+        }
+
+        zos.finish();
+        zos.flush();
+    }
+
+    /**
+     * Writes every variable of the data store to its own zip entry, after the entry listing them. The variables are
+     * encoded and compressed in parallel, the zip stream only copies them.
+     *
+     * @param zos The stream of the project archive
+     * @param snapshot The snapshot of the data store
+     * @throws IOException If unable to write to the stream
+     */
+    void writeVariableEntries(final ZipOutputStream zos, final DataStoreSnapshot snapshot) throws IOException {
+        List<byte[]> variables = new SaveDataStoreFileController().encodeColumnarVariables(snapshot);
+
+        zos.putNextEntry(new ZipEntry(ColumnarFormat.VARIABLES_ENTRY));
+        DataOutputStream out = new DataOutputStream(zos);
+        out.writeInt(ColumnarFormat.MAGIC);
+        out.writeInt(ColumnarFormat.VERSION);
+        ColumnarFormat.writeVarInt(out, variables.size());
+        out.flush();
+        zos.closeEntry();
+
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < variables.size(); i++) {
+            byte[] variable = variables.get(i);
+            crc.reset();
+            crc.update(variable);
+
+            ZipEntry variableEntry = new ZipEntry(ColumnarFormat.variableEntry(i));
+            variableEntry.setMethod(ZipEntry.STORED);
+            variableEntry.setSize(variable.length);
+            variableEntry.setCompressedSize(variable.length);
+            variableEntry.setCrc(crc.getValue());
+            zos.putNextEntry(variableEntry);
+            zos.write(variable);
+            zos.closeEntry();
+        }
+    }
 }
@@ -23,6 +23,11 @@ import org.jdesktop.application.Application;
 import org.jdesktop.application.ResourceMap;
 
 import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
 
 
 /**
@@ -60,42 +65,179 @@ public final class SaveDataStoreFileController {
      *                              disk (usually because of permissions errors).
      */
     public void saveAsCsv(final OutputStream outStream, final DataStore dataStore) throws UserWarningException {
+        saveAsCsv(outStream, DataStoreSnapshot.of(dataStore));
+    }
+
+    /**
+     * Serialize a snapshot of the database to the specified stream in a CSV format. The snapshot can be serialized
+     * from any thread.
+     *
+     * @param outStream The stream to use when serializing.
+     * @param snapshot The snapshot of the data store to save as a CSV file.
+     */
+    void saveAsCsv(final OutputStream outStream, final DataStoreSnapshot snapshot) {
         logger.info("Save data store as CSV to stream");
 
-        PrintStream ps = new PrintStream(outStream);
+        PrintStream ps = new PrintStream(new BufferedOutputStream(outStream));
         ps.println("#4");  // Write an identifier for the version of file
 
-        for (Variable variable : dataStore.getAllVariables()) {
+        for (DataStoreSnapshot.VariableSnapshot variable : snapshot.variables) {
             ps.printf("%s (%s,%s,%s)",
-                    StringUtils.escapeCSV(variable.getName()),
-                    variable.getRootNode().type,
-                    !variable.isHidden(),
+                    StringUtils.escapeCSV(variable.name),
+                    variable.type,
+                    !variable.hidden,
                     "");
 
-            if (variable.getRootNode().type == Argument.Type.MATRIX) {
+            if (variable.type == Argument.Type.MATRIX) {
                 ps.print('-');
 
-                int numArgs = 0;
-                for (Argument arg : variable.getRootNode().childArguments) {
+                for (int i = 0; i < variable.argumentNames.length; i++) {
                     ps.printf("%s|%s",
-                            StringUtils.escapeCSV(arg.name),
-                            arg.type);
+                            StringUtils.escapeCSV(variable.argumentNames[i]),
+                            variable.argumentTypes[i]);
 
-                    if (numArgs < (variable.getRootNode().childArguments.size() - 1)) {
+                    if (i < (variable.argumentNames.length - 1)) {
                         ps.print(',');
                     }
-                    numArgs++;
                 }
             }
 
             ps.println();
 
-            for (Cell cell : variable.getCells()) {
-                ps.printf("%s,%s,%s",
-                        cell.getOnsetString(),
-                        cell.getOffsetString(),
-                        cell.getCellValue().serialize());
-                ps.println();
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < variable.onsets.length; i++) {
+                line.setLength(0);
+                line.append(DatavyuCell.convertMStoTimestamp(variable.onsets[i])).append(',')
+                        .append(DatavyuCell.convertMStoTimestamp(variable.offsets[i])).append(',');
+
+                // Same layout as CellValue.serialize()
+                String[] values = variable.values[i];
+                if (variable.matrix[i]) {
+                    line.append('(');
+                }
+                for (int j = 0; j < values.length; j++) {
+                    if (j > 0) {
+                        line.append(',');
+                    }
+                    line.append(StringUtils.escapeCSVArgument(values[j]));
+                }
+                if (variable.matrix[i]) {
+                    line.append(')');
+                }
+                ps.println(line);
+            }
+        }
+        ps.flush();
+    }
+
+    /**
+     * @param snapshot The snapshot of the data store.
+     * @return True if every variable of the snapshot can be stored in columns, i.e. all the cells of a variable have
+     * the same number of values.
+     */
+    static boolean canSaveAsColumnar(final DataStoreSnapshot snapshot) {
+        for (DataStoreSnapshot.VariableSnapshot variable : snapshot.variables) {
+            boolean matrix = variable.type == Argument.Type.MATRIX;
+            int width = matrix ? variable.argumentNames.length : 1;
+            for (int i = 0; i < variable.values.length; i++) {
+                if (variable.matrix[i] != matrix || variable.values[i].length != width) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serialize a snapshot of the database to the specified stream in the binary columnar format described in
+     * {@link ColumnarFormat}. The caller is responsible for closing the stream.
+     *
+     * @param outStream The stream to use when serializing.
+     * @param snapshot The snapshot of the data store, see {@link #canSaveAsColumnar(DataStoreSnapshot)}.
+     * @throws IOException If unable to write to the stream.
+     */
+    void saveAsColumnar(final OutputStream outStream, final DataStoreSnapshot snapshot) throws IOException {
+        logger.info("Save data store as columns to stream");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outStream));
+        out.writeInt(ColumnarFormat.MAGIC);
+        out.writeInt(ColumnarFormat.VERSION);
+        ColumnarFormat.writeVarInt(out, snapshot.variables.size());
+
+        for (DataStoreSnapshot.VariableSnapshot variable : snapshot.variables) {
+            writeColumnarVariable(out, variable);
+        }
+        out.flush();
+    }
+
+    /**
+     * Encodes every variable of a snapshot of the database in parallel, each in the binary columnar format described
+     * in {@link ColumnarFormat} and compressed, ready to be stored in its own zip entry.
+     *
+     * @param snapshot The snapshot of the data store, see {@link #canSaveAsColumnar(DataStoreSnapshot)}.
+     * @return The compressed variables, in the order of the data store.
+     * @throws IOException If unable to encode a variable.
+     */
+    List<byte[]> encodeColumnarVariables(final DataStoreSnapshot snapshot) throws IOException {
+        logger.info("Encode " + snapshot.variables.size() + " variables as columns");
+        try {
+            // Variables are independent, they are encoded on the common fork-join pool.
+            return snapshot.variables.parallelStream()
+                    .map(SaveDataStoreFileController::encodeColumnarVariable)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static byte[] encodeColumnarVariable(final DataStoreSnapshot.VariableSnapshot variable) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)))) {
+            writeColumnarVariable(out, variable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeColumnarVariable(final DataOutput out, final DataStoreSnapshot.VariableSnapshot variable)
+            throws IOException {
+        ColumnarFormat.writeString(out, variable.name);
+        ColumnarFormat.writeString(out, variable.type.name());
+        out.writeBoolean(variable.hidden);
+        ColumnarFormat.writeVarInt(out, variable.argumentNames.length);
+        for (int i = 0; i < variable.argumentNames.length; i++) {
+            ColumnarFormat.writeString(out, variable.argumentNames[i]);
+            ColumnarFormat.writeString(out, variable.argumentTypes[i].name());
+        }
+
+        int numCells = variable.onsets.length;
+        ColumnarFormat.writeVarInt(out, numCells);
+        ColumnarFormat.writeDeltas(out, variable.onsets);
+        ColumnarFormat.writeDeltas(out, variable.offsets);
+
+        int numColumns = variable.type == Argument.Type.MATRIX ? variable.argumentNames.length : 1;
+        ColumnarFormat.writeVarInt(out, numColumns);
+        int[] indices = new int[numCells];
+        for (int column = 0; column < numColumns; column++) {
+            // Codes repeat a lot, each distinct value is only written once.
+            Map<String, Integer> dictionary = new LinkedHashMap<String, Integer>();
+            for (int i = 0; i < numCells; i++) {
+                String value = variable.values[i][column];
+                Integer index = dictionary.get(value);
+                if (index == null) {
+                    index = dictionary.size();
+                    dictionary.put(value, index);
+                }
+                indices[i] = index;
+            }
+
+            ColumnarFormat.writeVarInt(out, dictionary.size());
+            for (String value : dictionary.keySet()) {
+                ColumnarFormat.writeString(out, value);
+            }
+            for (int i = 0; i < numCells; i++) {
+                ColumnarFormat.writeVarInt(out, indices[i]);
             }
         }
     }
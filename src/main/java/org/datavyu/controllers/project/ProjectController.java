@@ -21,11 +21,13 @@ import javax.swing.event.HyperlinkListener;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.Datavyu;
+import org.datavyu.controllers.ChangeJournalFile;
 import org.datavyu.controllers.VocabEditorController;
 import org.datavyu.controllers.component.MixerController;
 import org.datavyu.models.Identifier;
 import org.datavyu.models.component.TrackModel;
 import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.ChangeJournal;
 import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.DataStoreFactory;
 import org.datavyu.models.db.Variable;
@@ -35,6 +37,7 @@ import org.datavyu.models.project.ViewerSetting;
 import org.datavyu.plugins.StreamViewer;
 import org.datavyu.plugins.Plugin;
 import org.datavyu.plugins.PluginManager;
+import org.datavyu.util.FileFilters.OpfFilter;
 import org.datavyu.util.FileSystemUtils;
 import org.datavyu.views.VideoController;
 import org.datavyu.views.discrete.SpreadSheetPanel;
@@ -91,6 +94,9 @@ public final class ProjectController {
     /** Last option used for saving */
     private FileFilter lastSaveOption;
 
+    /** Journal of the changes made since the project file was last saved, null when changes are not journaled. */
+    private ChangeJournalFile journal;
+
     /**
      * Default constructor.
      */
@@ -154,6 +160,8 @@ public final class ProjectController {
      * @param newDataStore The new data store we are using.
      */
     public void setDataStore(final DataStore newDataStore) {
+        // The journal describes changes to the previous data store.
+        stopJournal(true);
         dataStore = newDataStore;
         dataStore.setTitleNotifier(Datavyu.getApplication());
         
@@ -608,6 +616,85 @@ public final class ProjectController {
         project.setViewerSettings(viewerSettings);
     }
 
+    /**
+     * Starts journaling the changes to the data store next to the project file, see {@link ChangeJournalFile}. Any
+     * previous journal of this project is discarded. Only project archives are journaled.
+     *
+     * @param replay True to replay the records already in the journal and keep them, i.e. when the project file has
+     *               just been opened after Datavyu did not exit cleanly; false when the project file has just been
+     *               saved or opened and holds all the changes.
+     * @return The number of changes replayed.
+     */
+    public int startJournal(final boolean replay) {
+        stopJournal(true);
+        if (!(lastSaveOption instanceof OpfFilter) || getProjectName() == null || getProjectDirectory() == null) {
+            return 0;
+        }
+
+        File projectFile = new File(getProjectDirectory(), getProjectName() + ".opf");
+        int replayed = 0;
+        try {
+            journal = new ChangeJournalFile(projectFile, dataStore, replay);
+            if (replay) {
+                try {
+                    replayed = journal.replay();
+                } catch (IOException e) {
+                    logger.error("Unable to replay the journal. Error: ", e);
+                }
+            }
+            replaceJournal(null, journal);
+        } catch (IOException e) {
+            logger.error("Unable to open the journal for '" + projectFile.getAbsolutePath() + "'. Error: ", e);
+        }
+        return replayed;
+    }
+
+    /**
+     * Stops journaling the changes to the data store.
+     *
+     * @param discard True to delete the journal, i.e. when the project is closed; false to keep it for recovery.
+     */
+    public void stopJournal(final boolean discard) {
+        if (journal == null) {
+            return;
+        }
+        replaceJournal(journal, null);
+        if (discard) {
+            journal.discard();
+        } else {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Unable to close the journal. Error: ", e);
+            }
+        }
+        journal = null;
+    }
+
+    /**
+     * Replaces the journal file of the data store, keeping the journals that pass the changes on to it, e.g. the
+     * changes recorded while a script runs.
+     *
+     * @param previous The journal file to replace, null if there is none.
+     * @param replacement The journal file to replace it with, null to stop journaling.
+     */
+    private void replaceJournal(final ChangeJournalFile previous, final ChangeJournalFile replacement) {
+        ChangeJournal current = dataStore.getChangeJournal();
+        if (current == null || current == previous) {
+            dataStore.setChangeJournal(replacement);
+        } else if (!current.replaceNext(previous, replacement)) {
+            logger.error("Unable to replace the journal of the data store.");
+        }
+    }
+
+    /**
+     * @return The journal of the changes made since the project file was last saved, null if changes are not
+     * journaled.
+     */
+    public ChangeJournalFile getJournal() {
+        return journal;
+    }
+
     /**
      * Marks the project state as being saved.
      */
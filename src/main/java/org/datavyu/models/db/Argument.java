@@ -82,6 +82,19 @@ public final class Argument implements Serializable {
         return child;
     }
 
+    /**
+     * @return A copy of this argument and of its child arguments, which doesn't change when this argument does.
+     */
+    public Argument copy() {
+        Argument copy = new Argument(name, type, id);
+        copy.childArguments.clear();
+        for (Argument child : childArguments) {
+            copy.childArguments.add(child.copy());
+        }
+        copy.lastCodeNumber = lastCodeNumber;
+        return copy;
+    }
+
     public void clearChildArguments() {
         childArguments.clear();
     }
@@ -0,0 +1,135 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable interval index over the cells of a variable.
+ *
+ * Cells are held in temporal order (see {@link CellComparator}) in primitive onset/offset arrays. The sorted array is
+ * treated as an implicit balanced binary search tree (the root of the range [lo, hi) is its midpoint) and every node
+ * is augmented with the largest offset found in its subtree. Stabbing and range queries then prune every subtree that
+ * ends before the query window or starts after it.
+ *
+ * Only cells with onset &lt;= offset are indexed, since {@link Cell#isInTimeWindow(long)} can never be true for any
+ * other cell.
+ */
+final class CellIntervalIndex {
+
+    /** Cells in temporal order. */
+    private final Cell[] cells;
+
+    /** Onsets of the cells, in the same order. */
+    private final long[] onsets;
+
+    /** Offsets of the cells, in the same order. */
+    private final long[] offsets;
+
+    /** Largest offset in the implicit subtree rooted at each index. */
+    private final long[] maxOffsets;
+
+    /**
+     * Builds a new index from a snapshot of the supplied cells.
+     *
+     * @param source The cells to index.
+     */
+    CellIntervalIndex(final Collection<Cell> source) {
+        List<Cell> sorted = new ArrayList<>(source.size());
+        for (Cell cell : source) {
+            if (cell.getOnset() <= cell.getOffset()) {
+                sorted.add(cell);
+            }
+        }
+        Collections.sort(sorted, new CellComparator());
+
+        int n = sorted.size();
+        cells = sorted.toArray(new Cell[n]);
+        onsets = new long[n];
+        offsets = new long[n];
+        maxOffsets = new long[n];
+        for (int i = 0; i < n; i++) {
+            onsets[i] = cells[i].getOnset();
+            offsets[i] = cells[i].getOffset();
+        }
+        buildMaxOffsets(0, n);
+    }
+
+    private long buildMaxOffsets(final int lo, final int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(offsets[mid], Math.max(buildMaxOffsets(lo, mid), buildMaxOffsets(mid + 1, hi)));
+        maxOffsets[mid] = max;
+        return max;
+    }
+
+    /**
+     * @return The number of cells held in the index.
+     */
+    int size() {
+        return cells.length;
+    }
+
+    /**
+     * @param time The time in milliseconds.
+     * @return The cells for which {@link Cell#isInTimeWindow(long)} is true, in temporal order.
+     */
+    List<Cell> getCellsAt(final long time) {
+        return getCellsOverlapping(time, time);
+    }
+
+    /**
+     * @param start The start of the window in milliseconds (inclusive).
+     * @param end   The end of the window in milliseconds (inclusive).
+     * @return The cells that are in their time window for at least one time in [start, end], in temporal order.
+     */
+    List<Cell> getCellsOverlapping(final long start, final long end) {
+        List<Cell> result = new ArrayList<>();
+        if (start <= end) {
+            collect(0, cells.length, start, end, result);
+        }
+        return result;
+    }
+
+    /**
+     * Collects, in order, the cells of the implicit subtree over [lo, hi) that overlap [start, end].
+     */
+    private void collect(final int lo, final int hi, final long start, final long end, final List<Cell> result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+
+        // Nothing in this subtree ends inside or after the window.
+        if (maxOffsets[mid] < start) {
+            return;
+        }
+        collect(lo, mid, start, end, result);
+
+        // Everything from mid onwards starts after the window.
+        if (onsets[mid] > end) {
+            return;
+        }
+        if (offsets[mid] >= start) {
+            result.add(cells[mid]);
+        }
+        collect(mid + 1, hi, start, end, result);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+/**
+ * Records the changes made to the content of a data store as they happen.
+ *
+ * Unlike the listeners, a journal is told about every change that needs to be saved, and is told about it before
+ * listeners get a chance to make further changes. Cells are passed as they are; their position in
+ * {@link Variable#getCells()} is not stable, as {@link Variable#getCellsTemporally()} re-sorts that list.
+ */
+public interface ChangeJournal {
+
+    /**
+     * A variable has been added to the data store, either empty or with cells (undo).
+     *
+     * @param variable The added variable.
+     */
+    void variableAdded(final Variable variable);
+
+    /**
+     * A variable is about to be removed from the data store.
+     *
+     * @param variable The variable that is removed.
+     */
+    void variableRemoved(final Variable variable);
+
+    /**
+     * A variable has been renamed.
+     *
+     * @param oldName The previous name of the variable.
+     * @param newName The new name of the variable.
+     */
+    void variableRenamed(final String oldName, final String newName);
+
+    /**
+     * An argument has been appended to a matrix variable.
+     *
+     * @param variable The variable.
+     * @param argument The new argument.
+     */
+    void argumentAdded(final Variable variable, final Argument argument);
+
+    /**
+     * An argument of a matrix variable has been moved.
+     *
+     * @param variable The variable.
+     * @param oldIndex The previous index of the argument.
+     * @param newIndex The new index of the argument.
+     */
+    void argumentMoved(final Variable variable, final int oldIndex, final int newIndex);
+
+    /**
+     * An argument of a matrix variable has been renamed.
+     *
+     * @param variable The variable.
+     * @param index The index of the argument.
+     * @param oldName The previous name of the argument.
+     * @param newName The new name of the argument.
+     */
+    void argumentRenamed(final Variable variable, final int index, final String oldName, final String newName);
+
+    /**
+     * An argument has been removed from a matrix variable.
+     *
+     * @param variable The variable.
+     * @param name The name of the removed argument.
+     */
+    void argumentRemoved(final Variable variable, final String name);
+
+    /**
+     * A cell has been appended to a variable.
+     *
+     * @param variable The variable.
+     * @param cell The new cell, with its current onset, offset and value.
+     */
+    void cellAdded(final Variable variable, final Cell cell);
+
+    /**
+     * A cell is about to be removed from a variable.
+     *
+     * @param variable The variable.
+     * @param cell The cell that is removed.
+     */
+    void cellRemoved(final Variable variable, final Cell cell);
+
+    /**
+     * The onset, the offset or a value of a cell is about to change. Journals that need the previous content of the
+     * cell, e.g. to undo the change, read it here.
+     *
+     * @param cell The cell, with its current onset, offset and value.
+     */
+    default void cellChanging(final Cell cell) {}
+
+    /**
+     * The arguments of a matrix variable are about to be added, moved or removed.
+     *
+     * @param variable The variable, with its current arguments.
+     */
+    default void argumentsChanging(final Variable variable) {}
+
+    /**
+     * The onset or offset of a cell has changed.
+     *
+     * @param cell The cell.
+     */
+    void cellTimesChanged(final Cell cell);
+
+    /**
+     * A value of a cell has changed.
+     *
+     * @param cell The cell.
+     * @param argumentIndex The index of the changed argument of a matrix cell, -1 for the value of other cells.
+     * @param value The new value.
+     */
+    void cellValueChanged(final Cell cell, final int argumentIndex, final String value);
+
+    /**
+     * Replaces a journal that this journal passes the changes on to, directly or through other journals.
+     *
+     * @param journal The journal to replace, null for the end of the chain of journals.
+     * @param replacement The journal to pass the changes on to instead, null to stop passing them on.
+     * @return True if the journal was replaced.
+     */
+    default boolean replaceNext(final ChangeJournal journal, final ChangeJournal replacement) {
+        return false;
+    }
+}
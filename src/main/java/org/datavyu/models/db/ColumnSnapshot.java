@@ -0,0 +1,167 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The cells of a variable as flat arrays, so that the Ruby API can read or write a whole column in a single call.
+ *
+ * Every call from Ruby into Java costs far more than the Java code behind it, reading the onset, the offset and each
+ * value of every cell one call at a time made scripts over large columns take minutes. A snapshot is taken, and
+ * written back, in one call instead.
+ */
+public final class ColumnSnapshot {
+
+    /** The cells, in temporal order */
+    private final Cell[] cells;
+
+    /** The onsets of the cells in milliseconds */
+    private final long[] onsets;
+
+    /** The offsets of the cells in milliseconds */
+    private final long[] offsets;
+
+    /** The values of the cells, one per argument for matrix cells and a single one for the other cells */
+    private final String[][] values;
+
+    private ColumnSnapshot(final int size) {
+        cells = new Cell[size];
+        onsets = new long[size];
+        offsets = new long[size];
+        values = new String[size][];
+    }
+
+    /**
+     * Takes a snapshot of the cells of a variable.
+     *
+     * @param variable The variable.
+     * @return The snapshot of its cells, in temporal order.
+     */
+    public static ColumnSnapshot of(final Variable variable) {
+        List<Cell> temporalCells = variable.getCellsTemporally();
+        ColumnSnapshot snapshot = new ColumnSnapshot(temporalCells.size());
+        for (int i = 0; i < snapshot.cells.length; i++) {
+            Cell cell = temporalCells.get(i);
+            snapshot.cells[i] = cell;
+            snapshot.onsets[i] = cell.getOnset();
+            snapshot.offsets[i] = cell.getOffset();
+
+            CellValue value = cell.getCellValue();
+            if (value instanceof MatrixCellValue) {
+                MatrixCellValue matrix = (MatrixCellValue) value;
+                String[] arguments = new String[matrix.getNumArguments()];
+                for (int j = 0; j < arguments.length; j++) {
+                    arguments[j] = matrix.getArgumentValue(j).toString();
+                }
+                snapshot.values[i] = arguments;
+            } else {
+                snapshot.values[i] = new String[]{value.toString()};
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return The number of cells.
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * @return The cells, in temporal order.
+     */
+    public Cell[] getCells() {
+        return cells;
+    }
+
+    /**
+     * @return The onsets of the cells in milliseconds.
+     */
+    public long[] getOnsets() {
+        return onsets;
+    }
+
+    /**
+     * @return The offsets of the cells in milliseconds.
+     */
+    public long[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return The values of the cells, one per argument for matrix cells and a single one for the other cells.
+     */
+    public String[][] getValues() {
+        return values;
+    }
+
+    /**
+     * Writes cells into a variable in a single call, only changing what differs from the current cells.
+     *
+     * Existing cells get their onset, offset and values set when they differ. The new cells are filled in before they
+     * are added, all at once, so listeners see each of them once with its final content.
+     *
+     * @param variable  The variable to write to.
+     * @param cells     The cells to write, null for the cells to create. Created cells are stored in the array.
+     * @param onsets    The onsets of the cells in milliseconds.
+     * @param offsets   The offsets of the cells in milliseconds.
+     * @param codeNames The names of the arguments the values of matrix cells are given for, ignored for other cells.
+     * @param values    The values of each cell, following codeNames for matrix cells and a single value otherwise. A
+     *                  null value leaves the value of the cell unchanged, as does an empty value for a matrix argument.
+     * @return The cells, with the created cells filled in.
+     */
+    public static Cell[] apply(final Variable variable, final Cell[] cells, final long[] onsets, final long[] offsets,
+                               final String[] codeNames, final String[][] values) {
+        boolean matrix = variable.getRootNode().type == Argument.Type.MATRIX;
+        int[] argumentIndices = new int[codeNames.length];
+        for (int j = 0; j < codeNames.length; j++) {
+            argumentIndices[j] = matrix ? variable.getArgumentIndex(codeNames[j]) : -1;
+        }
+
+        List<Cell> newCells = new ArrayList<Cell>();
+        for (int i = 0; i < cells.length; i++) {
+            Cell cell = cells[i];
+            if (cell == null) {
+                cell = variable.createDetachedCell();
+                cells[i] = cell;
+                newCells.add(cell);
+            }
+            if (cell.getOnset() != onsets[i]) {
+                cell.setOnset(onsets[i]);
+            }
+            if (cell.getOffset() != offsets[i]) {
+                cell.setOffset(offsets[i]);
+            }
+
+            if (matrix) {
+                MatrixCellValue value = (MatrixCellValue) cell.getCellValue();
+                for (int j = 0; j < argumentIndices.length; j++) {
+                    String code = values[i][j];
+                    if (argumentIndices[j] >= 0 && code != null && !code.isEmpty()) {
+                        value.getArgumentValue(argumentIndices[j]).set(code);
+                    }
+                }
+            } else if (values[i][0] != null) {
+                // The value is left alone when it is unchanged.
+                cell.getCellValue().set(values[i][0]);
+            }
+        }
+        variable.addCells(newCells);
+        return cells;
+    }
+}
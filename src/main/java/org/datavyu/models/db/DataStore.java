@@ -120,6 +120,14 @@ public interface DataStore {
      */
     void addVariable(final Variable var);
 
+    /**
+     * Moves a variable to a position in the order of the variables.
+     *
+     * @param var The variable to move.
+     * @param index The position to move the variable to.
+     */
+    void moveVariable(final Variable var, final int index);
+
     /**
      * Removes a variable from the datastore.
      *
@@ -182,5 +190,17 @@ public interface DataStore {
     
     void addExemptionVariable(String s);
 
+    /**
+     * Sets the journal that records the changes made to the data store.
+     *
+     * @param journal The journal to record changes to, null to stop recording.
+     */
+    void setChangeJournal(final ChangeJournal journal);
+
+    /**
+     * @return The journal recording the changes made to the data store, null if changes are not recorded.
+     */
+    ChangeJournal getChangeJournal();
+
     String getExemptionVariables();
 }
@@ -15,21 +15,29 @@
 package org.datavyu.models.db;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class DatavyuCell implements Cell {
 
-    static Map<UUID, List<CellListener>> allListeners = new HashMap<UUID, List<CellListener>>();
-    final private UUID id = UUID.randomUUID();
+    /** Source of the identifiers of cells, unique within a run of Datavyu */
+    private static final AtomicLong nextId = new AtomicLong();
+
+    final private long id = nextId.incrementAndGet();
     private long onset = 0L;
     private long offset = 0L;
     private Argument type;
     private boolean selected;
     private boolean highlighted;
     private Variable parent;
-    private Map<String, CellValue> arguments = new HashMap<String, CellValue>();
     private CellValue cellValue;
 
+    /**
+     * The listeners of this cell. The list is never modified, adding or removing a listener replaces it, so it can be
+     * iterated from any thread without locking and cells without listeners share the empty list.
+     */
+    private volatile List<CellListener> listeners = Collections.emptyList();
+
     public DatavyuCell() {
     }
 
@@ -45,34 +53,23 @@ public class DatavyuCell implements Cell {
         // Build argument list from the argument given
 
         if (type.type == Argument.Type.NOMINAL) {
-            this.cellValue = new DatavyuNominalCellValue(getID(), type, this);
+            this.cellValue = new DatavyuNominalCellValue(type, this);
         } else if (type.type == Argument.Type.TEXT) {
-            this.cellValue = new DatavyuTextCellValue(getID(), type, this);
+            this.cellValue = new DatavyuTextCellValue(type, this);
         } else {
-            this.cellValue = new DatavyuMatrixCellValue(getID(), type, this);
+            this.cellValue = new DatavyuMatrixCellValue(type, this);
         }
     }
 
-    /**
-     * @param cellId The Identifier of the variable we want the listeners for.
-     * @return The list of listeners for the specified cellId.
-     */
-    private static List<CellListener> getListeners(UUID cellId) {
-        List<CellListener> result = allListeners.get(cellId);
-
-        if (result == null) {
-            result = new ArrayList<CellListener>();
-            allListeners.put(cellId, result);
-        }
-
-        return result;
-    }
-
     public Variable getVariable() {
         return parent;
     }
 
-    private String convertMStoTimestamp(long time) {
+    /**
+     * @param time The time in milliseconds.
+     * @return The time as a HH:MM:SS:mmm timestamp.
+     */
+    public static String convertMStoTimestamp(long time) {
         long hours = Math.round(Math.floor((time / 1000.0 / 60.0 / 60.0)));
         long minutes = Math.round(Math.floor(time / 1000.0 / 60.0 - (hours * 60)));
         long seconds = Math.round(Math.floor(time / 1000.0 - (hours * 60 * 60) - (minutes * 60)));
@@ -108,9 +105,13 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void setOffset(final long newOffset) {
-        if (newOffset != offset) parent.getOwningDatastore().markAsChanged();
-        offset = newOffset;
-        for (CellListener cl : getListeners(getID())) {
+        if (newOffset != offset) {
+            parent.getOwningDatastore().markAsChanged();
+            notifyParentOfChanging();
+            offset = newOffset;
+            notifyParentOfTimeChange();
+        }
+        for (CellListener cl : listeners) {
             cl.offsetChanged(offset);
         }
     }
@@ -137,13 +138,40 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void setOnset(final long newOnset) {
-        if (newOnset != onset) parent.getOwningDatastore().markAsChanged();
-        onset = newOnset;
-        for (CellListener cl : getListeners(getID())) {
+        if (newOnset != onset) {
+            parent.getOwningDatastore().markAsChanged();
+            notifyParentOfChanging();
+            onset = newOnset;
+            notifyParentOfTimeChange();
+        }
+        for (CellListener cl : listeners) {
             cl.onsetChanged(onset);
         }
     }
 
+    /**
+     * Records that the onset or offset of this cell is about to change.
+     */
+    private void notifyParentOfChanging() {
+        ChangeJournal journal = parent.getOwningDatastore().getChangeJournal();
+        if (journal != null) {
+            journal.cellChanging(this);
+        }
+    }
+
+    /**
+     * Lets the parent variable know that the temporal order of its cells may have changed, and records the change.
+     */
+    private void notifyParentOfTimeChange() {
+        if (parent instanceof DatavyuVariable) {
+            ((DatavyuVariable) parent).cellTimesChanged();
+        }
+        ChangeJournal journal = parent.getOwningDatastore().getChangeJournal();
+        if (journal != null) {
+            journal.cellTimesChanged(this);
+        }
+    }
+
     @Override
     public String getOnsetString() {
         return convertMStoTimestamp(onset);
@@ -172,7 +200,7 @@ public class DatavyuCell implements Cell {
             setHighlighted(false);
         }
 
-        for (CellListener cl : getListeners(getID())) {
+        for (CellListener cl : listeners) {
             cl.selectionChange(selected);
             if (!selected) {
                 cl.highlightingChange(false);
@@ -193,7 +221,7 @@ public class DatavyuCell implements Cell {
             setSelected(highlighted);
         }
 
-        for (CellListener cl : getListeners(getID())) {
+        for (CellListener cl : listeners) {
             cl.highlightingChange(highlighted);
         }
     }
@@ -206,16 +234,7 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void moveMatrixValue(final int oldIndex, int newIndex) {
-        DatavyuMatrixCellValue val = (DatavyuMatrixCellValue) getCellValue();
-        List<CellValue> cellValues = val.getArguments();
-        CellValue v = cellValues.get(oldIndex);
-
-        cellValues.remove(oldIndex);
-        cellValues.add(newIndex, v);
-
-        for (int i = 0; i < cellValues.size(); i++) {
-            ((DatavyuCellValue) cellValues.get(i)).setIndex(i);
-        }
+        ((DatavyuMatrixCellValue) getCellValue()).moveArgument(oldIndex, newIndex);
     }
 
     @Override
@@ -225,45 +244,47 @@ public class DatavyuCell implements Cell {
 
     @Override
     public void setMatrixValue(final int index, final String value) {
-        DatavyuMatrixCellValue val = (DatavyuMatrixCellValue) getCellValue();
-        List<CellValue> cellValues = val.getArguments();
-        cellValues.get(index).set(value);
+        ((DatavyuMatrixCellValue) getCellValue()).getArgumentValue(index).set(value);
     }
 
     @Override
     public CellValue getMatrixValue(final int index) {
-        return ((DatavyuMatrixCellValue) getCellValue()).getArguments().get(index);
+        return ((DatavyuMatrixCellValue) getCellValue()).getArgumentValue(index);
     }
 
     @Override
     public void clearMatrixValue(final int index) {
-        DatavyuMatrixCellValue val = (DatavyuMatrixCellValue) getCellValue();
-        List<CellValue> cellValues = val.getArguments();
-        cellValues.get(index).clear();
+        ((DatavyuMatrixCellValue) getCellValue()).getArgumentValue(index).clear();
     }
 
     @Override
-    public void addListener(final CellListener cellListener) {
-        getListeners(getID()).add(cellListener);
+    public synchronized void addListener(final CellListener cellListener) {
+        List<CellListener> updated = new ArrayList<CellListener>(listeners.size() + 1);
+        updated.addAll(listeners);
+        updated.add(cellListener);
+        listeners = updated;
     }
 
     @Override
-    public void removeListener(final CellListener cellListener) {
-        getListeners(getID()).remove(cellListener);
+    public synchronized void removeListener(final CellListener cellListener) {
+        List<CellListener> updated = new ArrayList<CellListener>(listeners);
+        if (updated.remove(cellListener)) {
+            listeners = updated.isEmpty() ? Collections.<CellListener>emptyList() : updated;
+        }
     }
 
-    public UUID getID() {
+    public long getID() {
         return id;
     }
 
     @Override
     public String getCellId() {
-        return this.getID().toString();
+        return Long.toString(id);
     }
 
     @Override
     public int hashCode() {
-        return this.getID().hashCode();
+        return Long.hashCode(id);
     }
 
     @Override
@@ -276,11 +297,7 @@ public class DatavyuCell implements Cell {
         }
         DatavyuCell otherC = (DatavyuCell) other;
 
-        if (otherC.getID().toString().equals(this.getID().toString())) {
-            return true;
-        } else {
-            return false;
-        }
+        return otherC.getID() == this.getID();
     }
 
     @Override
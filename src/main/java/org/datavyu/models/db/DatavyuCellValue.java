@@ -26,16 +26,12 @@ package org.datavyu.models.db;
 import org.datavyu.util.StringUtils;
 
 import java.io.Serializable;
-import java.util.UUID;
 
 
 public abstract class DatavyuCellValue implements CellValue, Serializable, Comparable<DatavyuCellValue> {
 
     String value;
     int index;
-    UUID parent_id;
-    UUID id = UUID.randomUUID();
-    String name = "";
     Argument arg;
     Cell parent;
 
@@ -46,7 +42,9 @@ public abstract class DatavyuCellValue implements CellValue, Serializable, Compa
 
     @Override
     public void clear() {
-        this.value = null;
+        if (this.value != null) {
+            change(null);
+        }
     }
 
     @Override
@@ -80,9 +78,37 @@ public abstract class DatavyuCellValue implements CellValue, Serializable, Compa
     @Override
     public void set(final String newValue) {
         if (!newValue.equals(toString()) && !newValue.equals(this.value)) {
-            this.value = newValue;
-            this.parent.getVariable().getOwningDatastore().markAsChanged();
+            change(newValue);
+        }
+    }
+
+    /**
+     * Changes the value, marking the data store as changed and journaling the change.
+     *
+     * @param newValue The new value, null to clear the value.
+     */
+    private void change(final String newValue) {
+        DataStore dataStore = this.parent.getVariable().getOwningDatastore();
+        ChangeJournal journal = dataStore.getChangeJournal();
+        if (journal != null) {
+            journal.cellChanging(parent);
         }
+        this.value = newValue == null ? null : intern(newValue);
+        dataStore.markAsChanged();
+
+        if (journal != null) {
+            CellValue cellValue = parent.getCellValue();
+            int argumentIndex = cellValue instanceof MatrixCellValue ? index : -1;
+            journal.cellValueChanged(parent, argumentIndex, newValue == null ? "" : newValue);
+        }
+    }
+
+    /**
+     * @param newValue A new value of this cell value.
+     * @return The copy of the value to keep, values that repeat from one cell to the next share a single copy.
+     */
+    String intern(final String newValue) {
+        return newValue;
     }
 
     public Argument getArgument() {
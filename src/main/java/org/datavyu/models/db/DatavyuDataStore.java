@@ -57,6 +57,9 @@ public class DatavyuDataStore implements DataStore {
     
     private String exemptionVariables = "";
 
+    /** The journal recording the changes to this data store, null if changes are not recorded. */
+    private volatile ChangeJournal changeJournal;
+
 
     public DatavyuDataStore() {
         variables = new HashMap<>();
@@ -179,6 +182,9 @@ public class DatavyuDataStore implements DataStore {
 
         Variable v = new DatavyuVariable(name, rootNode, grandfathered, this);
         variables.put(name, v);
+        if (changeJournal != null) {
+            changeJournal.variableAdded(v);
+        }
 
         for (DataStoreListener dbl : this.dataStoreListeners) {
             dbl.variableAdded(v);
@@ -190,6 +196,9 @@ public class DatavyuDataStore implements DataStore {
 
     @Override
     public void removeVariable(final Variable var) {
+        if (changeJournal != null) {
+            changeJournal.variableRemoved(var);
+        }
         for (DataStoreListener listener : this.dataStoreListeners) {
             listener.variableRemoved(var);
         }
@@ -204,9 +213,27 @@ public class DatavyuDataStore implements DataStore {
         }
 
         variables.put(var.getName(), var);
+        if (changeJournal != null) {
+            changeJournal.variableAdded(var);
+        }
         markAsChanged();
     }
 
+    @Override
+    public void moveVariable(final Variable var, final int index) {
+        List<Variable> order = getAllVariables();
+        if (!order.remove(var)) {
+            return;
+        }
+        order.add(Math.max(0, Math.min(index, order.size())), var);
+        for (int i = 0; i < order.size(); i++) {
+            order.get(i).setOrderIndex(i);
+        }
+        for (DataStoreListener listener : this.dataStoreListeners) {
+            listener.variableOrderChanged();
+        }
+    }
+
     @Override
     public void removeCell(final Cell cell) {
         getVariable(cell).removeCell(cell);
@@ -237,7 +264,12 @@ public class DatavyuDataStore implements DataStore {
     public void updateVariableName(String oldName, String newName, Variable variable) {
         this.variables.remove(oldName);
         this.variables.put(newName, variable);
-        if (!oldName.equals(newName)) markAsChanged();
+        if (!oldName.equals(newName)) {
+            if (changeJournal != null) {
+                changeJournal.variableRenamed(oldName, newName);
+            }
+            markAsChanged();
+        }
     }
 
     @Override
@@ -273,4 +305,14 @@ public class DatavyuDataStore implements DataStore {
     {
         return exemptionVariables;
     }
+
+    @Override
+    public void setChangeJournal(final ChangeJournal journal) {
+        changeJournal = journal;
+    }
+
+    @Override
+    public ChangeJournal getChangeJournal() {
+        return changeJournal;
+    }
 }
@@ -26,77 +26,58 @@ package org.datavyu.models.db;
 import java.util.*;
 
 
+/**
+ * The value of a cell of a matrix variable. The arguments are kept in the order of their index, so they are read
+ * without sorting; only creating, removing and moving arguments change the order.
+ */
 public final class DatavyuMatrixCellValue extends DatavyuCellValue implements MatrixCellValue {
 
-    private UUID parentId;
-    private String value;
+    /** The values of the arguments, the value at position i has index i */
     private List<CellValue> cellValues;
 
+    /** Read only view of the argument values */
+    private List<CellValue> arguments;
+
 
     public DatavyuMatrixCellValue() {
     }
 
-    public DatavyuMatrixCellValue(UUID parent_id, Argument type, Cell parent) {
-        this.parentId = parent_id;
+    public DatavyuMatrixCellValue(Argument type, Cell parent) {
         this.parent = parent;
-        cellValues = new ArrayList<CellValue>();
+        cellValues = new ArrayList<CellValue>(type.childArguments.size());
+        arguments = Collections.unmodifiableList(cellValues);
         for (Argument arg : type.childArguments) {
             createArgument(arg);
         }
         this.arg = type;
-        value = "MATRIX";
     }
 
-    // Method to order the cellValues coming out of the DB.
-    private static void order(List<CellValue> cellValues) {
-
-        Collections.sort(cellValues, new Comparator() {
-            @Override
-            public int compare(Object o1, Object o2) {
-
-                int x1 = ((DatavyuCellValue) o1).getIndex();
-                int x2 = ((DatavyuCellValue) o2).getIndex();
-
-                if (x1 != x2) {
-                    return x1 - x2;
-                } else {
-                    return 0;
-                }
-            }
-        });
-    }
-    
     @Override
     public String toString() {
-        String result = "";
-        List<CellValue> cellValues = getArguments();
-
-        result += "(";
+        StringBuilder result = new StringBuilder("(");
         for (int i = 0; i < cellValues.size(); i++) {
             CellValue v = cellValues.get(i);
             if (v.toString() == null) {
-                result += "<code" + String.valueOf(i) + ">";
+                result.append("<code").append(i).append('>');
             } else {
-                result += v.toString();
+                result.append(v.toString());
             }
             if (i < cellValues.size() - 1) {
-                result += ",";
+                result.append(',');
             }
         }
-        result += ")";
+        result.append(')');
 
-        return result;
+        return result.toString();
     }
 
     public String serialize() {
-        List<CellValue> cellValues = getArguments();
-
         StringBuilder result = new StringBuilder("(");
-        for (Iterator<CellValue> i = cellValues.iterator(); i.hasNext(); ) {
-            CellValue v = i.next();
-            result.append(v.serialize());
-            if (i.hasNext())
+        for (int i = 0; i < cellValues.size(); i++) {
+            if (i > 0) {
                 result.append(',');
+            }
+            result.append(cellValues.get(i).serialize());
         }
         result.append(')');
 
@@ -105,31 +86,54 @@ public final class DatavyuMatrixCellValue extends DatavyuCellValue implements Ma
 
     @Override
     public List<CellValue> getArguments() {
-        order(cellValues);
-        return cellValues;
+        return arguments;
+    }
+
+    @Override
+    public CellValue getArgumentValue(final int index) {
+        return cellValues.get(index);
+    }
+
+    @Override
+    public int getNumArguments() {
+        return cellValues.size();
     }
 
     @Override
     public CellValue createArgument(Argument arg) {
         CellValue val = null;
-        String name = String.format("code%02d", getArguments().size() + 1);
         if (arg.type == Argument.Type.NOMINAL) {
-            val = new DatavyuNominalCellValue(this.id, name, getArguments().size(), arg, parent);
+            val = new DatavyuNominalCellValue(cellValues.size(), arg, parent);
         } else if (arg.type == Argument.Type.TEXT) {
-            val = new DatavyuTextCellValue(this.id, name, getArguments().size(), arg, parent);
+            val = new DatavyuTextCellValue(cellValues.size(), arg, parent);
         }
-        this.getArguments().add(val);
+        cellValues.add(val);
         return val;
     }
 
     @Override
     public void removeArgument(final int index) {
-        List<CellValue> args = getArguments();
-        args.remove(index);
-        CellValue v;
-        for (int i = 0; i < args.size(); i++) {
-            v = args.get(i);
-            ((DatavyuNominalCellValue) v).setIndex(i);
+        cellValues.remove(index);
+        reindex(index, cellValues.size() - 1);
+    }
+
+    /**
+     * Moves an argument, shifting the arguments in between.
+     *
+     * @param oldIndex The index of the argument to move.
+     * @param newIndex The new index of the argument.
+     */
+    void moveArgument(final int oldIndex, final int newIndex) {
+        cellValues.add(newIndex, cellValues.remove(oldIndex));
+        reindex(Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex));
+    }
+
+    /**
+     * Sets the index of the arguments between two positions to their position.
+     */
+    private void reindex(final int from, final int to) {
+        for (int i = from; i <= to; i++) {
+            ((DatavyuCellValue) cellValues.get(i)).setIndex(i);
         }
     }
 
@@ -139,7 +143,6 @@ public final class DatavyuMatrixCellValue extends DatavyuCellValue implements Ma
             value = value.substring(1, value.length() - 1);
         }
         String[] args = value.split(",", -1);
-        List<CellValue> cellValues = getArguments();
 
         // Handle legacy variable types
         if (cellValues.size() == 1 && cellValues.get(0).getArgument().type != Argument.Type.MATRIX) {
@@ -23,29 +23,37 @@
 
 package org.datavyu.models.db;
 
-import java.util.UUID;
-
 public final class DatavyuNominalCellValue extends DatavyuCellValue implements NominalCellValue {
 
     public DatavyuNominalCellValue() {
     }
 
-    public DatavyuNominalCellValue(UUID parent_id, Cell parent) {
-        this.parent_id = parent_id;
+    public DatavyuNominalCellValue(Cell parent) {
         this.index = -1;
         this.parent = parent;
     }
 
-    public DatavyuNominalCellValue(UUID parent_id, Argument arg, Cell parent) {
-        this(parent_id, parent);
+    public DatavyuNominalCellValue(Argument arg, Cell parent) {
+        this(parent);
         this.arg = arg;
     }
 
-    public DatavyuNominalCellValue(UUID parent_id, String name, int index, Argument type, Cell parent) {
-        this(parent_id, parent);
+    public DatavyuNominalCellValue(int index, Argument type, Cell parent) {
+        this(parent);
         this.index = index;
-        this.name = name;
         this.arg = type;
     }
 
+    /**
+     * Codes are taken from the code dictionary of the variable, so each distinct code is only held once.
+     */
+    @Override
+    String intern(final String newValue) {
+        Variable variable = parent.getVariable();
+        if (variable instanceof DatavyuVariable) {
+            return ((DatavyuVariable) variable).internCode(newValue);
+        }
+        return newValue;
+    }
+
 }
@@ -27,6 +27,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -34,13 +35,23 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public final class DatavyuVariable implements Variable {
 
-    // All the listeners for variables in the data store
     private static Logger logger = LogManager.getLogger(DatavyuVariable.class);
-    private static Map<UUID, List<VariableListener>> allListeners = new HashMap<UUID, List<VariableListener>>();
     private static CellComparator CellComparator = new CellComparator();
     final private UUID variableId = UUID.randomUUID();
     private List<Cell> cells = new CopyOnWriteArrayList<>();
+    /** The listeners of this variable, safe to iterate while listeners are added or removed. */
+    private final List<VariableListener> listeners = new CopyOnWriteArrayList<>();
+    /** Interval index over the cells, rebuilt lazily after the cells or their times change. */
+    private volatile CellIntervalIndex intervalIndex = null;
+    /** True if the cells list is already in temporal order. */
+    private volatile boolean temporallySorted = true;
+    /** Bumped whenever cells are added or removed or their times change. */
+    private volatile int temporalVersion = 0;
+    /** The distinct codes of the nominal values of the cells, shared by all the cells holding the same code. */
+    private final Map<String, String> codes = new ConcurrentHashMap<String, String>();
     private Argument rootNodeArgument = null;
+    /** The names of the arguments when the root node was last set, to find the arguments renamed in place */
+    private final List<String> argumentNames = new ArrayList<>();
     private Boolean selected;
     private Boolean hidden;
     private String name;
@@ -83,35 +94,95 @@ public final class DatavyuVariable implements Variable {
     }
 
     /**
-     * @param variableId The Identifier of the variable we want the listeners for.
-     * @return The list of listeners for the specified variableId.
+     * Called by the cells of this variable when their onset or offset changes, invalidating the temporal order and
+     * the interval index.
      */
-    private static List<VariableListener> getListeners(UUID variableId) {
-        List<VariableListener> result = allListeners.get(variableId);
-        if (result == null) {
-            result = new ArrayList<>();
-            allListeners.put(variableId, result);
+    void cellTimesChanged() {
+        temporallySorted = false;
+        intervalIndex = null;
+        temporalVersion++;
+    }
+
+    /**
+     * @return The interval index for the current cells, building it if needed.
+     */
+    private CellIntervalIndex getIntervalIndex() {
+        CellIntervalIndex index = intervalIndex;
+        if (index == null) {
+            index = new CellIntervalIndex(cells);
+            intervalIndex = index;
         }
-        return result;
+        return index;
     }
 
     /**
-     * Removes all the listeners for all the variables.
+     * @return The journal recording the changes to the owning data store, null if changes are not recorded.
      */
-    public static void clearListeners() {
-        allListeners.clear();
+    private ChangeJournal getChangeJournal() {
+        return owningDatastore == null ? null : owningDatastore.getChangeJournal();
     }
 
     public void addCell(Cell cell) {
         if (cell.getCellValue().getArgument() == this.getRootNode()) {
             cells.add(cell);
-            for (VariableListener vl : getListeners(getID())) {
+            cellTimesChanged();
+            ChangeJournal journal = getChangeJournal();
+            if (journal != null) {
+                journal.cellAdded(this, cell);
+            }
+            for (VariableListener vl : listeners) {
                 vl.cellInserted(cell);
             }
             owningDatastore.markAsChanged();
         }
     }
 
+    @Override
+    public void addCells(final Collection<Cell> newCells) {
+        List<Cell> added = new ArrayList<Cell>(newCells.size());
+        for (Cell cell : newCells) {
+            if (cell.getCellValue().getArgument() == this.getRootNode()) {
+                added.add(cell);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+
+        // One copy of the backing array for the whole batch.
+        cells.addAll(added);
+        cellTimesChanged();
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            for (Cell cell : added) {
+                journal.cellAdded(this, cell);
+            }
+        }
+        for (VariableListener vl : listeners) {
+            for (Cell cell : added) {
+                vl.cellInserted(cell);
+            }
+        }
+        owningDatastore.markAsChanged();
+    }
+
+    @Override
+    public Cell createDetachedCell() {
+        return new DatavyuCell(this, this.getRootNode());
+    }
+
+    /**
+     * Looks a code up in the code dictionary of this variable, adding it if it is a new code. Codes are never removed
+     * from the dictionary, there are few distinct codes compared to the number of cells holding them.
+     *
+     * @param code The code of a nominal value.
+     * @return The copy of the code shared by all the cells of this variable.
+     */
+    String internCode(final String code) {
+        String shared = codes.putIfAbsent(code, code);
+        return shared != null ? shared : code;
+    }
+
     public DataStore getOwningDatastore() {
         return owningDatastore;
     }
@@ -129,8 +200,13 @@ public final class DatavyuVariable implements Variable {
         Cell c = new DatavyuCell(this, this.getRootNode());
 
         cells.add(c);
+        cellTimesChanged();
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            journal.cellAdded(this, c);
+        }
 
-        for (VariableListener vl : getListeners(getID())) {
+        for (VariableListener vl : listeners) {
             vl.cellInserted(c);
         }
 
@@ -140,16 +216,56 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void removeCell(final Cell cell) {
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            journal.cellRemoved(this, cell);
+        }
         cells.remove(cell);
+        intervalIndex = null;
+        temporalVersion++;
 
         owningDatastore.markAsChanged();
 
-        for (VariableListener vl : getListeners(getID())) {
+        for (VariableListener vl : listeners) {
             vl.cellRemoved(cell);
         }
 
     }
 
+    @Override
+    public void removeCells(final Collection<Cell> oldCells) {
+        Set<Cell> candidates = new HashSet<Cell>(oldCells);
+        List<Cell> removed = new ArrayList<Cell>(candidates.size());
+        for (Cell cell : cells) {
+            if (candidates.contains(cell)) {
+                removed.add(cell);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            // From the last cell to the first, so that the positions of the cells still to remove don't change.
+            for (int i = removed.size() - 1; i >= 0; i--) {
+                journal.cellRemoved(this, removed.get(i));
+            }
+        }
+        // One copy of the backing array for the whole batch.
+        cells.removeAll(candidates);
+        intervalIndex = null;
+        temporalVersion++;
+
+        owningDatastore.markAsChanged();
+
+        for (VariableListener vl : listeners) {
+            for (Cell cell : removed) {
+                vl.cellRemoved(cell);
+            }
+        }
+    }
+
     @Override
     public List<Cell> getCells() {
         return cells;
@@ -157,8 +273,7 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public Cell getCellTemporally(final int index) {
-        Collections.sort(cells, CellComparator);
-        return cells.get(index);
+        return getCellsTemporally().get(index);
     }
 
     @Override
@@ -170,6 +285,22 @@ public final class DatavyuVariable implements Variable {
     public void setRootNode(final Argument a) {
         owningDatastore.markAsChanged();
         rootNodeArgument = a;
+
+        // The arguments are renamed by changing their names and setting the root node again.
+        List<Argument> arguments = a == null ? Collections.<Argument>emptyList() : a.childArguments;
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null && arguments.size() == argumentNames.size()) {
+            for (int i = 0; i < arguments.size(); i++) {
+                String newName = arguments.get(i).name;
+                if (!newName.equals(argumentNames.get(i))) {
+                    journal.argumentRenamed(this, i, argumentNames.get(i), newName);
+                }
+            }
+        }
+        argumentNames.clear();
+        for (Argument argument : arguments) {
+            argumentNames.add(argument.name);
+        }
     }
 
     @Override
@@ -186,10 +317,30 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public List<Cell> getCellsTemporally() {
-        Collections.sort(cells, CellComparator);
+        // Sorting a CopyOnWriteArrayList copies the backing array, so only sort when the order may have changed. The
+        // flag is set before sorting so that a time change made during the sort marks the list unsorted again.
+        if (!temporallySorted) {
+            temporallySorted = true;
+            Collections.sort(cells, CellComparator);
+        }
         return cells;
     }
 
+    @Override
+    public List<Cell> getCellsAt(final long time) {
+        return getIntervalIndex().getCellsAt(time);
+    }
+
+    @Override
+    public List<Cell> getCellsOverlapping(final long start, final long end) {
+        return getIntervalIndex().getCellsOverlapping(start, end);
+    }
+
+    @Override
+    public int getTemporalVersion() {
+        return temporalVersion;
+    }
+
     @Override
     public boolean contains(final Cell c) {
         return cells.contains(c);
@@ -216,7 +367,7 @@ public final class DatavyuVariable implements Variable {
             owningDatastore.markAsChanged();
             hidden = hiddenParm;
 
-            for (VariableListener vl : getListeners(getID())) {
+            for (VariableListener vl : listeners) {
                 vl.visibilityChanged(hidden);
             }
         }
@@ -252,7 +403,7 @@ public final class DatavyuVariable implements Variable {
             owningDatastore.updateVariableName(name, newName, this);
         }
         this.name = newName;
-        for (VariableListener vl : getListeners(getID())) {
+        for (VariableListener vl : listeners) {
             vl.nameChanged(newName);
         }
     }
@@ -264,6 +415,10 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public Argument addArgument(final Argument.Type type) {
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            journal.argumentsChanging(this);
+        }
         Argument arg = getRootNode();
         Argument child = arg.addChildArgument(type);
 
@@ -271,7 +426,11 @@ public final class DatavyuVariable implements Variable {
             cell.addMatrixValue(child);
         }
 
+        argumentNames.add(child.name);
         this.setRootNode(arg);
+        if (journal != null) {
+            journal.argumentAdded(this, child);
+        }
         owningDatastore.markAsChanged();
         return arg.childArguments.get(arg.childArguments.size() - 1);
     }
@@ -284,6 +443,10 @@ public final class DatavyuVariable implements Variable {
         if (new_index > arg.childArguments.size() - 1 || new_index < 0) {
             return;
         }
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            journal.argumentsChanging(this);
+        }
 
         Argument moved_arg = arg.childArguments.get(old_index);
         arg.childArguments.remove(moved_arg);
@@ -293,7 +456,11 @@ public final class DatavyuVariable implements Variable {
         for (Cell cell : getCells()) {
             cell.moveMatrixValue(old_index, new_index);
         }
+        if (journal != null) {
+            journal.argumentMoved(this, old_index, new_index);
+        }
         owningDatastore.markAsChanged();
+        argumentNames.add(new_index, argumentNames.remove(old_index));
         this.setRootNode(arg);
     }
 
@@ -306,6 +473,10 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void removeArgument(final String name) {
+        ChangeJournal journal = getChangeJournal();
+        if (journal != null) {
+            journal.argumentsChanging(this);
+        }
         Argument arg = getRootNode();
         int arg_index = getArgumentIndex(name);
         arg.childArguments.remove(arg_index);
@@ -314,8 +485,12 @@ public final class DatavyuVariable implements Variable {
         for (Cell cell : getCells()) {
             cell.removeMatrixValue(arg_index);
         }
+        if (journal != null) {
+            journal.argumentRemoved(this, name);
+        }
 
         owningDatastore.markAsChanged();
+        argumentNames.remove(arg_index);
         this.setRootNode(arg);
     }
 
@@ -332,12 +507,12 @@ public final class DatavyuVariable implements Variable {
 
     @Override
     public void addListener(final VariableListener listener) {
-        getListeners(getID()).add(listener);
+        listeners.add(listener);
     }
 
     @Override
     public void removeListener(final VariableListener listener) {
-        getListeners(getID()).remove(listener);
+        listeners.remove(listener);
     }
 
     @Override
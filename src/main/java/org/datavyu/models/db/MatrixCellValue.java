@@ -30,10 +30,21 @@ import java.util.List;
 public interface MatrixCellValue extends CellValue {
 
     /**
-     * @return All the argument values that make up this matrix.
+     * @return All the argument values that make up this matrix, in order. The list is read only.
      */
     List<CellValue> getArguments();
 
+    /**
+     * @param index The index of an argument.
+     * @return The value of the argument.
+     */
+    CellValue getArgumentValue(final int index);
+
+    /**
+     * @return The number of arguments of this matrix.
+     */
+    int getNumArguments();
+
     /**
      * Creates and adds a new argument to the matrix. The name of the new
      * argument will be 'arg1' if this is the first argument added to the matrix
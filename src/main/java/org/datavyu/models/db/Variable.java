@@ -22,6 +22,7 @@
  */
 package org.datavyu.models.db;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -36,6 +37,22 @@ public interface Variable {
      */
     void addCell(final Cell cell);
 
+    /**
+     * Adds already formed cells to the variable in a single step, e.g. when loading a variable from disk. Listeners
+     * are notified of every cell once all of them have been added.
+     *
+     * @param newCells The cells to add, created with {@link #createDetachedCell()}.
+     */
+    void addCells(final Collection<Cell> newCells);
+
+    /**
+     * Creates a cell for the variable without inserting it, so it can be populated before it is added with
+     * {@link #addCell(Cell)} or {@link #addCells(Collection)}.
+     *
+     * @return The newly created cell.
+     */
+    Cell createDetachedCell();
+
     /**
      * Creates and inserts a cell into the variable.
      *
@@ -50,6 +67,14 @@ public interface Variable {
      */
     void removeCell(final Cell cell);
 
+    /**
+     * Removes cells from the variable in a single step. Listeners are notified of every cell once all of them have
+     * been removed.
+     *
+     * @param oldCells The cells to remove.
+     */
+    void removeCells(final Collection<Cell> oldCells);
+
     /**
      * @return All the cells stored in the variable.
      */
@@ -86,6 +111,32 @@ public interface Variable {
      */
     List<Cell> getCellsTemporally();
 
+    /**
+     * Gets the cells that cover a point in time, i.e. the cells for which
+     * {@link Cell#isInTimeWindow(long)} is true.
+     *
+     * @param time The time in milliseconds.
+     * @return The cells covering the time, in temporal order.
+     */
+    List<Cell> getCellsAt(final long time);
+
+    /**
+     * Gets the cells that overlap a window of time, i.e. the cells for which
+     * {@link Cell#isInTimeWindow(long)} is true for at least one time in the window.
+     *
+     * @param start The start of the window in milliseconds (inclusive).
+     * @param end   The end of the window in milliseconds (inclusive).
+     * @return The cells overlapping the window, in temporal order.
+     */
+    List<Cell> getCellsOverlapping(final long start, final long end);
+
+    /**
+     * @return A counter that changes whenever a cell is added to or removed from the variable, or the onset or offset
+     * of one of its cells changes. Views can compare it against a stored value to tell if their temporal caches are
+     * stale.
+     */
+    int getTemporalVersion();
+
     /**
      * @param c The cell to check if it exists in this variable.
      * @return True if this variable contains the supplied cell, false otherwise.
@@ -0,0 +1,176 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.plugins;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The plugin classes of the jar files in the plugins directory, kept in a file so that a jar is only looked into
+ * again when it changes.
+ *
+ * A jar lists its plugins in the same service file as Datavyu itself, see {@link #SERVICE_FILE}. Jars built without
+ * one are searched for concrete classes implementing {@link Plugin}, which loads every class of the jar, hence the
+ * index.
+ */
+final class PluginIndex {
+
+    /** The logger for this class */
+    private static Logger logger = LogManager.getLogger(PluginIndex.class);
+
+    /** The service file listing the plugin classes, one fully qualified class name per line */
+    static final String SERVICE_FILE = "META-INF/services/" + Plugin.class.getName();
+
+    /** Separates the time, the length and the classes of a jar in the index file */
+    private static final String SEPARATOR = ";";
+
+    /** The file the index is kept in */
+    private final File indexFile;
+
+    /** The plugin classes of the jars, by path: the time the jar was modified, its length and its classes */
+    private final Properties index = new Properties();
+
+    /** True if the index changed since it was read */
+    private boolean changed = false;
+
+    /**
+     * Reads the index.
+     *
+     * @param indexFile The file the index is kept in, which doesn't need to exist.
+     */
+    PluginIndex(final File indexFile) {
+        this.indexFile = indexFile;
+        if (indexFile.exists()) {
+            try (InputStream in = new FileInputStream(indexFile)) {
+                index.load(in);
+            } catch (IOException e) {
+                logger.error("Unable to read the plugin index " + indexFile + ". Error: ", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the plugin classes of a jar, looking into the jar only if it changed since it was indexed.
+     *
+     * @param jar    The jar file.
+     * @param loader The class loader the jar has been added to.
+     * @return The names of the plugin classes.
+     * @throws IOException If the jar can't be read.
+     */
+    List<String> getPluginClasses(final File jar, final ClassLoader loader) throws IOException {
+        String key = jar.getCanonicalPath();
+        String stamp = jar.lastModified() + SEPARATOR + jar.length() + SEPARATOR;
+        String entry = index.getProperty(key);
+        if (entry != null && entry.startsWith(stamp)) {
+            String classes = entry.substring(stamp.length());
+            List<String> classNames = new ArrayList<String>();
+            if (!classes.isEmpty()) {
+                Collections.addAll(classNames, classes.split(SEPARATOR));
+            }
+            return classNames;
+        }
+
+        List<String> classNames;
+        try (JarFile jarFile = new JarFile(jar)) {
+            classNames = findPluginClasses(jarFile, loader);
+        }
+        index.setProperty(key, stamp + String.join(SEPARATOR, classNames));
+        changed = true;
+        return classNames;
+    }
+
+    /**
+     * Writes the index if it changed.
+     */
+    void save() {
+        if (changed) {
+            try (OutputStream out = new FileOutputStream(indexFile)) {
+                index.store(out, "Plugin classes of the jars in the plugins directory");
+                changed = false;
+            } catch (IOException e) {
+                logger.error("Unable to write the plugin index " + indexFile + ". Error: ", e);
+            }
+        }
+    }
+
+    /**
+     * @param jarFile A jar file.
+     * @param loader  The class loader the jar has been added to.
+     * @return The names of the plugin classes of the jar, from its service file or else from its classes.
+     * @throws IOException If the jar can't be read.
+     */
+    private static List<String> findPluginClasses(final JarFile jarFile, final ClassLoader loader)
+            throws IOException {
+        JarEntry serviceFile = jarFile.getJarEntry(SERVICE_FILE);
+        if (serviceFile != null) {
+            try (InputStream in = jarFile.getInputStream(serviceFile)) {
+                return readServiceFile(in);
+            }
+        }
+
+        logger.info("No " + SERVICE_FILE + " in " + jarFile.getName() + ", searching its classes for plugins");
+        List<String> classNames = new ArrayList<String>();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.endsWith(".class") && !name.contains("$")) {
+                String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                try {
+                    // Loaded without being initialized, plugins are initialized when they are created.
+                    Class<?> candidate = Class.forName(className, false, loader);
+                    if (Plugin.class.isAssignableFrom(candidate)
+                            && (candidate.getModifiers() & (Modifier.ABSTRACT | Modifier.INTERFACE)) == 0) {
+                        classNames.add(className);
+                    }
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // Classes that depend on missing classes are not plugins we can use.
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Reads a service file: one class name per line, ignoring blank lines and comments starting with '#'.
+     *
+     * @param in The content of the service file.
+     * @return The class names.
+     * @throws IOException If the service file can't be read.
+     */
+    static List<String> readServiceFile(final InputStream in) throws IOException {
+        List<String> classNames = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comment = line.indexOf('#');
+            String className = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (!className.isEmpty()) {
+                classNames.add(className);
+            }
+        }
+        return classNames;
+    }
+}
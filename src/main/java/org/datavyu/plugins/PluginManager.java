@@ -27,20 +27,15 @@ import javax.swing.filechooser.FileFilter;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 
 /**
  * This class manages and wrangles all the viewer plugins currently available in Datavyu. It is implemented as a
- * singleton, so only one instance is available to Datavyu. This single instance will load all plugins that implement
- * the Plugin interface.
+ * singleton, so only one instance is available to Datavyu. This single instance will load all plugins listed in the
+ * META-INF/services/org.datavyu.plugins.Plugin files of Datavyu and of the jars in the 'plugins' directory.
  */
 public final class PluginManager {
 
@@ -55,6 +50,9 @@ public final class PluginManager {
     /** The logger for this class */
     private static Logger logger = LogManager.getLogger(PluginManager.class.getName());
 
+    /** The index of the plugins in the jar files of the 'plugins' directory, kept in that directory */
+    private static final String PLUGIN_INDEX_FILE = "plugins.index";
+
     /** Single instance of the PluginManager for Datavyu */
     private static final PluginManager pluginManager = new PluginManager();
 
@@ -74,8 +72,7 @@ public final class PluginManager {
     private Map<String, GroupFileFilter> filters;
 
     /**
-     * Default constructor. Searches for valid plugins in the classpath by looking for classes that implement the
-     * plugin interface.
+     * Default constructor. Loads the plugins listed in the service files of Datavyu and of the plugin jars.
      */
     private PluginManager() {
         plugins = Sets.newLinkedHashSet();
@@ -96,145 +93,47 @@ public final class PluginManager {
     }
 
     /**
-     * Initializes the plugin manager by searching for valid plugins to insert into the manager.
+     * Initializes the plugin manager with the plugins listed in the service files of Datavyu and of the jar files in
+     * the 'plugins' directory, see {@link PluginIndex}. Only the plugin classes are loaded.
      */
     private void initialize() {
         logger.info("Initializing the PluginManager");
-        try {
-            ClassLoader loader = Thread.currentThread().getContextClassLoader();
-            URL resource = loader.getResource("");
-            // Quaqua workaround
-            if ((resource != null) && resource.toString().equals("file:/System/Library/Java/")) {
-                resource = null;
-            }
-            if (resource != null && resource.getPath().endsWith("lib/")) {
-                resource = null;
-            }
-            // The classloader references a jar - open the jar file up and iterate through all the entries and add
-            // the entries that are concrete Plugins.
-            if (resource == null) {
-                logger.info("Loading plugins from jar");
-                resource = loader.getResource("org/datavyu");
-                if (resource == null) {
-                    throw new ClassNotFoundException("Can't get class loader.");
-                }
-                String file = resource.getFile();
-                file = file.substring(0, file.indexOf("!"));
-
-                URI uri = new URI(file);
-                File f = new File(uri);
-                JarFile jar = new JarFile(f);
-
-                Enumeration<JarEntry> entries = jar.entries();
-
-                while (entries.hasMoreElements()) {
-                    String name = entries.nextElement().getName();
-                    if (name.endsWith(".class")) {
-                        addPlugin(name);
-                    }
-                }
-                // The classloader references a bunch of .class files on disk, recursively inspect contents of each
-                // of the resources. If it is a directory add it to our workStack, otherwise check to see if it is a
-                // concrete plugin.
-            } else {
-                logger.info("Loading plugins from resource bundle.");
-                // If we are running from a test we need to look in more than one place for classes - add all these
-                // places to the work stack.
-                Enumeration<URL> resources = loader.getResources("");
-
-                Stack<File> workStack = new Stack<>();
-                Stack<String> pathNames = new Stack<>();
-
-                while (resources.hasMoreElements()) {
-                    workStack.clear();
-                    File res = new File(resources.nextElement().getFile());
-
-                    logger.info("Looking for plugins in: " + res.getAbsolutePath());
+        long start = System.currentTimeMillis();
 
-                    // Dirty hack for Quaqua.
-                    if (res.equals(new File("/System/Library/Java"))) {
-                        continue;
-                    }
-                    workStack.push(res);
-                    pathNames.clear();
-                    pathNames.push("");
-
-                    while (!workStack.empty()) {
-                        // We must handle spaces in the directory name
-                        File f = workStack.pop();
-                        String s = f.getCanonicalPath();
-                        s = s.replaceAll("%20", " ");
-                        File dir = new File(s);
-                        String pathName = pathNames.pop();
-                        // For each of the children of the directory - look for
-                        // Plugins or more directories to recurse inside.
-                        String[] files = dir.list();
-                        for (int i = 0; i < files.length; i++) {
-                            File file = new File(dir.getAbsolutePath() + "/" + files[i]);
-                            logger.info("Inspecting file/directory: " + file.getAbsolutePath());
-                            // If the file is a directory, add to work list.
-                            if (file.isDirectory()) {
-                                workStack.push(file);
-                                pathNames.push(pathName + file.getName() + ".");
-                                // If we are dealing with a class file - attempt to add it to our list of plugins
-                            } else if (files[i].endsWith(".class")) {
-                                addPlugin(pathName.concat(files[i]));
-                                // If it's the datavyu jar get the contents
-                            } else if (files[i].startsWith("datavyu") && files[i].endsWith(".jar")) {
-                                JarFile jar = new JarFile(file);
-                                // For each file in the jar file check to see if it could be a plugin.
-                                Enumeration<JarEntry> entries = jar.entries();
-                                while (entries.hasMoreElements()) {
-                                    String name = entries.nextElement().getName();
-                                    // Found a class file - attempt to add it as a plugin.
-                                    if (name.endsWith(".class")) {
-                                        addPlugin(name);
-                                    }
-                                }
-                            }
-                        }
-                    }
+        Iterator<Plugin> builtIn = ServiceLoader.load(Plugin.class,
+                Thread.currentThread().getContextClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!builtIn.hasNext()) {
+                    break;
                 }
+                addPlugin(builtIn.next());
+            } catch (ServiceConfigurationError e) {
+                logger.error("Unable to instantiate plugin. Error: ", e);
             }
-            // We scanned the Datavyu classpath - but we should also look in the "plugins" directory for jar files that
-            // correctly conform to the Datavyu plugin interface
-            LocalStorage localStorage = Datavyu.getApplication().getContext().getLocalStorage();
-            File pluginDir = new File(localStorage.getDirectory().toString() + "/plugins");
-
-            // Unable to find plugin directory or any entries within the plugin directory. Don't bother attempting to
-            // add more plugins to Datavyu
-            if (pluginDir.list() == null) {
-                logger.info("Unable to find the 'plugins' directory.");
-                return;
-            }
+        }
 
-            // For each of the files in the plugin directory - check to see if they conform to the plugin interface.
-            for (String file : pluginDir.list()) {
-                File f = new File(pluginDir.getAbsolutePath() + "/" + file);
-                if (file == null) {
-                    throw new ClassNotFoundException("Null file");
-                    // If the file is a jar file open it and look for plugins
-                } else if (file.endsWith(".jar")) {
-                    injectPlugin(f);
-                    JarFile jar = new JarFile(f);
-                    // For each file in the jar file check to see if it could be a plugin.
-                    Enumeration<JarEntry> entries = jar.entries();
-                    while (entries.hasMoreElements()) {
-                        String name = entries.nextElement().getName();
-                        // Found a class file - attempt to add it as a plugin.
-                        if (name.endsWith(".class")) {
-                            addPlugin(name);
-                        }
+        // Also look in the "plugins" directory for jar files that correctly conform to the Datavyu plugin interface
+        LocalStorage localStorage = Datavyu.getApplication().getContext().getLocalStorage();
+        File pluginDir = new File(localStorage.getDirectory().toString() + "/plugins");
+        File[] jars = pluginDir.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (jars == null) {
+            logger.info("Unable to find the 'plugins' directory.");
+        } else {
+            PluginIndex index = new PluginIndex(new File(pluginDir, PLUGIN_INDEX_FILE));
+            for (File jar : jars) {
+                try {
+                    injectPlugin(jar);
+                    for (String className : index.getPluginClasses(jar, ClassLoader.getSystemClassLoader())) {
+                        addPlugin(className);
                     }
+                } catch (IOException e) {
+                    logger.error("Unable to load jar file " + jar, e);
                 }
             }
-        } catch (ClassNotFoundException e) {
-            logger.error("Unable to build Plugin", e);
-        } catch (IOException ie) {
-            logger.error("Unable to load jar file", ie);
-        } catch (URISyntaxException se) {
-            logger.error("Unable to build path to jar file", se);
+            index.save();
         }
+        logger.info("Loaded " + plugins.size() + " plugins in " + (System.currentTimeMillis() - start) + " ms");
     }
 
     /**
@@ -267,72 +166,65 @@ public final class PluginManager {
      */
     private void addPlugin(final String className) {
         try {
-            String cName = className.replaceAll("\\.class$", "").replace('/','.');
-            /*
-             * Ignore classes that: - Belong to the UITests (traditionally this
-             * was because of the UISpec4J interceptor, which interrupted the
-             * UI. We still ignore UITest classes as these will not be plugins)
-             * - Are part of GStreamer, or JUnitX (these cause issues and are
-             * certainly not going to be plugins either)
-             */
-            if (!cName.contains("org.datavyu.uitests") && !cName.contains("org.gstreamer")
-                    && !cName.contains("ch.randelshofer") && !cName.startsWith("junitx")) {
-
-                logger.info("Loading " + cName);
-                Class<?> testClass = Class.forName(cName);
-
-                if (pluginClass.isAssignableFrom(testClass) &&
-                        (testClass.getModifiers() & (Modifier.ABSTRACT | Modifier.INTERFACE)) == 0)
-                {
-                    Plugin plugin = (Plugin) testClass.newInstance();
-
-                    if (!plugin.getValidPlatforms().contains(Datavyu.getPlatform())) {
-                        // Not valid for this operating system
-                        return;
-                    }
+            Class<?> testClass = Class.forName(className, true, ClassLoader.getSystemClassLoader());
+            if (pluginClass.isAssignableFrom(testClass)) {
+                addPlugin((Plugin) testClass.newInstance());
+            }
+        } catch (ClassNotFoundException e) {
+            logger.error("Unable to find plugin. Error: ", e);
+        } catch (ClassFormatError e) {
+            logger.error("Plugin with bad class format. Error: ", e);
+        } catch (Exception e) {
+            logger.error("Unable to instantiate plugin. Error: ", e);
+        }
+    }
 
-                    if (Datavyu.getPlatform() == Datavyu.Platform.MAC) {
-                        if (!plugin.getValidVersions().isInRange(MacOS.getOSVersion())) {
-                            return;
-                        }
-                    }
+    /**
+     * Adds a plugin to the plugin manager, unless it isn't valid for this platform or a plugin with the same name was
+     * already added.
+     *
+     * @param plugin The plugin.
+     */
+    private void addPlugin(final Plugin plugin) {
+        if (!plugin.getValidPlatforms().contains(Datavyu.getPlatform())) {
+            // Not valid for this operating system
+            return;
+        }
+
+        if (Datavyu.getPlatform() == Datavyu.Platform.MAC) {
+            if (!plugin.getValidVersions().isInRange(MacOS.getOSVersion())) {
+                return;
+            }
+        }
 
-                    String pluginName = plugin.getPluginName();
+        String pluginName = plugin.getPluginName();
 
-                    if (pluginNames.contains(plugin.getPluginName())) {
+        if (pluginNames.contains(plugin.getPluginName())) {
 
-                        // We already have this plugin; stop processing it
-                        return;
-                    }
+            // We already have this plugin; stop processing it
+            return;
+        }
 
-                    pluginNames.add(pluginName);
+        pluginNames.add(pluginName);
 
-                    buildGroupFilter(plugin);
+        buildGroupFilter(plugin);
 
-                    // Ensure we have at least one file filter
-                    assert plugin.getFilters() != null;
-                    assert plugin.getFilters().length > 0;
-                    assert plugin.getFilters()[0] != null;
+        // Ensure we have at least one file filter
+        assert plugin.getFilters() != null;
+        assert plugin.getFilters().length > 0;
+        assert plugin.getFilters()[0] != null;
 
-                    plugins.add(plugin);
+        plugins.add(plugin);
 
-                    // BugzID:2110
-                    pluginClassifiers.put(plugin.getNamespace(), plugin);
+        // BugzID:2110
+        pluginClassifiers.put(plugin.getNamespace(), plugin);
 
-                    final Class<? extends StreamViewer> cdv = plugin.getViewerClass();
+        final Class<? extends StreamViewer> cdv = plugin.getViewerClass();
 
-                    if (cdv != null) {
-                        viewerClassToPlugin.put(cdv.getName(), plugin);
-                    }
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            logger.error("Unable to find plugin. Error: ", e);
-        } catch (ClassFormatError e) {
-            logger.error("Plugin with bad class format. Error: ", e);
-        } catch (Exception e) {
-            logger.error("Unable to instantiate plugin. Error: ", e);
+        if (cdv != null) {
+            viewerClassToPlugin.put(cdv.getName(), plugin);
         }
+        logger.info("Added plugin " + pluginName);
     }
 
     private void buildGroupFilter(final Plugin p) {
@@ -0,0 +1,204 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.plugins;
+
+/**
+ * Keeps a stream in sync with the master clock and keeps statistics about how far the stream drifts from it.
+ *
+ * The drift is measured on every periodic sync of the clock. The time of a stream is the time of the frame on screen,
+ * so it is off by up to a frame, plus the time the sync takes to reach the stream. A stream whose drift, averaged over
+ * the last few syncs, is within a frame and that margin plays at the rate of the clock. A stream that drifts further
+ * plays a little faster or slower until it has caught up, and only a stream that is far off, e.g. after it stalled,
+ * seeks to the time of the clock.
+ */
+public final class StreamSyncController {
+
+    /** Length of a frame in milliseconds if the frame rate of the stream is not known, a frame at 25 fps */
+    static final double DEFAULT_FRAME_LENGTH = 40;
+
+    /** Drift in milliseconds on top of a frame up to which the stream plays at the rate of the clock */
+    static final double TOLERANCE_MARGIN = 20;
+
+    /** Number of syncs the drift is averaged over before the rate is changed */
+    static final int SMOOTHING = 4;
+
+    /** Drift in milliseconds from which the stream seeks rather than catching up */
+    static final double SEEK_THRESHOLD = 500;
+
+    /** Time in milliseconds over which a drift is caught up */
+    static final double CATCH_UP_TIME = 1000;
+
+    /** Largest change of the rate to catch up, relative to the rate of the clock */
+    static final float MAX_RATE_CHANGE = 0.1F;
+
+    /** Steps of the changes of the rate, so that the rate of the stream isn't set on every sync */
+    private static final float RATE_STEP = 0.01F;
+
+    /** The last drifts in milliseconds, positive if the stream is ahead of the clock */
+    private final double[] drifts = new double[SMOOTHING];
+
+    /** Number of drifts in {@link #drifts} since the last seek, up to its length */
+    private int driftCount;
+
+    /** Drift in milliseconds up to which the stream plays at the rate of the clock */
+    private double tolerance = DEFAULT_FRAME_LENGTH + TOLERANCE_MARGIN;
+
+    /** Number of times the drift was measured */
+    private long count;
+
+    /** Sum of the absolute drifts */
+    private double sum;
+
+    /** Largest absolute drift */
+    private double max;
+
+    /** Number of seeks to correct the drift */
+    private long seekCount;
+
+    /** The rate of the clock, kept here so that the clock isn't asked for it while it notifies its listeners */
+    private float clockRate = 1F;
+
+    /**
+     * Measures the drift of the stream.
+     *
+     * @param streamTime The time of the stream in milliseconds.
+     * @param targetTime The time the stream should be at according to the clock, in milliseconds.
+     * @return True if the stream is too far off to catch up and has to seek to the target time.
+     */
+    public synchronized boolean measure(final double streamTime, final double targetTime) {
+        double drift = streamTime - targetTime;
+        double absoluteDrift = Math.abs(drift);
+        count++;
+        sum += absoluteDrift;
+        max = Math.max(max, absoluteDrift);
+        if (absoluteDrift >= SEEK_THRESHOLD) {
+            seekCount++;
+            driftCount = 0;
+            return true;
+        }
+        drifts[(int) (count % SMOOTHING)] = drift;
+        driftCount = Math.min(driftCount + 1, SMOOTHING);
+        return false;
+    }
+
+    /**
+     * Sets the frame rate of the stream. The stream plays at the rate of the clock while it drifts by less than a frame
+     * and a margin.
+     *
+     * @param framesPerSecond The frames per second of the stream, 0 or less if not known.
+     */
+    public synchronized void setFramesPerSecond(final float framesPerSecond) {
+        tolerance = (framesPerSecond > 0 ? 1000 / framesPerSecond : DEFAULT_FRAME_LENGTH) + TOLERANCE_MARGIN;
+    }
+
+    /**
+     * @return The drift in milliseconds averaged over the last syncs, 0 if the stream just seeked. The rate is only
+     * changed once the drift has been measured {@link #SMOOTHING} times, so the average is 0 until then.
+     */
+    private double getSmoothedDrift() {
+        if (driftCount < SMOOTHING) {
+            return 0;
+        }
+        double total = 0;
+        for (double drift : drifts) {
+            total += drift;
+        }
+        return total / SMOOTHING;
+    }
+
+    /**
+     * Gets the rate for the stream to catch up with the drift measured over the last syncs.
+     *
+     * @param clockRate The rate of the clock.
+     * @return The rate of the clock, made slower if the stream is ahead or faster if it is behind.
+     */
+    public synchronized float getRate(final float clockRate) {
+        double drift = getSmoothedDrift();
+        if (Math.abs(drift) <= tolerance) {
+            return clockRate;
+        }
+        double change = Math.max(-MAX_RATE_CHANGE, Math.min(drift / CATCH_UP_TIME, MAX_RATE_CHANGE));
+        return clockRate * (1 - Math.round(change / RATE_STEP) * RATE_STEP);
+    }
+
+    /**
+     * Gets the rate for the stream to catch up with the drift measured over the last syncs, at the last rate set for
+     * the clock.
+     *
+     * @return The rate of the clock, made slower if the stream is ahead or faster if it is behind.
+     */
+    public synchronized float getRate() {
+        return getRate(clockRate);
+    }
+
+    /**
+     * @param clockRate The rate of the clock.
+     */
+    public synchronized void setClockRate(final float clockRate) {
+        this.clockRate = clockRate;
+    }
+
+    /**
+     * @return The last rate set for the clock.
+     */
+    public synchronized float getClockRate() {
+        return clockRate;
+    }
+
+    /**
+     * @return The number of times the drift was measured.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The mean of the absolute drifts in milliseconds, 0 if none were measured.
+     */
+    public synchronized double getMeanDrift() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return The largest absolute drift in milliseconds.
+     */
+    public synchronized double getMaxDrift() {
+        return max;
+    }
+
+    /**
+     * @return The number of seeks to correct the drift.
+     */
+    public synchronized long getSeekCount() {
+        return seekCount;
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public synchronized void reset() {
+        driftCount = 0;
+        count = 0;
+        sum = 0;
+        max = 0;
+        seekCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("drift mean %.1f ms, max %.1f ms, %d seeks in %d syncs", getMeanDrift(), max,
+                seekCount, count);
+    }
+}
@@ -131,6 +131,9 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
     // Offset gets updated when the user pushes the bar through 'handleCarriageOffsetChangeEvent' in the VideoController
     private long offset;
 
+    /** Keeps this stream in sync with the clock */
+    private final StreamSyncController syncController = new StreamSyncController();
+
     /**
      * Constructs a base data video viewer.
      */
@@ -209,8 +212,9 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
 
         initComponents();
 
-        Datavyu.getVideoController()
-            .getClockTimer().registerListener(this);
+        ClockTimer clockTimer = Datavyu.getVideoController().getClockTimer();
+        syncController.setClockRate(clockTimer.getRate());
+        clockTimer.registerListener(this);
     }
 
     private void handleVolumeSliderEvent(final ChangeEvent e) {
@@ -405,6 +409,13 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
      */
     public abstract long getCurrentTime();
 
+    /**
+     * @return The controller keeping this stream in sync with the clock, with the statistics of its drift.
+     */
+    public StreamSyncController getSyncController() {
+        return syncController;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -576,22 +587,32 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
 
     @Override
     public synchronized void clockSeekPlayback(final double clockTime) {
-        MixerController mixerController = Datavyu.getVideoController().getMixerController();
-        TracksEditorController tracksEditorController = mixerController.getTracksEditorController();
-        TrackModel trackModel = tracksEditorController.getTrackModel(getIdentifier());
-        ClockTimer clockTimer = Datavyu.getVideoController().getClockTimer();
-        if (trackModel != null
-            && !clockTimer.isPaused()
-            && isSeekPlaybackEnabled()) {
-            double trackTime = Math.min(Math.max(clockTime - trackModel.getOffset(), 0), trackModel.getDuration());
-            logger.info("Clock Seek Playback is seeking stream "
-                        + getIdentifier()
-                        + " to time: "
-                        + trackTime);
-            setCurrentTime((long) trackTime);
+        if (isSeekPlaybackEnabled()
+            && !Datavyu.getVideoController().getClockTimer().isPaused()) {
+            double trackTime = Math.min(Math.max(clockTime - getOffset(), 0), getDuration());
+            // At slow rates the clock stays on a frame for several ticks, seek only once it gets to another frame
+            if (!isSameFrame(getCurrentTime(), trackTime)) {
+                logger.info("Clock Seek Playback is seeking stream "
+                            + getIdentifier()
+                            + " to time: "
+                            + trackTime);
+                setCurrentTime((long) trackTime);
+            }
         }
     }
 
+    /**
+     * @param time1 A time in this stream in milliseconds.
+     * @param time2 Another time in this stream in milliseconds.
+     * @return True if both times show the same frame, false if they don't or the frame rate is not known.
+     */
+    private boolean isSameFrame(final double time1, final double time2) {
+        float framesPerSecond = getFramesPerSecond();
+        // The millisecond added makes up for times of frames that are rounded down to the millisecond
+        return framesPerSecond > 0 && time1 >= 0 && time2 >= 0
+            && Math.floor((time1 + 1) * framesPerSecond / 1000) == Math.floor((time2 + 1) * framesPerSecond / 1000);
+    }
+
     @Override
     public synchronized void clockBoundaryCheck(final double clockTime) {
         // Nothing to do here
@@ -599,16 +620,17 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
 
     @Override
     public synchronized void streamsBoundaryCheck(final double clockTime) {
-        MixerController mixerController = Datavyu.getVideoController().getMixerController();
-        TracksEditorController tracksEditorController = mixerController.getTracksEditorController();
-        TrackModel trackModel = tracksEditorController.getTrackModel(getIdentifier());
         ClockTimer clockTimer = Datavyu.getVideoController().getClockTimer();
-        if (trackModel != null
+        // The offset is kept up to date with the track, see VideoController.handleCarriageOffsetChangeEvent
+        long duration = getDuration();
+        long start = getOffset();
+        long end = start + duration;
+        if (duration != -1
             && !clockTimer.isPaused()
             && getCurrentTime() != -1) {
             // Only if in range and not already playing and not in seek playback
-            if (clockTime >= trackModel.getOffset()
-                && clockTime < trackModel.getDuration() + trackModel.getOffset()
+            if (clockTime >= start
+                && clockTime < end
                 && !isPlaying()
                 && !isSeekPlaybackEnabled()) {
                 logger.info("Stream Boundary Starting track: " + getIdentifier()
@@ -616,8 +638,7 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
                     + " and Streamviewer clock at " + getCurrentTime());
                 start();
             }
-            if ((clockTime < trackModel.getOffset()
-                || clockTime >= trackModel.getDuration() + trackModel.getOffset())
+            if ((clockTime < start || clockTime >= end)
                 && isPlaying()) {
                 logger.info("Stream Boundary Stopping track: " + getIdentifier()
                     + " Master Clock at " + clockTime
@@ -627,6 +648,33 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
         }
     }
 
+    @Override
+    public synchronized double nextStreamBoundary(final double clockTime, final float rate) {
+        long duration = getDuration();
+        if (duration != -1) {
+            // The offset is kept up to date with the track, see VideoController.handleCarriageOffsetChangeEvent
+            double start = getOffset();
+            double end = start + duration;
+            // The first start or end of the track the clock gets to
+            if (rate > 0) {
+                if (clockTime < start) {
+                    return start;
+                }
+                if (clockTime < end) {
+                    return end;
+                }
+            } else {
+                if (clockTime > end) {
+                    return end;
+                }
+                if (clockTime > start) {
+                    return start;
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
     @Override
     public synchronized void clockForceSync(double clockTime) {
         MixerController mixerController = Datavyu.getVideoController().getMixerController();
@@ -644,18 +692,23 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
 
     @Override
     public synchronized void clockPeriodicSync(final double clockTime) {
-        MixerController mixerController = Datavyu.getVideoController().getMixerController();
-        TracksEditorController tracksEditorController = mixerController.getTracksEditorController();
-        TrackModel trackModel = tracksEditorController.getTrackModel(getIdentifier());
-        if (trackModel != null
-            && !isSeekPlaybackEnabled()
-            && getCurrentTime() != -1) {
-            double trackTime = Math.min(Math.max(clockTime - trackModel.getOffset(), 0), trackModel.getDuration());
-            double difference = Math.abs(trackTime - getCurrentTime());
-            if (difference >= ClockTimer.SYNC_THRESHOLD) {
-                logger.info("Sync stream " + getIdentifier() + " track time: " + trackTime + " milliseconds. stream time " + getCurrentTime() + " milliseconds");
+        long currentTime = getCurrentTime();
+        if (!isSeekPlaybackEnabled() && currentTime != -1) {
+            // The offset is kept up to date with the track, see VideoController.handleCarriageOffsetChangeEvent
+            double trackTime = Math.min(Math.max(clockTime - getOffset(), 0), getDuration());
+            syncController.setFramesPerSecond(getFramesPerSecond());
+            if (syncController.measure(currentTime, trackTime)) {
+                logger.info("Sync stream " + getIdentifier() + " track time: " + trackTime + " milliseconds. stream time " + currentTime + " milliseconds");
                 setCurrentTime((long) trackTime);
             }
+            // Catch up or fall back by changing the rate a little while the stream plays
+            if (isPlaying()) {
+                float rate = syncController.getRate();
+                if (rate != getRate()) {
+                    logger.debug("Sync stream " + getIdentifier() + " at rate " + rate + "X, " + syncController);
+                    setRate(rate);
+                }
+            }
         }
     }
 
@@ -683,13 +736,16 @@ public abstract class StreamViewerDialog extends DatavyuDialog implements Stream
 
     @Override
     public synchronized void clockPause(double clockTime) {
-        logger.debug("Clock pause Pauses track: " + getIdentifier() + " at time: " + clockTime);
+        logger.debug("Clock pause Pauses track: " + getIdentifier() + " at time: " + clockTime + ", "
+                + syncController);
         pause();
     }
 
     @Override
     public synchronized void clockRate(final float rate) {
         logger.debug("Clock setting rate of track: " + getIdentifier() + " to " + rate + "X");
+        // Kept for the periodic sync, which must not take the lock of the clock while holding the lock of this viewer
+        syncController.setClockRate(rate);
         setRate(rate);
     }
 }
@@ -0,0 +1,500 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datavyu.models.db.*;
+
+import java.util.*;
+
+/**
+ * The changes made to a data store while they are recorded, kept so that they can be reverted.
+ *
+ * Only what changes is kept, as it was before it changed: the onset, offset and values of a cell the first time it is
+ * about to change, the cells and variables that are added or removed (a removed cell or variable is left intact, so
+ * putting it back restores it), and the previous name of a renamed variable. A variable whose arguments change is kept
+ * whole before the change, since the values of all its cells change with them. The memory used, and the time taken to
+ * revert, grow with the changes rather than with the data store.
+ *
+ * While recording, the changes are recorded as the journal of the data store and passed on to the journal that was
+ * there before. Reverting the changes records the changes it makes in turn, which revert the revert.
+ */
+final class DataStoreChanges implements ChangeJournal {
+
+    /** The logger instance for this class */
+    private static Logger logger = LogManager.getLogger(DataStoreChanges.class);
+
+    /** Start of the names given to renamed variables while they get their previous names back */
+    private static final String TEMPORARY_NAME = "undo_rename_";
+
+    /** The data store the changes are made to */
+    private final DataStore dataStore;
+
+    /** The journal of the data store when the recording started, which still gets all the changes */
+    private ChangeJournal next;
+
+    /** True while changes are recorded */
+    private boolean recording = false;
+
+    /** The order of the variables when the recording started */
+    private List<Variable> order = Collections.emptyList();
+
+    /** The variables added to the data store */
+    private final Set<Variable> addedVariables = new LinkedHashSet<Variable>();
+
+    /** The variables removed from the data store, that were in it when the recording started */
+    private final Set<Variable> removedVariables = new LinkedHashSet<Variable>();
+
+    /** The changes to the variables that were in the data store when the recording started */
+    private final Map<Variable, VariableChanges> variables = new LinkedHashMap<Variable, VariableChanges>();
+
+    /**
+     * The changes to a variable that was in the data store when the recording started.
+     */
+    private static final class VariableChanges {
+
+        /** The name of the variable before it was renamed, null if it wasn't renamed */
+        String previousName;
+
+        /** The variable as it was before its arguments changed, null if they didn't change */
+        VariableImage image;
+
+        /** The previous content of the cells that changed */
+        final Map<Cell, CellImage> changedCells = new HashMap<Cell, CellImage>();
+
+        /** The cells added to the variable */
+        final Set<Cell> addedCells = new LinkedHashSet<Cell>();
+
+        /** The cells removed from the variable, that were in it when the recording started */
+        final Set<Cell> removedCells = new LinkedHashSet<Cell>();
+    }
+
+    /**
+     * The content of a cell.
+     */
+    private static final class CellImage {
+
+        /** The onset of the cell in milliseconds */
+        final long onset;
+
+        /** The offset of the cell in milliseconds */
+        final long offset;
+
+        /** The values of the cell, one per argument for matrix cells and a single one for the other cells */
+        final String[] values;
+
+        CellImage(final Cell cell) {
+            onset = cell.getOnset();
+            offset = cell.getOffset();
+            CellValue value = cell.getCellValue();
+            if (value instanceof MatrixCellValue) {
+                MatrixCellValue matrix = (MatrixCellValue) value;
+                values = new String[matrix.getNumArguments()];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = matrix.getArgumentValue(j).toString();
+                }
+            } else {
+                values = new String[]{value.toString()};
+            }
+        }
+
+        /**
+         * Gives a cell this content, only setting what differs.
+         *
+         * @param cell The cell.
+         */
+        void applyTo(final Cell cell) {
+            if (cell.getOnset() != onset) {
+                cell.setOnset(onset);
+            }
+            if (cell.getOffset() != offset) {
+                cell.setOffset(offset);
+            }
+            CellValue value = cell.getCellValue();
+            if (value instanceof MatrixCellValue) {
+                MatrixCellValue matrix = (MatrixCellValue) value;
+                for (int j = 0; j < values.length && j < matrix.getNumArguments(); j++) {
+                    if (!matrix.getArgumentValue(j).toString().equals(values[j])) {
+                        matrix.getArgumentValue(j).set(values[j]);
+                    }
+                }
+            } else if (!value.toString().equals(values[0])) {
+                value.set(values[0]);
+            }
+        }
+    }
+
+    /**
+     * The arguments and cells of a variable.
+     */
+    private static final class VariableImage {
+
+        /** The arguments of the variable */
+        final Argument rootNode;
+
+        /** The content of the cells */
+        final List<CellImage> cells = new ArrayList<CellImage>();
+
+        /**
+         * Keeps a variable as it was when the recording started.
+         *
+         * @param variable The variable.
+         * @param changes  The changes recorded for the variable so far.
+         */
+        VariableImage(final Variable variable, final VariableChanges changes) {
+            rootNode = variable.getRootNode().copy();
+            for (Cell cell : variable.getCells()) {
+                if (!changes.addedCells.contains(cell)) {
+                    cells.add(imageOf(cell, changes));
+                }
+            }
+            for (Cell cell : changes.removedCells) {
+                cells.add(imageOf(cell, changes));
+            }
+        }
+
+        private static CellImage imageOf(final Cell cell, final VariableChanges changes) {
+            CellImage image = changes.changedCells.get(cell);
+            return image != null ? image : new CellImage(cell);
+        }
+    }
+
+    /**
+     * @param dataStore The data store to record the changes of.
+     */
+    DataStoreChanges(final DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Starts recording the changes to the data store.
+     */
+    synchronized void start() {
+        next = dataStore.getChangeJournal();
+        order = dataStore.getAllVariables();
+        dataStore.setChangeJournal(this);
+        recording = true;
+    }
+
+    /**
+     * Stops recording the changes to the data store, the journal there before gets them again.
+     */
+    synchronized void stop() {
+        if (recording) {
+            recording = false;
+            if (dataStore.getChangeJournal() == this) {
+                dataStore.setChangeJournal(next);
+            }
+        }
+    }
+
+    /**
+     * Reverts the data store to how it was when the recording started, stopping the recording.
+     *
+     * @return The changes made to revert, which revert the revert.
+     */
+    synchronized DataStoreChanges revert() {
+        stop();
+        DataStoreChanges revertChanges = new DataStoreChanges(dataStore);
+        revertChanges.start();
+        try {
+            for (Variable variable : addedVariables) {
+                dataStore.removeVariable(variable);
+            }
+
+            // Through temporary names first, in case variables swapped names.
+            List<Variable> renamed = new ArrayList<Variable>();
+            int temporaryNames = 0;
+            for (Map.Entry<Variable, VariableChanges> entry : variables.entrySet()) {
+                Variable variable = entry.getKey();
+                String previousName = entry.getValue().previousName;
+                if (previousName != null && !previousName.equals(variable.getName())) {
+                    renamed.add(variable);
+                    if (!removedVariables.contains(variable)) {
+                        String temporaryName;
+                        do {
+                            temporaryName = TEMPORARY_NAME + (++temporaryNames);
+                        } while (dataStore.getVariable(temporaryName) != null);
+                        rename(variable, temporaryName);
+                    }
+                }
+            }
+            for (Variable variable : removedVariables) {
+                dataStore.addVariable(variable);
+            }
+            for (Variable variable : renamed) {
+                rename(variable, variables.get(variable).previousName);
+            }
+
+            Map<Variable, Variable> restored = new HashMap<Variable, Variable>();
+            for (Map.Entry<Variable, VariableChanges> entry : variables.entrySet()) {
+                Variable variable = entry.getKey();
+                VariableChanges changes = entry.getValue();
+                if (changes.image != null) {
+                    Variable restoredVariable = restore(variable, changes.image);
+                    if (restoredVariable != null) {
+                        restored.put(variable, restoredVariable);
+                    }
+                } else {
+                    variable.removeCells(changes.addedCells);
+                    variable.addCells(changes.removedCells);
+                    for (Map.Entry<Cell, CellImage> cell : changes.changedCells.entrySet()) {
+                        cell.getValue().applyTo(cell.getKey());
+                    }
+                }
+            }
+
+            // Variables that are added back or restored come last, move them back to where they were.
+            for (int i = 0; i < order.size(); i++) {
+                Variable variable = order.get(i);
+                if (restored.containsKey(variable)) {
+                    dataStore.moveVariable(restored.get(variable), i);
+                } else if (removedVariables.contains(variable)) {
+                    dataStore.moveVariable(variable, i);
+                }
+            }
+        } finally {
+            revertChanges.stop();
+        }
+        return revertChanges;
+    }
+
+    /**
+     * Renames a variable, names it had before are always accepted.
+     */
+    private static void rename(final Variable variable, final String name) {
+        try {
+            variable.setName(name, true);
+        } catch (UserWarningException e) {
+            logger.error("Unable to rename variable " + variable.getName() + " to " + name + ". Error: ", e);
+        }
+    }
+
+    /**
+     * Replaces a variable by a variable with its previous arguments and cells.
+     *
+     * @return The variable that replaces it, null if unable to restore the variable.
+     */
+    private Variable restore(final Variable variable, final VariableImage image) {
+        try {
+            boolean hidden = variable.isHidden();
+            // Only names exempt from the naming rules were created grandfathered.
+            boolean grandfathered = Arrays.asList(dataStore.getExemptionVariables().split("\n"))
+                    .contains(variable.getName());
+            dataStore.removeVariable(variable);
+            Variable restored = dataStore.createVariable(variable.getName(), image.rootNode.type, grandfathered);
+            // Through the argument changes, so that the journal of the data store records the arguments.
+            Argument root = restored.getRootNode();
+            for (Argument argument : new ArrayList<Argument>(root.childArguments)) {
+                restored.removeArgument(argument.name);
+            }
+            for (Argument argument : image.rootNode.childArguments) {
+                restored.addArgument(argument.type).name = argument.name;
+            }
+            restored.setRootNode(root);
+
+            int n = image.cells.size();
+            long[] onsets = new long[n];
+            long[] offsets = new long[n];
+            String[][] values = new String[n][];
+            for (int i = 0; i < n; i++) {
+                CellImage cell = image.cells.get(i);
+                onsets[i] = cell.onset;
+                offsets[i] = cell.offset;
+                values[i] = cell.values;
+            }
+            List<String> codeNames = new ArrayList<String>();
+            for (Argument argument : restored.getRootNode().childArguments) {
+                codeNames.add(argument.name);
+            }
+            ColumnSnapshot.apply(restored, new Cell[n], onsets, offsets,
+                    codeNames.toArray(new String[codeNames.size()]), values);
+            restored.setHidden(hidden);
+            return restored;
+        } catch (UserWarningException e) {
+            logger.error("Unable to restore variable " + variable.getName() + ". Error: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param variable A variable.
+     * @return True if the changes to the variable are recorded, i.e. it was in the data store when the recording
+     * started.
+     */
+    private boolean isRecorded(final Variable variable) {
+        return recording && variable != null && !addedVariables.contains(variable);
+    }
+
+    /**
+     * @param variable A variable that was in the data store when the recording started.
+     * @return The changes recorded for the variable.
+     */
+    private VariableChanges getChanges(final Variable variable) {
+        VariableChanges changes = variables.get(variable);
+        if (changes == null) {
+            changes = new VariableChanges();
+            variables.put(variable, changes);
+        }
+        return changes;
+    }
+
+    @Override
+    public synchronized boolean replaceNext(final ChangeJournal journal, final ChangeJournal replacement) {
+        if (next == journal) {
+            next = replacement;
+            return true;
+        }
+        return next != null && next.replaceNext(journal, replacement);
+    }
+
+    @Override
+    public synchronized void variableAdded(final Variable variable) {
+        if (recording && !removedVariables.remove(variable)) {
+            addedVariables.add(variable);
+        }
+        if (next != null) {
+            next.variableAdded(variable);
+        }
+    }
+
+    @Override
+    public synchronized void variableRemoved(final Variable variable) {
+        if (recording && !addedVariables.remove(variable)) {
+            removedVariables.add(variable);
+        }
+        if (next != null) {
+            next.variableRemoved(variable);
+        }
+    }
+
+    @Override
+    public synchronized void variableRenamed(final String oldName, final String newName) {
+        Variable variable = dataStore.getVariable(newName);
+        if (isRecorded(variable)) {
+            VariableChanges changes = getChanges(variable);
+            if (changes.previousName == null) {
+                changes.previousName = oldName;
+            }
+        }
+        if (next != null) {
+            next.variableRenamed(oldName, newName);
+        }
+    }
+
+    @Override
+    public synchronized void argumentsChanging(final Variable variable) {
+        if (isRecorded(variable)) {
+            VariableChanges changes = getChanges(variable);
+            if (changes.image == null) {
+                // The whole variable is restored from now on, the changes to its cells are in the image.
+                changes.image = new VariableImage(variable, changes);
+                changes.changedCells.clear();
+                changes.addedCells.clear();
+                changes.removedCells.clear();
+            }
+        }
+        if (next != null) {
+            next.argumentsChanging(variable);
+        }
+    }
+
+    @Override
+    public synchronized void argumentAdded(final Variable variable, final Argument argument) {
+        if (next != null) {
+            next.argumentAdded(variable, argument);
+        }
+    }
+
+    @Override
+    public synchronized void argumentMoved(final Variable variable, final int oldIndex, final int newIndex) {
+        if (next != null) {
+            next.argumentMoved(variable, oldIndex, newIndex);
+        }
+    }
+
+    @Override
+    public synchronized void argumentRenamed(final Variable variable, final int index, final String oldName,
+                                             final String newName) {
+        if (next != null) {
+            next.argumentRenamed(variable, index, oldName, newName);
+        }
+    }
+
+    @Override
+    public synchronized void argumentRemoved(final Variable variable, final String name) {
+        if (next != null) {
+            next.argumentRemoved(variable, name);
+        }
+    }
+
+    @Override
+    public synchronized void cellAdded(final Variable variable, final Cell cell) {
+        if (isRecorded(variable)) {
+            VariableChanges changes = getChanges(variable);
+            if (changes.image == null && !changes.removedCells.remove(cell)) {
+                changes.addedCells.add(cell);
+                // Cells created detached may have been filled in before they were added.
+                changes.changedCells.remove(cell);
+            }
+        }
+        if (next != null) {
+            next.cellAdded(variable, cell);
+        }
+    }
+
+    @Override
+    public synchronized void cellRemoved(final Variable variable, final Cell cell) {
+        if (isRecorded(variable)) {
+            VariableChanges changes = getChanges(variable);
+            if (changes.image == null && !changes.addedCells.remove(cell)) {
+                changes.removedCells.add(cell);
+            }
+        }
+        if (next != null) {
+            next.cellRemoved(variable, cell);
+        }
+    }
+
+    @Override
+    public synchronized void cellChanging(final Cell cell) {
+        Variable variable = cell.getVariable();
+        if (isRecorded(variable)) {
+            VariableChanges changes = getChanges(variable);
+            if (changes.image == null && !changes.addedCells.contains(cell)
+                    && !changes.changedCells.containsKey(cell)) {
+                changes.changedCells.put(cell, new CellImage(cell));
+            }
+        }
+        if (next != null) {
+            next.cellChanging(cell);
+        }
+    }
+
+    @Override
+    public synchronized void cellTimesChanged(final Cell cell) {
+        if (next != null) {
+            next.cellTimesChanged(cell);
+        }
+    }
+
+    @Override
+    public synchronized void cellValueChanged(final Cell cell, final int argumentIndex, final String value) {
+        if (next != null) {
+            next.cellValueChanged(cell, argumentIndex, value);
+        }
+    }
+}
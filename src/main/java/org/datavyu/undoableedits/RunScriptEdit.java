@@ -14,37 +14,41 @@
  */
 package org.datavyu.undoableedits;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.datavyu.controllers.DeleteColumnController;
-import org.datavyu.models.db.Cell;
-import org.datavyu.models.db.UserWarningException;
-import org.datavyu.models.db.Variable;
+import org.datavyu.controllers.RunScriptController;
 
+import javax.swing.*;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 
 /**
  * Undoable script edit.
+ *
+ * Only the changes the script makes are kept, see {@link DataStoreChanges}, so undoing a script that changed a few
+ * cells of a large project only puts back those cells.
  */
 public class RunScriptEdit extends SpreadSheetEdit {
 
-    /** Logger for this class */
-    private static final Logger logger = LogManager.getLogger(RunScriptEdit.class);
-
     /** Script path */
     private String scriptPath;
 
-    /** Relevant columns */
-    private List<VariableTO> colsTO;
+    /** The changes of the script, or of the undo once undone */
+    private DataStoreChanges changes;
 
-    public RunScriptEdit(String scriptPath) {
+    /**
+     * Records the changes a script makes until it is done.
+     *
+     * @param script The script, about to run.
+     */
+    public RunScriptEdit(final RunScriptController script) {
         super();
-        this.scriptPath = scriptPath;
-        colsTO = getSpreadSheetState();
+        this.scriptPath = script.getScriptFilePath();
+        changes = new DataStoreChanges(model);
+        changes.start();
+        script.addPropertyChangeListener(evt -> {
+            if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE) {
+                changes.stop();
+            }
+        });
     }
 
     @Override
@@ -66,48 +70,8 @@ public class RunScriptEdit extends SpreadSheetEdit {
     }
 
     private void toggleSpreadSheetState() {
-        List<VariableTO> tempColsTO = this.getSpreadSheetState();
-        setSpreadSheetState(colsTO);
-        colsTO = tempColsTO;
-    }
-
-    private List<VariableTO> getSpreadSheetState() {
-        List<VariableTO> varsTO = new ArrayList<>();
-
-        int pos = 0;
-        for (Variable var : model.getAllVariables()) {
-            varsTO.add(new VariableTO(var, pos));
-            pos++;
-        }
-
-        return varsTO;
-    }
-
-    private void setSpreadSheetState(List<VariableTO> varsTO) {
-        try {
-            HashMap<String, Boolean> hiddenStates = new HashMap<>();
-            for (Variable v : model.getAllVariables()) {
-                hiddenStates.put(v.getName(), v.isHidden());
-            }
-            new DeleteColumnController(new ArrayList<>(model.getAllVariables()));
-
-            for (VariableTO varTO : varsTO) {
-                Variable var = model.createVariable(varTO.getName(), varTO.getType().type);
-                var.setRootNode(varTO.getType());
-
-                for (CellTO cellTO : varTO.getTOCells()) {
-                    Cell c = var.createCell();
-                    c.setOnset(cellTO.getOnset());
-                    c.setOffset(cellTO.getOffset());
-                    c.getCellValue().set(cellTO.getValue());
-                }
-            }
-            for (Variable v : model.getAllVariables()) {
-                v.setHidden(hiddenStates.get(v.getName()));
-            }
-        } catch (UserWarningException e) {
-            logger.error("Unable to set spread sheet state. Error: ", e);
-        }
+        changes = changes.revert();
         unselectAll();
+        getSpreadsheet().redrawCells();
     }
 }
@@ -14,18 +14,19 @@
  */
 package org.datavyu.util;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 
 /**
  * Keeps multiple streams in periodic sync and does not play beyond the boundaries of a stream.
+ *
+ * A single thread drives the clock. While the clock runs, it sleeps until the next thing to do: the next periodic
+ * sync, the clock reaching the end of its range, or the clock reaching the start or end of a stream. While the clock
+ * is paused, the thread waits until the clock is started again or its time is set.
  */
 public final class ClockTimer {
 
@@ -35,11 +36,11 @@ public final class ClockTimer {
     /** Synchronization threshold in milliseconds */
     public static final long SYNC_THRESHOLD = 1500L; // 1.5 sec  (because some plugins are not very precise in seek)
 
-    /** Clock tick period in milliseconds */
+    /** Default period of the periodic sync and seek playback in milliseconds */
     private static final long CLOCK_INTERVAL = 100L;
 
-    /** Clock initial delay in milliseconds */
-    private static final long CLOCK_DELAY = 0L;
+    /** Period of the periodic sync and seek playback in milliseconds */
+    private final long syncInterval;
 
     /** Convert nanoseconds to milliseconds */
     private static final long NANO_IN_MILLI = 1000000L;
@@ -57,37 +58,57 @@ public final class ClockTimer {
     private double lastTime;
 
     /** Is the clock stopped */
-    private boolean isStopped;
+    private volatile boolean isStopped;
 
     /** The rate factor for the clock updates */
     private float rate = 1F;
 
-    private ScheduledExecutorService execService
-        =   Executors.newScheduledThreadPool(4);
+    /** True if the time was set and the periodic sync listeners haven't been told yet */
+    private boolean syncRequested;
+
+    /** Counts the changes that affect when the clock thread has to run next */
+    private long changes;
+
+    /** Listeners of the start, stop, pause and rate of this clock */
+    private final Set<StateListener> stateListeners = new CopyOnWriteArraySet<>();
+
+    /** Listeners of the time of this clock */
+    private final Set<SyncListener> syncListeners = new CopyOnWriteArraySet<>();
+
+    /** Listeners of the clock reaching the end of its range */
+    private final Set<BoundaryListener> boundaryListeners = new CopyOnWriteArraySet<>();
 
-    /** Listeners of this clock */
-    private Set<ClockListener> clockListeners = new HashSet<>();
+    /** Listeners of the clock reaching the start or end of a stream */
+    private final Set<StreamBoundaryListener> streamBoundaryListeners = new CopyOnWriteArraySet<>();
+
+    /** Listeners that play by seeking */
+    private final Set<SeekPlaybackListener> seekPlaybackListeners = new CopyOnWriteArraySet<>();
 
     /**
      * Default constructor.
      */
     public ClockTimer() {
+        this(CLOCK_INTERVAL);
+    }
+
+    /**
+     * Creates a clock with the given period of the periodic sync.
+     *
+     * @param syncInterval The period of the periodic sync and seek playback in milliseconds
+     */
+    ClockTimer(final long syncInterval) {
 
         // Initialize values
+        this.syncInterval = syncInterval;
         clockTime = 0;
         lastTime = 0;
         minTime = 0;
         maxTime = 0;
         isStopped = true;
 
-        execService.scheduleAtFixedRate(() -> periodicSync()
-            , CLOCK_DELAY, CLOCK_INTERVAL, TimeUnit.MILLISECONDS);
-        execService.scheduleAtFixedRate(() -> checkClockBoundary()
-            , CLOCK_DELAY, CLOCK_INTERVAL, TimeUnit.MILLISECONDS);
-        execService.scheduleAtFixedRate(() -> checkStreamsBoundary()
-            , CLOCK_DELAY, CLOCK_INTERVAL, TimeUnit.MILLISECONDS);
-        execService.scheduleAtFixedRate(() -> notifySeekPlayback()
-            , CLOCK_DELAY, CLOCK_INTERVAL, TimeUnit.MILLISECONDS);
+        Thread thread = new Thread(this::run, "Datavyu clock");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**
@@ -98,6 +119,7 @@ public final class ClockTimer {
     public synchronized void setMinTime(long minTime) {
         logger.debug("Setting Clock minimum time");
         this.minTime = minTime;
+        wakeUp();
     }
 
     /**
@@ -108,6 +130,7 @@ public final class ClockTimer {
     public synchronized void setMaxTime(long maxTime) {
         logger.debug("Setting Clock maximum time");
         this.maxTime = maxTime;
+        wakeUp();
     }
 
     /**
@@ -162,6 +185,8 @@ public final class ClockTimer {
             clockTime = time;
             // Don't notify a sync or force a sync
             // The time will be updated by a periodic sync
+            syncRequested = true;
+            wakeUp();
         }
     }
 
@@ -177,10 +202,12 @@ public final class ClockTimer {
             clockTime = time;
             // Notify a force sync
             notifyForceSync();
+            wakeUp();
         }else if (time < minTime){
             clockTime = minTime;
             // Notify a force sync
             notifyForceSync();
+            wakeUp();
         }
     }
 
@@ -207,6 +234,7 @@ public final class ClockTimer {
         logger.debug("Setting Clock Rate to " + newRate + "X");
         updateElapsedTime();
         rate = newRate;
+        wakeUp();
         // FIRST notify about the rate change
         notifyRate();
         // SECOND start or stop
@@ -227,6 +255,7 @@ public final class ClockTimer {
             isStopped = false;
             lastTime = System.nanoTime();
             notifyStart();
+            wakeUp();
         }
     }
 
@@ -274,12 +303,16 @@ public final class ClockTimer {
     }
 
     /**
-     * Registers a clock listener
+     * Registers a clock listener for all the events of this clock
      *
      * @param listener Listener requiring clockTick updates
      */
     public synchronized void registerListener(final ClockListener listener) {
-        clockListeners.add(listener);
+        stateListeners.add(listener);
+        syncListeners.add(listener);
+        boundaryListeners.add(listener);
+        streamBoundaryListeners.add(listener);
+        seekPlaybackListeners.add(listener);
     }
 
   /**
@@ -288,7 +321,29 @@ public final class ClockTimer {
    * @param listener Listener requiring clockTick updates
    */
     public synchronized void unRegisterListener(final ClockListener listener) {
-        clockListeners.remove(listener);
+        stateListeners.remove(listener);
+        syncListeners.remove(listener);
+        boundaryListeners.remove(listener);
+        streamBoundaryListeners.remove(listener);
+        seekPlaybackListeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener of the time of this clock only
+     *
+     * @param listener Listener requiring sync updates
+     */
+    public synchronized void registerListener(final SyncListener listener) {
+        syncListeners.add(listener);
+    }
+
+    /**
+     * Un-Registers a listener of the time of this clock
+     *
+     * @param listener Listener requiring sync updates
+     */
+    public synchronized void unRegisterListener(final SyncListener listener) {
+        syncListeners.remove(listener);
     }
 
     /**
@@ -302,40 +357,123 @@ public final class ClockTimer {
     }
 
     /**
-     * The "periodicSync" of the clock - updates listeners of changes in time.
+     * Wakes up the clock thread to reconsider when it runs next. Called with the monitor of this clock held.
      */
-    private synchronized void periodicSync() {
-        updateElapsedTime();
-        notifyPeriodicSync();
+    private void wakeUp() {
+        changes++;
+        notifyAll();
     }
 
-    private synchronized void checkClockBoundary() {
-        updateElapsedTime();
-        notifyCheckClockBoundary();
+    /**
+     * The clock thread. Listeners are notified without holding the monitor of this clock, so that they can call
+     * back into the clock.
+     */
+    private void run() {
+        long nextSync = System.nanoTime();
+        try {
+            while (true) {
+                final double time;
+                final float currentRate;
+                final boolean running;
+                final boolean sync;
+                final boolean atBoundary;
+                final double boundary;
+                final long changesSeen;
+                synchronized (this) {
+                    while (isStopped && !syncRequested) {
+                        wait();
+                    }
+                    updateElapsedTime();
+                    long now = System.nanoTime();
+                    running = !isStopped;
+                    sync = syncRequested || now >= nextSync;
+                    if (sync) {
+                        syncRequested = false;
+                        nextSync = now + syncInterval * NANO_IN_MILLI;
+                    }
+                    time = clockTime;
+                    currentRate = rate;
+                    boundary = currentRate > 0 ? maxTime : minTime;
+                    atBoundary = currentRate > 0 ? time >= boundary : time <= boundary;
+                    changesSeen = changes;
+                }
+
+                try {
+                    if (running) {
+                        if (atBoundary) {
+                            notifyCheckClockBoundary(time);
+                        }
+                        notifyCheckStreamsBoundary(time);
+                    }
+                    if (sync) {
+                        notifyPeriodicSync(time);
+                        if (running) {
+                            notifySeekPlayback(time);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // Keep the clock going for the other listeners.
+                    logger.error("Clock listener failed at " + time + " milliseconds. Error: ", e);
+                }
+                if (!running) {
+                    continue;
+                }
+
+                // Sleep until the next sync or the next boundary, whichever comes first.
+                long delay = nextSync - System.nanoTime();
+                long boundaryDelay = toDelay(boundary - time, currentRate);
+                if (!atBoundary && boundaryDelay > 0) {
+                    delay = Math.min(delay, boundaryDelay);
+                }
+                for (StreamBoundaryListener listener : streamBoundaryListeners) {
+                    try {
+                        long streamDelay = toDelay(listener.nextStreamBoundary(time, currentRate) - time,
+                                currentRate);
+                        if (streamDelay > 0) {
+                            delay = Math.min(delay, streamDelay);
+                        }
+                    } catch (RuntimeException e) {
+                        logger.error("Clock listener failed at " + time + " milliseconds. Error: ", e);
+                    }
+                }
+                synchronized (this) {
+                    if (changes == changesSeen && !isStopped && delay > 0) {
+                        // Round up so that the clock is at or past the deadline when waking up.
+                        wait((delay + NANO_IN_MILLI - 1) / NANO_IN_MILLI);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("Clock thread interrupted");
+        }
     }
 
-    private synchronized void checkStreamsBoundary() {
-        updateElapsedTime();
-        notifyCheckStreamsBoundary();
+    /**
+     * @param clockDistance A distance in clock time, in milliseconds, in the direction of the rate.
+     * @param rate          The rate of the clock.
+     * @return The nanoseconds until the clock has moved by the distance, not positive if it never will.
+     */
+    private static long toDelay(final double clockDistance, final float rate) {
+        return (long) (clockDistance / rate * NANO_IN_MILLI);
     }
 
     // Notify seek playback could be used if a different interval is need for the
     // For the fake playback scheduler
-    private void notifySeekPlayback() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockSeekPlayback(clockTime);
+    private void notifySeekPlayback(final double time) {
+        for (SeekPlaybackListener listener : seekPlaybackListeners) {
+            listener.clockSeekPlayback(time);
         }
     }
 
-    private void notifyCheckClockBoundary() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockBoundaryCheck(clockTime);
+    private void notifyCheckClockBoundary(final double time) {
+        for (BoundaryListener listener : boundaryListeners) {
+            listener.clockBoundaryCheck(time);
         }
     }
 
-    private void notifyCheckStreamsBoundary() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.streamsBoundaryCheck(clockTime);
+    private void notifyCheckStreamsBoundary(final double time) {
+        for (StreamBoundaryListener listener : streamBoundaryListeners) {
+            listener.streamsBoundaryCheck(time);
         }
     }
 
@@ -343,17 +481,17 @@ public final class ClockTimer {
      * Notify clock listeners of a force periodicSync -- consumers must act on this
      */
     private void notifyForceSync() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockForceSync(clockTime);
+        for (SyncListener listener : syncListeners) {
+            listener.clockForceSync(clockTime);
         }
     }
 
     /**
      * Notify clock listeners of a periodic periodicSync -- consumers may act on this
      */
-    private void notifyPeriodicSync() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockPeriodicSync(clockTime);
+    private void notifyPeriodicSync(final double time) {
+        for (SyncListener listener : syncListeners) {
+            listener.clockPeriodicSync(time);
         }
     }
 
@@ -361,8 +499,8 @@ public final class ClockTimer {
      * Notify clock listeners of rate update.
      */
     private void notifyRate() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockRate(rate);
+        for (StateListener listener : stateListeners) {
+            listener.clockRate(rate);
         }
     }
 
@@ -370,8 +508,8 @@ public final class ClockTimer {
      * Notify clock listeners of start event.
      */
     private void notifyStart() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockStart(clockTime);
+        for (StateListener listener : stateListeners) {
+            listener.clockStart(clockTime);
         }
     }
 
@@ -379,8 +517,8 @@ public final class ClockTimer {
      * Notify clock listeners of stop event.
      */
     private void notifyStop() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockStop(clockTime);
+        for (StateListener listener : stateListeners) {
+            listener.clockStop(clockTime);
         }
     }
 
@@ -388,57 +526,104 @@ public final class ClockTimer {
      * Notify clock listeners of pause event.
      */
     private void notifyPause() {
-        for (ClockListener clockListener : clockListeners) {
-            clockListener.clockPause(clockTime);
+        for (StateListener listener : stateListeners) {
+            listener.clockPause(clockTime);
         }
     }
+
     /**
-     * Listener interface for clock 'ticks'.
+     * Listener interface for the start, stop, pause and rate of the clock.
      */
-    public interface ClockListener {
+    public interface StateListener {
         /**
          * @param clockTime Current time in milliseconds
          */
-        void clockSeekPlayback(double clockTime);
+        void clockStart(double clockTime);
 
         /**
          * @param clockTime Current time in milliseconds
          */
-        void clockBoundaryCheck(double clockTime);
+        void clockStop(double clockTime);
 
         /**
          * @param clockTime Current time in milliseconds
          */
-        void streamsBoundaryCheck(double clockTime);
+        void clockPause(double clockTime);
 
         /**
+         * @param rate Current (updated) rate.
+         */
+        void clockRate(float rate);
+    }
+
+    /**
+     * Listener interface for the time of the clock.
+     */
+    public interface SyncListener {
+        /**
+         * Called when the time is set, consumers must act on this.
+         *
          * @param clockTime Current time in milliseconds
          */
         void clockForceSync(double clockTime);
 
         /**
+         * Called periodically while the clock runs and after the time was set with {@link #setTime(long)}.
+         *
          * @param clockTime Current time in milliseconds
          */
         void clockPeriodicSync(double clockTime);
+    }
 
+    /**
+     * Listener interface for the clock reaching the end of its range, in the direction it runs.
+     */
+    public interface BoundaryListener {
         /**
          * @param clockTime Current time in milliseconds
          */
-        void clockStart(double clockTime);
+        void clockBoundaryCheck(double clockTime);
+    }
 
+    /**
+     * Listener interface for the clock reaching the start or end of a stream.
+     */
+    public interface StreamBoundaryListener {
         /**
+         * Called when the clock reaches a boundary given by {@link #nextStreamBoundary} and periodically while the
+         * clock runs.
+         *
          * @param clockTime Current time in milliseconds
          */
-        void clockStop(double clockTime);
+        void streamsBoundaryCheck(double clockTime);
 
         /**
          * @param clockTime Current time in milliseconds
+         * @param rate      Current rate, not 0.
+         * @return The next clock time in the direction of the rate at which the stream starts or ends, or NaN if
+         * there is none.
          */
-        void clockPause(double clockTime);
+        default double nextStreamBoundary(double clockTime, float rate) {
+            return Double.NaN;
+        }
+    }
 
+    /**
+     * Listener interface for streams that play by seeking.
+     */
+    public interface SeekPlaybackListener {
         /**
-         * @param rate Current (updated) rate.
+         * Called periodically while the clock runs.
+         *
+         * @param clockTime Current time in milliseconds
          */
-        void clockRate(float rate);
+        void clockSeekPlayback(double clockTime);
+    }
+
+    /**
+     * Listener interface for all the events of the clock.
+     */
+    public interface ClockListener
+            extends StateListener, SyncListener, BoundaryListener, StreamBoundaryListener, SeekPlaybackListener {
     }
 }
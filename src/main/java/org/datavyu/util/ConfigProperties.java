@@ -147,6 +147,24 @@ public final class ConfigProperties implements Serializable {
     /** URL for the download url */
     private String downloadUrl;
 
+    /** Default on saving every variable to its own entry of project archives */
+    private static final boolean DEFAULT_SPLIT_ARCHIVE_BY_VARIABLE = true;
+
+    /** True if project archives store every variable in its own entry, so they are saved and opened in parallel */
+    private Boolean splitArchiveByVariable;
+
+    /** Default on only building the views of the cells scrolled into sight */
+    private static final boolean DEFAULT_VIRTUALIZED_SPREADSHEET = true;
+
+    /** True if the ordinal spreadsheet only builds the views of the cells in sight, see ColumnDataPanel */
+    private Boolean virtualizedSpreadsheet;
+
+    /** Default on rendering the frames of an export by frame in parallel */
+    private static final boolean DEFAULT_PARALLEL_FRAME_EXPORT = true;
+
+    /** True if exports by frame render chunks of frames on every core, see FrameExporter */
+    private Boolean parallelFrameExport;
+
     /** Default conversion url */
     private static final String DEFAULT_CONVERSION_URL = "https://handbrake.fr";
 
@@ -235,6 +253,15 @@ public final class ConfigProperties implements Serializable {
         if (!configurationProperties.hasDownloadUrl()) {
             configurationProperties.setDownloadUrl(DEFAULT_DOWNLOAD_URL);
         }
+        if (!configurationProperties.hasSplitArchiveByVariable()) {
+            configurationProperties.setSplitArchiveByVariable(DEFAULT_SPLIT_ARCHIVE_BY_VARIABLE);
+        }
+        if (!configurationProperties.hasVirtualizedSpreadsheet()) {
+            configurationProperties.setVirtualizedSpreadsheet(DEFAULT_VIRTUALIZED_SPREADSHEET);
+        }
+        if (!configurationProperties.hasParallelFrameExport()) {
+            configurationProperties.setParallelFrameExport(DEFAULT_PARALLEL_FRAME_EXPORT);
+        }
         if (!configurationProperties.hasConversionUrl()) {
             configurationProperties.setConversionUrl(DEFAULT_CONVERSION_URL);
         }
@@ -253,16 +280,14 @@ public final class ConfigProperties implements Serializable {
         if (!configurationProperties.hasLastChosenDirectory()) {
             configurationProperties.setLastChosenDirectory(DEFAULT_LAST_CHOSEN_DIRECTORY);
         }
-        try {
-            Font defaultFont = Font.createFont(Font.TRUETYPE_FONT,
-                    configurationProperties.getClass().getResourceAsStream(Constants.DEFAULT_FONT_FILE));
-            Font defaultCellFont = Font.createFont(Font.TRUETYPE_FONT,
-                    configurationProperties.getClass().getResourceAsStream(Constants.DEFAULT_CELL_FONT_FILE));
+        Font defaultFont = DefaultFonts.getLabelFont();
+        Font defaultCellFont = DefaultFonts.getCellFont();
+        if (defaultCellFont != null) {
             configurationProperties.setSpreadSheetDataFont(defaultCellFont.deriveFont(DEFAULT_DATA_FONT_SIZE));
-//            configurationProperties.setSpreadSheetDataFont(defaultFont.deriveFont(DEFAULT_DATA_FONT_SIZE));
+        }
+//        configurationProperties.setSpreadSheetDataFont(defaultFont.deriveFont(DEFAULT_DATA_FONT_SIZE));
+        if (defaultFont != null) {
             configurationProperties.setSpreadSheetLabelFont(defaultFont.deriveFont(DEFAULT_LABEL_FONT_SIZE));
-        } catch (Exception e) {
-            logger.error("Error, unable to load font " + Constants.DEFAULT_FONT_FILE + ". The error is " + e);
         }
 
         // In all cases save this setting for the next run
@@ -644,6 +669,88 @@ public final class ConfigProperties implements Serializable {
         this.usePreRelease = usePreRelease;
     }
 
+    /**
+     * Get the layout of saved project archives.
+     *
+     * @return True if every variable is saved to its own entry of the archive; otherwise False.
+     */
+    public Boolean getSplitArchiveByVariable() {
+        return splitArchiveByVariable;
+    }
+
+    /**
+     * Set the layout of saved project archives.
+     *
+     * @param splitArchiveByVariable True if every variable is saved to its own entry of the archive; otherwise False.
+     */
+    public void setSplitArchiveByVariable(final Boolean splitArchiveByVariable) {
+        this.splitArchiveByVariable = splitArchiveByVariable;
+    }
+
+    /**
+     * Did we set the layout of saved project archives?
+     *
+     * @return True if we set the layout; otherwise False.
+     */
+    public boolean hasSplitArchiveByVariable() {
+        return splitArchiveByVariable != null;
+    }
+
+    /**
+     * Get whether the spreadsheet only builds the views of the cells in sight.
+     *
+     * @return True if the views of the cells are built as they are scrolled into sight; otherwise False.
+     */
+    public Boolean getVirtualizedSpreadsheet() {
+        return virtualizedSpreadsheet;
+    }
+
+    /**
+     * Set whether the spreadsheet only builds the views of the cells in sight.
+     *
+     * @param virtualizedSpreadsheet True if the views of the cells are built as they are scrolled into sight;
+     *                               otherwise False.
+     */
+    public void setVirtualizedSpreadsheet(final Boolean virtualizedSpreadsheet) {
+        this.virtualizedSpreadsheet = virtualizedSpreadsheet;
+    }
+
+    /**
+     * Did we set whether the spreadsheet only builds the views of the cells in sight?
+     *
+     * @return True if we set it; otherwise False.
+     */
+    public boolean hasVirtualizedSpreadsheet() {
+        return virtualizedSpreadsheet != null;
+    }
+
+    /**
+     * Get whether exports by frame render the frames in parallel.
+     *
+     * @return True if chunks of frames are rendered in parallel; otherwise False.
+     */
+    public Boolean getParallelFrameExport() {
+        return parallelFrameExport;
+    }
+
+    /**
+     * Set whether exports by frame render the frames in parallel.
+     *
+     * @param parallelFrameExport True if chunks of frames are rendered in parallel; otherwise False.
+     */
+    public void setParallelFrameExport(final Boolean parallelFrameExport) {
+        this.parallelFrameExport = parallelFrameExport;
+    }
+
+    /**
+     * Did we set whether exports by frame render the frames in parallel?
+     *
+     * @return True if we set it; otherwise False.
+     */
+    public boolean hasParallelFrameExport() {
+        return parallelFrameExport != null;
+    }
+
     /**
      * Get the favorites folder.
      *
@@ -0,0 +1,73 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The fonts shipped with Datavyu, loaded once when this class is first used. Loading them takes a while for the
+ * large cell font, so the start-up loads them at the same time as the configuration.
+ */
+public final class DefaultFonts {
+
+    /** The logger for this class */
+    private static Logger logger = LogManager.getLogger(DefaultFonts.class);
+
+    /** The font of the labels, null if it couldn't be loaded */
+    private static final Font labelFont = load(Constants.DEFAULT_FONT_FILE);
+
+    /** The font of the cells, null if it couldn't be loaded */
+    private static final Font cellFont = load(Constants.DEFAULT_CELL_FONT_FILE);
+
+    private DefaultFonts() {}
+
+    /**
+     * @return The font of the labels in the spreadsheet, with a size of 1, or null if it couldn't be loaded.
+     */
+    public static Font getLabelFont() {
+        return labelFont;
+    }
+
+    /**
+     * @return The font of the cells in the spreadsheet, with a size of 1, or null if it couldn't be loaded.
+     */
+    public static Font getCellFont() {
+        return cellFont;
+    }
+
+    /**
+     * Loads a true type font from the resources.
+     *
+     * @param fontFile The path of the font in the resources.
+     * @return The font or null if it couldn't be loaded.
+     */
+    private static Font load(final String fontFile) {
+        try (InputStream in = DefaultFonts.class.getResourceAsStream(fontFile)) {
+            if (in == null) {
+                logger.error("Error, unable to find font " + fontFile);
+                return null;
+            }
+            return Font.createFont(Font.TRUETYPE_FONT, in);
+        } catch (FontFormatException | IOException e) {
+            logger.error("Error, unable to load font " + fontFile + ". The error is " + e);
+            return null;
+        }
+    }
+}
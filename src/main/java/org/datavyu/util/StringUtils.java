@@ -30,20 +30,33 @@ public final class StringUtils {
     }
 
     private static String escapeString(final String input, final String charsToEscape) {
-        StringBuilder resultSB = new StringBuilder();
+        StringBuilder resultSB = new StringBuilder(input.length() + 8);
 
         for (int n = 0; n < input.length(); n++) {
-            if (charsToEscape.indexOf(input.charAt(n)) != -1) {
-                resultSB.append("\\");
+            char c = input.charAt(n);
+            // Remove all control characters
+            if (c <= '\u0001') {
+                continue;
             }
-            resultSB.append(input.charAt(n));
+            if (charsToEscape.indexOf(c) != -1) {
+                resultSB.append('\\');
+            }
+            resultSB.append(c);
         }
 
-        // Remove all control characters
-        return resultSB.toString().replaceAll("[\u0000-\u0001]", "");
+        return resultSB.toString();
     }
     
     public static String escapeCSVQuotes(String s){ //for actual CSV export, not our misnomer "CSV"s
-        return "\"" + s.replaceAll("\"", "\"\"") + "\"";
+        StringBuilder resultSB = new StringBuilder(s.length() + 2);
+        resultSB.append('"');
+        for (int n = 0; n < s.length(); n++) {
+            char c = s.charAt(n);
+            if (c == '"') {
+                resultSB.append('"');
+            }
+            resultSB.append(c);
+        }
+        return resultSB.append('"').toString();
     }
 }
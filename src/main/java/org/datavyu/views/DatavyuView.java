@@ -829,8 +829,10 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
      */
     @Action
     public void closeTab() {
-        if(Datavyu.getApplication().safeQuit(getTabbedPane().getSelectedComponent())) {
-            getTabbedPane().remove(getTabbedPane().getSelectedComponent());
+        Component tab = getTabbedPane().getSelectedComponent();
+        if(Datavyu.getApplication().safeQuit(tab)) {
+            ((SpreadSheetPanel) tab).getProjectController().stopJournal(true);
+            getTabbedPane().remove(tab);
         }
         if(getTabbedPane().getTabCount() == 0) {
             safeQuit();
@@ -877,6 +879,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
 
                     projectController.markProjectAsUnchanged();
                     projectController.getDataStore().markAsUnchanged();
+                    projectController.startJournal(false);
 
                     // Save content just as a database.
                 } else {
@@ -885,6 +888,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
                     saveC.saveDataStore(file, projectController.getDataStore());
                     projectController.markProjectAsUnchanged();
                     projectController.getDataStore().markAsUnchanged();
+                    projectController.startJournal(false);
                 }
             }
         } catch (UserWarningException e) {
@@ -1122,7 +1126,14 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
                 return;
             }
 
-            exportC.exportByFrame(dbFileName, projController.getDataStore());
+            double frameRate = exportC.getExportFrameRate();
+            if (frameRate <= 0) {
+                return;
+            }
+
+            // Copy the cells here on the EDT, the rows are then written in the background.
+            FrameExporter exporter = new FrameExporter(projController.getDataStore());
+            new ExportByFrameTask(exportC, dbFileName, exporter, frameRate).execute();
 
         } catch (Exception e) {
             logger.error("Export to CSV by frame failed. Error: ", e);
@@ -1222,6 +1233,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
             projController.setLastSaveOption(filter);
             projController.markProjectAsUnchanged();
             projController.getDataStore().markAsUnchanged();
+            projController.startJournal(false);
         } catch (UserWarningException e) {
             logger.error("Export failed. Error: ", e);
             Datavyu.getApplication().showWarningDialog(e);
@@ -1320,6 +1332,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
             projectController.setLastSaveOption(filter);
             projectController.markProjectAsUnchanged();
             projectController.getDataStore().markAsUnchanged();
+            projectController.startJournal(false);
             this.tabbedPane.setTitleAt(this.tabbedPane.getSelectedIndex(), projectController.getDataStore().getName());
 
         } catch (UserWarningException e) {
@@ -1690,7 +1703,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         try {
             RunScriptController scriptC = new RunScriptController(Datavyu.getView().getFrame());
             // record the effect
-            UndoableEdit edit = new RunScriptEdit(scriptC.getScriptFilePath());
+            UndoableEdit edit = new RunScriptEdit(scriptC);
             // notify the listeners
             Datavyu.getView().getUndoSupport().postEdit(edit);
             scriptC.execute();
@@ -1704,7 +1717,7 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         try {
             RunScriptController scriptC = new RunScriptController(scriptFile);
             // record the effect
-            UndoableEdit edit = new RunScriptEdit(scriptC.getScriptFilePath());
+            UndoableEdit edit = new RunScriptEdit(scriptC);
             // notify the listeners
             Datavyu.getView().getUndoSupport().postEdit(edit);
             scriptC.execute();
@@ -2781,9 +2794,9 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
     private void runRecentScript(final ActionEvent evt) {
 
         try {
-            // record the effect
-            UndoableEdit edit = new RunScriptEdit(evt.getActionCommand());
             RunScriptController scriptC = new RunScriptController(evt.getActionCommand());
+            // record the effect
+            UndoableEdit edit = new RunScriptEdit(scriptC);
 
             // notify the listeners
             Datavyu.getView().getUndoSupport().postEdit(edit);
@@ -2951,6 +2964,10 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
             pController.markProjectAsUnchanged();
             pController.getDataStore().markAsUnchanged();
 
+            // Replay the changes journaled before Datavyu last exited without saving the project, they are then
+            // unsaved changes again.
+            pController.startJournal(filter == OpfFilter.INSTANCE);
+
             // Update the list of recently opened files.
             FileHistory.rememberProject(fileChooser.getSelectedFile());
 
@@ -2960,6 +2977,56 @@ public final class DatavyuView extends FrameView implements FileDropEventListene
         }
     }
 
+    /**
+     * Writes an export by frame in the background, showing its progress and letting the user cancel it.
+     */
+    class ExportByFrameTask extends SwingWorker<Boolean, Void> {
+        private final ExportDatabaseFileController exportController;
+        private final String fileName;
+        private final FrameExporter exporter;
+        private final double frameRate;
+        private final DataviewProgressBar exportProgressBar;
+
+        public ExportByFrameTask(final ExportDatabaseFileController exportController, final String fileName,
+                                 final FrameExporter exporter, final double frameRate) {
+            this.exportController = exportController;
+            this.fileName = fileName;
+            this.exporter = exporter;
+            this.frameRate = frameRate;
+            exportProgressBar = new DataviewProgressBar(getFrame(), false);
+            exportProgressBar.setVisible(true);
+        }
+
+        @Override
+        public Boolean doInBackground() throws UserWarningException {
+            return exportController.exportByFrame(fileName, exporter, frameRate, new FrameExporter.Progress() {
+                private int percent = -1;
+
+                @Override
+                public boolean update(final long frames, final long numFrames) {
+                    int newPercent = (int) (100 * frames / Math.max(1, numFrames));
+                    if (newPercent != percent) {
+                        percent = newPercent;
+                        return exportProgressBar.setProgress(percent, "Exported frame " + frames + " of " + numFrames);
+                    }
+                    return exportProgressBar.isCancelled();
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            exportProgressBar.close();
+            try {
+                if (!get()) {
+                    logger.info("Export to CSV by frame cancelled: " + fileName);
+                }
+            } catch (Exception e) {
+                logger.error("Export to CSV by frame failed. Error: ", e);
+            }
+        }
+    }
+
     private class NoEditTableModel extends DefaultTableModel {
         @Override
         public boolean isCellEditable(int r, int c) {
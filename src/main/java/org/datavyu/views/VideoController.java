@@ -1225,7 +1225,9 @@ public final class VideoController extends DatavyuDialog
     }
 
     private void handleViewportChange(final ViewportState viewport) {
-        clockTimer.setMaxTime(viewport.getMaxEnd());
+        // The clock stops at its maximum time, which is the end of the region if the region is shorter
+        long regionEnd = mixerController.getRegionController().getModel().getRegion().getRegionEnd();
+        clockTimer.setMaxTime(Math.min(viewport.getMaxEnd(), regionEnd));
     }
 
     /**
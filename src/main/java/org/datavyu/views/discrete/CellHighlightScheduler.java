@@ -0,0 +1,218 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import org.datavyu.Datavyu;
+import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.Variable;
+import org.datavyu.util.ClockTimer;
+import org.datavyu.views.VideoController;
+
+import javax.swing.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Updates the playback highlighting of the cells in a spreadsheet panel.
+ *
+ * A cell only changes its highlight (current or past time window) when the clock crosses its onset or its offset. For
+ * every column the scheduler keeps the cells sorted by onset and by offset, and on each clock tick it repaints just
+ * the cells with an onset or offset between the previously painted time and the new time. Turning highlighting on or
+ * off changes every cell, so then all the cells in sight are repainted. All repainting is batched into a single update
+ * on the Event Dispatch Thread.
+ */
+final class CellHighlightScheduler implements ClockTimer.SyncListener {
+
+    /** The spreadsheet panel whose cells are highlighted. */
+    private final SpreadSheetPanel spreadSheetPanel;
+
+    /** Boundaries for each variable, only accessed on the EDT. */
+    private Map<Variable, ColumnBoundaries> boundaries = new HashMap<>();
+
+    /** The time the cells were last painted for; the initial value stands for 'before any cell'. */
+    private long paintedTime = Long.MIN_VALUE;
+
+    /** True if the cells were last painted with their time window highlighted, only accessed on the EDT. */
+    private boolean highlighted = false;
+
+    /** True if the cells were last painted with highlight and focus, only accessed on the EDT. */
+    private boolean focused = false;
+
+    /** The latest time received from the clock. */
+    private volatile long requestedTime = Long.MIN_VALUE;
+
+    /** True if an update has been queued on the EDT and has not yet run. */
+    private final AtomicBoolean updatePending = new AtomicBoolean(false);
+
+    /**
+     * Constructor.
+     *
+     * @param spreadSheetPanel The spreadsheet panel whose cells are highlighted.
+     */
+    CellHighlightScheduler(final SpreadSheetPanel spreadSheetPanel) {
+        this.spreadSheetPanel = spreadSheetPanel;
+    }
+
+    /**
+     * Queues an update to the given time, coalescing with any update that is already queued.
+     *
+     * @param clockTime The current clock time in milliseconds.
+     */
+    private void scheduleUpdate(final double clockTime) {
+        requestedTime = (long) clockTime;
+        if (updatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::update);
+        }
+    }
+
+    /**
+     * Repaints the cells whose highlight may have changed since the last update. Runs on the EDT.
+     */
+    private void update() {
+        updatePending.set(false);
+        long time = requestedTime;
+
+        VideoController videoController = Datavyu.getVideoController();
+        boolean highlighting = videoController != null && videoController.getCellHighlighting();
+        boolean focusing = videoController != null && videoController.getCellHighlightAndFocus();
+        if (highlighting != highlighted || focusing != focused) {
+            // Highlighting was turned on or off, which changes every cell.
+            for (SpreadsheetColumn column : spreadSheetPanel.getColumns()) {
+                for (SpreadsheetCell spreadsheetCell : column.getCells()) {
+                    spreadsheetCell.updateSelectionDisplay();
+                }
+            }
+            highlighted = highlighting;
+            focused = focusing;
+            paintedTime = time;
+            return;
+        }
+        if (time == paintedTime) {
+            return;
+        }
+        if (!highlighting && !focusing) {
+            // Nothing is highlighted, turning highlighting on repaints every cell.
+            paintedTime = time;
+            return;
+        }
+
+        long start = Math.min(paintedTime, time);
+        long end = Math.max(paintedTime, time);
+        Set<SpreadsheetCell> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Cell> crossed = new ArrayList<>();
+        Map<Variable, ColumnBoundaries> current = new HashMap<>();
+
+        for (SpreadsheetColumn column : spreadSheetPanel.getColumns()) {
+            Variable variable = column.getVariable();
+            ColumnBoundaries columnBoundaries = boundaries.get(variable);
+            if (columnBoundaries == null || columnBoundaries.version != variable.getTemporalVersion()) {
+                columnBoundaries = new ColumnBoundaries(variable);
+            }
+            current.put(variable, columnBoundaries);
+
+            crossed.clear();
+            columnBoundaries.collect(start, end, crossed);
+            for (Cell cell : crossed) {
+                SpreadsheetCell spreadsheetCell = column.getSpreadsheetCell(cell);
+                if (spreadsheetCell != null) {
+                    changed.add(spreadsheetCell);
+                }
+            }
+        }
+
+        // Drops the boundaries of columns that have been removed.
+        boundaries = current;
+
+        for (SpreadsheetCell spreadsheetCell : changed) {
+            spreadsheetCell.updateSelectionDisplay();
+        }
+        paintedTime = time;
+    }
+
+    @Override
+    public void clockForceSync(double clockTime) {
+        scheduleUpdate(clockTime);
+    }
+
+    @Override
+    public void clockPeriodicSync(double clockTime) {
+        scheduleUpdate(clockTime);
+    }
+
+    /**
+     * The onsets and offsets of the cells of one variable, each sorted with the cell they belong to.
+     */
+    private static final class ColumnBoundaries {
+
+        /** Temporal version of the variable these boundaries were built from. */
+        final int version;
+
+        private final Cell[] byOnset;
+        private final long[] onsets;
+        private final Cell[] byOffset;
+        private final long[] offsets;
+
+        ColumnBoundaries(final Variable variable) {
+            // Read the version first, so a change made while copying makes these boundaries stale.
+            version = variable.getTemporalVersion();
+
+            List<Cell> cells = new ArrayList<>(variable.getCells());
+            int n = cells.size();
+
+            cells.sort(Comparator.comparingLong(Cell::getOnset));
+            byOnset = cells.toArray(new Cell[n]);
+            onsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                onsets[i] = byOnset[i].getOnset();
+            }
+
+            cells.sort(Comparator.comparingLong(Cell::getOffset));
+            byOffset = cells.toArray(new Cell[n]);
+            offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                offsets[i] = byOffset[i].getOffset();
+            }
+        }
+
+        /**
+         * Adds the cells with an onset or an offset in [start, end] to the result.
+         */
+        void collect(final long start, final long end, final List<Cell> result) {
+            for (int i = lowerBound(onsets, start); i < onsets.length && onsets[i] <= end; i++) {
+                result.add(byOnset[i]);
+            }
+            for (int i = lowerBound(offsets, start); i < offsets.length && offsets[i] <= end; i++) {
+                result.add(byOffset[i]);
+            }
+        }
+
+        /**
+         * @return The index of the first value that is not less than the key.
+         */
+        private static int lowerBound(final long[] values, final long key) {
+            int lo = 0;
+            int hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < key) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -17,8 +17,10 @@ package org.datavyu.views.discrete;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datavyu.models.db.Cell;
+import org.datavyu.models.db.CellComparator;
 import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.Variable;
+import org.datavyu.util.ConfigProperties;
 import org.datavyu.util.Constants;
 
 import javax.swing.*;
@@ -29,12 +31,29 @@ import java.util.List;
 
 /**
  * ColumnDataPanel panel that contains the SpreadsheetCell panels.
+ *
+ * When virtualized, only the cells within sight of the viewport, plus a margin, have a SpreadsheetCell. The position of
+ * the other cells comes from a {@link RowHeightModel}, and the views of the cells scrolled out of sight are kept in a
+ * pool and reused for the cells scrolled into sight, so the number of views does not depend on the number of cells.
  */
 public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher {
     /**
      * The logger for this class.
      */
     private static final Logger logger = LogManager.getLogger(ColumnDataPanel.class);
+    /**
+     * Margin in pixels above and below the visible part of a virtualized column whose cells also get a view, so that
+     * short scrolls do not need a new layout.
+     */
+    private static final int VIRTUAL_MARGIN = 300;
+    /**
+     * Estimated height of a row until the height of a view has been measured.
+     */
+    private static final int DEFAULT_ROW_HEIGHT = 50;
+    /**
+     * Temporal order of the cells.
+     */
+    private static final CellComparator CELL_ORDER = new CellComparator();
     /**
      * Width of the column.
      */
@@ -68,6 +87,52 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      * Padding for the bottom of the column.
      */
     private JPanel padding;
+    /**
+     * The datastore that this column data panel reflects.
+     */
+    private DataStore dataStore;
+    /**
+     * True if only the cells in sight have a SpreadsheetCell.
+     */
+    private boolean virtualized;
+    /**
+     * Heights of the rows in temporal order when virtualized, null until the first layout.
+     */
+    private RowHeightModel rowHeights;
+    /**
+     * The temporal version of the variable when the row heights were last updated.
+     */
+    private int rowHeightsVersion;
+    /**
+     * The cells of the rows in the row heights, in temporal order.
+     */
+    private List<Cell> rowCells;
+    /**
+     * Estimated height of the rows that have not been measured, the smallest height measured so far.
+     */
+    private int estimatedRowHeight = DEFAULT_ROW_HEIGHT;
+    /**
+     * Views of the cells scrolled out of sight, ready to show other cells.
+     */
+    private Deque<SpreadsheetCell> pool;
+    /**
+     * The view last asked for outside of the layout, usually about to get the focus, kept until another one is asked
+     * for.
+     */
+    private SpreadsheetCell requestedCell;
+    /**
+     * The views of the cells in temporal order, null once views are added or removed.
+     */
+    private List<SpreadsheetCell> temporalCells;
+    /**
+     * The temporal version of the variable when the views in temporal order were listed.
+     */
+    private int temporalCellsVersion;
+    /**
+     * The part of a virtualized column, in pixels, whose cells have a view.
+     */
+    private int windowTop;
+    private int windowBottom;
 
     /**
      * Creates a new ColumnDataPanel.
@@ -88,8 +153,11 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
         columnHeight = 0;
         cells = new ArrayList<>();
         viewMap = new HashMap<>();
+        pool = new ArrayDeque<>();
         cellSelectionL = cellSelL;
         model = variable;
+        dataStore = db;
+        virtualized = ConfigProperties.getInstance().getVirtualizedSpreadsheet();
 
         setLayout(null);
         setBorder(BorderFactory.createMatteBorder(0, 0, 0, Constants.BORDER_SIZE,
@@ -104,8 +172,10 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
                 new Color(175, 175, 175)));
         this.add(padding);
 
-        // Populate the data column with spreadsheet cells.
-        buildDataPanelCells(db, variable, cellSelL);
+        // Populate the data column with spreadsheet cells, a virtualized column builds them as they come into sight.
+        if (!virtualized) {
+            buildDataPanelCells(db, variable, cellSelL);
+        }
     }
 
     /**
@@ -148,6 +218,7 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
 
             // Add the Identifier's to the mapping.
             viewMap.put(cell, sc);
+            temporalCells = null;
             columnHeight += sc.getHeight();
         }
 
@@ -163,9 +234,15 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
             cell.getCell().removeListener(cell);
             this.remove(cell);
         }
+        for (SpreadsheetCell cell : pool) {
+            this.remove(cell);
+        }
 
         cells.clear();
         viewMap.clear();
+        temporalCells = null;
+        pool.clear();
+        requestedCell = null;
     }
 
     /**
@@ -175,10 +252,18 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      */
     public void deleteCell(final Cell cell) {
         SpreadsheetCell sCell = viewMap.get(cell);
+        if (sCell == null) {
+            // The cell was out of sight of a virtualized column.
+            return;
+        }
         cell.removeListener(sCell);
         this.remove(sCell);
         cells.remove(sCell);
         viewMap.remove(cell);
+        temporalCells = null;
+        if (sCell == requestedCell) {
+            requestedCell = null;
+        }
     }
 
     /**
@@ -191,6 +276,10 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
      *                 selection.
      */
     public void insertCell(final DataStore ds, final Cell cell, final CellSelectionListener cellSelL) {
+        if (virtualized) {
+            getCellTemporally(model.getCellsTemporally().indexOf(cell)).requestFocus();
+            return;
+        }
 
         SpreadsheetCell nCell = new SpreadsheetCell(ds, cell, cellSelL);
         nCell.setWidth(this.getWidth());
@@ -201,6 +290,7 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
         this.add(nCell);
         this.cells.add(nCell);
         viewMap.put(cell, nCell);
+        temporalCells = null;
         nCell.requestFocus();
     }
 
@@ -236,41 +326,318 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
         return this.padding;
     }
 
+    /**
+     * @param cell The cell to look up.
+     * @return The SpreadsheetCell displaying the cell, or null if the cell is not in this column or is out of sight
+     * of a virtualized column.
+     */
+    public SpreadsheetCell getSpreadsheetCell(final Cell cell) {
+        return viewMap.get(cell);
+    }
+
+    /**
+     * Gets the view of a cell, building it if the column is virtualized and the cell is out of sight. The view is
+     * kept until another one is asked for, so that it can get the focus and be scrolled into sight.
+     *
+     * @param index The index of the cell in temporal order.
+     * @return The SpreadsheetCell displaying the cell.
+     */
     public SpreadsheetCell getCellTemporally(final int index) {
-        return viewMap.get(model.getCellTemporally(index));
+        if (!virtualized) {
+            return viewMap.get(model.getCellTemporally(index));
+        }
+
+        updateRowHeights();
+        SpreadsheetCell sc = showRow(model.getCellTemporally(index), index, columnWidth - Constants.BORDER_SIZE);
+        requestedCell = sc;
+        return sc;
     }
 
     /**
-     * @return The SpreadsheetCells in this column temporally.
+     * @return The SpreadsheetCells in this column temporally, only those in sight if the column is virtualized. The
+     * list is read only and kept until the cells or their views change.
      */
     public List<SpreadsheetCell> getCellsTemporally() {
-        ArrayList<SpreadsheetCell> result = new ArrayList<>();
-
-        int ord = 1;
-        for (Cell c : model.getCellsTemporally()) {
-            SpreadsheetCell sc = viewMap.get(c);
-            if (sc != null) {
-                sc.setOrdinal(ord++);
-                result.add(sc);
+        // Only list the views again once cells were added, removed or moved in time, or views added or removed.
+        if (temporalCells == null || temporalCellsVersion != model.getTemporalVersion()) {
+            temporalCellsVersion = model.getTemporalVersion();
+            ArrayList<SpreadsheetCell> result = new ArrayList<>();
+
+            List<Cell> temporal = model.getCellsTemporally();
+            for (int i = 0; i < temporal.size(); i++) {
+                SpreadsheetCell sc = viewMap.get(temporal.get(i));
+                if (sc != null) {
+                    sc.setOrdinal(i + 1);
+                    result.add(sc);
+                }
             }
+            temporalCells = Collections.unmodifiableList(result);
         }
-        return result;
+        return temporalCells;
     }
 
     /**
      * @return The number of cells stored in this column.
      */
     public int getNumCells() {
-        return cells.size();
+        return model.getCells().size();
     }
 
     /**
-     * @return The SpreadsheetCells in this column.
+     * @return The SpreadsheetCells in this column, only those in sight if the column is virtualized.
      */
     public List<SpreadsheetCell> getCells() {
         return cells;
     }
 
+    /**
+     * @return True if only the cells in sight have a SpreadsheetCell.
+     */
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    /**
+     * Sets whether only the cells in sight have a SpreadsheetCell. Only the ordinal layout supports virtualized
+     * columns, the other layouts need the views of all the cells.
+     *
+     * @param virtualize True to build the views of the cells as they come into sight, false to build them all.
+     */
+    public void setVirtualized(final boolean virtualize) {
+        if (virtualize == virtualized) {
+            return;
+        }
+        virtualized = virtualize;
+
+        if (virtualize) {
+            // The views out of sight go back to the pool on the next layout.
+            windowTop = 0;
+            windowBottom = 0;
+        } else {
+            for (Cell cell : model.getCellsTemporally()) {
+                if (!viewMap.containsKey(cell)) {
+                    SpreadsheetCell sc = newView(cell);
+                    sc.setWidth(columnWidth);
+                }
+            }
+            for (SpreadsheetCell sc : pool) {
+                this.remove(sc);
+            }
+            pool.clear();
+            rowHeights = null;
+            rowCells = null;
+            requestedCell = null;
+        }
+    }
+
+    /**
+     * @return True if the part of the column in sight has cells without a view, so the column needs a new layout.
+     */
+    public boolean needsRowLayout() {
+        if (!virtualized || !isVisible()) {
+            return false;
+        }
+        Rectangle visible = getVisibleRect();
+        return visible.y < windowTop || visible.y + visible.height > windowBottom;
+    }
+
+    /**
+     * Lays out the rows of a virtualized column in ordinal order. Only the cells within sight, plus a margin, and the
+     * selected, highlighted or focused cells get a view, the other views go back to the pool.
+     *
+     * @param width The width of the cells in pixels.
+     * @return The height of all the rows in pixels.
+     */
+    public int layoutRows(final int width) {
+        updateRowHeights();
+        List<Cell> temporal = model.getCellsTemporally();
+        int numRows = temporal.size();
+
+        Rectangle visible = getVisibleRect();
+        int top = Math.max(0, visible.y - VIRTUAL_MARGIN);
+        int bottom = visible.y + visible.height + VIRTUAL_MARGIN;
+
+        // Measuring a row moves the rows below it, so walk down from the first row in sight.
+        int first = Math.min(rowHeights.getRowAt(top), numRows);
+        int row = first;
+        Set<SpreadsheetCell> shown = Collections.newSetFromMap(new IdentityHashMap<SpreadsheetCell, Boolean>());
+        while (row < numRows && rowHeights.getTop(row) < bottom) {
+            shown.add(showRow(temporal.get(row), row, width));
+            row++;
+        }
+        windowTop = rowHeights.getTop(first);
+        windowBottom = row < numRows ? rowHeights.getTop(row) : Integer.MAX_VALUE;
+
+        // Put back the views out of sight, except those the user is working with.
+        List<Integer> pinnedRows = new ArrayList<>();
+        for (SpreadsheetCell sc : new ArrayList<>(cells)) {
+            if (!shown.contains(sc)) {
+                Cell cell = sc.getCell();
+                if (sc == requestedCell || cell.isSelected() || cell.isHighlighted() || sc.isFocusOwner()) {
+                    int pinnedRow = findRow(temporal, cell);
+                    if (pinnedRow >= 0) {
+                        pinnedRows.add(pinnedRow);
+                    }
+                } else {
+                    release(cell, sc);
+                }
+            }
+        }
+        // Top down, as for the rows in sight.
+        Collections.sort(pinnedRows);
+        for (int pinnedRow : pinnedRows) {
+            showRow(temporal.get(pinnedRow), pinnedRow, width);
+        }
+
+        return rowHeights.getTotalHeight();
+    }
+
+    /**
+     * @param temporal The cells in temporal order.
+     * @param cell     A cell.
+     * @return The row of the cell, found by binary search, -1 if the cell is not in the list.
+     */
+    private static int findRow(final List<Cell> temporal, final Cell cell) {
+        int lo = 0;
+        int hi = temporal.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (CELL_ORDER.compare(temporal.get(mid), cell) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        // Cells with the same onset and offset are in any order.
+        for (int row = lo; row < temporal.size() && CELL_ORDER.compare(temporal.get(row), cell) == 0; row++) {
+            if (temporal.get(row) == cell) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Updates the row heights if cells have been added, removed or moved in time since they were last updated. Only
+     * the rows from the first to the last row whose cell changed are replaced: cells that moved keep their measured
+     * height, and added cells get the estimated height until they are laid out.
+     */
+    private void updateRowHeights() {
+        if (rowHeights != null && rowHeightsVersion == model.getTemporalVersion()) {
+            return;
+        }
+        rowHeightsVersion = model.getTemporalVersion();
+        List<Cell> temporal = model.getCellsTemporally();
+        int numRows = temporal.size();
+        if (rowHeights == null) {
+            rowHeights = new RowHeightModel(numRows, estimatedRowHeight);
+            rowCells = new ArrayList<>(temporal);
+            return;
+        }
+
+        int oldRows = rowCells.size();
+        int first = 0;
+        while (first < numRows && first < oldRows && temporal.get(first) == rowCells.get(first)) {
+            first++;
+        }
+        int oldEnd = oldRows;
+        int newEnd = numRows;
+        while (oldEnd > first && newEnd > first && temporal.get(newEnd - 1) == rowCells.get(oldEnd - 1)) {
+            oldEnd--;
+            newEnd--;
+        }
+        if (first == oldEnd && first == newEnd) {
+            return;
+        }
+
+        Map<Cell, Integer> measured = new IdentityHashMap<>();
+        for (int row = first; row < oldEnd; row++) {
+            measured.put(rowCells.get(row), rowHeights.getHeight(row));
+        }
+        int[] heights = new int[newEnd - first];
+        for (int i = 0; i < heights.length; i++) {
+            Integer height = measured.get(temporal.get(first + i));
+            heights[i] = height != null ? height : estimatedRowHeight;
+        }
+        rowHeights.replaceRows(first, oldEnd - first, heights);
+
+        List<Cell> changed = rowCells.subList(first, oldEnd);
+        changed.clear();
+        changed.addAll(temporal.subList(first, newEnd));
+    }
+
+    /**
+     * Places the view of a row of a virtualized column, taking a view from the pool if the row has none.
+     *
+     * @param cell  The cell of the row.
+     * @param row   The index of the row in temporal order.
+     * @param width The width of the cells in pixels.
+     * @return The view of the cell.
+     */
+    private SpreadsheetCell showRow(final Cell cell, final int row, final int width) {
+        SpreadsheetCell sc = viewMap.get(cell);
+        if (sc == null) {
+            sc = pool.poll();
+            if (sc == null) {
+                sc = newView(cell);
+            } else {
+                sc.setCell(cell);
+                cell.addListener(sc);
+                cells.add(sc);
+                viewMap.put(cell, sc);
+                temporalCells = null;
+                sc.setVisible(true);
+            }
+        }
+
+        int height = sc.getPreferredSize().height;
+        sc.setBounds(0, rowHeights.getTop(row), width, height);
+        sc.setOrdinal(row + 1);
+        rowHeights.setHeight(row, height);
+        estimatedRowHeight = Math.min(estimatedRowHeight, height);
+
+        // The overlap border of a row is set by the row below it, the last row shows if it is upside down.
+        List<Cell> temporal = model.getCellsTemporally();
+        if (row + 1 < temporal.size()) {
+            sc.setOverlapBorder(Math.max(cell.getOnset(), cell.getOffset()) > temporal.get(row + 1).getOnset());
+        } else if (sc.isUpsideDown()) {
+            sc.setOverlapBorder(true);
+        }
+        sc.repaint();
+        return sc;
+    }
+
+    /**
+     * Builds a new view for a cell and adds it to this column data panel.
+     *
+     * @param cell The cell to show.
+     * @return The view of the cell.
+     */
+    private SpreadsheetCell newView(final Cell cell) {
+        SpreadsheetCell sc = new SpreadsheetCell(dataStore, cell, cellSelectionL);
+        cell.addListener(sc);
+        this.add(sc);
+        cells.add(sc);
+        viewMap.put(cell, sc);
+        temporalCells = null;
+        return sc;
+    }
+
+    /**
+     * Puts the view of a cell scrolled out of sight back in the pool.
+     *
+     * @param cell The cell shown by the view.
+     * @param sc   The view.
+     */
+    private void release(final Cell cell, final SpreadsheetCell sc) {
+        cell.removeListener(sc);
+        cells.remove(sc);
+        viewMap.remove(cell);
+        temporalCells = null;
+        sc.setVisible(false);
+        pool.push(sc);
+    }
+
     /**
      * @return The selected spreadsheet cells in this column.
      */
@@ -287,11 +654,11 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
     }
 
     public SpreadsheetCell getSelectedCell(){
-        List<SpreadsheetCell> cells = getCellsTemporally();
+        List<Cell> cells = model.getCellsTemporally();
         SpreadsheetCell selectedCell = null;
-        for (SpreadsheetCell cell : cells){
-            if(cell.getCell().isSelected()){
-                selectedCell = cell;
+        for (int i = 0; i < cells.size(); i++){
+            if(cells.get(i).isSelected()){
+                selectedCell = getCellTemporally(i);
                 break;
             }
         }
@@ -314,18 +681,18 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
 
             if (selectedCell != null) {
 
-                int cellId = getCellsTemporally().indexOf(selectedCell);
+                int cellId = model.getCellsTemporally().indexOf(selectedCell.getCell());
 
                 if (e.getKeyCode() == KeyEvent.VK_UP) {
 
-                    if (0 <= cellId - 1 && cellId - 1 < getCellsTemporally().size()) {
+                    if (0 <= cellId - 1 && cellId - 1 < getNumCells()) {
 
                         selectedCell.getCell().setHighlighted(false);
                         selectedCell.getCell().setSelected(false);
                         int pos = selectedCell.getDataView().getEdTracker().indexOfCurrentEditor();
                         requestFocus();
 
-                        SpreadsheetCell cellUP = getCellsTemporally().get(cellId - 1);
+                        SpreadsheetCell cellUP = getCellTemporally(cellId - 1);
 
                         cellUP.getCell().setHighlighted(true);
                         cellUP.getCell().setSelected(true);
@@ -339,14 +706,14 @@ public final class ColumnDataPanel extends JPanel implements KeyEventDispatcher
                 }
                 if (e.getKeyCode() == KeyEvent.VK_DOWN) {
 
-                    if (0 <= cellId + 1 && cellId + 1 < getCellsTemporally().size()) {
+                    if (0 <= cellId + 1 && cellId + 1 < getNumCells()) {
 
                         selectedCell.getCell().setHighlighted(false);
                         selectedCell.getCell().setSelected(false);
                         int pos = selectedCell.getDataView().getEdTracker().indexOfCurrentEditor();
                         requestFocus();
 
-                        SpreadsheetCell cellDOWN = getCellsTemporally().get(cellId + 1);
+                        SpreadsheetCell cellDOWN = getCellTemporally(cellId + 1);
 
                         cellDOWN.getCell().setHighlighted(true);
                         cellDOWN.getCell().setSelected(true);
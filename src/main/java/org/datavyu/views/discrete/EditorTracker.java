@@ -74,6 +74,16 @@ public final class EditorTracker
         editors = eds;
     }
 
+    /**
+     * Forgets the current editor without telling it, used when the editors are replaced by the editors of another
+     * cell.
+     */
+    public void reset() {
+        currentEditor = NO_EDITOR;
+        preCharCount = 0;
+        postCharCount = 0;
+    }
+
     /**
      * Set the currentEditor.
      *
@@ -0,0 +1,148 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import java.util.Arrays;
+
+/**
+ * Heights of the rows of a virtualized column, giving the position of any row without a view for every row.
+ *
+ * Every row starts with an estimated height, which is replaced by the measured height of the row once it has been
+ * laid out. The heights are kept in a Fenwick tree so that finding the top of a row, or the row at a position, takes
+ * logarithmic time. Rows that are added, removed or moved are replaced in place, so the other rows keep their measured
+ * heights.
+ */
+final class RowHeightModel {
+
+    /** The height of every row */
+    private int[] heights;
+
+    /** Fenwick tree of the heights, tree[i] is the sum of the heights of the lowbit(i) rows ending at row i - 1 */
+    private int[] tree;
+
+    /**
+     * Creates a new row height model.
+     *
+     * @param rows   The number of rows.
+     * @param height The estimated height of every row in pixels.
+     */
+    RowHeightModel(final int rows, final int height) {
+        heights = new int[rows];
+        Arrays.fill(heights, height);
+        tree = new int[rows + 1];
+        for (int i = 1; i <= rows; i++) {
+            tree[i] = height * (i & -i);
+        }
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    int size() {
+        return heights.length;
+    }
+
+    /**
+     * @param row The index of the row.
+     * @return The height of the row in pixels.
+     */
+    int getHeight(final int row) {
+        return heights[row];
+    }
+
+    /**
+     * Sets the measured height of a row, moving all the rows below it.
+     *
+     * @param row    The index of the row.
+     * @param height The height of the row in pixels.
+     */
+    void setHeight(final int row, final int height) {
+        int delta = height - heights[row];
+        if (delta != 0) {
+            heights[row] = height;
+            for (int i = row + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * Replaces a range of rows by other rows, moving the rows below them if the number of rows changes.
+     *
+     * @param row        The index of the first row to replace.
+     * @param count      The number of rows to replace.
+     * @param newHeights The heights of the rows replacing them in pixels.
+     */
+    void replaceRows(final int row, final int count, final int[] newHeights) {
+        if (newHeights.length == count) {
+            for (int i = 0; i < count; i++) {
+                setHeight(row + i, newHeights[i]);
+            }
+            return;
+        }
+
+        int[] result = new int[heights.length - count + newHeights.length];
+        System.arraycopy(heights, 0, result, 0, row);
+        System.arraycopy(newHeights, 0, result, row, newHeights.length);
+        System.arraycopy(heights, row + count, result, row + newHeights.length, heights.length - row - count);
+        heights = result;
+
+        // Builds the tree in linear time, every node adds its sum to its parent.
+        tree = new int[heights.length + 1];
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += heights[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+     * @param row The index of the row, or the number of rows for the bottom of the last row.
+     * @return The position of the top of the row in pixels.
+     */
+    int getTop(final int row) {
+        int top = 0;
+        for (int i = row; i > 0; i -= i & -i) {
+            top += tree[i];
+        }
+        return top;
+    }
+
+    /**
+     * @return The height of all the rows in pixels.
+     */
+    int getTotalHeight() {
+        return getTop(heights.length);
+    }
+
+    /**
+     * @param y A position in pixels.
+     * @return The index of the row covering the position, or the number of rows if the position is below the last
+     * row.
+     */
+    int getRowAt(final int y) {
+        int row = 0;
+        int remaining = y;
+        for (int step = Integer.highestOneBit(heights.length); step > 0; step >>= 1) {
+            if (row + step <= heights.length && tree[row + step] <= remaining) {
+                row += step;
+                remaining -= tree[row];
+            }
+        }
+        return row;
+    }
+}
@@ -26,6 +26,7 @@ import org.datavyu.event.component.FileDropEventListener;
 import org.datavyu.models.db.*;
 import org.datavyu.undoableedits.AddCellEdit;
 import org.datavyu.util.ArrayDirection;
+import org.datavyu.util.ConfigProperties;
 import org.datavyu.util.Constants;
 import org.datavyu.views.DataviewProgressBar;
 import org.datavyu.views.VideoController;
@@ -38,6 +39,8 @@ import org.jdesktop.application.ResourceMap;
 
 import javax.swing.*;
 import javax.swing.Box.Filler;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
@@ -109,11 +112,11 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 
     private JLabel hiddenVariablesSpacerLabel = new JLabel();
 
-    /** Highlighted cell */
-    private SpreadsheetCell highlightedCell;
+    /** Highlighted cell, kept as a cell since the view of a cell out of sight may show another one */
+    private Cell highlightedCell;
 
     /** Last selected cell - used as an end point for continuous selections */
-    private SpreadsheetCell lastSelectedCell;
+    private Cell lastSelectedCell;
 
     /** Current layout */
     private SheetLayoutType currentLayoutType;
@@ -121,6 +124,9 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     /** Drop down menu for hidden columns */
     private JPopupMenu dropdown = new JPopupMenu();
 
+    /** Keeps the playback highlighting of the cells current */
+    private CellHighlightScheduler highlightScheduler;
+
     public SpreadSheetPanel(final ProjectController projectController, DataviewProgressBar progressBar) {
         setName(this.getClass().getSimpleName());
         setLayout(new BorderLayout());
@@ -141,6 +147,18 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
         scrollPane.setViewportView(mainView);
         scrollPane.setColumnHeaderView(headerView);
 
+        // Virtualized columns only have views for the cells in sight, lay them out again when scrolling past those.
+        scrollPane.getViewport().addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(final ChangeEvent e) {
+                for (SpreadsheetColumn col : columns) {
+                    if (col.getDataPanel().needsRowLayout()) {
+                        scrollPane.doLayout();
+                        break;
+                    }
+                }
+            }
+        });
 
         // Default layout is ordinal.
         setLayoutType(SheetLayoutType.Ordinal);
@@ -196,6 +214,7 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
         //layout the columns
         this.projectController = projectController;
         buildColumns(progressBar);
+        highlightScheduler = new CellHighlightScheduler(this);
         projectController.setSpreadSheetPanel(this);
 
         setName(dataStore.getName());
@@ -274,7 +293,13 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     }
 
     public void setVideoController(VideoController videoController) {
+        if (this.videoController != null) {
+            this.videoController.getClockTimer().unRegisterListener(highlightScheduler);
+        }
         this.videoController = videoController;
+        if (videoController != null) {
+            videoController.getClockTimer().registerListener(highlightScheduler);
+        }
     }
 
     /**
@@ -330,6 +355,7 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 
         // Create the spreadsheet column and register it.
         SpreadsheetColumn col = new SpreadsheetColumn(db, var, this, this, this);
+        col.getDataPanel().setVirtualized(isVirtualized(currentLayoutType));
         col.registerListeners();
 
         // add the datapanel to the scrollpane viewport
@@ -458,7 +484,15 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 
     @Override
     public void variableOrderChanged() {
-        // Do nothing.
+        List<Variable> order = dataStore.getAllVariables();
+        for (int i = 0; i < order.size() && i < columns.size(); i++) {
+            for (int j = i + 1; j < columns.size(); j++) {
+                if (columns.get(j).getVariable() == order.get(i)) {
+                    shuffleColumn(j, i);
+                    break;
+                }
+            }
+        }
     }
 
     @Override
@@ -586,7 +620,7 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
                 // highlighted cell.
                 SpreadsheetCell cell = columns.get(colID).getCells().get(cellID);
 
-                if (cell.getCell().equals(highlightedCell.getCell())) {
+                if (cell.getCell().equals(highlightedCell)) {
 
                     // Find column in the desired direction
                     int newColID = colID + direction;
@@ -667,10 +701,21 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     public void setLayoutType(final SheetLayoutType type) {
         this.currentLayoutType = type;
         this.scrollPane.setLayout(SheetLayoutFactory.createLayout(type));
+        for (SpreadsheetColumn col : columns) {
+            col.getDataPanel().setVirtualized(isVirtualized(type));
+        }
 
         revalidate();
     }
 
+    /**
+     * @param type A SheetLayoutType.
+     * @return True if the columns should only build the views of the cells in sight with the layout.
+     */
+    private static boolean isVirtualized(final SheetLayoutType type) {
+        return type == SheetLayoutType.Ordinal && ConfigProperties.getInstance().getVirtualizedSpreadsheet();
+    }
+
     /**
      * Method to invoke when the user clicks on the "+" icon in the spreadsheet
      * header.
@@ -773,7 +818,7 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     @Override
     public void addCellToContinousSelection(final SpreadsheetCell cell) {
         if (lastSelectedCell != null) {
-            Cell c1 = lastSelectedCell.getCell();
+            Cell c1 = lastSelectedCell;
             Variable v1 = dataStore.getVariable(c1);
 
             Cell c2 = cell.getCell();
@@ -785,8 +830,8 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 
                 // Deselect the highlighted cell.
                 if (highlightedCell != null) {
-                    highlightedCell.getCell().setHighlighted(false);
-                    highlightedCell.getCell().setSelected(true);
+                    highlightedCell.setHighlighted(false);
+                    highlightedCell.setSelected(true);
                     highlightedCell = null;
                 }
 
@@ -797,21 +842,22 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
                         // Perform continuous selection.
                         boolean addToSelection = false;
 
-                        for (SpreadsheetCell c : getOrderedCells(col)) {
+                        // Both layouts show the cells in temporal order, including those out of sight.
+                        for (Cell c : col.getVariable().getCellsTemporally()) {
 
                             if (!addToSelection) {
-                                c.getCell().setSelected(false);
+                                c.setSelected(false);
                             }
 
-                            if (c.equals(cell) || c.equals(lastSelectedCell)) {
+                            if (c.equals(c2) || c.equals(lastSelectedCell)) {
                                 addToSelection = !addToSelection;
 
                                 // We always include start and end cells.
-                                c.getCell().setSelected(true);
+                                c.setSelected(true);
                             }
 
                             if (addToSelection) {
-                                c.getCell().setSelected(true);
+                                c.setSelected(true);
                             }
                         }
 
@@ -820,7 +866,7 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
                 }
             }
         } else {
-            lastSelectedCell = cell;
+            lastSelectedCell = cell.getCell();
         }
     }
 
@@ -834,20 +880,20 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 //        clearColumnSelection();
 
         if (highlightedCell != null) {
-            highlightedCell.getCell().setSelected(true);
-            highlightedCell.getCell().setHighlighted(false);
+            highlightedCell.setSelected(true);
+            highlightedCell.setHighlighted(false);
             highlightedCell = null;
         }
 
-        lastSelectedCell = cell;
+        lastSelectedCell = cell.getCell();
     }
 
     @Override
     public void removeCellFromSelection(final SpreadsheetCell cell) {
 
         if (highlightedCell != null) {
-            highlightedCell.getCell().setSelected(false);
-            highlightedCell.getCell().setHighlighted(false);
+            highlightedCell.setSelected(false);
+            highlightedCell.setHighlighted(false);
             highlightedCell = null;
         }
 
@@ -861,17 +907,13 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
      */
     @Override
     public void setHighlightedCell(final SpreadsheetCell cell) {
-        if (highlightedCell != null) {
-//            highlightedCell.getCell().setSelected(false);
-            highlightedCell.invalidate();
-        }
         if(cell != null){
-            highlightedCell = cell;
-            lastSelectedCell = cell;
-            highlightedCell.getCell().setHighlighted(true);
+            highlightedCell = cell.getCell();
+            lastSelectedCell = highlightedCell;
+            highlightedCell.setHighlighted(true);
 //          clearColumnSelection();
         }else{            
-            highlightedCell.getCell().setHighlighted(false);            
+            highlightedCell.setHighlighted(false);            
         }        
     }
 
@@ -1006,7 +1048,7 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
     public void selectColumn(final SpreadsheetColumn selectedColumn, final int shift) {
         // Find currently selected cell, if there is one
         List<SpreadsheetColumn> visibleColumns = Datavyu.getView().getSpreadsheetPanel().getVisibleColumns();
-        SpreadsheetCell sc = lastSelectedCell;
+        SpreadsheetCell sc = null;
         int vcIndex = visibleColumns.indexOf(selectedColumn);
         int newIndex = Math.floorMod(vcIndex+shift, visibleColumns.size()); // wrap around visible columns
         if(0 <= newIndex
@@ -1020,17 +1062,14 @@ public final class SpreadSheetPanel extends JPanel implements DataStoreListener,
 
             SpreadsheetColumn newColumn = visibleColumns.get(newIndex);
             SpreadsheetCell newCell = null;
-            if(!newColumn.getCells().isEmpty()) {
+            if(newColumn.getDataPanel().getNumCells() > 0) {
                 if (sc != null) {
                     if (Datavyu.getView().getSheetLayout() == SheetLayoutType.WeakTemporal) {
                         newCell = newColumn.getNearestCellTemporally(sc);
                     } else {
-                        int ord = selectedColumn.getCellsTemporally().indexOf(sc);
-                        if (newColumn.getCellsTemporally().size() > ord) {
-                            newCell = newColumn.getCellsTemporally().get(ord);
-                        } else {
-                            newCell = newColumn.getCellsTemporally().get(newColumn.getCellsTemporally().size() - 1);
-                        }
+                        int ord = selectedColumn.getVariable().getCellsTemporally().indexOf(sc.getCell());
+                        newCell = newColumn.getCellTemporally(
+                                Math.min(ord, newColumn.getDataPanel().getNumCells() - 1));
                     }
                     sc.getCell().setHighlighted(false);
                 } else {
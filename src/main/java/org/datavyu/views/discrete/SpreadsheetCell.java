@@ -21,7 +21,6 @@ import org.datavyu.models.db.Cell;
 import org.datavyu.models.db.CellListener;
 import org.datavyu.models.db.DataStore;
 import org.datavyu.models.db.CellValue;
-import org.datavyu.util.ClockTimer;
 import org.datavyu.util.ConfigProperties;
 import org.datavyu.views.discrete.datavalues.MatrixRootView;
 import org.datavyu.views.discrete.datavalues.TimeStampDataValueEditor.TimeStampSource;
@@ -45,7 +44,7 @@ import java.util.List;
  * Visual representation of a spreadsheet cell.
  */
 public class SpreadsheetCell extends JPanel
-        implements MouseListener, FocusListener, CellListener, ClockTimer.ClockListener {
+        implements MouseListener, FocusListener, CellListener {
 
     /**
      * Border to use if cell overlaps with another.
@@ -120,6 +119,10 @@ public class SpreadsheetCell extends JPanel
      * The Ordinal display component.
      */
     private JLabel ord;
+    /**
+     * The ordinal shown, 0 until set.
+     */
+    private int ordinal;
     private Color timeHighlightColor = new Color(116, 242, 190);
     private Color pastTimeHighlightColor = new Color(247, 153, 153);
     /**
@@ -252,7 +255,9 @@ public class SpreadsheetCell extends JPanel
         stretcher = new Filler(d, d, d);
         cellPanel.add(stretcher, BorderLayout.SOUTH);
 
-        Datavyu.getVideoController().getClockTimer().registerListener(this);
+        // Playback highlighting is kept current by the CellHighlightScheduler of the spreadsheet panel, which only
+        // repaints cells whose time window has been crossed, so set the initial highlighting here.
+        updateSelectionDisplay();
 
         brandNew = true;
     }
@@ -315,6 +320,25 @@ public class SpreadsheetCell extends JPanel
         return model;
     }
 
+    /**
+     * Shows another cell of the same column in this view, so that the view of a cell scrolled out of sight can be
+     * reused. The caller moves this view from the listeners of the previous cell to those of the new one.
+     *
+     * @param cell The cell that this view element now represents.
+     */
+    void setCell(final Cell cell) {
+        model = cell;
+        onset.setCell(cell);
+        offset.setCell(cell);
+        dataPanel.setCell(cell);
+        cellOverlap = false;
+        brandNew = false;
+        onsetProcessed = false;
+        beingProcessed = false;
+        isLaid = false;
+        updateSelectionDisplay();
+    }
+
     /**
      * @return onset view
      */
@@ -335,7 +359,11 @@ public class SpreadsheetCell extends JPanel
      * @param ordinal The new ordinal value to use with this cell.
      */
     public void setOrdinal(final Integer ordinal) {
-        ord.setText(ordinal.toString());
+        // Layouts set the ordinal of every cell, only the cells that moved need a new label.
+        if (ordinal != this.ordinal) {
+            this.ordinal = ordinal;
+            ord.setText(ordinal.toString());
+        }
     }
 
     /**
@@ -510,6 +538,7 @@ public class SpreadsheetCell extends JPanel
     @Override
     public void offsetChanged(final long newOffset) {
         offset.setValue();
+        updateSelectionDisplay();
         if (model.isSelected()) {
             // Update the find windows to the newly selected cell's values
             Datavyu.getVideoController().setOnsetField(model.getOnset());
@@ -520,6 +549,7 @@ public class SpreadsheetCell extends JPanel
     @Override
     public void onsetChanged(final long newOnset) {
         onset.setValue();
+        updateSelectionDisplay();
         if (model.isSelected()) {
             Datavyu.getVideoController().setOnsetField(model.getOnset());
             Datavyu.getVideoController().setOffsetField(model.getOffset());
@@ -711,35 +741,4 @@ public class SpreadsheetCell extends JPanel
         dataPanel.setFont(ConfigProperties.getInstance().getSpreadSheetDataFont());
         super.paint(g);
     }
-
-    @Override
-    public void clockForceSync(double clockTime) {
-        updateSelectionDisplay();
-    }
-
-    @Override
-    public void clockPeriodicSync(double clockTime) {
-        updateSelectionDisplay();
-    }
-
-    @Override
-    public void clockStop(double clockTime) { }
-
-    @Override
-    public void clockPause(double clockTime) { }
-
-    @Override
-    public void clockStart(double clockTime) { }
-
-    @Override
-    public void clockRate(float rate) { }
-
-    @Override
-    public void clockBoundaryCheck(double clockTime) { }
-
-    @Override
-    public void streamsBoundaryCheck(double clockTime) { }
-
-    @Override
-    public void clockSeekPlayback(double clockTime) { }
 }
@@ -39,7 +39,7 @@ import java.util.ListIterator;
  * Spreadsheet window.
  */
 public final class SpreadsheetColumn extends JLabel implements VariableListener, MouseListener, MouseMotionListener,
-        ClockTimer.ClockListener {
+        ClockTimer.SyncListener {
 
     /** The logger for this class */
     private static Logger logger = LogManager.getLogger(SpreadsheetColumn.class);
@@ -437,7 +437,7 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
     }
 
     /**
-     * @return The SpreadsheetCells in this column.
+     * @return The SpreadsheetCells in this column, only those in sight if the column is virtualized.
      */
     public List<SpreadsheetCell> getCells() {
         return datapanel.getCells();
@@ -453,6 +453,14 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
         return datapanel.getCellTemporally(index);
     }
 
+    /**
+     * @param cell The cell to look up.
+     * @return The SpreadsheetCell displaying the cell, or null if the cell is not in this column.
+     */
+    public SpreadsheetCell getSpreadsheetCell(final Cell cell) {
+        return datapanel.getSpreadsheetCell(cell);
+    }
+
     /**
      * @return The Spreadsheet cells in this column temporally.
      */
@@ -460,21 +468,45 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
         return datapanel.getCellsTemporally();
     }
 
+    /**
+     * @param sc A cell, usually of another column.
+     * @return The cell of this column whose onset is the closest to the onset of the given cell, the earliest one if
+     * several are as close, or null if this column has no cells.
+     */
     public SpreadsheetCell getNearestCellTemporally(SpreadsheetCell sc) {
-        SpreadsheetCell closestCell = null;
-        for(SpreadsheetCell c : datapanel.getCellsTemporally()) {
-            if(closestCell == null) {
-                closestCell = c;
-            } else {
-                if(Math.abs(sc.getOnsetTicks() - c.getOnsetTicks()) < Math.abs(sc.getOnsetTicks()
-                        - closestCell.getOnsetTicks())) {
-                    closestCell = c;
-                }
+        List<SpreadsheetCell> temporal = datapanel.getCellsTemporally();
+        long onset = sc.getOnsetTicks();
+        int after = firstCellFrom(temporal, onset);
+        SpreadsheetCell closestCell = after < temporal.size() ? temporal.get(after) : null;
+        if (after > 0) {
+            // The first of the cells sharing the closest onset before.
+            SpreadsheetCell before = temporal.get(firstCellFrom(temporal, temporal.get(after - 1).getOnsetTicks()));
+            if (closestCell == null || onset - before.getOnsetTicks() <= closestCell.getOnsetTicks() - onset) {
+                closestCell = before;
             }
         }
         return closestCell;
     }
 
+    /**
+     * @param temporal The cells in temporal order.
+     * @param onset    An onset in milliseconds.
+     * @return The index of the first cell starting at or after the onset, or the number of cells if there is none.
+     */
+    private static int firstCellFrom(final List<SpreadsheetCell> temporal, final long onset) {
+        int low = 0;
+        int high = temporal.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (temporal.get(mid).getOnsetTicks() < onset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     @Action
     public void addNewCellToVar() {
 //        new NewVariableController();
@@ -489,14 +521,19 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
 
     private void focusNextCell() {
         long time = Datavyu.getVideoController().getCurrentTime();
-        List<SpreadsheetCell> tempCells = getCellsTemporally();
-        for(int i = 0; i < tempCells.size(); i++) {
-            SpreadsheetCell c = tempCells.get(i);
-            if(c.getCell().isInTimeWindow(time)) {
-                if(!c.isFocusOwner()) {
-                    if(c.getCell().getCellValue() instanceof MatrixCellValue) {
+        // The interval index of the variable finds the cells at the current time without going through all of them.
+        List<Cell> cellsAt = variable.getCellsAt(time);
+        for(int i = 0; i < cellsAt.size(); i++) {
+            Cell cell = cellsAt.get(i);
+            if(cell.isInTimeWindow(time)) {
+                // Only build the view of a cell out of sight of a virtualized column if it is going to get the focus.
+                SpreadsheetCell c = datapanel.getSpreadsheetCell(cell);
+                boolean matrix = cell.getCellValue() instanceof MatrixCellValue;
+                if((c == null || !c.isFocusOwner()) && (matrix || cell.getCellValue().isEmpty())) {
+                    c = datapanel.getCellTemporally(variable.getCellsTemporally().indexOf(cell));
+                    if(matrix) {
                         int firstEmpty = -1;
-                        List<CellValue> args = ((MatrixCellValue) c.getCell().getCellValue()).getArguments();
+                        List<CellValue> args = ((MatrixCellValue) cell.getCellValue()).getArguments();
                         for(int j = 0; j < args.size(); j++) {
                             if(args.get(j).isEmpty()) {
                                 firstEmpty = j;
@@ -511,14 +548,9 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
                             c.getDataView().getEdTracker().setEditor(c.getDataView().getEdTracker().getEditorAtIndex(previouslyFocusedCellIdx > -1 ? previouslyFocusedCellIdx : 0));
                         }
                     } else {
-                        if(c.getCell().getCellValue().isEmpty()) {
-                            c.requestFocus();
-                        }
+                        c.requestFocus();
                     }
                 }
-                if(c.getCell().getOnset() > time) {
-                    break;
-                }
                 break;
             }
         }
@@ -556,7 +588,7 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
          * SpreadsheetCell in the column if one exists. If no cells exist it
          * will request focus for the datapanel of the column.
          */
-        if (datapanel.getCells().size() > 0) {
+        if (datapanel.getNumCells() > 0) {
 //            datapanel.getCells().get(0).requestFocusInWindow();
             SpreadsheetCell sc = datapanel.getSelectedCell();
             if(sc != null) sc.requestFocus();
@@ -592,9 +624,10 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
     @Override
     public void cellRemoved(final Cell deletedCell) {
         datapanel.deleteCell(deletedCell);
-        for(SpreadsheetCell c : getCellsTemporally()) {
-            if(c.getOnsetTicks() >= deletedCell.getOnset()) {
-                c.requestFocus();
+        List<Cell> tempCells = variable.getCellsTemporally();
+        for(int i = 0; i < tempCells.size(); i++) {
+            if(tempCells.get(i).getOnset() >= deletedCell.getOnset()) {
+                datapanel.getCellTemporally(i).requestFocus();
                 break;
             }
         }
@@ -771,25 +804,4 @@ public final class SpreadsheetColumn extends JLabel implements VariableListener,
 
     @Override
     public void clockForceSync(double clockTime) { }
-
-    @Override
-    public void clockRate(float rate) { }
-
-    @Override
-    public void clockStart(double clockTime) { }
-
-    @Override
-    public void clockStop(double clockTime) { }
-
-    @Override
-    public void clockPause(double clockTime) { }
-
-    @Override
-    public void clockBoundaryCheck(double clockTime) { }
-
-    @Override
-    public void streamsBoundaryCheck(double clockTime) { }
-
-    @Override
-    public void clockSeekPlayback(double clockTime) { }
 }
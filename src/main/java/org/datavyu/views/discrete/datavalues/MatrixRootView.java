@@ -147,6 +147,21 @@ public final class MatrixRootView extends JTextArea implements FocusListener {
         comp.setCaretPosition(edPos);
     }
 
+    /**
+     * Shows the value of another cell, forgetting the editor and caret position of the previous one.
+     *
+     * @param cell The new parent cell for this spread sheet cell.
+     */
+    public void setCell(final Cell cell) {
+        parentCell = cell;
+        oldValue = "";
+        edTracker.reset();
+        allEditors.clear();
+        allEditors.addAll(DataValueEditorFactory.buildMatrix(this, parentCell));
+        rebuildText();
+        setCaretPosition(0);
+    }
+
     /**
      * Recalculates and sets the text to display.
      */
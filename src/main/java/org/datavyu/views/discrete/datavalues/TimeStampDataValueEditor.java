@@ -78,6 +78,16 @@ public final class TimeStampDataValueEditor extends EditorComponent {
         resetValue();
     }
 
+    /**
+     * Shows the timestamp of another cell.
+     *
+     * @param cell The data cell this editor now resides within.
+     */
+    public void setCell(final Cell cell) {
+        parentCell = cell;
+        resetValue();
+    }
+
     /**
      * Reset the values by retrieving from the database.
      */
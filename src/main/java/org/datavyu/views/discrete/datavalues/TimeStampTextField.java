@@ -68,6 +68,18 @@ public final class TimeStampTextField extends JTextField
         addKeyListener(this);
     }
 
+    /**
+     * Shows the timestamp of another cell.
+     *
+     * @param cell The new parent datacell for this spreadsheet cell.
+     */
+    public void setCell(final Cell cell) {
+        parentCell = cell;
+        myEditor.setCell(cell);
+        setText(myEditor.getText());
+        setCaretPosition(0);
+    }
+
     /**
      * Sets the value to be displayed.
      */
@@ -93,42 +93,47 @@ public class SheetLayoutOrdinal extends SheetLayout {
                 int currentHeight = 0;
                 SpreadsheetCell prevCell = null;
 
-                for (SpreadsheetCell cell : col.getCellsTemporally()) {
-                    if (cell == null) {
-                        // We may have a race condition where a cell got deleted but
-                        // we don't know about it yet
-                        continue;
-                    }
-                    Dimension d = cell.getPreferredSize();
-                    if (cell.getCell().isSelected()) {
-                        selectedHeight = currentHeight;
-                        selectedCell = cell;
-                    }
+                // A virtualized column only lays out the cells in sight, the others are just counted in its height.
+                if (col.getDataPanel().isVirtualized()) {
+                    currentHeight = col.getDataPanel().layoutRows(col.getWidth() - marginSize);
+                } else {
+                    for (SpreadsheetCell cell : col.getCellsTemporally()) {
+                        if (cell == null) {
+                            // We may have a race condition where a cell got deleted but
+                            // we don't know about it yet
+                            continue;
+                        }
+                        Dimension d = cell.getPreferredSize();
+                        if (cell.getCell().isSelected()) {
+                            selectedHeight = currentHeight;
+                            selectedCell = cell;
+                        }
 
-                    cell.setBounds(0,
-                            currentHeight,
-                            (col.getWidth() - marginSize),
-                            (int) d.getHeight());
-                    cell.setOrdinal(ord);
-                    cell.repaint();
-                    ord++;
-                    currentHeight += d.getHeight();
-
-                    // Determine if this cell overlaps with the previous cell.
-                    if (prevCell != null) {
-                        if (prevCell.getOffsetTicks() > cell.getOnsetTicks()) {
-                            prevCell.setOverlapBorder(true);
-                        } else {
-                            prevCell.setOverlapBorder(false);
+                        cell.setBounds(0,
+                                currentHeight,
+                                (col.getWidth() - marginSize),
+                                (int) d.getHeight());
+                        cell.setOrdinal(ord);
+                        cell.repaint();
+                        ord++;
+                        currentHeight += d.getHeight();
+
+                        // Determine if this cell overlaps with the previous cell.
+                        if (prevCell != null) {
+                            if (prevCell.getOffsetTicks() > cell.getOnsetTicks()) {
+                                prevCell.setOverlapBorder(true);
+                            } else {
+                                prevCell.setOverlapBorder(false);
+                            }
                         }
-                    }
                     
-                    // Determine if this cell's onset is later than its (non-zero) offset
-                    if (cell.isUpsideDown()){
-                        cell.setOverlapBorder(true);
-                    }
+                        // Determine if this cell's onset is later than its (non-zero) offset
+                        if (cell.isUpsideDown()){
+                            cell.setOverlapBorder(true);
+                        }
 
-                    prevCell = cell;
+                        prevCell = cell;
+                    }
                 }
 
                 // Put the new cell button at the end of the column.
@@ -34,6 +34,18 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
     int maxHeight;
     private JScrollPane pane;
 
+    /** Marks the times that are not yet the bottom of any cell */
+    private static final int NO_POSITION = Integer.MIN_VALUE;
+
+    /** Positions of the onset and offset times, kept from one layout to the next */
+    private final TemporalIndex index = new TemporalIndex();
+
+    /** The cells of the visible columns as of the last layout */
+    private Map<SpreadsheetColumn, ColumnCells> columns = new IdentityHashMap<>();
+
+    /** The bottom of the cells ending at each time, reused from one layout to the next */
+    private int[] offsetPositions = new int[0];
+
     /**
      * SheetLayoutOrdinal constructor.
      *
@@ -44,7 +56,6 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
 
     @Override
     public void layoutContainer(Container parent) {
-        //TODO: figure out how to make this whole algorithm neater.
 //        long startTime = System.currentTimeMillis();
         super.layoutContainer(parent);
         pane = (JScrollPane) parent;
@@ -57,69 +68,54 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
         // Get visible columns.
         List<SpreadsheetColumn> visible_columns = getVisibleColumns(mainView);
 
-        // Map columns to temporally ordered cells from column.
-        HashMap<SpreadsheetColumn, List<SpreadsheetCell>> cellMap = new HashMap<>();
-        for(SpreadsheetColumn col : visible_columns){
-            cellMap.put(col, col.getCellsTemporally());
-        }
-
-        TreeSet<Long> times = new TreeSet<Long>();
-        HashMap<Long, Integer> heightMap = new HashMap<>();
-
-        /* Go through each column and assign "height" values to onset times.
-           This will determine how much space to allocate between onset times.
-           For each column, create an intermediate map and then merge with the
-           actual map using maximum values.  This is required since a column can have
-           multiple cells with the same onset.
-           Also accumulate all unique times.
+        /* Bring the times of the visible columns up to date, only reading again the cells of the columns whose cells
+           were added, removed or moved in time, and measure the cells.  The index then assigns positions to the
+           onset and offset times: for times t1, t2 : pos(t2) = pos(t1) + height(t1) + gapSize, where height(t1) is the
+           tallest stack of cells of a column starting at t1.
          */
-        for( SpreadsheetColumn col : visible_columns){
-            HashMap<Long, Integer> intermediateMap = new HashMap<>();
-            for( SpreadsheetCell curCell : cellMap.get(col)){
-                long onset = curCell.getOnsetTicks();
-                int height = curCell.getPreferredSize().height;
-                intermediateMap.compute(onset, (k, v) -> (v == null) ? height : v + height);
-
-                // Add the onset and offset times to our master set.
-                times.add(onset);
-                long offset = curCell.getOffsetTicksActual();
-                if(offset > onset) times.add(offset);
+        Map<SpreadsheetColumn, ColumnCells> newColumns = new IdentityHashMap<>();
+        List<TemporalIndex.Column> indexColumns = new ArrayList<>(visible_columns.size());
+        for (SpreadsheetColumn col : visible_columns) {
+            ColumnCells columnCells = columns.get(col);
+            if (columnCells == null || columnCells.times.version != col.getVariable().getTemporalVersion()
+                    || columnCells.cells.length != col.getDataPanel().getCells().size()) {
+                columnCells = new ColumnCells(col);
+            }
+            for (int i = 0; i < columnCells.cells.length; i++) {
+                columnCells.times.setHeight(i, columnCells.cells[i].getPreferredSize().height);
             }
-            // Merge the intermediate map entries.
-            intermediateMap.forEach( (k, v) -> heightMap.merge(k, v, Integer::max));
+            newColumns.put(col, columnCells);
+            indexColumns.add(columnCells.times);
         }
+        columns = newColumns;
+        index.update(indexColumns);
 
-        /* Iterate over sorted set of times and assign position values.
-           For onset times o1, o2 : Map(o2) = Map(o1) + heightMap(o1) + gapSize
+        /* Iterate over all spreadsheet cells and set boundaries using the positions of their onset and offset times.
+           Each time value gets a range of positions, starting from the position of the time and ending at the
+           position of the next time, cells sharing an onset are stacked within that range.  The bottom of the cells
+           ending at a time is shared by all the columns.
          */
-        int gapSize = 15;   // default space separating unique times
-        HashMap<Long, Integer> onsetMap = new HashMap<>();
-        int pos = 0;    // position to assign to next onset time
-        for(Long time : times){
-            onsetMap.put(time, pos);
-            pos += heightMap.getOrDefault(time, 0);
-            pos += gapSize;
+        if (offsetPositions.length < index.getNumTimes()) {
+            offsetPositions = new int[index.getNumTimes()];
         }
-
-        /* Iterate over all spreadsheet cells and set boundaries using onset and offset maps.
-           Keep a local copy of the position maps.  Since each time value gets a range of positions
-           (starting from onset map's value and ending at the offset's value), update the local copy of
-           the onset map to get positions for cells sharing onsets.
-         */
-        HashMap<Long, Integer> offsetMap = new HashMap<>();
-        for( SpreadsheetColumn col : visible_columns){
-            List<SpreadsheetCell> orderedCells = cellMap.get(col);
+        Arrays.fill(offsetPositions, 0, index.getNumTimes(), NO_POSITION);
+        for (SpreadsheetColumn col : visible_columns) {
+            ColumnCells columnCells = columns.get(col);
+            SpreadsheetCell[] orderedCells = columnCells.cells;
+            TemporalIndex.Column times = columnCells.times;
             int colWidth = col.getWidth();
             int colHeight = 0;
-            HashMap<Long, Integer> onsetMapLocal = new HashMap<>(onsetMap);
+            int stackTop = 0;
             SpreadsheetCell prevCell = null;
-            for (int i = 0; i < orderedCells.size(); i++) {
-                SpreadsheetCell curCell = orderedCells.get(i);
-                SpreadsheetCell nextCell = (i == orderedCells.size() - 1) ? null : orderedCells.get(i + 1);
+            for (int i = 0; i < orderedCells.length; i++) {
+                SpreadsheetCell curCell = orderedCells[i];
+                boolean hasNext = i < orderedCells.length - 1;
 
-                long onset = curCell.getOnsetTicks();
-                long offset = curCell.getOffsetTicksActual();
-                int cellTopY = onsetMapLocal.get(onset);
+                long onset = times.onsets[i];
+                long offset = times.offsets[i];
+                // Cells sharing the onset of the previous cell are stacked below it.
+                int cellTopY = i > 0 && times.onsets[i - 1] == onset
+                        ? stackTop : index.getPosition(times.onsetIndex[i]);
 
                 // Get height for cell
                 int cellHeight;
@@ -129,38 +125,38 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
                     cellHeight = curCell.getPreferredSize().height;
                 }
                 // Current onset equals next onset
-                else if (nextCell != null && onset == nextCell.getOnsetTicks()) {
-                    if (onset != offset || offset == nextCell.getOffsetTicksActual())
+                else if (hasNext && onset == times.onsets[i + 1]) {
+                    if (onset != offset || offset == times.offsets[i + 1])
                         curCell.setOverlapBorder(true);
                     cellHeight = curCell.getPreferredSize().height;
                 }
                 // Current offset greater than or equal to next onset
-                else if (nextCell != null && offset >= nextCell.getOnsetTicks()) {
+                else if (hasNext && offset >= times.onsets[i + 1]) {
                     curCell.setOverlapBorder(true);
-                    cellHeight = onsetMapLocal.get(nextCell.getOnsetTicks()) - cellTopY;
+                    cellHeight = index.getPosition(times.onsetIndex[i + 1]) - cellTopY;
                 } else {
                     curCell.setOverlapBorder(false);
-                    cellHeight = offsetMap.getOrDefault(offset, onsetMap.get(offset)) - cellTopY;
+                    int offsetIndex = times.offsetIndex[i];
+                    int bottom = offsetPositions[offsetIndex];
+                    cellHeight = (bottom == NO_POSITION ? index.getPosition(offsetIndex) : bottom) - cellTopY;
                 }
 
                 // Treat cells with 1ms interval as continuous. Stretch bottom of previous cell to top of current cell.
-                if (prevCell != null && onset - prevCell.getOffsetTicks() == 1) {
+                if (prevCell != null && onset - Math.max(times.onsets[i - 1], times.offsets[i - 1]) == 1) {
                     prevCell.setBounds(0, prevCell.getY(), colWidth - 1, cellTopY - prevCell.getY());
-                    offsetMap.compute(offset, (k, v) -> (v == null) ? cellTopY : Math.max(v, cellTopY));
+                    setOffsetPosition(times.offsetIndex[i], cellTopY);
                 }
 
                 cellHeight = Math.max(cellHeight, curCell.getPreferredSize().height); // fix for edge cases...maybe investigate later
                 // Set cell boundary
                 curCell.setBounds(0, cellTopY, colWidth - 1, cellHeight);
 
-                // Update local onset map
-                int adjOn = cellHeight;
-                onsetMapLocal.compute(onset, (k, v) -> v + adjOn);
+                // Update the top of the next cell sharing this onset
+                stackTop = cellTopY + cellHeight;
 
-                // Update offset map
+                // Update offset positions
                 if(!curCell.getOverlapBorder()) {
-                    int adjOff = cellTopY + cellHeight;
-                    offsetMap.compute(offset, (k, v) -> (v == null) ? adjOff : Math.max(v, adjOff));
+                    setOffsetPosition(times.offsetIndex[i], cellTopY + cellHeight);
                 }
 
                 // Update vars
@@ -175,9 +171,15 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
 
         /* Do a second pass to update the offsets again. */
         for (SpreadsheetColumn col : visible_columns) {
+            ColumnCells columnCells = columns.get(col);
+            TemporalIndex.Column times = columnCells.times;
             int colWidth = col.getWidth();
-            for (SpreadsheetCell sc : cellMap.get(col)) {
-                int mapHeight = offsetMap.getOrDefault(sc.getOffsetTicks(), -1) - sc.getY();
+            for (int i = 0; i < columnCells.cells.length; i++) {
+                SpreadsheetCell sc = columnCells.cells[i];
+                // The offset of a reversed cell is shown at its onset.
+                int offsetIndex = times.offsets[i] < times.onsets[i] ? times.onsetIndex[i] : times.offsetIndex[i];
+                int bottom = offsetPositions[offsetIndex];
+                int mapHeight = (bottom == NO_POSITION ? -1 : bottom) - sc.getY();
                 if (!sc.getOverlapBorder() && sc.getSize().getHeight() < mapHeight)
                     sc.setBounds(0, sc.getY(), colWidth - 1, mapHeight);
             }
@@ -187,6 +189,18 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
 //        System.err.println(String.format("Aligned.  Time: %d.", System.currentTimeMillis() - startTime));
     }
 
+    /**
+     * Lowers the bottom of the cells ending at a time.
+     *
+     * @param offsetIndex The index of the time, or -1 if it is not the onset or offset of any cell.
+     * @param bottom      The position of the bottom of a cell ending at that time.
+     */
+    private void setOffsetPosition(final int offsetIndex, final int bottom) {
+        if (offsetIndex >= 0) {
+            offsetPositions[offsetIndex] = Math.max(offsetPositions[offsetIndex], bottom);
+        }
+    }
+
     public void reorientView(SpreadsheetCell cell) {
         double viewMax = pane.getViewport().getViewRect().getY() + pane.getViewport().getViewRect().getHeight();
         double viewMin = pane.getViewport().getViewRect().getY();
@@ -257,4 +271,26 @@ public class SheetLayoutWeakTemporal extends SheetLayout {
                 .filter(c -> c.isVisible())
                 .collect(Collectors.toList());
     }
+
+    /**
+     * The views of the cells of a column in temporal order, with their times as of the temporal version of the
+     * variable.
+     */
+    private static final class ColumnCells {
+        final SpreadsheetCell[] cells;
+        final TemporalIndex.Column times;
+
+        ColumnCells(final SpreadsheetColumn col) {
+            int version = col.getVariable().getTemporalVersion();
+            List<SpreadsheetCell> orderedCells = col.getCellsTemporally();
+            cells = orderedCells.toArray(new SpreadsheetCell[orderedCells.size()]);
+            long[] onsets = new long[cells.length];
+            long[] offsets = new long[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                onsets[i] = cells[i].getOnsetTicks();
+                offsets[i] = cells[i].getOffsetTicksActual();
+            }
+            times = new TemporalIndex.Column(version, onsets, offsets);
+        }
+    }
 }
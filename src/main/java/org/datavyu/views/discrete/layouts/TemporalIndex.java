@@ -0,0 +1,223 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete.layouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positions of the onset and offset times of the weak temporal layout, kept from one layout to the next.
+ *
+ * Every distinct onset or offset time of the visible columns gets a position, below the previous time by the height
+ * of the tallest group of cells starting at the previous time plus a gap. The times of a column are only read again
+ * when the temporal version of its variable changes, the times are only merged again when the times of a column or the
+ * visible columns change, and the positions are only summed again from the first time whose height changed.
+ */
+final class TemporalIndex {
+
+    /** Space in pixels separating two consecutive times */
+    static final int GAP = 15;
+
+    /**
+     * The times and heights of the cells of a column, in temporal order.
+     */
+    static final class Column {
+
+        /** The temporal version of the variable the times were read from */
+        final int version;
+
+        /** Onsets of the cells */
+        final long[] onsets;
+
+        /** Offsets of the cells, which can be before the onset */
+        final long[] offsets;
+
+        /** Preferred heights of the cells */
+        final int[] heights;
+
+        /** Index of the onset of each cell in the times of the index */
+        final int[] onsetIndex;
+
+        /** Index of the offset of each cell in the times of the index, or -1 if the offset is not one of them */
+        final int[] offsetIndex;
+
+        private boolean heightsChanged = true;
+
+        /**
+         * @param version The temporal version of the variable.
+         * @param onsets  The onsets of the cells, in temporal order.
+         * @param offsets The offsets of the cells.
+         */
+        Column(final int version, final long[] onsets, final long[] offsets) {
+            this.version = version;
+            this.onsets = onsets;
+            this.offsets = offsets;
+            heights = new int[onsets.length];
+            onsetIndex = new int[onsets.length];
+            offsetIndex = new int[onsets.length];
+        }
+
+        /**
+         * @return The number of cells.
+         */
+        int size() {
+            return onsets.length;
+        }
+
+        /**
+         * @param i      The index of the cell.
+         * @param height The preferred height of the cell in pixels.
+         */
+        void setHeight(final int i, final int height) {
+            if (heights[i] != height) {
+                heights[i] = height;
+                heightsChanged = true;
+            }
+        }
+    }
+
+    /** The columns of the last update */
+    private List<Column> columns = new ArrayList<Column>();
+
+    /** The distinct onset and offset times, in order */
+    private long[] times = new long[0];
+
+    /** Height of each time: the tallest sum of the heights of the cells of a column starting at that time */
+    private int[] timeHeights = new int[0];
+
+    /** Position of each time in pixels */
+    private int[] positions = new int[0];
+
+    /**
+     * Brings the index up to date with the given columns.
+     *
+     * @param newColumns The columns to lay out, in order.
+     */
+    void update(final List<Column> newColumns) {
+        boolean timesChanged = newColumns.size() != columns.size();
+        for (int c = 0; !timesChanged && c < newColumns.size(); c++) {
+            timesChanged = newColumns.get(c) != columns.get(c);
+        }
+        boolean heightsChanged = false;
+        for (Column column : newColumns) {
+            heightsChanged |= column.heightsChanged;
+            column.heightsChanged = false;
+        }
+        columns = new ArrayList<Column>(newColumns);
+
+        if (timesChanged) {
+            updateTimes();
+        }
+        if (timesChanged || heightsChanged) {
+            updatePositions(timesChanged);
+        }
+    }
+
+    /**
+     * Merges the times of all the columns.
+     */
+    private void updateTimes() {
+        int numTimes = 0;
+        for (Column column : columns) {
+            numTimes += 2 * column.size();
+        }
+        long[] allTimes = new long[numTimes];
+        numTimes = 0;
+        for (Column column : columns) {
+            for (int i = 0; i < column.size(); i++) {
+                allTimes[numTimes++] = column.onsets[i];
+                if (column.offsets[i] > column.onsets[i]) {
+                    allTimes[numTimes++] = column.offsets[i];
+                }
+            }
+        }
+        Arrays.sort(allTimes, 0, numTimes);
+
+        int distinct = 0;
+        for (int i = 0; i < numTimes; i++) {
+            if (distinct == 0 || allTimes[i] != allTimes[distinct - 1]) {
+                allTimes[distinct++] = allTimes[i];
+            }
+        }
+        times = Arrays.copyOf(allTimes, distinct);
+
+        for (Column column : columns) {
+            for (int i = 0; i < column.size(); i++) {
+                column.onsetIndex[i] = indexOf(column.onsets[i]);
+                column.offsetIndex[i] = Math.max(indexOf(column.offsets[i]), -1);
+            }
+        }
+    }
+
+    /**
+     * Sums the heights of the times into positions.
+     *
+     * @param all True to sum all the positions, false to start from the first time whose height changed.
+     */
+    private void updatePositions(final boolean all) {
+        int[] newHeights = new int[times.length];
+        for (Column column : columns) {
+            int sum = 0;
+            for (int i = 0; i < column.size(); i++) {
+                sum += column.heights[i];
+                if (i == column.size() - 1 || column.onsets[i + 1] != column.onsets[i]) {
+                    int t = column.onsetIndex[i];
+                    newHeights[t] = Math.max(newHeights[t], sum);
+                    sum = 0;
+                }
+            }
+        }
+
+        int first = 0;
+        if (!all) {
+            while (first < times.length && newHeights[first] == timeHeights[first]) {
+                first++;
+            }
+        } else {
+            positions = new int[times.length];
+        }
+        timeHeights = newHeights;
+
+        int pos = first == 0 ? 0 : positions[first - 1] + timeHeights[first - 1] + GAP;
+        for (int t = first; t < times.length; t++) {
+            positions[t] = pos;
+            pos += timeHeights[t] + GAP;
+        }
+    }
+
+    /**
+     * @return The number of distinct times.
+     */
+    int getNumTimes() {
+        return times.length;
+    }
+
+    /**
+     * @param time A time in milliseconds.
+     * @return The index of the time, or a negative value if it is not the onset or offset of a cell.
+     */
+    int indexOf(final long time) {
+        return Arrays.binarySearch(times, time);
+    }
+
+    /**
+     * @param index The index of a time.
+     * @return The position of the time in pixels.
+     */
+    int getPosition(final int index) {
+        return positions[index];
+    }
+}
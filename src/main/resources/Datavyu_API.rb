@@ -40,6 +40,7 @@ import 'org.datavyu.models.db.CellValue'
 import 'org.datavyu.models.db.Variable'
 import 'org.datavyu.models.db.Cell'
 import 'org.datavyu.models.db.Argument'
+import 'org.datavyu.models.db.ColumnSnapshot'
 import 'org.datavyu.models.project.Project'
 import 'org.datavyu.controllers.SaveController'
 import 'org.datavyu.controllers.OpenController'
@@ -55,8 +56,12 @@ end
 
 # Set $db, this is so that JRuby doesn't decide
 # to overwrite it halfway thru the script.
-$db = Datavyu.get_project_controller.get_data_store
-$pj = Datavyu.get_project_controller.get_project
+# There is no project controller when scripts are run without the spreadsheet,
+# $db and $pj are then set for each script by the runtime running it.
+unless Datavyu.get_project_controller.nil?
+  $db = Datavyu.get_project_controller.get_data_store
+  $pj = Datavyu.get_project_controller.get_project
+end
 $sp = Datavyu.get_view
 
 # Ruby representation of a spreadsheet cell.
@@ -99,9 +104,22 @@ class RCell
     @argvals = (argvals == '')? arglist.map{ '' } : argvals.map{ |x| x.nil?? '' : x }
 
     # Add getter/setter methods for each code
-    arglist.each_with_index do |arg, i|
-      instance_eval "def #{arg}; return argvals[#{i}]; end"
-      instance_eval "def #{arg}=(val); argvals[#{i}] = val.to_s; end"
+    extend(RCell.code_accessors(arglist))
+  end
+
+  # @!visibility private
+  # Module with the getter/setter methods for each of the given codes.
+  # Modules are shared by the cells with the same codes, so the methods are only defined once per column.
+  # @param arglist [Array<String>] names of the codes
+  # @return [Module] module to extend the cells with
+  def self.code_accessors(arglist)
+    @code_accessors ||= {}
+    codes = arglist.dup
+    @code_accessors[codes] ||= Module.new do
+      codes.each_with_index do |arg, i|
+        define_method(arg) { argvals[i] }
+        define_method("#{arg}=") { |val| argvals[i] = val.to_s }
+      end
     end
   end
 
@@ -355,7 +373,7 @@ class RColumn
 
   # @note This function is not for general use.
   # Creates the cell object in the Variable object.
-  # @param newcells (required): Array of cells coming from the database via get_column
+  # @param newcells (required): ColumnSnapshot of the cells coming from the database via get_column, or an Array of cells
   # @param arglist (required): Array of the names of the arguments from the database
   def set_cells(newcells, arglist)
     print_debug "Setting cells"
@@ -366,7 +384,26 @@ class RColumn
       print_debug arg
       @arglist << RColumn.sanitize_codename(arg)
     end
-    if !newcells.nil?
+    if newcells.is_a?(ColumnSnapshot)
+      # The whole column is read in one call rather than calling into Java for every cell.
+      db_cells = newcells.getCells.to_a
+      onsets = newcells.getOnsets.to_a
+      offsets = newcells.getOffsets.to_a
+      values = newcells.getValues.map(&:to_a)
+      accessors = RCell.code_accessors(@arglist)
+      db_cells.each_with_index do |cell, i|
+        c = RCell.new
+        c.onset = onsets[i]
+        c.offset = offsets[i]
+        c.db_cell = cell
+        c.parent = @name
+        c.arglist = @arglist
+        c.argvals = values[i]
+        c.extend(accessors)
+        c.ordinal = i + 1
+        @cells << c
+      end
+    elsif !newcells.nil?
       ord = 0
       newcells.each do |cell|
         ord += 1
@@ -735,8 +772,8 @@ def get_column(name)
     return nil
   end
 
-  # Convert each cell into an array and store in an array of arrays
-  cells = var.getCells()
+  # Copy all the cells in one call, in temporal order
+  cells = ColumnSnapshot.of(var)
   arg_names = Array.new
 
   # Now get the arguments for each of the cells
@@ -759,7 +796,6 @@ def get_column(name)
   v.old_args = arg_names
   v.type = type
   v.set_cells(cells, arg_names)
-  v.sort_cells
   v.dirty = false
   v.db_var = var
 
@@ -875,48 +911,28 @@ def set_column(*args, sanitize_codes: true)
 
   end
 
-  # Create new cells and fill them in for each cell in the variable
-  for cell in var.cells
-    # Copy the information from the ruby variable to the new cell
-
-    if cell.db_cell == nil or cell.parent != name
-      cell.db_cell = var.db_var.createCell()
-    end
-
-    value = cell.db_cell.getCellValue()
-
-    if cell.onset != cell.db_cell.getOnset
-      cell.db_cell.setOnset(cell.onset)
-    end
-
-    if cell.offset != cell.db_cell.getOffset
-      cell.db_cell.setOffset(cell.offset)
-    end
-
-    # Matrix cell
-    if cell.db_cell.getVariable.getRootNode.type == Argument::Type::MATRIX
-      values = cell.db_cell.getCellValue().getArguments()
-      for arg in var.old_args
-        # Find the arg in the dataStore's arglist that we are looking for
-        for i in 0...values.size
-          dbarg = values[i]
-          dbarg_name = dbarg.getArgument.name
-          if dbarg_name == arg and not ["", nil].include?(cell.get_arg(var.convert_argname(arg)))
-            dbarg.set(cell.get_arg(var.convert_argname(arg)))
-            break
-          end
-        end
-      end
-
-      # Non-matrix cell
-    else
-      value = cell.db_cell.getCellValue()
-      value.set(cell.get_arg("var"))
-    end
-
-    # Save the changes back to the DB
-
+  # Write all the cells in one call. Cells that don't belong to the column in the spreadsheet are created,
+  # the others only get the onsets, offsets and codes that changed.
+  matrix = var.db_var.getRootNode.type == Argument::Type::MATRIX
+  if matrix
+    db_arg_names = var.db_var.getRootNode.childArguments.map { |x| x.name }
+    code_names = var.old_args
+    codes = code_names.map { |arg| db_arg_names.include?(arg) ? var.convert_argname(arg) : nil }
+  else
+    code_names = ["var"]
+    codes = ["var"]
+  end
+  db_cells = var.cells.map { |cell| (cell.db_cell.nil? or cell.parent != name) ? nil : cell.db_cell }
+  values = var.cells.map do |cell|
+    codes.map { |code| code.nil? ? nil : cell.get_arg(code) }.map { |x| x.nil? ? nil : x.to_s }.to_java(:string)
   end
+  db_cells = ColumnSnapshot.apply(var.db_var, db_cells.to_java(Cell), var.cells.map(&:onset).to_java(:long),
+                                  var.cells.map(&:offset).to_java(:long), code_names.to_java(:string),
+                                  values.to_java(java.lang.String[]))
+  var.cells.each_with_index do |cell, i|
+    cell.db_cell = db_cells[i] if cell.db_cell.nil? or cell.parent != name
+  end
+
   # if var.hidden
   var.db_var.setHidden(var.hidden)
   # end
@@ -0,0 +1,144 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for running a script over many projects.
+ */
+public class BatchScriptRunnerTest {
+
+    /** The directory holding the project files */
+    private File dir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("batch").toFile();
+        new File(dir, "b/c").mkdirs();
+        for (String name : new String[]{"a.opf", "notes.txt", "b/b.opf", "b/c/c.opf", "b/c/c.csv"}) {
+            new File(dir, name).createNewFile();
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        for (String name : new String[]{"a.opf", "notes.txt", "b/b.opf", "b/c/c.opf", "b/c/c.csv", "b/c", "b",
+                "run/a.csv", "run/a.out.csv", "run/b.csv", "run/c.csv", "run/c.out.csv", "run/count.rb", "run",
+                ""}) {
+            new File(dir, name).delete();
+        }
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param file    The file.
+     * @param content The content of the file.
+     * @return The file.
+     */
+    private static File write(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @param files Files found.
+     * @return The paths of the files relative to the directory.
+     */
+    private List<String> relative(final List<File> files) {
+        List<String> paths = new ArrayList<String>();
+        for (File file : files) {
+            paths.add(dir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+        }
+        return paths;
+    }
+
+    @Test
+    public void testFindFiles() throws IOException {
+        assertEquals(relative(BatchScriptRunner.findFiles(dir.getPath())), Arrays.asList("a.opf", "b/b.opf", "b/c/c.opf"));
+        assertEquals(relative(BatchScriptRunner.findFiles(dir.getPath() + "/*.opf")), Arrays.asList("a.opf"));
+        assertEquals(relative(BatchScriptRunner.findFiles(dir.getPath() + "/b/**/*.{opf,csv}")),
+                Arrays.asList("b/c/c.csv", "b/c/c.opf"));
+        assertEquals(relative(BatchScriptRunner.findFiles(dir.getPath() + "/b/b.opf")), Arrays.asList("b/b.opf"));
+        assertEquals(BatchScriptRunner.findFiles(dir.getPath() + "/missing.opf").size(), 0);
+    }
+
+    @Test
+    public void testWriteReport() throws IOException {
+        List<BatchScriptRunner.Result> results = new ArrayList<BatchScriptRunner.Result>();
+        results.add(new BatchScriptRunner.Result(new File("a.opf"), "3 cells", null, 20));
+        results.add(new BatchScriptRunner.Result(new File("b.opf"), "", "undefined method", 5));
+        StringWriter report = new StringWriter();
+        BatchScriptRunner.writeReport(results, report);
+        assertEquals(report.toString(), "==== a.opf: OK (20 ms)\n3 cells\n"
+                + "==== b.opf: FAILED (5 ms)\n**** undefined method\n"
+                + "---- 1 succeeded, 1 failed, 2 files, 25 ms of processing\n");
+    }
+
+    @Test
+    public void testRun() throws IOException, InterruptedException {
+        File run = new File(dir, "run");
+        run.mkdir();
+        String cell = "00:01:00:000,00:02:00:000,This is a test cell.\n";
+        List<File> files = Arrays.asList(
+                write(new File(run, "a.csv"), "#4\nTestColumn (TEXT,true,)\n" + cell),
+                // The script fails on this project, it has no TestColumn.
+                write(new File(run, "b.csv"), "#4\nOtherColumn (TEXT,true,)\n" + cell),
+                write(new File(run, "c.csv"), "#4\nTestColumn (TEXT,true,)\n" + cell + cell));
+        File script = write(new File(run, "count.rb"), ""
+                + "column = $db.getVariable('TestColumn')\n"
+                + "puts \"#{column.getCells.size} cells\"\n"
+                + "save_db($batch_file.sub('.csv', '.out.csv'))\n");
+
+        List<BatchScriptRunner.Result> results = new BatchScriptRunner(script, 2).run(files);
+
+        assertEquals(results.size(), 3);
+        assertTrue(results.get(0).isSuccess(), results.get(0).error);
+        assertEquals(results.get(0).output, "1 cells\n");
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess(), results.get(2).error);
+        assertEquals(results.get(2).output, "2 cells\n");
+
+        // The projects the script ran to the end on are saved, the failing one doesn't stop the others.
+        assertTrue(new String(Files.readAllBytes(new File(run, "a.out.csv").toPath()), StandardCharsets.UTF_8)
+                .contains("This is a test cell."));
+        assertTrue(new File(run, "c.out.csv").isFile());
+        assertFalse(new File(run, "b.out.csv").exists());
+
+        StringWriter report = new StringWriter();
+        BatchScriptRunner.writeReport(results, report);
+        String text = report.toString();
+        assertTrue(text.startsWith("==== " + files.get(0).getPath() + ": OK ("), text);
+        assertTrue(text.contains(" ms)\n1 cells\n==== " + files.get(1).getPath() + ": FAILED ("), text);
+        assertTrue(text.contains("\n==== " + files.get(2).getPath() + ": OK ("), text);
+        assertTrue(text.contains(" ms)\n2 cells\n---- 2 succeeded, 1 failed, 3 files, "), text);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for the stages of the start-up.
+ */
+public class StartupStagesTest {
+
+    @Test
+    public void testBackgroundStagesRunTogether() {
+        StartupStages stages = new StartupStages();
+        CountDownLatch latch = new CountDownLatch(2);
+        // Each stage waits for the other one, which only works if they run at the same time.
+        for (String name : new String[]{"a", "b"}) {
+            stages.start(name, () -> {
+                latch.countDown();
+                return latch.await(10, TimeUnit.SECONDS);
+            });
+        }
+        assertEquals(stages.<Boolean>await("a"), Boolean.TRUE);
+        assertEquals(stages.<Boolean>await("b"), Boolean.TRUE);
+        stages.finish();
+    }
+
+    @Test
+    public void testAwait() {
+        StartupStages stages = new StartupStages();
+        stages.start("value", () -> 42);
+        stages.start("failure", () -> {
+            throw new IllegalStateException("failed");
+        });
+        assertEquals(stages.<Integer>await("value"), Integer.valueOf(42));
+        assertNull(stages.await("failure"));
+        assertNull(stages.await("missing"));
+        stages.finish();
+    }
+
+    @Test
+    public void testReport() {
+        StartupStages stages = new StartupStages();
+        stages.start("background", () -> "done");
+        final boolean[] ran = {false};
+        stages.run("foreground", () -> ran[0] = true);
+        assertTrue(ran[0]);
+        stages.await("background");
+        stages.finish();
+
+        String report = stages.getReport();
+        assertTrue(report.startsWith("Started Datavyu in "));
+        assertTrue(report.contains("background"));
+        assertTrue(report.contains("foreground"));
+        assertTrue(report.contains(Thread.currentThread().getName()));
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Tests for tokenizing the cell lines of a CSV data store.
+ */
+public class CellLineTokenizerTest {
+
+    @Test
+    public void testTokenize() throws IOException {
+        CellLineTokenizer tokenizer = new CellLineTokenizer(new BufferedReader(new StringReader("")));
+        tokenizer.tokenize("00:01:00:000,01:00:00:250,(foo,bar\\,baz,)");
+
+        assertEquals(tokenizer.getOnset(), 60000L);
+        assertEquals(tokenizer.getOffset(), 3600250L);
+        assertEquals(tokenizer.getValues(), Arrays.asList("foo", "bar,baz", ""));
+    }
+
+    @Test
+    public void testTokenizeEscapedNewline() throws IOException {
+        CellLineTokenizer tokenizer = new CellLineTokenizer(new BufferedReader(new StringReader("second line)")));
+        tokenizer.tokenize("00:00:00:000,00:00:01:000,(first line\\");
+
+        assertEquals(tokenizer.getValues(), Arrays.asList("first line\nsecond line"));
+    }
+
+    @Test
+    public void testParseTimestamp() {
+        assertEquals(CellLineTokenizer.parseTimestamp("12:34:56:789", 0, 12), 45296789L);
+        assertEquals(CellLineTokenizer.parseTimestamp("x1500,", 1, 5), 1500L);
+    }
+
+    @Test
+    public void testParseSignedTimestamp() {
+        assertEquals(CellLineTokenizer.parseTimestamp("-1500", 0, 5), -1500L);
+        assertEquals(CellLineTokenizer.parseTimestamp("+1500", 0, 5), 1500L);
+        assertEquals(CellLineTokenizer.parseTimestamp("-00:00:01:500", 0, 13), 1500L);
+        assertEquals(CellLineTokenizer.parseTimestamp("-01:00:00:000", 0, 13), -3600000L);
+        assertEquals(CellLineTokenizer.parseTimestamp("00:00:+01:-500", 0, 14), 500L);
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void testParseSignWithoutDigits() {
+        CellLineTokenizer.parseTimestamp("-", 0, 1);
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void testParseSignAfterDigits() {
+        CellLineTokenizer.parseTimestamp("15-00", 0, 5);
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void testParseInvalidTimestamp() {
+        CellLineTokenizer.parseTimestamp("00:01:00", 0, 8);
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.datavyu.Datavyu;
+import org.datavyu.controllers.project.ProjectController;
+import org.datavyu.models.db.*;
+import org.datavyu.models.project.Project;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Tests for recording and replaying the journal of a project.
+ */
+public class ChangeJournalFileTest {
+
+    private File projectFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        projectFile = new File(Files.createTempDirectory("journal").toFile(), "test.opf");
+        Datavyu.setProjectController(new ProjectController(new Project(), DataStoreFactory.newDataStore()));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ChangeJournalFile.journalFor(projectFile).delete();
+        projectFile.getParentFile().delete();
+    }
+
+    /**
+     * @return A data store in the state of the saved project file.
+     */
+    private DataStore savedDataStore() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Cell cell = ds.createVariable("text", Argument.Type.TEXT).createCell();
+        cell.setOnset(1000);
+        cell.getCellValue().set("saved");
+        ds.createVariable("gone", Argument.Type.NOMINAL);
+        return ds;
+    }
+
+    @Test
+    public void testReplay() throws IOException, UserWarningException {
+        DataStore ds = savedDataStore();
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, ds, false);
+        ds.setChangeJournal(journal);
+
+        Variable text = ds.getVariable("text");
+        text.getCells().get(0).getCellValue().set("tab\there\nand a newline\\");
+        Cell removed = text.createCell();
+        Cell cell = text.createCell();
+        cell.setOnset(5000);
+        cell.setOffset(6000);
+        text.removeCell(removed);
+
+        Variable matrix = ds.createVariable("matrix", Argument.Type.MATRIX);
+        Argument added = matrix.addArgument(Argument.Type.NOMINAL);
+        Cell matrixCell = matrix.createCell();
+        ((MatrixCellValue) matrixCell.getCellValue()).getArguments().get(1).set("second");
+        matrix.moveArgument(1, 0);
+
+        ds.removeVariable(ds.getVariable("gone"));
+        text.setName("renamed");
+        journal.close();
+
+        DataStore recovered = savedDataStore();
+        assertEquals(replay(recovered), journal.getRecordCount());
+
+        assertNull(recovered.getVariable("gone"));
+        List<Cell> cells = recovered.getVariable("renamed").getCells();
+        assertEquals(cells.size(), 2);
+        assertEquals(cells.get(0).getCellValue().toString(), "tab\there\nand a newline\\");
+        assertEquals(cells.get(1).getOnset(), 5000);
+        assertEquals(cells.get(1).getOffset(), 6000);
+
+        Variable recoveredMatrix = recovered.getVariable("matrix");
+        assertEquals(recoveredMatrix.getRootNode().childArguments.get(0).name, added.name);
+        assertEquals(recoveredMatrix.getCells().get(0).getCellValue().toString(),
+                matrixCell.getCellValue().toString());
+    }
+
+    @Test
+    public void testRenamedArgument() throws IOException, UserWarningException {
+        DataStore ds = savedDataStore();
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, ds, false);
+        ds.setChangeJournal(journal);
+
+        // Renamed in place and set again, as the vocabulary editor and the scripts do.
+        Variable matrix = ds.createVariable("matrix", Argument.Type.MATRIX);
+        matrix.addArgument(Argument.Type.NOMINAL).name = "second";
+        matrix.addArgument(Argument.Type.NOMINAL).name = "third";
+        Argument root = matrix.getRootNode();
+        root.childArguments.get(0).name = "first";
+        matrix.setRootNode(root);
+        Cell cell = matrix.createCell();
+        ((MatrixCellValue) cell.getCellValue()).getArguments().get(2).set("kept");
+        matrix.removeArgument("second");
+        journal.close();
+
+        DataStore recovered = savedDataStore();
+        assertEquals(replay(recovered), journal.getRecordCount());
+        Variable recoveredMatrix = recovered.getVariable("matrix");
+        List<Argument> arguments = recoveredMatrix.getRootNode().childArguments;
+        assertEquals(arguments.size(), 2);
+        assertEquals(arguments.get(0).name, "first");
+        assertEquals(arguments.get(1).name, "third");
+        assertEquals(recoveredMatrix.getCells().get(0).getCellValue().toString(), cell.getCellValue().toString());
+    }
+
+    @Test
+    public void testMovedCell() throws IOException, UserWarningException {
+        DataStore ds = savedDataStore();
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, ds, false);
+        ds.setChangeJournal(journal);
+
+        // The new cell is sorted before the saved one and then edited.
+        Variable text = ds.getVariable("text");
+        Cell cell = text.createCell();
+        cell.setOnset(10);
+        cell.setOffset(20);
+        text.getCellsTemporally();
+        cell.getCellValue().set("new");
+        text.getCells().get(1).setOffset(1500);
+        journal.close();
+
+        DataStore recovered = savedDataStore();
+        replay(recovered);
+        List<Cell> cells = recovered.getVariable("text").getCellsTemporally();
+        assertEquals(cells.size(), 2);
+        assertEquals(cells.get(0).getOnset(), 10);
+        assertEquals(cells.get(0).getOffset(), 20);
+        assertEquals(cells.get(0).getCellValue().toString(), "new");
+        assertEquals(cells.get(1).getOnset(), 1000);
+        assertEquals(cells.get(1).getOffset(), 1500);
+        assertEquals(cells.get(1).getCellValue().toString(), "saved");
+    }
+
+    @Test
+    public void testClearedValue() throws IOException, UserWarningException {
+        DataStore ds = savedDataStore();
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, ds, false);
+        ds.setChangeJournal(journal);
+        ds.getVariable("text").getCells().get(0).getCellValue().clear();
+        journal.close();
+        assertEquals(journal.getRecordCount(), 1);
+
+        DataStore recovered = savedDataStore();
+        replay(recovered);
+        assertTrue(recovered.getVariable("text").getCells().get(0).getCellValue().isEmpty());
+    }
+
+    @Test
+    public void testAppendAfterReplay() throws IOException, UserWarningException {
+        DataStore ds = savedDataStore();
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, ds, false);
+        ds.setChangeJournal(journal);
+        Cell cell = ds.getVariable("text").createCell();
+        cell.setOnset(10);
+        journal.close();
+
+        // Datavyu crashes again after recovering the journal and editing the recovered cell.
+        DataStore recovered = savedDataStore();
+        journal = new ChangeJournalFile(projectFile, recovered, true);
+        assertEquals(journal.replay(), 2);
+        recovered.setChangeJournal(journal);
+        Variable text = recovered.getVariable("text");
+        text.getCellsTemporally().get(0).getCellValue().set("recovered");
+        text.createCell().setOnset(5);
+        journal.close();
+
+        DataStore again = savedDataStore();
+        assertEquals(replay(again), 5);
+        List<Cell> cells = again.getVariable("text").getCellsTemporally();
+        assertEquals(cells.size(), 3);
+        assertEquals(cells.get(0).getOnset(), 5);
+        assertEquals(cells.get(1).getOnset(), 10);
+        assertEquals(cells.get(1).getCellValue().toString(), "recovered");
+        assertEquals(cells.get(2).getCellValue().toString(), "saved");
+    }
+
+    @Test
+    public void testWrittenWithoutClose() throws IOException, UserWarningException, InterruptedException {
+        DataStore ds = savedDataStore();
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, ds, false);
+        ds.setChangeJournal(journal);
+        Variable text = ds.getVariable("text");
+        for (int i = 0; i < 1000; i++) {
+            text.createCell().setOnset(i);
+        }
+
+        // The records reach the file in one go a little later, as they would before a crash.
+        File file = ChangeJournalFile.journalFor(projectFile);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.readAllLines(file.toPath()).size() < 2001 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Files.readAllLines(file.toPath()).size(), journal.getRecordCount() + 1);
+        journal.discard();
+    }
+
+    @Test
+    public void testNoJournal() throws IOException, UserWarningException {
+        assertEquals(replay(savedDataStore()), 0);
+    }
+
+    /**
+     * Replays the journal on top of a data store.
+     *
+     * @param dataStore The data store loaded from the project file.
+     * @return The number of changes replayed.
+     */
+    private int replay(final DataStore dataStore) throws IOException {
+        ChangeJournalFile journal = new ChangeJournalFile(projectFile, dataStore, true);
+        try {
+            return journal.replay();
+        } finally {
+            journal.close();
+        }
+    }
+}
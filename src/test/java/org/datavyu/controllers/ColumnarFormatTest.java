@@ -0,0 +1,124 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for saving and opening data stores in the columnar formats.
+ */
+public class ColumnarFormatTest {
+
+    /**
+     * @return A data store with a text variable and a hidden matrix variable.
+     */
+    private DataStore newDataStore() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable text = ds.createVariable("text", Argument.Type.TEXT);
+        Cell textCell = text.createCell();
+        textCell.setOnset(60000);
+        textCell.setOffset(120000);
+        textCell.getCellValue().set("with, commas (and) \\ backslashes\nand newlines");
+
+        Variable matrix = ds.createVariable("matrix", Argument.Type.MATRIX);
+        matrix.addArgument(Argument.Type.NOMINAL);
+        matrix.setHidden(true);
+        for (int i = 0; i < 100; i++) {
+            Cell cell = matrix.createCell();
+            cell.setOnset(1000L * (100 - i));
+            cell.setOffset(1000L * (100 - i) + 500);
+            List<CellValue> values = ((MatrixCellValue) cell.getCellValue()).getArguments();
+            values.get(0).set(i % 2 == 0 ? "a" : "b");
+            values.get(1).set(String.valueOf(i));
+        }
+        return ds;
+    }
+
+    /**
+     * Checks that a loaded data store has the same content as the original one.
+     */
+    private void assertSameContent(final DataStore loaded, final DataStore ds) {
+        assertEquals(loaded.getAllVariables().size(), ds.getAllVariables().size());
+        Cell textCell = ds.getVariable("text").getCells().get(0);
+        Cell loadedText = loaded.getVariable("text").getCells().get(0);
+        assertEquals(loadedText.getOnset(), 60000);
+        assertEquals(loadedText.getOffset(), 120000);
+        assertEquals(loadedText.getCellValue().toString(), textCell.getCellValue().toString());
+
+        Variable loadedMatrix = loaded.getVariable("matrix");
+        assertTrue(loadedMatrix.isHidden());
+        assertEquals(loadedMatrix.getRootNode().childArguments.size(), 2);
+        List<Cell> cells = ds.getVariable("matrix").getCells();
+        List<Cell> loadedCells = loadedMatrix.getCells();
+        assertEquals(loadedCells.size(), cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            assertEquals(loadedCells.get(i).getOnset(), cells.get(i).getOnset());
+            assertEquals(loadedCells.get(i).getOffset(), cells.get(i).getOffset());
+            assertEquals(loadedCells.get(i).getCellValue().serialize(), cells.get(i).getCellValue().serialize());
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        DataStore ds = newDataStore();
+        DataStoreSnapshot snapshot = DataStoreSnapshot.of(ds);
+        assertTrue(SaveDataStoreFileController.canSaveAsColumnar(snapshot));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SaveDataStoreFileController().saveAsColumnar(out, snapshot);
+
+        DataStore loaded = new OpenDataStoreFileController().openAsColumnar(
+                new ByteArrayInputStream(out.toByteArray()));
+
+        assertSameContent(loaded, ds);
+    }
+
+    @Test
+    public void testVariableEntries() throws Exception {
+        DataStore ds = newDataStore();
+        for (int i = 0; i < 20; i++) {
+            ds.createVariable("empty" + i, Argument.Type.NOMINAL);
+        }
+        File archive = File.createTempFile("columns", ".opf");
+        try {
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+            new SaveController().writeVariableEntries(zos, DataStoreSnapshot.of(ds));
+            zos.close();
+
+            ZipFile zipFile = new ZipFile(archive);
+            DataStore loaded = new OpenDataStoreFileController().openAsColumnarEntries(zipFile);
+            zipFile.close();
+
+            assertSameContent(loaded, ds);
+            // Variables keep their order, whatever order they were decoded in.
+            for (int i = 0; i < 20; i++) {
+                assertEquals(loaded.getAllVariables().get(i + 2).getName(), "empty" + i);
+            }
+        } finally {
+            archive.delete();
+        }
+    }
+}
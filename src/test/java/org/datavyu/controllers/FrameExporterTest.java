@@ -0,0 +1,148 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * Tests for exporting a data store by frame.
+ */
+public class FrameExporterTest {
+
+    /**
+     * @return A data store with a text variable, a matrix variable and an empty variable.
+     */
+    private DataStore newDataStore() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable text = ds.createVariable("text", Argument.Type.TEXT);
+        Cell cell = text.createCell();
+        cell.setOnset(300);
+        cell.setOffset(350);
+        cell.getCellValue().set("say \"hi\"");
+        cell = text.createCell();
+        cell.setOnset(0);
+        cell.setOffset(150);
+        cell.getCellValue().set("x");
+
+        Variable matrix = ds.createVariable("matrix", Argument.Type.MATRIX);
+        matrix.addArgument(Argument.Type.NOMINAL);
+        cell = matrix.createCell();
+        cell.setOnset(150);
+        cell.setOffset(199);
+        cell.setMatrixValue(0, "a");
+        cell.setMatrixValue(1, "b");
+
+        ds.createVariable("empty", Argument.Type.NOMINAL);
+        return ds;
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        DataStore ds = newDataStore();
+        FrameExporter exporter = new FrameExporter(ds);
+        assertEquals(exporter.getNumFrames(10), 5);
+
+        StringWriter out = new StringWriter();
+        assertTrue(exporter.write(out, 10, null));
+        String[] rows = out.toString().split(System.lineSeparator());
+        assertEquals(rows.length, 6);
+
+        String matrixArguments = "";
+        for (Argument a : ds.getVariable("matrix").getRootNode().childArguments) {
+            matrixArguments += ",matrix." + a.name;
+        }
+        assertEquals(rows[0], "nFrame,time,text.ordinal,text.onset,text.offset,text.value,"
+                + "matrix.ordinal,matrix.onset,matrix.offset" + matrixArguments + ","
+                + "empty.ordinal,empty.onset,empty.offset,empty.value,");
+        assertEquals(rows[1], "1,0,1,0,150,\"x\",,,,,,,,,,");
+        assertEquals(rows[2], "2,100,1,0,150,\"x\",,,,,,,,,,");
+        // The matrix cell is shorter than a frame and ends before the next one, it is still exported.
+        assertEquals(rows[3], "3,200,,,,,1,150,199,\"a\",\"b\",,,,,");
+        assertEquals(rows[4], "4,300,2,300,350,\"say \"\"hi\"\"\",,,,,,,,,,");
+        assertEquals(rows[5], "5,400,,,,,,,,,,,,,,");
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Cell cell = ds.createVariable("text", Argument.Type.TEXT).createCell();
+        cell.setOnset(0);
+        cell.setOffset(3600000);
+        FrameExporter exporter = new FrameExporter(ds);
+
+        final long[] updates = new long[2];
+        StringWriter out = new StringWriter();
+        boolean completed = exporter.write(out, 30, new FrameExporter.Progress() {
+            @Override
+            public boolean update(final long frames, final long numFrames) {
+                updates[0] = frames;
+                updates[1] = numFrames;
+                return frames >= 2000;
+            }
+        });
+
+        assertFalse(completed);
+        assertEquals(updates[0], 2000);
+        assertEquals(updates[1], exporter.getNumFrames(30));
+        assertEquals(out.toString().split(System.lineSeparator()).length, 2001);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        Random random = new Random(42);
+        DataStore ds = DataStoreFactory.newDataStore();
+        for (int v = 0; v < 6; v++) {
+            Variable variable = ds.createVariable("v" + v, v % 2 == 0 ? Argument.Type.MATRIX : Argument.Type.TEXT);
+            if (v == 5) {
+                // An empty variable.
+                continue;
+            }
+            for (int i = 0; i < 200; i++) {
+                Cell cell = variable.createCell();
+                long onset = random.nextInt(600000);
+                // Some cells last for minutes and cover the shorter cells that start after them.
+                long duration = random.nextInt(10) == 0 ? random.nextInt(120000) : random.nextInt(100);
+                cell.setOnset(onset);
+                cell.setOffset(onset + duration);
+                cell.getCellValue().set(v % 2 == 0 ? "(a" + i + ",b)" : "c" + i);
+            }
+        }
+        FrameExporter exporter = new FrameExporter(ds);
+
+        for (double frameRate : new double[]{30, 29.97, 60}) {
+            StringWriter sequential = new StringWriter();
+            assertTrue(exporter.write(sequential, frameRate, null));
+            StringWriter parallel = new StringWriter();
+            assertTrue(exporter.writeParallel(parallel, frameRate, null));
+            assertEquals(parallel.toString(), sequential.toString());
+        }
+
+        StringWriter cancelled = new StringWriter();
+        assertFalse(exporter.writeParallel(cancelled, 30, new FrameExporter.Progress() {
+            @Override
+            public boolean update(final long frames, final long numFrames) {
+                return true;
+            }
+        }));
+    }
+}
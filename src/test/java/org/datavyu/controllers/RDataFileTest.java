@@ -0,0 +1,241 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests for handing a data store to R and back.
+ */
+public class RDataFileTest {
+
+    /**
+     * @return A data store with a matrix variable and a text variable.
+     */
+    private DataStore newDataStore() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable trial = ds.createVariable("Trial", Argument.Type.MATRIX);
+        trial.addArgument(Argument.Type.NOMINAL);
+        Cell cell = trial.createCell();
+        cell.setOnset(2000);
+        cell.setOffset(2500);
+        cell.setMatrixValue(0, "b");
+        cell = trial.createCell();
+        cell.setOnset(1000);
+        cell.setOffset(1500);
+        cell.setMatrixValue(0, "a");
+        cell.setMatrixValue(1, "01");
+
+        cell = ds.createVariable("note", Argument.Type.TEXT).createCell();
+        cell.setOnset(10);
+        cell.setOffset(20);
+        cell.getCellValue().set("hello, world");
+        return ds;
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        DataStore ds = newDataStore();
+        File dataFile = File.createTempFile("datavyu", ".rdata");
+        try {
+            String code = RDataFile.write(ds, dataFile);
+            assertTrue(code.contains("db[[\"Trial\"]] <- .dv_frame(.dv_con, 2L, c(\"code01\", \"code02\"))\n"));
+            assertTrue(code.contains("db[[\"note\"]] <- .dv_frame(.dv_con, 1L, c(\"arg\"))\n"));
+
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(dataFile.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+            for (Variable variable : ds.getAllVariables()) {
+                if (variable.getName().equals("Trial")) {
+                    assertEquals(in.getDouble(), 1000.0);
+                    assertEquals(in.getDouble(), 2000.0);
+                    assertEquals(in.getDouble(), 1500.0);
+                    assertEquals(in.getDouble(), 2500.0);
+                    assertEquals(readStrings(in, 4), "a|b|01||");
+                } else {
+                    assertEquals(in.getDouble(), 10.0);
+                    assertEquals(in.getDouble(), 20.0);
+                    assertEquals(readStrings(in, 1), "hello, world|");
+                }
+            }
+            assertEquals(in.remaining(), 0);
+        } finally {
+            dataFile.delete();
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        DataStore ds = newDataStore();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // The first cell gets a new offset and its second code is left alone, the second cell is kept and a new cell
+        // is added.
+        writeStrings(out, "Trial", "code01", "code02", "");
+        writeInt(out, 3);
+        writeDoubles(out, 1, 2, Double.NaN, 1000, 2000, 3000, 1800, 2500, 3500);
+        writeStrings(out, "\u0001", "b", "c", "", "", "z");
+        // A new variable.
+        writeStrings(out, "new", "x", "");
+        writeInt(out, 1);
+        writeDoubles(out, Double.NaN, 5, 6);
+        writeStrings(out, "y");
+
+        File backFile = File.createTempFile("datavyu", ".rdata");
+        try {
+            Files.write(backFile.toPath(), out.toByteArray());
+            assertEquals(RDataFile.read(backFile, ds), 2);
+        } finally {
+            backFile.delete();
+        }
+
+        Variable trial = ds.getVariable("Trial");
+        assertEquals(trial.getCells().size(), 3);
+        Cell first = trial.getCellTemporally(0);
+        assertEquals(first.getOffset(), 1800);
+        MatrixCellValue value = (MatrixCellValue) first.getCellValue();
+        assertEquals(value.getArgumentValue(0).toString(), "a");
+        assertEquals(value.getArgumentValue(1).toString(), "01");
+        Cell added = trial.getCellTemporally(2);
+        assertEquals(added.getOnset(), 3000);
+        assertEquals(((MatrixCellValue) added.getCellValue()).getArgumentValue(0).toString(), "c");
+        assertEquals(((MatrixCellValue) added.getCellValue()).getArgumentValue(1).toString(), "z");
+
+        Variable created = ds.getVariable("new");
+        assertNotNull(created);
+        assertEquals(created.getRootNode().childArguments.get(0).name, "x");
+        assertEquals(created.getCells().size(), 1);
+        assertEquals(created.getCells().get(0).getOnset(), 5);
+        assertEquals(((MatrixCellValue) created.getCells().get(0).getCellValue()).getArgumentValue(0).toString(), "y");
+    }
+
+    @Test
+    public void testReadMissingRows() throws Exception {
+        DataStore ds = newDataStore();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // The script filtered out the first row and copied the second one.
+        writeStrings(out, "Trial", "code01", "code02", "");
+        writeInt(out, 2);
+        writeDoubles(out, 2, 2, 2000, 4000, 2500, 4500);
+        writeStrings(out, "b", "b", "", "");
+
+        File backFile = File.createTempFile("datavyu", ".rdata");
+        try {
+            Files.write(backFile.toPath(), out.toByteArray());
+            assertEquals(RDataFile.read(backFile, ds), 1);
+        } finally {
+            backFile.delete();
+        }
+
+        // The cell without a row is kept as it was.
+        Variable trial = ds.getVariable("Trial");
+        assertEquals(trial.getCells().size(), 3);
+        assertEquals(trial.getCellTemporally(0).getOnset(), 1000);
+        assertEquals(((MatrixCellValue) trial.getCellTemporally(0).getCellValue()).getArgumentValue(0).toString(),
+                "a");
+        assertEquals(trial.getCellTemporally(1).getOnset(), 2000);
+        assertEquals(trial.getCellTemporally(2).getOnset(), 4000);
+        assertEquals(((MatrixCellValue) trial.getCellTemporally(2).getCellValue()).getArgumentValue(0).toString(),
+                "b");
+    }
+
+    @Test
+    public void testNamesMatchExactly() throws Exception {
+        DataStore ds = newDataStore();
+        Cell cell = ds.createVariable("trial", Argument.Type.TEXT).createCell();
+        cell.getCellValue().set("lower");
+        File dataFile = File.createTempFile("datavyu", ".rdata");
+        try {
+            String code = RDataFile.write(ds, dataFile);
+            assertTrue(code.contains("db[[\"trial\"]] <- .dv_frame(.dv_con, 1L, c(\"arg\"))\n"));
+        } finally {
+            dataFile.delete();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeStrings(out, "trial", "arg", "");
+        writeInt(out, 1);
+        writeDoubles(out, 1, 0, 0);
+        writeStrings(out, "changed");
+        File backFile = File.createTempFile("datavyu", ".rdata");
+        try {
+            Files.write(backFile.toPath(), out.toByteArray());
+            assertEquals(RDataFile.read(backFile, ds), 1);
+        } finally {
+            backFile.delete();
+        }
+
+        assertEquals(ds.getVariable("trial").getCells().get(0).getCellValue().toString(), "changed");
+        assertEquals(ds.getVariable("Trial").getCells().size(), 2);
+        assertEquals(((MatrixCellValue) ds.getVariable("Trial").getCellTemporally(0).getCellValue())
+                .getArgumentValue(0).toString(), "a");
+    }
+
+    @Test
+    public void testWriteBackOnlySetColumns() {
+        String code = RDataFile.getWriteBackCode(new File("back.rdata"));
+        // Data frames handed to R are only written back if the script passed them to set_column.
+        assertTrue(code.contains("!(.dv_name %in% .dv_save)"));
+    }
+
+    @Test
+    public void testQuote() {
+        assertEquals(RDataFile.quote("C:\\data\\\"x\".rdata"), "\"C:\\\\data\\\\\\\"x\\\".rdata\"");
+    }
+
+    private static String readStrings(final ByteBuffer in, final int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            int start = in.position();
+            while (in.get() != 0) {
+                // Up to the NUL.
+            }
+            sb.append(new String(in.array(), start, in.position() - start - 1, StandardCharsets.UTF_8)).append('|');
+        }
+        return sb.toString();
+    }
+
+    private static void writeStrings(final ByteArrayOutputStream out, final String... strings) throws IOException {
+        for (String s : strings) {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+        }
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final int i) {
+        byte[] bytes = new byte[4];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(i);
+        out.write(bytes, 0, 4);
+    }
+
+    private static void writeDoubles(final ByteArrayOutputStream out, final double... values) {
+        byte[] bytes = new byte[8 * values.length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (double d : values) {
+            buffer.putDouble(d);
+        }
+        out.write(bytes, 0, bytes.length);
+    }
+}
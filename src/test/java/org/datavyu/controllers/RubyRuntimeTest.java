@@ -0,0 +1,105 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.controllers;
+
+import static org.testng.Assert.assertEquals;
+
+import org.datavyu.models.db.DataStoreFactory;
+import org.datavyu.models.project.Project;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests for the Ruby runtime kept between script runs.
+ */
+public class RubyRuntimeTest {
+
+    private File scriptFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        scriptFile = File.createTempFile("script", ".rb");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        scriptFile.delete();
+    }
+
+    /**
+     * Writes the script.
+     *
+     * @param source The source of the script.
+     * @param lastModified The time the file was last modified in milliseconds.
+     */
+    private void write(final String source, final long lastModified) throws IOException {
+        Files.write(scriptFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        scriptFile.setLastModified(lastModified);
+    }
+
+    /**
+     * Runs the script on the shared runtime.
+     *
+     * @return The output of the script.
+     */
+    private String run() throws IOException {
+        StringWriter writer = new StringWriter();
+        RubyRuntime.getShared().runScript(scriptFile, DataStoreFactory.newDataStore(), new Project(), writer,
+                writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testLocalVariablesDoNotLeak() throws IOException {
+        write("puts defined?(x).inspect\nx = 1\n", System.currentTimeMillis());
+        assertEquals(run(), "nil\n");
+        // The parsed script runs again, without the variable of the last run.
+        assertEquals(run(), "nil\n");
+    }
+
+    @Test
+    public void testParsedAgainWhenFileChanges() throws IOException {
+        long lastModified = System.currentTimeMillis() - 60000;
+        write("puts 1\n", lastModified);
+        assertEquals(run(), "1\n");
+
+        // A change of length is noticed even if the file has the same time.
+        write("puts 22\n", lastModified);
+        assertEquals(run(), "22\n");
+
+        // So is a change of time with the same length.
+        write("puts 33\n", lastModified + 10000);
+        assertEquals(run(), "33\n");
+    }
+
+    @Test
+    public void testWrapInBlock() {
+        assertEquals(RubyRuntime.wrapInBlock("x = 1\nputs x\n"), "lambda do\nx = 1\nputs x\n\nend.call\n");
+    }
+
+    @Test
+    public void testWrapInBlockBeforeData() {
+        assertEquals(RubyRuntime.wrapInBlock("puts 1\n__END__\ndata\n"),
+                "lambda do\nputs 1\nend.call\n\n__END__\ndata\n");
+        assertEquals(RubyRuntime.wrapInBlock("__END__\ndata\n"), "lambda do\n\nend.call\n__END__\ndata\n");
+    }
+}
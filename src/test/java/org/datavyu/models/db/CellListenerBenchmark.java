@@ -0,0 +1,106 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures shifting the onset of every cell of a variable, as done when moving a block of cells in time, with and
+ * without a listener on each cell. The benchmark only uses the {@link Cell} interface, so it can be run against older
+ * revisions for comparison.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.datavyu.models.db.CellListenerBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CellListenerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int numCells;
+
+    /** True if every cell has a listener, like the cells shown in the spreadsheet */
+    @Param({"false", "true"})
+    public boolean listened;
+
+    private List<Cell> cells;
+
+    private long shift = 1;
+
+    /** Counts the notifications, so they are not optimized away */
+    private long notifications;
+
+    @Setup(Level.Trial)
+    public void setUp() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable var = ds.createVariable("benchmark", Argument.Type.TEXT);
+        CellListener listener = new CellListener() {
+            @Override
+            public void offsetChanged(final long newOffset) {
+                notifications++;
+            }
+
+            @Override
+            public void onsetChanged(final long newOnset) {
+                notifications++;
+            }
+
+            @Override
+            public void highlightingChange(final boolean isHighlighted) {
+            }
+
+            @Override
+            public void selectionChange(final boolean isSelected) {
+            }
+
+            @Override
+            public void valueChange(final CellValue newCellValue) {
+            }
+        };
+        for (int i = 0; i < numCells; i++) {
+            Cell cell = var.createCell();
+            cell.setOnset(i * 1000L);
+            cell.setOffset(i * 1000L + 500);
+            if (listened) {
+                cell.addListener(listener);
+            }
+        }
+        cells = var.getCells();
+    }
+
+    @Benchmark
+    public long shiftOnsets() {
+        // Shift back and forth so the onsets stay put from one iteration to the next.
+        shift = -shift;
+        for (Cell cell : cells) {
+            cell.setOnset(cell.getOnset() + shift);
+        }
+        return notifications;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CellListenerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
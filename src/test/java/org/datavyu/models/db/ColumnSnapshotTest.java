@@ -0,0 +1,137 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+
+/**
+ * Tests for reading and writing the cells of a variable in one call.
+ */
+public class ColumnSnapshotTest {
+
+    /** The variable we are testing with */
+    private Variable variable;
+
+    /** The cells inserted into the variable, as seen by a listener */
+    private List<Cell> inserted;
+
+    /** The onset and value of the inserted cells at the time they were inserted */
+    private List<String> insertedContent;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        variable = ds.createVariable("test", Argument.Type.MATRIX);
+        variable.addArgument(Argument.Type.NOMINAL);
+        inserted = new ArrayList<Cell>();
+        insertedContent = new ArrayList<String>();
+        variable.addListener(new VariableListener() {
+            @Override
+            public void nameChanged(final String newName) {}
+
+            @Override
+            public void visibilityChanged(final boolean isHidden) {}
+
+            @Override
+            public void cellInserted(final Cell newCell) {
+                inserted.add(newCell);
+                insertedContent.add(newCell.getOnset() + " " + newCell.getCellValue().toString());
+            }
+
+            @Override
+            public void cellRemoved(final Cell deletedCell) {}
+        });
+    }
+
+    @Test
+    public void testOf() {
+        Cell second = variable.createDetachedCell();
+        second.setOnset(2000);
+        second.setOffset(2500);
+        second.setMatrixValue(0, "b");
+        Cell first = variable.createDetachedCell();
+        first.setOnset(1000);
+        first.setOffset(1500);
+        first.setMatrixValue(1, "x");
+        List<Cell> cells = new ArrayList<Cell>();
+        cells.add(second);
+        cells.add(first);
+        variable.addCells(cells);
+        inserted.clear();
+
+        ColumnSnapshot snapshot = ColumnSnapshot.of(variable);
+        assertEquals(snapshot.size(), 2);
+        assertSame(snapshot.getCells()[0], first);
+        assertSame(snapshot.getCells()[1], second);
+        assertEquals(snapshot.getOnsets()[0], 1000);
+        assertEquals(snapshot.getOffsets()[0], 1500);
+        assertEquals(snapshot.getOnsets()[1], 2000);
+        assertEquals(snapshot.getOffsets()[1], 2500);
+        assertEquals(snapshot.getValues()[0], new String[]{"", "x"});
+        assertEquals(snapshot.getValues()[1], new String[]{"b", ""});
+    }
+
+    @Test
+    public void testApply() {
+        Cell existing = variable.createDetachedCell();
+        existing.setOnset(1000);
+        existing.setOffset(1500);
+        existing.setMatrixValue(0, "a");
+        List<Cell> cells = new ArrayList<Cell>();
+        cells.add(existing);
+        variable.addCells(cells);
+        inserted.clear();
+        insertedContent.clear();
+
+        String[] codeNames = new String[]{"code02", "code01", "missing"};
+        Cell[] written = ColumnSnapshot.apply(variable, new Cell[]{existing, null},
+                new long[]{1000, 3000}, new long[]{1800, 3500}, codeNames,
+                new String[][]{{"y", "", "q"}, {"z", "c", null}});
+
+        assertSame(written[0], existing);
+        assertEquals(existing.getOffset(), 1800);
+        MatrixCellValue value = (MatrixCellValue) existing.getCellValue();
+        // An empty value leaves the argument unchanged.
+        assertEquals(value.getArgumentValue(0).toString(), "a");
+        assertEquals(value.getArgumentValue(1).toString(), "y");
+
+        assertNotNull(written[1]);
+        assertEquals(inserted.size(), 1);
+        assertSame(inserted.get(0), written[1]);
+        // The new cell is complete by the time it is inserted.
+        assertEquals(insertedContent.get(0), "3000 " + written[1].getCellValue().toString());
+        assertEquals(variable.getCells().size(), 2);
+        assertEquals(written[1].getOffset(), 3500);
+        assertEquals(((MatrixCellValue) written[1].getCellValue()).getArgumentValue(0).toString(), "c");
+    }
+
+    @Test
+    public void testApplyText() throws UserWarningException {
+        Variable text = variable.getOwningDatastore().createVariable("text", Argument.Type.TEXT);
+        Cell[] written = ColumnSnapshot.apply(text, new Cell[]{null}, new long[]{0}, new long[]{10},
+                new String[]{"var"}, new String[][]{{"hello"}});
+        assertEquals(text.getCells().size(), 1);
+        assertEquals(written[0].getCellValue().toString(), "hello");
+        assertEquals(ColumnSnapshot.of(text).getValues()[0], new String[]{"hello"});
+    }
+}
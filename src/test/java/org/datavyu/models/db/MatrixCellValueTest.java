@@ -156,5 +156,39 @@ public class MatrixCellValueTest {
         assertTrue(cell.getMatrixValue(0).isEmpty());
     }
 
+    @Test
+    public void testSharedCodes() {
+        Cell other = var.createCell();
+        cell.setMatrixValue(0, new String("code"));
+        other.setMatrixValue(0, new String("code"));
+
+        // Cells of a variable share a single copy of repeated codes.
+        assertTrue(cell.getMatrixValue(0).toString() == other.getMatrixValue(0).toString());
+        assertFalse(cell.getCellId().equals(other.getCellId()));
+    }
+
+    @Test
+    public void testArgumentOrder() {
+        var.addArgument(Argument.Type.TEXT);
+        var.addArgument(Argument.Type.NOMINAL);
+        var.addArgument(Argument.Type.TEXT);
+        cell.setMatrixValue(0, "a");
+        cell.setMatrixValue(1, "b");
+        cell.setMatrixValue(2, "c");
+        cell.setMatrixValue(3, "d");
+
+        var.moveArgument("code04", 0);
+        var.removeArgument("code02");
+
+        // The arguments stay in index order, whichever argument types were moved or removed.
+        MatrixCellValue value = (MatrixCellValue) cell.getCellValue();
+        assertEquals(value.getNumArguments(), 3);
+        for (int i = 0; i < value.getNumArguments(); i++) {
+            assertEquals(((DatavyuCellValue) value.getArgumentValue(i)).getIndex(), i);
+            assertTrue(value.getArguments().get(i) == value.getArgumentValue(i));
+        }
+        assertEquals(value.toString(), "(d,a,c)");
+    }
+
 
 }
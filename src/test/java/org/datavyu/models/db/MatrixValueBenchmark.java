@@ -0,0 +1,84 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.models.db;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the values of matrix cells with 10 codes, the way they are read when exporting or painting the
+ * spreadsheet. The benchmark only uses the {@link Cell} interface, so it can be run against older revisions for
+ * comparison.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.datavyu.models.db.MatrixValueBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MatrixValueBenchmark {
+
+    private static final int NUM_CODES = 10;
+
+    private static final int NUM_CELLS = 10000;
+
+    private List<Cell> cells;
+
+    @Setup(Level.Trial)
+    public void setUp() throws UserWarningException {
+        DataStore ds = DataStoreFactory.newDataStore();
+        Variable var = ds.createVariable("benchmark", Argument.Type.MATRIX);
+        for (int k = 1; k < NUM_CODES; k++) {
+            var.addArgument(Argument.Type.NOMINAL);
+        }
+        for (int i = 0; i < NUM_CELLS; i++) {
+            Cell cell = var.createCell();
+            cell.setOnset(i * 1000L);
+            for (int k = 0; k < NUM_CODES; k++) {
+                cell.setMatrixValue(k, "v" + (i + k) % 7);
+            }
+        }
+        cells = var.getCells();
+    }
+
+    @Benchmark
+    public void serialize(final Blackhole blackhole) {
+        for (Cell cell : cells) {
+            blackhole.consume(cell.getCellValue().serialize());
+        }
+    }
+
+    @Benchmark
+    public void getMatrixValue(final Blackhole blackhole) {
+        for (Cell cell : cells) {
+            for (int k = 0; k < NUM_CODES; k++) {
+                blackhole.consume(cell.getMatrixValue(k));
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MatrixValueBenchmark.class.getSimpleName()).build()).run();
+    }
+}
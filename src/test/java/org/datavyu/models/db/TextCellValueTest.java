@@ -73,5 +73,14 @@ public class TextCellValueTest {
         assertTrue(model.isEmpty());
     }
 
+    @Test
+    public void testClearMarksChanged() {
+        model.set("test");
+        ds.markAsUnchanged();
+
+        model.clear();
+        assertTrue(ds.isChanged());
+    }
+
 
 }
@@ -20,6 +20,7 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.datavyu.Datavyu;
 import org.datavyu.controllers.project.ProjectController;
@@ -129,6 +130,26 @@ public class VariableTest {
         verify(modelListener, times(0)).cellRemoved(null);
     }
 
+    @Test
+    public void testAddCells() {
+        List<Cell> cells = new ArrayList<Cell>();
+        for (int i = 0; i < 3; i++) {
+            Cell c = model.createDetachedCell();
+            c.setOnset(3 - i);
+            cells.add(c);
+        }
+        ds.markAsUnchanged();
+        assertFalse(model.contains(cells.get(0)));
+
+        model.addCells(cells);
+        assertTrue(ds.isChanged());
+        assertEquals(model.getCells(), cells);
+        assertEquals(model.getCellTemporally(0), cells.get(2));
+        for (Cell c : cells) {
+            verify(modelListener).cellInserted(c);
+        }
+    }
+
     @Test
     public void testRemoveCell() {
         Cell c = model.createCell();
@@ -147,6 +168,28 @@ public class VariableTest {
         verify(modelListener, times(0)).visibilityChanged(true);
     }
 
+    @Test
+    public void testRemoveCells() {
+        List<Cell> cells = new ArrayList<Cell>();
+        for (int i = 0; i < 4; i++) {
+            cells.add(model.createCell());
+        }
+        ds.markAsUnchanged();
+
+        List<Cell> removed = new ArrayList<Cell>();
+        removed.add(cells.get(2));
+        removed.add(cells.get(0));
+        model.removeCells(removed);
+        assertTrue(ds.isChanged());
+        assertEquals(model.getCells().size(), 2);
+        assertEquals(model.getCells().get(0), cells.get(1));
+        assertEquals(model.getCells().get(1), cells.get(3));
+        assertEquals(model.getCellsTemporally().size(), 2);
+        verify(modelListener).cellRemoved(cells.get(0));
+        verify(modelListener).cellRemoved(cells.get(2));
+        verify(modelListener, times(0)).cellRemoved(cells.get(1));
+    }
+
     @Test
     public void testRemoveCell2() {
         Cell c = model.createCell();
@@ -184,6 +227,62 @@ public class VariableTest {
         assertEquals(model.getCellTemporally(0), c2);
     }
 
+    @Test
+    public void testCellsAtMatchesTimeWindowScan() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Cell c = model.createCell();
+            long onset = random.nextInt(10000);
+            c.setOnset(onset);
+            // Some cells deliberately end before they start and can never be in their time window.
+            c.setOffset(onset + random.nextInt(600) - 100);
+        }
+
+        for (long time = -50; time < 10700; time += 7) {
+            List<Cell> expected = new ArrayList<Cell>();
+            for (Cell c : model.getCellsTemporally()) {
+                if (c.isInTimeWindow(time)) {
+                    expected.add(c);
+                }
+            }
+            assertEquals(model.getCellsAt(time), expected);
+        }
+
+        for (long start = 0; start < 10500; start += 250) {
+            long end = start + 400;
+            List<Cell> expected = new ArrayList<Cell>();
+            for (Cell c : model.getCellsTemporally()) {
+                if (c.getOnset() <= c.getOffset() && c.getOnset() <= end && c.getOffset() >= start) {
+                    expected.add(c);
+                }
+            }
+            assertEquals(model.getCellsOverlapping(start, end), expected);
+        }
+    }
+
+    @Test
+    public void testCellsAtAfterTimeChange() {
+        Cell c1 = model.createCell();
+        Cell c2 = model.createCell();
+        c1.setOnset(100);
+        c1.setOffset(200);
+        c2.setOnset(150);
+        c2.setOffset(300);
+
+        List<Cell> both = new ArrayList<Cell>();
+        both.add(c1);
+        both.add(c2);
+        assertEquals(model.getCellsAt(175), both);
+
+        c1.setOffset(160);
+        assertEquals(model.getCellsAt(175).size(), 1);
+        assertEquals(model.getCellsAt(175).get(0), c2);
+
+        model.removeCell(c2);
+        assertEquals(model.getCellsAt(175).size(), 0);
+        assertEquals(model.getCellsAt(155).get(0), c1);
+    }
+
     @Test(expectedExceptions = UserWarningException.class)
     public void uniqueVariableNames() throws UserWarningException {
         ds.createVariable("test", Argument.Type.TEXT);
@@ -0,0 +1,133 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.plugins;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for the index of the plugins in jar files.
+ */
+public class PluginIndexTest {
+
+    /** Directory holding the jars and the index */
+    private File directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("plugins").toFile();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Writes a jar with a single entry.
+     */
+    private File writeJar(final String name, final String entryName, final String content) throws IOException {
+        File jar = new File(directory, name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(entryName));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    @Test
+    public void testReadServiceFile() throws IOException {
+        String content = "# Plugins\n  org.example.APlugin  \n\norg.example.BPlugin # the other one\n";
+        List<String> classNames = PluginIndex.readServiceFile(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(classNames, Arrays.asList("org.example.APlugin", "org.example.BPlugin"));
+    }
+
+    @Test
+    public void testServiceFileInJar() throws IOException {
+        File jar = writeJar("a.jar", PluginIndex.SERVICE_FILE, "org.example.APlugin\n");
+        PluginIndex index = new PluginIndex(new File(directory, "plugins.index"));
+        assertEquals(index.getPluginClasses(jar, getClass().getClassLoader()),
+                Collections.singletonList("org.example.APlugin"));
+    }
+
+    @Test
+    public void testJarWithoutPlugins() throws IOException {
+        File jar = writeJar("b.jar", "java/lang/String.class", "");
+        PluginIndex index = new PluginIndex(new File(directory, "plugins.index"));
+        assertTrue(index.getPluginClasses(jar, getClass().getClassLoader()).isEmpty());
+    }
+
+    @Test
+    public void testIndexIsKept() throws IOException {
+        File indexFile = new File(directory, "plugins.index");
+        File jar = writeJar("a.jar", PluginIndex.SERVICE_FILE, "org.example.APlugin\n");
+        long lastModified = jar.lastModified();
+        PluginIndex index = new PluginIndex(indexFile);
+        index.getPluginClasses(jar, getClass().getClassLoader());
+        index.save();
+        assertTrue(indexFile.exists());
+
+        // Same time and length: the jar is not read again.
+        writeJar("a.jar", PluginIndex.SERVICE_FILE, "org.example.BPlugin\n");
+        assertTrue(jar.setLastModified(lastModified));
+        index = new PluginIndex(indexFile);
+        assertEquals(index.getPluginClasses(jar, getClass().getClassLoader()),
+                Collections.singletonList("org.example.APlugin"));
+
+        // A changed jar is read again.
+        assertTrue(jar.setLastModified(lastModified - 10000));
+        assertEquals(index.getPluginClasses(jar, getClass().getClassLoader()),
+                Collections.singletonList("org.example.BPlugin"));
+    }
+
+    @Test
+    public void testDatavyuServiceFile() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/" + PluginIndex.SERVICE_FILE)) {
+            assertNotNull(in);
+            List<String> classNames = PluginIndex.readServiceFile(in);
+            assertFalse(classNames.isEmpty());
+            for (String className : classNames) {
+                Class<?> pluginClass = Class.forName(className, false, getClass().getClassLoader());
+                assertTrue(Plugin.class.isAssignableFrom(pluginClass));
+                assertEquals(pluginClass.getModifiers() & Modifier.ABSTRACT, 0);
+            }
+        }
+    }
+}
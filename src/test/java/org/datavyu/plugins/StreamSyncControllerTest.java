@@ -0,0 +1,117 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.plugins;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for keeping a stream in sync with the clock.
+ */
+public class StreamSyncControllerTest {
+
+    /**
+     * Measures the same drift as many times as the drift is averaged over.
+     */
+    private static void measure(final StreamSyncController controller, final double streamTime,
+                                final double targetTime) {
+        for (int i = 0; i < StreamSyncController.SMOOTHING; i++) {
+            assertFalse(controller.measure(streamTime, targetTime));
+        }
+    }
+
+    @Test
+    public void testSmallDriftKeepsRate() {
+        StreamSyncController controller = new StreamSyncController();
+        measure(controller, 10050, 10000);
+        assertEquals(controller.getRate(1F), 1F);
+        measure(controller, 9950, 10000);
+        assertEquals(controller.getRate(2F), 2F);
+    }
+
+    @Test
+    public void testToleranceFollowsFrameRate() {
+        StreamSyncController controller = new StreamSyncController();
+        // A frame at 15 fps is 67 ms long, the time of the frame on screen is off by up to that.
+        controller.setFramesPerSecond(15F);
+        measure(controller, 10080, 10000);
+        assertEquals(controller.getRate(1F), 1F);
+        // At 60 fps the same drift is several frames.
+        controller.setFramesPerSecond(60F);
+        assertEquals(controller.getRate(1F), 0.92F, 1e-6);
+    }
+
+    @Test
+    public void testDriftIsSmoothed() {
+        StreamSyncController controller = new StreamSyncController();
+        controller.setFramesPerSecond(30F);
+        // A single late tick doesn't change the rate.
+        assertFalse(controller.measure(10000, 10000));
+        assertEquals(controller.getRate(1F), 1F);
+        measure(controller, 10000, 10000);
+        assertFalse(controller.measure(10200, 10000));
+        assertEquals(controller.getRate(1F), 1F);
+        // Drifts that go back and forth don't either.
+        measure(controller, 10000, 10000);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(controller.measure(i % 2 == 0 ? 10070 : 9930, 10000));
+            assertEquals(controller.getRate(1F), 1F);
+        }
+    }
+
+    @Test
+    public void testDriftChangesRate() {
+        StreamSyncController controller = new StreamSyncController();
+        // Ahead by 100 ms: slower
+        measure(controller, 10100, 10000);
+        assertEquals(controller.getRate(1F), 0.9F, 1e-6);
+        // Behind by 80 ms: faster
+        measure(controller, 9920, 10000);
+        assertEquals(controller.getRate(1F), 1.08F, 1e-6);
+        assertEquals(controller.getRate(0.5F), 0.54F, 1e-6);
+        // The change is limited
+        measure(controller, 9600, 10000);
+        assertEquals(controller.getRate(1F), 1.1F, 1e-6);
+    }
+
+    @Test
+    public void testLargeDriftSeeks() {
+        StreamSyncController controller = new StreamSyncController();
+        assertTrue(controller.measure(12000, 10000));
+        // Back in sync after the seek
+        assertEquals(controller.getRate(1F), 1F);
+        assertTrue(controller.measure(9000, 10000));
+        assertEquals(controller.getSeekCount(), 2);
+    }
+
+    @Test
+    public void testStatistics() {
+        StreamSyncController controller = new StreamSyncController();
+        assertEquals(controller.getMeanDrift(), 0.0);
+        controller.measure(1010, 1000);
+        controller.measure(970, 1000);
+        controller.measure(3000, 1000);
+        assertEquals(controller.getCount(), 3);
+        assertEquals(controller.getMeanDrift(), 680.0, 1e-9);
+        assertEquals(controller.getMaxDrift(), 2000.0);
+        assertEquals(controller.getSeekCount(), 1);
+
+        controller.reset();
+        assertEquals(controller.getCount(), 0);
+        assertEquals(controller.getMaxDrift(), 0.0);
+        assertEquals(controller.getSeekCount(), 0);
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.undoableedits;
+
+import org.datavyu.models.db.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.*;
+
+/**
+ * Tests for reverting the changes recorded on a data store.
+ */
+public class DataStoreChangesTest {
+
+    /** The data store the changes are made to */
+    private DataStore ds;
+
+    /** A matrix variable with two cells */
+    private Variable trial;
+
+    /** A text variable with a cell */
+    private Variable note;
+
+    @BeforeMethod
+    public void setUp() throws UserWarningException {
+        ds = DataStoreFactory.newDataStore();
+        trial = ds.createVariable("trial", Argument.Type.MATRIX);
+        trial.addArgument(Argument.Type.NOMINAL);
+        for (int i = 0; i < 2; i++) {
+            Cell cell = trial.createCell();
+            cell.setOnset(1000 * i);
+            cell.setOffset(1000 * i + 500);
+            cell.setMatrixValue(0, "a" + i);
+        }
+        note = ds.createVariable("note", Argument.Type.TEXT);
+        Cell cell = note.createCell();
+        cell.getCellValue().set("hello");
+    }
+
+    /**
+     * @return The content of the data store: every variable with its arguments and cells.
+     */
+    private String describe() {
+        StringBuilder sb = new StringBuilder();
+        List<Variable> variables = new ArrayList<Variable>(ds.getAllVariables());
+        variables.sort((a, b) -> a.getName().compareTo(b.getName()));
+        for (Variable variable : variables) {
+            sb.append(variable.getName());
+            for (Argument argument : variable.getRootNode().childArguments) {
+                sb.append(' ').append(argument.name);
+            }
+            sb.append(':');
+            for (Cell cell : variable.getCellsTemporally()) {
+                sb.append(' ').append(cell.getOnset()).append('-').append(cell.getOffset())
+                        .append(cell.getCellValue().toString());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records changes, then checks that undoing and redoing them goes back and forth between the two states.
+     */
+    private void checkRevert(final Runnable script) {
+        String before = describe();
+        DataStoreChanges changes = new DataStoreChanges(ds);
+        changes.start();
+        script.run();
+        changes.stop();
+        String after = describe();
+        assertNotEquals(after, before);
+
+        changes = changes.revert();
+        assertEquals(describe(), before);
+        changes = changes.revert();
+        assertEquals(describe(), after);
+        changes = changes.revert();
+        assertEquals(describe(), before);
+    }
+
+    @Test
+    public void testCellChanges() {
+        checkRevert(() -> {
+            Cell first = trial.getCellTemporally(0);
+            first.setOnset(200);
+            first.setOnset(300);
+            first.setMatrixValue(1, "x");
+            first.setMatrixValue(0, "");
+            note.getCellTemporally(0).getCellValue().set("bye");
+        });
+    }
+
+    @Test
+    public void testAddedAndRemovedCells() {
+        checkRevert(() -> {
+            trial.removeCell(trial.getCellTemporally(1));
+            Cell added = trial.createCell();
+            added.setOnset(5000);
+            added.setMatrixValue(0, "new");
+
+            List<Cell> detached = new ArrayList<Cell>();
+            Cell cell = note.createDetachedCell();
+            cell.setOnset(7000);
+            cell.getCellValue().set("detached");
+            detached.add(cell);
+            note.addCells(detached);
+        });
+    }
+
+    @Test
+    public void testVariables() {
+        checkRevert(() -> {
+            try {
+                ds.removeVariable(note);
+                trial.setName("note");
+                ds.createVariable("trial", Argument.Type.TEXT).createCell().getCellValue().set("new");
+            } catch (UserWarningException e) {
+                fail(e.getMessage());
+            }
+        });
+    }
+
+    @Test
+    public void testArguments() {
+        checkRevert(() -> {
+            trial.getCellTemporally(0).setOnset(100);
+            trial.createCell().setMatrixValue(0, "c");
+            trial.removeArgument("code01");
+            trial.addArgument(Argument.Type.NOMINAL).name = "added";
+            trial.getCellTemporally(1).setMatrixValue(1, "b");
+        });
+    }
+
+    @Test
+    public void testClearedCodes() {
+        checkRevert(() -> {
+            trial.getCellTemporally(0).getMatrixValue(0).clear();
+            note.getCellTemporally(0).getCellValue().clear();
+        });
+    }
+
+    @Test
+    public void testVariableOrder() throws UserWarningException {
+        Variable exempt = ds.createVariable("1st", Argument.Type.MATRIX, true);
+        trial.setOrderIndex(0);
+        exempt.setOrderIndex(1);
+        note.setOrderIndex(2);
+
+        DataStoreChanges changes = new DataStoreChanges(ds);
+        changes.start();
+        ds.removeVariable(trial);
+        exempt.addArgument(Argument.Type.NOMINAL);
+        changes.stop();
+
+        changes = changes.revert();
+        assertEquals(names(), "trial 1st note");
+        assertEquals(ds.getVariable("1st").getRootNode().childArguments.size(), 1);
+        changes.revert();
+        assertEquals(names(), "1st note");
+    }
+
+    /**
+     * @return The names of the variables in their order.
+     */
+    private String names() {
+        StringBuilder sb = new StringBuilder();
+        for (Variable variable : ds.getAllVariables()) {
+            sb.append(sb.length() > 0 ? " " : "").append(variable.getName());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testOnlyChangesAreKept() {
+        DataStoreChanges changes = new DataStoreChanges(ds);
+        changes.start();
+        note.getCellTemporally(0).getCellValue().set("bye");
+        changes.stop();
+
+        Cell untouched = trial.getCellTemporally(1);
+        untouched.setOnset(9000);
+        changes.revert();
+        // Changes made after the recording stopped are left alone.
+        assertEquals(note.getCellTemporally(0).getCellValue().toString(), "hello");
+        assertEquals(untouched.getOnset(), 9000);
+        assertSame(trial.getCellTemporally(1), untouched);
+    }
+
+    @Test
+    public void testJournalGetsChanges() {
+        ChangeJournal journal = mock(ChangeJournal.class);
+        ds.setChangeJournal(journal);
+        DataStoreChanges changes = new DataStoreChanges(ds);
+        changes.start();
+        Cell cell = note.getCellTemporally(0);
+        cell.setOffset(800);
+        changes.stop();
+        assertSame(ds.getChangeJournal(), journal);
+        verify(journal).cellTimesChanged(cell);
+    }
+
+    @Test
+    public void testJournalReplacedWhileRecording() {
+        ChangeJournal journal = mock(ChangeJournal.class);
+        ds.setChangeJournal(journal);
+        DataStoreChanges changes = new DataStoreChanges(ds);
+        changes.start();
+
+        // The project is saved while a script runs, the journal file is reopened.
+        assertTrue(ds.getChangeJournal().replaceNext(journal, null));
+        assertSame(ds.getChangeJournal(), changes);
+        ChangeJournal reopened = mock(ChangeJournal.class);
+        assertTrue(ds.getChangeJournal().replaceNext(null, reopened));
+        note.getCellTemporally(0).getCellValue().set("bye");
+
+        changes.stop();
+        assertSame(ds.getChangeJournal(), reopened);
+        changes.revert();
+        assertEquals(note.getCellTemporally(0).getCellValue().toString(), "hello");
+    }
+}
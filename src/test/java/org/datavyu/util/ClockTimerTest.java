@@ -0,0 +1,252 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.util;
+
+import org.datavyu.plugins.StreamSyncController;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for the master clock.
+ */
+public class ClockTimerTest {
+
+    /** A period of the periodic sync far longer than the tests wait, so that only a boundary wakes the clock up */
+    private static final long NO_SYNC = 60000L;
+
+    /**
+     * Counts the periodic syncs.
+     */
+    private static final class SyncCounter implements ClockTimer.SyncListener {
+
+        final AtomicInteger periodicSyncs = new AtomicInteger();
+
+        @Override
+        public void clockForceSync(double clockTime) { }
+
+        @Override
+        public void clockPeriodicSync(double clockTime) {
+            periodicSyncs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Pauses the clock when it reaches a boundary.
+     */
+    private static class BoundaryStop implements ClockTimer.ClockListener {
+
+        final ClockTimer clockTimer;
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        /** The clock time the stream boundary was checked at last */
+        volatile double streamCheckTime = Double.NaN;
+
+        BoundaryStop(final ClockTimer clockTimer) {
+            this.clockTimer = clockTimer;
+        }
+
+        @Override
+        public void clockBoundaryCheck(double clockTime) {
+            clockTimer.pause();
+            stopped.countDown();
+        }
+
+        @Override
+        public void streamsBoundaryCheck(double clockTime) {
+            streamCheckTime = clockTime;
+        }
+
+        @Override
+        public void clockSeekPlayback(double clockTime) { }
+
+        @Override
+        public void clockForceSync(double clockTime) { }
+
+        @Override
+        public void clockPeriodicSync(double clockTime) { }
+
+        @Override
+        public void clockStart(double clockTime) { }
+
+        @Override
+        public void clockStop(double clockTime) { }
+
+        @Override
+        public void clockPause(double clockTime) { }
+
+        @Override
+        public void clockRate(float rate) { }
+    }
+
+    /**
+     * A stream that locks itself in the callbacks of the clock, like the stream viewers do.
+     */
+    private static final class LockingStream extends BoundaryStop {
+
+        final StreamSyncController syncController = new StreamSyncController();
+
+        final AtomicInteger periodicSyncs = new AtomicInteger();
+
+        boolean playing;
+
+        double streamTime;
+
+        LockingStream(final ClockTimer clockTimer) {
+            super(clockTimer);
+        }
+
+        @Override
+        public synchronized void clockBoundaryCheck(double clockTime) { }
+
+        @Override
+        public synchronized void streamsBoundaryCheck(double clockTime) { }
+
+        @Override
+        public synchronized void clockForceSync(double clockTime) {
+            streamTime = clockTime;
+        }
+
+        @Override
+        public synchronized void clockPeriodicSync(double clockTime) {
+            periodicSyncs.incrementAndGet();
+            if (syncController.measure(streamTime, clockTime)) {
+                streamTime = clockTime;
+            }
+            if (playing) {
+                syncController.getRate();
+            }
+        }
+
+        @Override
+        public synchronized void clockStart(double clockTime) {
+            playing = true;
+        }
+
+        @Override
+        public synchronized void clockStop(double clockTime) {
+            playing = false;
+        }
+
+        @Override
+        public synchronized void clockPause(double clockTime) {
+            playing = false;
+        }
+
+        @Override
+        public synchronized void clockRate(float rate) {
+            syncController.setClockRate(rate);
+        }
+    }
+
+    @Test
+    public void testStopsAtBoundary() throws InterruptedException {
+        ClockTimer clockTimer = new ClockTimer(NO_SYNC);
+        clockTimer.setMaxTime(250);
+        BoundaryStop listener = new BoundaryStop(clockTimer);
+        clockTimer.registerListener(listener);
+
+        clockTimer.setRate(1F);
+        // Only waking up at the boundary stops the clock before the next sync.
+        assertTrue(listener.stopped.await(5, TimeUnit.SECONDS));
+
+        assertTrue(clockTimer.isPaused());
+        assertEquals(clockTimer.getClockTime(), 250.0);
+    }
+
+    @Test
+    public void testWakesUpAtStreamBoundary() throws InterruptedException {
+        ClockTimer clockTimer = new ClockTimer(NO_SYNC);
+        clockTimer.setMaxTime(NO_SYNC * 2);
+        CountDownLatch reached = new CountDownLatch(1);
+        BoundaryStop listener = new BoundaryStop(clockTimer) {
+            @Override
+            public double nextStreamBoundary(double clockTime, float rate) {
+                return clockTime < 130 ? 130 : Double.NaN;
+            }
+
+            @Override
+            public void streamsBoundaryCheck(double clockTime) {
+                if (clockTime >= 130) {
+                    streamCheckTime = clockTime;
+                    reached.countDown();
+                }
+            }
+        };
+        clockTimer.registerListener(listener);
+
+        clockTimer.setRate(1F);
+        // Checked when the clock gets to the boundary rather than at the next sync
+        assertTrue(reached.await(5, TimeUnit.SECONDS));
+        clockTimer.pause();
+        assertTrue(listener.streamCheckTime >= 130, "Checked at " + listener.streamCheckTime);
+        assertTrue(listener.streamCheckTime < NO_SYNC, "Checked at " + listener.streamCheckTime);
+    }
+
+    @Test
+    public void testIdleWhilePaused() throws InterruptedException {
+        ClockTimer clockTimer = new ClockTimer();
+        clockTimer.setMaxTime(10000);
+        SyncCounter counter = new SyncCounter();
+        clockTimer.registerListener(counter);
+
+        Thread.sleep(300);
+        assertEquals(counter.periodicSyncs.get(), 0);
+
+        // Setting the time syncs once.
+        clockTimer.setTime(500);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (counter.periodicSyncs.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(300);
+        assertEquals(counter.periodicSyncs.get(), 1);
+        assertEquals(clockTimer.getClockTime(), 500.0);
+    }
+
+    @Test
+    public void testTogglePlayWhileSyncing() throws InterruptedException {
+        // Sync every millisecond so that the clock thread is in the stream most of the time
+        ClockTimer clockTimer = new ClockTimer(1);
+        clockTimer.setMaxTime(NO_SYNC);
+        LockingStream stream = new LockingStream(clockTimer);
+        clockTimer.registerListener(stream);
+
+        Thread player = new Thread(() -> {
+            try {
+                for (int i = 0; i < 500; i++) {
+                    clockTimer.setRate(i % 3 == 0 ? 2F : 1F);
+                    Thread.sleep(1);
+                    clockTimer.setForceTime(i);
+                    clockTimer.pause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Player");
+        player.setDaemon(true);
+        player.start();
+        player.join(TimeUnit.SECONDS.toMillis(20));
+
+        assertFalse(player.isAlive(), "Play and pause blocked on the clock thread");
+        assertTrue(stream.periodicSyncs.get() > 0);
+        assertEquals(stream.syncController.getClockRate(), 1F);
+    }
+}
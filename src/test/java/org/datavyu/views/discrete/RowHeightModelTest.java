@@ -0,0 +1,102 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the row heights of virtualized columns.
+ */
+public class RowHeightModelTest {
+
+    @Test
+    public void testEstimatedRows() {
+        RowHeightModel rows = new RowHeightModel(1000, 40);
+        assertEquals(rows.getTotalHeight(), 40000);
+        assertEquals(rows.getTop(10), 400);
+        assertEquals(rows.getRowAt(0), 0);
+        assertEquals(rows.getRowAt(-5), 0);
+        assertEquals(rows.getRowAt(439), 10);
+        assertEquals(rows.getRowAt(440), 11);
+        assertEquals(rows.getRowAt(40000), 1000);
+    }
+
+    @Test
+    public void testMeasuredRows() {
+        RowHeightModel rows = new RowHeightModel(100, 40);
+        rows.setHeight(3, 100);
+        rows.setHeight(50, 10);
+        assertEquals(rows.getHeight(3), 100);
+        assertEquals(rows.getTop(3), 120);
+        assertEquals(rows.getTop(4), 220);
+        assertEquals(rows.getTop(51), 50 * 40 + 60 + 10);
+        assertEquals(rows.getTotalHeight(), 100 * 40 + 60 - 30);
+        assertEquals(rows.getRowAt(219), 3);
+        assertEquals(rows.getRowAt(220), 4);
+
+        // Every position is covered by the row whose top is at or above it.
+        for (int y = 0; y < rows.getTotalHeight(); y += 7) {
+            int row = rows.getRowAt(y);
+            assertEquals(rows.getTop(row) <= y && y < rows.getTop(row + 1), true);
+        }
+    }
+
+    @Test
+    public void testReplaceRows() {
+        RowHeightModel rows = new RowHeightModel(10, 40);
+        rows.setHeight(2, 100);
+        rows.setHeight(7, 70);
+
+        // A row moved from 2 to 4, the rows in between move up.
+        rows.replaceRows(2, 3, new int[]{40, 40, 100});
+        checkRows(rows, 40, 40, 40, 40, 100, 40, 40, 70, 40, 40);
+
+        // A row added at 1 and the last row removed.
+        rows.replaceRows(1, 0, new int[]{25});
+        rows.replaceRows(10, 1, new int[0]);
+        checkRows(rows, 40, 25, 40, 40, 40, 100, 40, 40, 70, 40);
+
+        rows.replaceRows(0, 10, new int[0]);
+        checkRows(rows);
+        rows.replaceRows(0, 0, new int[]{30, 60});
+        checkRows(rows, 30, 60);
+    }
+
+    /**
+     * Checks the heights, tops and rows at the positions against the expected heights.
+     */
+    private static void checkRows(final RowHeightModel rows, final int... heights) {
+        assertEquals(rows.size(), heights.length);
+        int top = 0;
+        for (int row = 0; row < heights.length; row++) {
+            assertEquals(rows.getHeight(row), heights[row]);
+            assertEquals(rows.getTop(row), top);
+            assertEquals(rows.getRowAt(top), row);
+            assertEquals(rows.getRowAt(top + heights[row] - 1), row);
+            top += heights[row];
+        }
+        assertEquals(rows.getTotalHeight(), top);
+        assertEquals(rows.getRowAt(top), heights.length);
+    }
+
+    @Test
+    public void testEmpty() {
+        RowHeightModel rows = new RowHeightModel(0, 40);
+        assertEquals(rows.getTotalHeight(), 0);
+        assertEquals(rows.getRowAt(100), 0);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.datavyu.views.discrete.layouts;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the positions of the times of the weak temporal layout.
+ */
+public class TemporalIndexTest {
+
+    private static TemporalIndex.Column newColumn(final long[] onsets, final long[] offsets, final int[] heights) {
+        TemporalIndex.Column column = new TemporalIndex.Column(0, onsets, offsets);
+        for (int i = 0; i < heights.length; i++) {
+            column.setHeight(i, heights[i]);
+        }
+        return column;
+    }
+
+    @Test
+    public void testPositions() {
+        // Two cells starting at 0 are stacked, the offset of a reversed cell is not a time.
+        TemporalIndex.Column a = newColumn(new long[]{0, 0, 100, 300}, new long[]{50, 60, 200, 250},
+                new int[]{20, 30, 25, 10});
+        TemporalIndex.Column b = newColumn(new long[]{50}, new long[]{120}, new int[]{40});
+        TemporalIndex index = new TemporalIndex();
+        index.update(Arrays.asList(a, b));
+
+        int gap = TemporalIndex.GAP;
+        assertEquals(index.getNumTimes(), 7);
+        assertEquals(index.getPosition(index.indexOf(0)), 0);
+        assertEquals(index.getPosition(index.indexOf(50)), 50 + gap);
+        assertEquals(index.getPosition(index.indexOf(60)), 90 + 2 * gap);
+        assertEquals(index.getPosition(index.indexOf(100)), 90 + 3 * gap);
+        assertEquals(index.getPosition(index.indexOf(120)), 115 + 4 * gap);
+        assertEquals(index.getPosition(index.indexOf(200)), 115 + 5 * gap);
+        assertEquals(index.getPosition(index.indexOf(300)), 115 + 6 * gap);
+        assertTrue(index.indexOf(250) < 0);
+        assertEquals(a.onsetIndex[2], index.indexOf(100));
+        assertEquals(a.offsetIndex[3], -1);
+
+        // A taller cell moves the times below it.
+        b.setHeight(0, 60);
+        index.update(Arrays.asList(a, b));
+        assertEquals(index.getPosition(index.indexOf(50)), 50 + gap);
+        assertEquals(index.getPosition(index.indexOf(60)), 110 + 2 * gap);
+        assertEquals(index.getPosition(index.indexOf(300)), 135 + 6 * gap);
+
+        // Without the second column, its times are gone.
+        index.update(Arrays.asList(a));
+        assertEquals(index.getNumTimes(), 6);
+        assertEquals(index.getPosition(index.indexOf(60)), 50 + 2 * gap);
+    }
+
+    @Test
+    public void testUpdatesMatchNewIndex() {
+        Random random = new Random(7);
+        List<TemporalIndex.Column> columns = new ArrayList<TemporalIndex.Column>();
+        for (int c = 0; c < 5; c++) {
+            columns.add(randomColumn(random));
+        }
+        TemporalIndex index = new TemporalIndex();
+        index.update(columns);
+
+        for (int step = 0; step < 50; step++) {
+            int c = random.nextInt(columns.size());
+            if (random.nextBoolean()) {
+                // A cell changed height.
+                TemporalIndex.Column column = columns.get(c);
+                column.setHeight(random.nextInt(column.size()), 10 + random.nextInt(50));
+            } else {
+                // The cells of a column changed times.
+                columns.set(c, randomColumn(random));
+            }
+            index.update(columns);
+
+            List<TemporalIndex.Column> copies = new ArrayList<TemporalIndex.Column>();
+            for (TemporalIndex.Column column : columns) {
+                copies.add(newColumn(column.onsets.clone(), column.offsets.clone(), column.heights.clone()));
+            }
+            TemporalIndex expected = new TemporalIndex();
+            expected.update(copies);
+
+            assertEquals(index.getNumTimes(), expected.getNumTimes());
+            for (int t = 0; t < expected.getNumTimes(); t++) {
+                assertEquals(index.getPosition(t), expected.getPosition(t));
+            }
+        }
+    }
+
+    private static TemporalIndex.Column randomColumn(final Random random) {
+        int n = 1 + random.nextInt(200);
+        long[] onsets = new long[n];
+        long[] offsets = new long[n];
+        int[] heights = new int[n];
+        for (int i = 0; i < n; i++) {
+            onsets[i] = random.nextInt(10000);
+        }
+        Arrays.sort(onsets);
+        for (int i = 0; i < n; i++) {
+            offsets[i] = onsets[i] + random.nextInt(500) - 50;
+            heights[i] = 10 + random.nextInt(50);
+        }
+        return newColumn(onsets, offsets, heights);
+    }
+}